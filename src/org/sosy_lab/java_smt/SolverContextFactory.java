@@ -32,14 +32,20 @@ import org.sosy_lab.common.ShutdownNotifier;
 import org.sosy_lab.common.configuration.Configuration;
 import org.sosy_lab.common.configuration.FileOption;
 import org.sosy_lab.common.configuration.FileOption.Type;
+import org.sosy_lab.common.configuration.IntegerOption;
 import org.sosy_lab.common.configuration.InvalidConfigurationException;
 import org.sosy_lab.common.configuration.Option;
 import org.sosy_lab.common.configuration.Options;
 import org.sosy_lab.common.io.PathCounterTemplate;
 import org.sosy_lab.common.log.LogManager;
 import org.sosy_lab.java_smt.api.FloatingPointRoundingMode;
+import org.sosy_lab.java_smt.api.FormulaManager;
 import org.sosy_lab.java_smt.api.SolverContext;
+import org.sosy_lab.java_smt.basicimpl.AbstractFormulaManager;
 import org.sosy_lab.java_smt.basicimpl.AbstractNumeralFormulaManager.NonLinearArithmetic;
+import org.sosy_lab.java_smt.basicimpl.FormulaCreator;
+import org.sosy_lab.java_smt.caching.CachingSolverContext;
+import org.sosy_lab.java_smt.concurrent.ConcurrentSolverContext;
 import org.sosy_lab.java_smt.logging.LoggingSolverContext;
 import org.sosy_lab.java_smt.solvers.mathsat5.Mathsat5SolverContext;
 import org.sosy_lab.java_smt.solvers.princess.PrincessSolverContext;
@@ -78,6 +84,51 @@ public class SolverContextFactory {
   @Option(secure = true, description = "Log solver actions, this may be slow!")
   private boolean useLogger = false;
 
+  @Option(
+      secure = true,
+      description =
+          "Store the results of satisfiability checks in a file and reuse them in later runs "
+              + "(see solver.resultCache.* for further options).")
+  private boolean useResultCache = false;
+
+  @Option(
+      secure = true,
+      description =
+          "Allow the solver context to be used from several threads by serializing all calls "
+              + "to the solver. Each prover environment should still be used by only one thread.")
+  private boolean synchronize = false;
+
+  @Option(
+      secure = true,
+      description =
+          "Hand out at most one formula object per term, which reduces allocations when "
+              + "formulas are created or visited repeatedly, and makes equal formulas identical.")
+  private boolean internFormulas = false;
+
+  @Option(
+      secure = true,
+      description =
+          "Fold constants and simplify trivial operations like \"and(true, x)\" or \"x + 0\" "
+              + "already when formulas are created.")
+  private boolean simplifyFormulas = false;
+
+  @Option(
+      secure = true,
+      description =
+          "Number of variables that are cached by name and type, such that creating the same "
+              + "variable again does not need to ask the solver. Use 0 to disable the cache.")
+  @IntegerOption(min = 0)
+  private int variableCacheSize = 10000;
+
+  @Option(
+      secure = true,
+      description =
+          "Integer and rational numerals as well as bitvector constants (for each width) with an "
+              + "absolute value up to this bound are cached once they are created. "
+              + "Use 0 to disable the caches.")
+  @IntegerOption(min = 0, max = 1 << 20)
+  private int numeralCacheRange = 256;
+
   @Option(secure = true, description = "Default rounding mode for floating point operations.")
   private FloatingPointRoundingMode floatingPointRoundingMode =
       FloatingPointRoundingMode.NEAREST_TIES_TO_EVEN;
@@ -130,9 +181,33 @@ public class SolverContextFactory {
           e);
     }
 
+    FormulaManager fmgr = context.getFormulaManager();
+    if (fmgr instanceof AbstractFormulaManager) {
+      AbstractFormulaManager<?, ?, ?, ?> abstractFmgr = (AbstractFormulaManager<?, ?, ?, ?>) fmgr;
+      FormulaCreator<?, ?, ?, ?> creator = abstractFmgr.getFormulaCreator();
+      if (internFormulas) {
+        creator.enableInterning();
+      }
+      if (simplifyFormulas) {
+        creator.enableSimplification();
+      }
+      abstractFmgr.setVariableCacheSize(variableCacheSize);
+      abstractFmgr.setNumeralCacheRange(numeralCacheRange);
+    }
+    if (useResultCache) {
+      try {
+        context = CachingSolverContext.create(config, logger, context);
+      } catch (InvalidConfigurationException e) {
+        context.close();
+        throw e;
+      }
+    }
     if (useLogger) {
       context = new LoggingSolverContext(logger, context);
     }
+    if (synchronize) {
+      context = new ConcurrentSolverContext(context);
+    }
     return context;
   }
 
@@ -20,6 +20,9 @@
 package org.sosy_lab.java_smt.api;
 
 import com.google.errorprone.annotations.CanIgnoreReturnValue;
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.file.Path;
 import java.util.List;
 import java.util.Map;
 import org.sosy_lab.common.Appender;
@@ -91,6 +94,17 @@ public interface FormulaManager {
    */
   <T extends Formula> T makeVariable(FormulaType<T> formulaType, String name);
 
+  /**
+   * Create variables of the type equal to {@code formulaType}, one for each of the given names.
+   * This is equivalent to calling {@link #makeVariable} for each name, but faster for many
+   * variables. All names are checked before the first variable is created.
+   *
+   * @param formulaType the type of the variables.
+   * @param names the names of the variables.
+   * @return the created variables, in the order of their names.
+   */
+  <T extends Formula> List<T> makeVariables(FormulaType<T> formulaType, List<String> names);
+
   /**
    * Create a function application to the given list of arguments.
    *
@@ -121,6 +135,30 @@ public interface FormulaManager {
    */
   BooleanFormula parse(String s) throws IllegalArgumentException;
 
+  /**
+   * Parse a boolean formula in SMT-LIB format from the given reader.
+   *
+   * <p>In contrast to {@link #parse(String)}, the input is tokenized incrementally and the terms
+   * are built with this manager as soon as they are complete, thus the input does not need to fit
+   * into a single String. Only a subset of SMT-LIB is supported, e.g., no quantifiers and no
+   * functions defined with parameters.
+   *
+   * @return The conjunction of all asserted formulas.
+   * @throws IllegalArgumentException If the input cannot be parsed.
+   * @throws IOException If reading the input fails.
+   */
+  BooleanFormula parse(Reader pReader) throws IOException, IllegalArgumentException;
+
+  /**
+   * Parse a boolean formula in SMT-LIB format from the given file. The file is mapped into memory
+   * and parsed incrementally, like {@link #parse(Reader)}.
+   *
+   * @return The conjunction of all asserted formulas.
+   * @throws IllegalArgumentException If the input cannot be parsed.
+   * @throws IOException If reading the file fails.
+   */
+  BooleanFormula parse(Path pFile) throws IOException, IllegalArgumentException;
+
   /**
    * Serialize an input formula to an SMT-LIB format. Very useful when passing formulas between
    * different solvers.
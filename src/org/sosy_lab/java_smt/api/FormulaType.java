@@ -22,6 +22,8 @@ package org.sosy_lab.java_smt.api;
 import com.google.common.base.Preconditions;
 import com.google.common.base.Splitter;
 import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 import org.sosy_lab.java_smt.api.NumeralFormula.IntegerFormula;
 import org.sosy_lab.java_smt.api.NumeralFormula.RationalFormula;
 
@@ -121,16 +123,37 @@ public abstract class FormulaType<T extends Formula> {
       };
 
   public static BitvectorType getBitvectorTypeWithSize(int size) {
-    return new BitvectorType(size);
+    return BitvectorType.of(size);
   }
 
   public static final class BitvectorType extends FormulaType<BitvectorFormula> {
+
+    /** Canonical instances for common sizes, indexed by size. */
+    private static final BitvectorType[] TYPES_BY_SIZE = new BitvectorType[129];
+
+    /** Canonical instances for all other sizes. */
+    private static final ConcurrentMap<Integer, BitvectorType> OTHER_TYPES =
+        new ConcurrentHashMap<>();
+
+    static {
+      for (int i = 0; i < TYPES_BY_SIZE.length; i++) {
+        TYPES_BY_SIZE[i] = new BitvectorType(i);
+      }
+    }
+
     private final int size;
 
     private BitvectorType(int size) {
       this.size = (size);
     }
 
+    private static BitvectorType of(int size) {
+      if (0 <= size && size < TYPES_BY_SIZE.length) {
+        return TYPES_BY_SIZE[size];
+      }
+      return OTHER_TYPES.computeIfAbsent(size, BitvectorType::new);
+    }
+
     @Override
     public boolean isBitvectorType() {
       return true;
@@ -164,7 +187,7 @@ public abstract class FormulaType<T extends Formula> {
   }
 
   public static FloatingPointType getFloatingPointType(int exponentSize, int mantissaSize) {
-    return new FloatingPointType(exponentSize, mantissaSize);
+    return FloatingPointType.of(exponentSize, mantissaSize);
   }
 
   public static FloatingPointType getSinglePrecisionFloatingPointType() {
@@ -177,8 +200,12 @@ public abstract class FormulaType<T extends Formula> {
 
   public static final class FloatingPointType extends FormulaType<FloatingPointFormula> {
 
-    private static final FloatingPointType SINGLE_PRECISION_FP_TYPE = new FloatingPointType(8, 23);
-    private static final FloatingPointType DOUBLE_PRECISION_FP_TYPE = new FloatingPointType(11, 52);
+    /** Canonical instances by exponent size and then by mantissa size. */
+    private static final ConcurrentMap<Integer, ConcurrentMap<Integer, FloatingPointType>> TYPES =
+        new ConcurrentHashMap<>();
+
+    private static final FloatingPointType SINGLE_PRECISION_FP_TYPE = of(8, 23);
+    private static final FloatingPointType DOUBLE_PRECISION_FP_TYPE = of(11, 52);
 
     private final int exponentSize;
     private final int mantissaSize;
@@ -188,6 +215,13 @@ public abstract class FormulaType<T extends Formula> {
       mantissaSize = pMantissaSize;
     }
 
+    private static FloatingPointType of(int pExponentSize, int pMantissaSize) {
+      return TYPES
+          .computeIfAbsent(pExponentSize, exponentSize -> new ConcurrentHashMap<>())
+          .computeIfAbsent(
+              pMantissaSize, mantissaSize -> new FloatingPointType(pExponentSize, mantissaSize));
+    }
+
     @Override
     public boolean isFloatingPointType() {
       return true;
@@ -248,20 +282,40 @@ public abstract class FormulaType<T extends Formula> {
 
   public static <TD extends Formula, TR extends Formula> ArrayFormulaType<TD, TR> getArrayType(
       FormulaType<TD> pDomainSort, FormulaType<TR> pRangeSort) {
-    return new ArrayFormulaType<>(pDomainSort, pRangeSort);
+    return ArrayFormulaType.of(pDomainSort, pRangeSort);
   }
 
   public static final class ArrayFormulaType<TI extends Formula, TE extends Formula>
       extends FormulaType<ArrayFormula<TI, TE>> {
 
+    /** Canonical instances by index type and then by element type. */
+    private static final ConcurrentMap<
+            FormulaType<?>, ConcurrentMap<FormulaType<?>, ArrayFormulaType<?, ?>>>
+        TYPES = new ConcurrentHashMap<>();
+
     private final FormulaType<TE> elementType;
     private final FormulaType<TI> indexType;
 
+    /**
+     * Create a new array type. Prefer {@link FormulaType#getArrayType}, which returns a canonical
+     * instance.
+     */
     public ArrayFormulaType(FormulaType<TI> pIndexType, FormulaType<TE> pElementType) {
       this.indexType = Preconditions.checkNotNull(pIndexType);
       this.elementType = Preconditions.checkNotNull(pElementType);
     }
 
+    @SuppressWarnings("unchecked")
+    private static <TI extends Formula, TE extends Formula> ArrayFormulaType<TI, TE> of(
+        FormulaType<TI> pIndexType, FormulaType<TE> pElementType) {
+      Preconditions.checkNotNull(pIndexType);
+      Preconditions.checkNotNull(pElementType);
+      return (ArrayFormulaType<TI, TE>)
+          TYPES
+              .computeIfAbsent(pIndexType, t -> new ConcurrentHashMap<>())
+              .computeIfAbsent(pElementType, t -> new ArrayFormulaType<>(pIndexType, pElementType));
+    }
+
     public FormulaType<TE> getElementType() {
       return elementType;
     }
@@ -21,10 +21,13 @@ package org.sosy_lab.java_smt.api;
 
 import com.google.common.base.Joiner;
 import com.google.common.base.Preconditions;
+import com.google.common.base.Supplier;
+import com.google.common.base.Suppliers;
 import com.google.common.collect.ImmutableList;
 import java.math.BigInteger;
 import java.util.Collection;
 import java.util.Iterator;
+import java.util.List;
 import java.util.Objects;
 import javax.annotation.Nullable;
 import org.sosy_lab.common.rationals.Rational;
@@ -62,6 +65,18 @@ public interface Model extends Iterable<ValueAssignment>, AutoCloseable {
   @Nullable
   BigInteger evaluate(BitvectorFormula f);
 
+  /**
+   * Evaluate several formulas at once. This is equivalent to calling {@link #evaluate(Formula)} for
+   * each formula, but some solvers can share the work between the formulas. Values are cached in
+   * the model, such that evaluating a formula again is cheap.
+   *
+   * @param formulas Input formulas
+   * @return A list that contains the value of the i-th input formula at position i, or {@code
+   *     null} if the value is not relevant to the satisfiability result.
+   * @throws IllegalArgumentException if a formula has unexpected type, e.g Array.
+   */
+  List<Object> evaluateAll(Collection<? extends Formula> formulas);
+
   /**
    * Iterate over all values present in the model. Note that iterating multiple times may be
    * inefficient for some solvers, it is recommended to use {@link
@@ -70,6 +85,20 @@ public interface Model extends Iterable<ValueAssignment>, AutoCloseable {
   @Override
   Iterator<ValueAssignment> iterator();
 
+  /**
+   * Iterate over the values in the model, but skip all array symbols. Expanding an array into one
+   * assignment per index can be expensive, and the values of single array elements can still be
+   * obtained by evaluating select-terms.
+   */
+  Iterator<ValueAssignment> iteratorWithoutArrays();
+
+  /**
+   * Return the values of the symbol with the given name, i.e., one assignment for a variable, and
+   * one assignment per argument tuple for an uninterpreted function or per index for an array. This
+   * does not build the assignments of other symbols.
+   */
+  ImmutableList<ValueAssignment> getAssignments(String name);
+
   /** Pretty-printing of the model values. */
   @Override
   String toString();
@@ -95,8 +124,8 @@ public interface Model extends Iterable<ValueAssignment>, AutoCloseable {
     /** the value should be of simple formula-type (Boolean/Integer/Rational/BitVector). */
     private final Formula valueFormula;
 
-    /** the equality of key and value. */
-    private final BooleanFormula formula;
+    /** the equality of key and value, created on first access. */
+    private final Supplier<BooleanFormula> formula;
 
     /** the key should be boolean or numeral (Rational/Double/BigInteger/Long/Integer). */
     private final Object value;
@@ -130,10 +159,30 @@ public interface Model extends Iterable<ValueAssignment>, AutoCloseable {
         String name,
         Object value,
         Collection<?> argumentInterpretation) {
+      this(
+          keyFormula,
+          valueFormula,
+          Suppliers.ofInstance(Preconditions.checkNotNull(formula)),
+          name,
+          value,
+          argumentInterpretation);
+    }
+
+    /**
+     * Create an assignment whose equality formula is only created when {@link
+     * #getAssignmentAsFormula()} is called for the first time.
+     */
+    public ValueAssignment(
+        Formula keyFormula,
+        Formula valueFormula,
+        Supplier<BooleanFormula> formula,
+        String name,
+        Object value,
+        Collection<?> argumentInterpretation) {
 
       this.keyFormula = Preconditions.checkNotNull(keyFormula);
       this.valueFormula = Preconditions.checkNotNull(valueFormula);
-      this.formula = Preconditions.checkNotNull(formula);
+      this.formula = Suppliers.memoize(Preconditions.checkNotNull(formula));
       this.name = Preconditions.checkNotNull(name);
       this.value = Preconditions.checkNotNull(value);
       this.argumentsInterpretation = ImmutableList.copyOf(argumentInterpretation);
@@ -151,7 +200,7 @@ public interface Model extends Iterable<ValueAssignment>, AutoCloseable {
 
     /** The formula AST representing the equality of key and value. */
     public BooleanFormula getAssignmentAsFormula() {
-      return formula;
+      return Preconditions.checkNotNull(formula.get());
     }
 
     /** Variable name for variables, function name for UFs, and array name for arrays. */
@@ -53,6 +53,14 @@ public interface NumeralFormulaManager<
 
   ResultFormulaType makeNumber(Rational pRational);
 
+  /**
+   * Create numeric literals for all given values. This is equivalent to calling {@link
+   * #makeNumber(long)} for each value, but faster for many values, especially if values repeat.
+   *
+   * @return the created literals, in the order of the values.
+   */
+  List<ResultFormulaType> makeNumbers(long... numbers);
+
   /**
    * Creates a variable with exactly the given name.
    *
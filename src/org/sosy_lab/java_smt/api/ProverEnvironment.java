@@ -32,4 +32,55 @@ import org.sosy_lab.common.ShutdownNotifier;
  * shutdown request via the {@link ShutdownNotifier}. It is not guaranteed, though, that solvers
  * respond in a timely manner (or at all) to shutdown or interrupt requests.
  */
-public interface ProverEnvironment extends BasicProverEnvironment<Void> {}
+public interface ProverEnvironment extends BasicProverEnvironment<Void> {
+
+  /** Identifies a constraint that was added with {@link #addRetractable}. */
+  interface AssertionHandle {}
+
+  /**
+   * Add a constraint that can be removed again with {@link #retract}, independently of the
+   * push/pop stack. The constraint is also removed when the level of the stack that it was added
+   * to is popped.
+   *
+   * <p>In contrast to popping and re-asserting, retracting a constraint keeps the rest of the
+   * solver state, e.g., learned clauses.
+   *
+   * <p>The prover environment needs to be created with {@link
+   * SolverContext.ProverOptions#ENABLE_RETRACTABLE_CONSTRAINTS}, otherwise this method throws an
+   * {@link UnsupportedOperationException}.
+   *
+   * @return a handle that identifies the constraint for {@link #retract}
+   */
+  default AssertionHandle addRetractable(BooleanFormula constraint) throws InterruptedException {
+    throw new UnsupportedOperationException("Retractable constraints are not supported.");
+  }
+
+  /**
+   * Remove a constraint that was added with {@link #addRetractable} to this prover environment.
+   * Retracting a constraint that was already removed has no effect.
+   *
+   * @throws IllegalArgumentException if the handle was not created by this prover environment or
+   *     copied to it by {@link #fork}
+   */
+  default void retract(AssertionHandle handle) throws InterruptedException {
+    throw new UnsupportedOperationException("Retractable constraints are not supported.");
+  }
+
+  /**
+   * Create a new prover environment with a copy of the assertion stack of this one, including the
+   * levels and the active retractable constraints. Afterwards, both prover environments are
+   * independent of each other, except that handles of retractable constraints that were copied
+   * are valid for both of them.
+   *
+   * <p>The new prover environment belongs to the same {@link SolverContext} and uses the same
+   * options. Whether both can be used on different threads at the same time depends on the
+   * thread-safety of the solver context.
+   *
+   * <p>The prover environment needs to be created with {@link
+   * SolverContext.ProverOptions#ENABLE_FORKING}, otherwise this method throws an {@link
+   * UnsupportedOperationException}.
+   */
+  default ProverEnvironment fork() throws InterruptedException {
+    throw new UnsupportedOperationException("Forking is not supported.");
+  }
+}
@@ -56,7 +56,19 @@ public interface SolverContext extends AutoCloseable {
      * Whether the solver should generate an unsat core for unsatisfiable formulas <b>only</b> over
      * the assumptions explicitly passed to the solver.
      */
-    GENERATE_UNSAT_CORE_OVER_ASSUMPTIONS
+    GENERATE_UNSAT_CORE_OVER_ASSUMPTIONS,
+
+    /**
+     * Whether {@link ProverEnvironment#addRetractable} and {@link ProverEnvironment#retract} may
+     * be used.
+     */
+    ENABLE_RETRACTABLE_CONSTRAINTS,
+
+    /**
+     * Whether {@link ProverEnvironment#fork()} may be used. The prover environment then keeps all
+     * asserted formulas, such that they can be replayed on the fork.
+     */
+    ENABLE_FORKING
   }
 
   /**
@@ -23,6 +23,9 @@ import static com.google.common.base.Preconditions.checkArgument;
 import static org.sosy_lab.java_smt.basicimpl.AbstractFormulaManager.checkVariableName;
 
 import java.math.BigInteger;
+import java.util.HashMap;
+import java.util.Map;
+import javax.annotation.Nullable;
 import org.sosy_lab.java_smt.api.BitvectorFormula;
 import org.sosy_lab.java_smt.api.BitvectorFormulaManager;
 import org.sosy_lab.java_smt.api.BooleanFormula;
@@ -33,15 +36,65 @@ public abstract class AbstractBitvectorFormulaManager<TFormulaInfo, TType, TEnv,
     extends AbstractBaseFormulaManager<TFormulaInfo, TType, TEnv, TFuncDecl>
     implements BitvectorFormulaManager {
 
+  /**
+   * Constants from {@code -constantCacheRange} to {@code constantCacheRange} by bit width, indexed
+   * by their value plus the range and created on first use.
+   */
+  private final Map<Integer, BitvectorFormula[]> smallConstants = new HashMap<>();
+
+  private int constantCacheRange = 0;
+
   protected AbstractBitvectorFormulaManager(
       FormulaCreator<TFormulaInfo, TType, TEnv, TFuncDecl> pCreator) {
     super(pCreator);
   }
 
+  /**
+   * Keep all constants with an absolute value of at most the given range once they are created,
+   * separately for each bit width, such that {@link #makeBitvector(int, long)} returns them without
+   * asking the solver again. A range of zero disables the cache.
+   */
+  final void setConstantCacheRange(int pRange) {
+    checkArgument(
+        0 <= pRange && pRange <= AbstractNumeralFormulaManager.MAX_NUMERAL_CACHE_RANGE,
+        "Invalid cache range: %s",
+        pRange);
+    constantCacheRange = pRange;
+    smallConstants.clear();
+  }
+
   private BitvectorFormula wrap(TFormulaInfo pTerm) {
     return getFormulaCreator().encapsulateBitvector(pTerm);
   }
 
+  private boolean isSimplifying() {
+    return getFormulaCreator().isSimplifying();
+  }
+
+  /** Return the unsigned value of a bitvector constant, or null if it is no constant. */
+  private @Nullable BigInteger getValue(BitvectorFormula pNumber) {
+    if (!isConstant(extractInfo(pNumber))) {
+      return null;
+    }
+    Object value = getFormulaCreator().getConstantValue(pNumber);
+    return value instanceof BigInteger ? (BigInteger) value : null;
+  }
+
+  /**
+   * Check whether the argument is a bitvector constant. This is called for the operands of each
+   * operation if simplification is enabled, thus it should not traverse the term.
+   */
+  protected abstract boolean isConstant(TFormulaInfo pParam);
+
+  /** Create a constant from the value modulo 2^length. */
+  private BitvectorFormula makeConstant(int pLength, BigInteger pValue) {
+    return makeBitvector(pLength, pValue.mod(BigInteger.ONE.shiftLeft(pLength)));
+  }
+
+  private static boolean isZero(@Nullable BigInteger pValue) {
+    return pValue != null && pValue.signum() == 0;
+  }
+
   private void checkSameSize(
       BitvectorFormula pNumber1, BitvectorFormula pNumber2, String operation) {
     final int len1 = getLength(pNumber1);
@@ -56,6 +109,12 @@ public abstract class AbstractBitvectorFormulaManager<TFormulaInfo, TType, TEnv,
 
   @Override
   public BitvectorFormula negate(BitvectorFormula pNumber) {
+    if (isSimplifying()) {
+      BigInteger value = getValue(pNumber);
+      if (value != null) {
+        return makeConstant(getLength(pNumber), value.negate());
+      }
+    }
     TFormulaInfo param1 = extractInfo(pNumber);
     return wrap(negate(param1));
   }
@@ -65,6 +124,15 @@ public abstract class AbstractBitvectorFormulaManager<TFormulaInfo, TType, TEnv,
   @Override
   public BitvectorFormula add(BitvectorFormula pNumber1, BitvectorFormula pNumber2) {
     checkSameSize(pNumber1, pNumber2, "add");
+    if (isSimplifying()) {
+      BigInteger value1 = getValue(pNumber1);
+      BigInteger value2 = getValue(pNumber2);
+      if (value1 != null && value2 != null) {
+        return makeConstant(getLength(pNumber1), value1.add(value2));
+      } else if (isZero(value1) || isZero(value2)) {
+        return isZero(value1) ? pNumber2 : pNumber1;
+      }
+    }
     TFormulaInfo param1 = extractInfo(pNumber1);
     TFormulaInfo param2 = extractInfo(pNumber2);
 
@@ -78,6 +146,17 @@ public abstract class AbstractBitvectorFormulaManager<TFormulaInfo, TType, TEnv,
     checkSameSize(pNumber1, pNumber2, "subtract");
     TFormulaInfo param1 = extractInfo(pNumber1);
     TFormulaInfo param2 = extractInfo(pNumber2);
+    if (isSimplifying()) {
+      BigInteger value1 = getValue(pNumber1);
+      BigInteger value2 = getValue(pNumber2);
+      if (value1 != null && value2 != null) {
+        return makeConstant(getLength(pNumber1), value1.subtract(value2));
+      } else if (param1.equals(param2)) {
+        return makeConstant(getLength(pNumber1), BigInteger.ZERO);
+      } else if (isZero(value2)) {
+        return pNumber1;
+      }
+    }
 
     return wrap(subtract(param1, param2));
   }
@@ -113,6 +192,17 @@ public abstract class AbstractBitvectorFormulaManager<TFormulaInfo, TType, TEnv,
   @Override
   public BitvectorFormula multiply(BitvectorFormula pNumber1, BitvectorFormula pNumber2) {
     checkSameSize(pNumber1, pNumber2, "modulo");
+    if (isSimplifying()) {
+      BigInteger value1 = getValue(pNumber1);
+      BigInteger value2 = getValue(pNumber2);
+      if (value1 != null && value2 != null) {
+        return makeConstant(getLength(pNumber1), value1.multiply(value2));
+      } else if (isZero(value1) || isZero(value2)) {
+        return makeConstant(getLength(pNumber1), BigInteger.ZERO);
+      } else if (BigInteger.ONE.equals(value1) || BigInteger.ONE.equals(value2)) {
+        return BigInteger.ONE.equals(value1) ? pNumber2 : pNumber1;
+      }
+    }
     TFormulaInfo param1 = extractInfo(pNumber1);
     TFormulaInfo param2 = extractInfo(pNumber2);
 
@@ -186,6 +276,12 @@ public abstract class AbstractBitvectorFormulaManager<TFormulaInfo, TType, TEnv,
 
   @Override
   public BitvectorFormula not(BitvectorFormula pBits) {
+    if (isSimplifying()) {
+      BigInteger value = getValue(pBits);
+      if (value != null) {
+        return makeConstant(getLength(pBits), value.not());
+      }
+    }
     TFormulaInfo param1 = extractInfo(pBits);
     return wrap(not(param1));
   }
@@ -197,6 +293,17 @@ public abstract class AbstractBitvectorFormulaManager<TFormulaInfo, TType, TEnv,
     assert getLength(pBits1) == getLength(pBits2);
     TFormulaInfo param1 = extractInfo(pBits1);
     TFormulaInfo param2 = extractInfo(pBits2);
+    if (isSimplifying()) {
+      BigInteger value1 = getValue(pBits1);
+      BigInteger value2 = getValue(pBits2);
+      if (value1 != null && value2 != null) {
+        return makeConstant(getLength(pBits1), value1.and(value2));
+      } else if (isZero(value1) || isZero(value2)) {
+        return makeConstant(getLength(pBits1), BigInteger.ZERO);
+      } else if (param1.equals(param2)) {
+        return pBits1;
+      }
+    }
 
     return wrap(and(param1, param2));
   }
@@ -208,6 +315,17 @@ public abstract class AbstractBitvectorFormulaManager<TFormulaInfo, TType, TEnv,
     assert getLength(pBits1) == getLength(pBits2);
     TFormulaInfo param1 = extractInfo(pBits1);
     TFormulaInfo param2 = extractInfo(pBits2);
+    if (isSimplifying()) {
+      BigInteger value1 = getValue(pBits1);
+      BigInteger value2 = getValue(pBits2);
+      if (value1 != null && value2 != null) {
+        return makeConstant(getLength(pBits1), value1.or(value2));
+      } else if (isZero(value1) || param1.equals(param2)) {
+        return pBits2;
+      } else if (isZero(value2)) {
+        return pBits1;
+      }
+    }
 
     return wrap(or(param1, param2));
   }
@@ -219,6 +337,17 @@ public abstract class AbstractBitvectorFormulaManager<TFormulaInfo, TType, TEnv,
     assert getLength(pBits1) == getLength(pBits2);
     TFormulaInfo param1 = extractInfo(pBits1);
     TFormulaInfo param2 = extractInfo(pBits2);
+    if (isSimplifying()) {
+      BigInteger value1 = getValue(pBits1);
+      BigInteger value2 = getValue(pBits2);
+      if (value1 != null && value2 != null) {
+        return makeConstant(getLength(pBits1), value1.xor(value2));
+      } else if (param1.equals(param2)) {
+        return makeConstant(getLength(pBits1), BigInteger.ZERO);
+      } else if (isZero(value1) || isZero(value2)) {
+        return isZero(value1) ? pBits2 : pBits1;
+      }
+    }
 
     return wrap(xor(param1, param2));
   }
@@ -227,6 +356,16 @@ public abstract class AbstractBitvectorFormulaManager<TFormulaInfo, TType, TEnv,
 
   @Override
   public BitvectorFormula makeBitvector(int pLength, long i) {
+    if (constantCacheRange > 0 && -constantCacheRange <= i && i <= constantCacheRange) {
+      BitvectorFormula[] constants =
+          smallConstants.computeIfAbsent(
+              pLength, length -> new BitvectorFormula[2 * constantCacheRange + 1]);
+      int index = (int) i + constantCacheRange;
+      if (constants[index] == null) {
+        constants[index] = wrap(makeBitvectorImpl(pLength, i));
+      }
+      return constants[index];
+    }
     return wrap(makeBitvectorImpl(pLength, i));
   }
 
@@ -234,6 +373,9 @@ public abstract class AbstractBitvectorFormulaManager<TFormulaInfo, TType, TEnv,
 
   @Override
   public BitvectorFormula makeBitvector(int pLength, BigInteger i) {
+    if (i.bitLength() < Long.SIZE) {
+      return makeBitvector(pLength, i.longValue());
+    }
     return wrap(makeBitvectorImpl(pLength, i));
   }
 
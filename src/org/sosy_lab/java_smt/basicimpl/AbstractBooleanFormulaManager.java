@@ -28,11 +28,15 @@ import com.google.common.collect.Collections2;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableSet;
 import com.google.common.collect.Iterables;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Sets;
 import java.util.ArrayDeque;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.Deque;
-import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
@@ -68,6 +72,76 @@ public abstract class AbstractBooleanFormulaManager<TFormulaInfo, TType, TEnv, T
     return getFormulaCreator().encapsulateBoolean(formulaInfo);
   }
 
+  private boolean isSimplifying() {
+    return getFormulaCreator().isSimplifying();
+  }
+
+  private boolean isComplement(TFormulaInfo pBits, TFormulaInfo pOther) {
+    TFormulaInfo negated = getNegatedArgumentImpl(pBits);
+    return negated != null && negated.equals(pOther);
+  }
+
+  /** The neutral element is {@code true} for conjunctions and {@code false} for disjunctions. */
+  private boolean isNeutral(TFormulaInfo pBits, boolean pConjunction) {
+    return pConjunction ? isTrue(pBits) : isFalse(pBits);
+  }
+
+  /** The absorbing element is {@code false} for conjunctions and {@code true} for disjunctions. */
+  private boolean isAbsorbing(TFormulaInfo pBits, boolean pConjunction) {
+    return pConjunction ? isFalse(pBits) : isTrue(pBits);
+  }
+
+  /**
+   * Simplify a conjunction or disjunction of two formulas with a constant, duplicate or
+   * complementary operand.
+   *
+   * @return the simplified formula, or null if no simplification applies.
+   */
+  private @Nullable BooleanFormula simplifyBinary(
+      BooleanFormula pBits1, BooleanFormula pBits2, boolean pConjunction) {
+    TFormulaInfo param1 = extractInfo(pBits1);
+    TFormulaInfo param2 = extractInfo(pBits2);
+    if (isAbsorbing(param1, pConjunction) || isAbsorbing(param2, pConjunction)) {
+      return makeBoolean(!pConjunction);
+    }
+    if (isNeutral(param1, pConjunction) || param1.equals(param2)) {
+      return pBits2;
+    }
+    if (isNeutral(param2, pConjunction)) {
+      return pBits1;
+    }
+    if (isComplement(param1, param2) || isComplement(param2, param1)) {
+      return makeBoolean(!pConjunction);
+    }
+    return null;
+  }
+
+  /**
+   * Remove neutral and duplicate operands of a conjunction or disjunction. If an operand is
+   * absorbing or two operands are complementary, the only remaining operand is the absorbing
+   * element.
+   */
+  private Collection<BooleanFormula> simplifyOperands(
+      Collection<BooleanFormula> pBits, boolean pConjunction) {
+    Map<TFormulaInfo, BooleanFormula> operands = new LinkedHashMap<>();
+    for (BooleanFormula bits : pBits) {
+      TFormulaInfo param = extractInfo(bits);
+      if (isAbsorbing(param, pConjunction)) {
+        return ImmutableList.of(makeBoolean(!pConjunction));
+      }
+      if (!isNeutral(param, pConjunction)) {
+        operands.putIfAbsent(param, bits);
+      }
+    }
+    for (TFormulaInfo param : operands.keySet()) {
+      TFormulaInfo negated = getNegatedArgumentImpl(param);
+      if (negated != null && operands.containsKey(negated)) {
+        return ImmutableList.of(makeBoolean(!pConjunction));
+      }
+    }
+    return operands.values();
+  }
+
   @Override
   public BooleanFormula makeVariable(String pVar) {
     checkVariableName(pVar);
@@ -102,13 +176,35 @@ public abstract class AbstractBooleanFormulaManager<TFormulaInfo, TType, TEnv, T
   @Override
   public BooleanFormula not(BooleanFormula pBits) {
     TFormulaInfo param1 = extractInfo(pBits);
+    if (isSimplifying()) {
+      if (isTrue(param1) || isFalse(param1)) {
+        return makeBoolean(isFalse(param1));
+      }
+      TFormulaInfo negated = getNegatedArgumentImpl(param1);
+      if (negated != null) {
+        return wrap(negated);
+      }
+    }
     return wrap(not(param1));
   }
 
   protected abstract TFormulaInfo not(TFormulaInfo pParam1);
 
+  /**
+   * Return the argument of a negation, or null if the formula is no negation. This should only
+   * inspect the top-level operator of the formula, because it is called for every operand of a
+   * simplified conjunction or disjunction.
+   */
+  protected abstract @Nullable TFormulaInfo getNegatedArgumentImpl(TFormulaInfo pParam);
+
   @Override
   public BooleanFormula and(BooleanFormula pBits1, BooleanFormula pBits2) {
+    if (isSimplifying()) {
+      BooleanFormula simplified = simplifyBinary(pBits1, pBits2, true);
+      if (simplified != null) {
+        return simplified;
+      }
+    }
     TFormulaInfo param1 = extractInfo(pBits1);
     TFormulaInfo param2 = extractInfo(pBits2);
 
@@ -119,13 +215,14 @@ public abstract class AbstractBooleanFormulaManager<TFormulaInfo, TType, TEnv, T
 
   @Override
   public BooleanFormula and(Collection<BooleanFormula> pBits) {
-    if (pBits.isEmpty()) {
+    Collection<BooleanFormula> operands = isSimplifying() ? simplifyOperands(pBits, true) : pBits;
+    if (operands.isEmpty()) {
       return makeBoolean(true);
     }
-    if (pBits.size() == 1) {
-      return Iterables.getOnlyElement(pBits);
+    if (operands.size() == 1) {
+      return Iterables.getOnlyElement(operands);
     }
-    TFormulaInfo result = andImpl(Collections2.transform(pBits, this::extractInfo));
+    TFormulaInfo result = andImpl(Collections2.transform(operands, this::extractInfo));
     return wrap(result);
   }
 
@@ -134,21 +231,27 @@ public abstract class AbstractBooleanFormulaManager<TFormulaInfo, TType, TEnv, T
     return and(Arrays.asList(pBits));
   }
 
+  /**
+   * Create a conjunction of several operands. The default implementation builds a balanced tree of
+   * binary conjunctions. Solvers with native n-ary conjunctions should override this method.
+   */
   protected TFormulaInfo andImpl(Collection<TFormulaInfo> pParams) {
-    TFormulaInfo result = makeBooleanImpl(true);
-    for (TFormulaInfo formula : pParams) {
-      result = and(result, formula);
-    }
-    return result;
+    return balancedImpl(pParams, true);
   }
 
   @Override
   public Collector<BooleanFormula, ?, BooleanFormula> toConjunction() {
-    return Collectors.reducing(makeTrue(), this::and);
+    return Collectors.collectingAndThen(Collectors.toList(), this::and);
   }
 
   @Override
   public BooleanFormula or(BooleanFormula pBits1, BooleanFormula pBits2) {
+    if (isSimplifying()) {
+      BooleanFormula simplified = simplifyBinary(pBits1, pBits2, false);
+      if (simplified != null) {
+        return simplified;
+      }
+    }
     TFormulaInfo param1 = extractInfo(pBits1);
     TFormulaInfo param2 = extractInfo(pBits2);
 
@@ -166,33 +269,86 @@ public abstract class AbstractBooleanFormulaManager<TFormulaInfo, TType, TEnv, T
   public BooleanFormula xor(BooleanFormula pBits1, BooleanFormula pBits2) {
     TFormulaInfo param1 = extractInfo(pBits1);
     TFormulaInfo param2 = extractInfo(pBits2);
+    if (isSimplifying()) {
+      if (param1.equals(param2)) {
+        return makeFalse();
+      } else if (isFalse(param1) || isFalse(param2)) {
+        return isFalse(param1) ? pBits2 : pBits1;
+      } else if (isTrue(param1) || isTrue(param2)) {
+        return not(isTrue(param1) ? pBits2 : pBits1);
+      }
+    }
 
     return wrap(xor(param1, param2));
   }
 
   @Override
   public BooleanFormula or(Collection<BooleanFormula> pBits) {
-    if (pBits.isEmpty()) {
+    Collection<BooleanFormula> operands = isSimplifying() ? simplifyOperands(pBits, false) : pBits;
+    if (operands.isEmpty()) {
       return makeBoolean(false);
     }
-    if (pBits.size() == 1) {
-      return Iterables.getOnlyElement(pBits);
+    if (operands.size() == 1) {
+      return Iterables.getOnlyElement(operands);
     }
-    TFormulaInfo result = orImpl(Collections2.transform(pBits, this::extractInfo));
+    TFormulaInfo result = orImpl(Collections2.transform(operands, this::extractInfo));
     return wrap(result);
   }
 
+  /**
+   * Create a disjunction of several operands. The default implementation builds a balanced tree of
+   * binary disjunctions. Solvers with native n-ary disjunctions should override this method.
+   */
   protected TFormulaInfo orImpl(Collection<TFormulaInfo> pParams) {
-    TFormulaInfo result = makeBooleanImpl(false);
-    for (TFormulaInfo formula : pParams) {
-      result = or(result, formula);
-    }
-    return result;
+    return balancedImpl(pParams, false);
   }
 
   @Override
   public Collector<BooleanFormula, ?, BooleanFormula> toDisjunction() {
-    return Collectors.reducing(makeFalse(), this::or);
+    return Collectors.collectingAndThen(Collectors.toList(), this::or);
+  }
+
+  /**
+   * Combine the operands pairwise into a conjunction or disjunction of logarithmic depth, such that
+   * neither the solver nor recursive visitors have to walk a spine of linear depth. Neutral and
+   * duplicate operands are skipped.
+   */
+  private TFormulaInfo balancedImpl(Collection<TFormulaInfo> pParams, boolean pConjunction) {
+    if (pParams.isEmpty()) {
+      return makeBooleanImpl(pConjunction);
+    }
+    List<TFormulaInfo> level = new ArrayList<>(pParams.size());
+    Set<TFormulaInfo> seen = newTermSet(pParams.iterator().next());
+    for (TFormulaInfo param : pParams) {
+      if (!isNeutral(param, pConjunction) && seen.add(param)) {
+        level.add(param);
+      }
+    }
+    if (level.isEmpty()) {
+      return makeBooleanImpl(pConjunction);
+    }
+    while (level.size() > 1) {
+      List<TFormulaInfo> next = new ArrayList<>((level.size() + 1) / 2);
+      for (int i = 0; i + 1 < level.size(); i += 2) {
+        TFormulaInfo left = level.get(i);
+        TFormulaInfo right = level.get(i + 1);
+        next.add(pConjunction ? and(left, right) : or(left, right));
+      }
+      if (level.size() % 2 == 1) {
+        next.add(Iterables.getLast(level));
+      }
+      level = next;
+    }
+    return level.get(0);
+  }
+
+  /**
+   * Create a set for solver terms like the given one. Terms that are plain numbers (e.g., pointers
+   * into a native library) are compared by value. All other terms are compared by identity, because
+   * their hash codes may be computed structurally and thus take time linear in the term size.
+   */
+  private static <T> Set<T> newTermSet(T pTerm) {
+    return pTerm instanceof Number ? new HashSet<>() : Sets.newIdentityHashSet();
   }
 
   protected abstract TFormulaInfo xor(TFormulaInfo pParam1, TFormulaInfo pParam2);
@@ -208,6 +364,15 @@ public abstract class AbstractBooleanFormulaManager<TFormulaInfo, TType, TEnv, T
   public final BooleanFormula equivalence(BooleanFormula pBits1, BooleanFormula pBits2) {
     TFormulaInfo param1 = extractInfo(pBits1);
     TFormulaInfo param2 = extractInfo(pBits2);
+    if (isSimplifying()) {
+      if (param1.equals(param2)) {
+        return makeTrue();
+      } else if (isTrue(param1) || isTrue(param2)) {
+        return isTrue(param1) ? pBits2 : pBits1;
+      } else if (isFalse(param1) || isFalse(param2)) {
+        return not(isFalse(param1) ? pBits2 : pBits1);
+      }
+    }
     return wrap(equivalence(param1, param2));
   }
 
@@ -217,6 +382,15 @@ public abstract class AbstractBooleanFormulaManager<TFormulaInfo, TType, TEnv, T
   public final BooleanFormula implication(BooleanFormula pBits1, BooleanFormula pBits2) {
     TFormulaInfo param1 = extractInfo(pBits1);
     TFormulaInfo param2 = extractInfo(pBits2);
+    if (isSimplifying()) {
+      if (isFalse(param1) || isTrue(param2) || param1.equals(param2)) {
+        return makeTrue();
+      } else if (isTrue(param1)) {
+        return pBits2;
+      } else if (isFalse(param2)) {
+        return not(pBits1);
+      }
+    }
     return wrap(implication(param1, param2));
   }
 
@@ -258,6 +432,14 @@ public abstract class AbstractBooleanFormulaManager<TFormulaInfo, TType, TEnv, T
         t1,
         f2,
         t2);
+    if (isSimplifying()) {
+      TFormulaInfo cond = extractInfo(pBits);
+      if (isTrue(cond) || extractInfo(f1).equals(extractInfo(f2))) {
+        return f1;
+      } else if (isFalse(cond)) {
+        return f2;
+      }
+    }
     TFormulaInfo result = ifThenElse(extractInfo(pBits), extractInfo(f1), extractInfo(f2));
     return getFormulaCreator().encapsulate(t1, result);
   }
@@ -411,7 +593,7 @@ public abstract class AbstractBooleanFormulaManager<TFormulaInfo, TType, TEnv, T
     if (flatten) {
       return asFuncRecursive(f, conjunctionFinder);
     }
-    return formulaCreator.visit(f, conjunctionFinder);
+    return ImmutableSet.copyOf(formulaCreator.visit(f, conjunctionFinder));
   }
 
   @Override
@@ -419,26 +601,32 @@ public abstract class AbstractBooleanFormulaManager<TFormulaInfo, TType, TEnv, T
     if (flatten) {
       return asFuncRecursive(f, disjunctionFinder);
     }
-    return formulaCreator.visit(f, disjunctionFinder);
+    return ImmutableSet.copyOf(formulaCreator.visit(f, disjunctionFinder));
   }
 
-  /** Optimized non-recursive flattening implementation. */
+  /**
+   * Optimized non-recursive flattening implementation. Each nested conjunction or disjunction is
+   * visited only once, and its arguments are not hashed, such that deep chains are flattened in
+   * linear time. The order of the operands is preserved.
+   */
   private Set<BooleanFormula> asFuncRecursive(
-      BooleanFormula f, FormulaVisitor<Set<BooleanFormula>> visitor) {
+      BooleanFormula f, FormulaVisitor<List<BooleanFormula>> visitor) {
     ImmutableSet.Builder<BooleanFormula> output = ImmutableSet.builder();
+    Set<TFormulaInfo> visited = newTermSet(extractInfo(f));
     Deque<BooleanFormula> toProcess = new ArrayDeque<>();
-    Map<BooleanFormula, Set<BooleanFormula>> cache = new HashMap<>();
-    toProcess.add(f);
+    toProcess.push(f);
 
     while (!toProcess.isEmpty()) {
       BooleanFormula s = toProcess.pop();
-      Set<BooleanFormula> out = cache.computeIfAbsent(s, ss -> formulaCreator.visit(ss, visitor));
-      if (out.size() == 1 && s.equals(out.iterator().next())) {
-        output.add(s);
+      if (!visited.add(extractInfo(s))) {
+        continue; // Was processed already.
       }
-      for (BooleanFormula arg : out) {
-        if (cache.get(arg) == null) { // Wasn't processed yet.
-          toProcess.add(arg);
+      List<BooleanFormula> out = formulaCreator.visit(s, visitor);
+      if (out.size() == 1 && s.equals(out.get(0))) {
+        output.add(s);
+      } else {
+        for (BooleanFormula arg : Lists.reverse(out)) {
+          toProcess.push(arg);
         }
       }
     }
@@ -446,24 +634,24 @@ public abstract class AbstractBooleanFormulaManager<TFormulaInfo, TType, TEnv, T
     return output.build();
   }
 
-  private final FormulaVisitor<Set<BooleanFormula>> conjunctionFinder =
-      new DefaultFormulaVisitor<Set<BooleanFormula>>() {
+  private final FormulaVisitor<List<BooleanFormula>> conjunctionFinder =
+      new DefaultFormulaVisitor<List<BooleanFormula>>() {
         @Override
-        protected Set<BooleanFormula> visitDefault(Formula f) {
+        protected List<BooleanFormula> visitDefault(Formula f) {
           assert f instanceof BooleanFormula;
           BooleanFormula bf = (BooleanFormula) f;
           if (isTrue(bf)) {
-            return ImmutableSet.of();
+            return ImmutableList.of();
           }
-          return ImmutableSet.of((BooleanFormula) f);
+          return ImmutableList.of(bf);
         }
 
         @SuppressWarnings("unchecked")
         @Override
-        public Set<BooleanFormula> visitFunction(
+        public List<BooleanFormula> visitFunction(
             Formula f, List<Formula> args, FunctionDeclaration<?> functionDeclaration) {
           if (functionDeclaration.getKind() == FunctionDeclarationKind.AND) {
-            return ImmutableSet.copyOf((List<BooleanFormula>) (List<?>) args);
+            return (List<BooleanFormula>) (List<?>) args;
           }
           return visitDefault(f);
         }
@@ -472,24 +660,24 @@ public abstract class AbstractBooleanFormulaManager<TFormulaInfo, TType, TEnv, T
   /**
    * Optimized, but ugly, implementation of argument extraction. Avoids extra visitor instantiation.
    */
-  private final FormulaVisitor<Set<BooleanFormula>> disjunctionFinder =
-      new DefaultFormulaVisitor<Set<BooleanFormula>>() {
+  private final FormulaVisitor<List<BooleanFormula>> disjunctionFinder =
+      new DefaultFormulaVisitor<List<BooleanFormula>>() {
         @Override
-        protected Set<BooleanFormula> visitDefault(Formula f) {
+        protected List<BooleanFormula> visitDefault(Formula f) {
           assert f instanceof BooleanFormula;
           BooleanFormula bf = (BooleanFormula) f;
           if (isFalse(bf)) {
-            return ImmutableSet.of();
+            return ImmutableList.of();
           }
-          return ImmutableSet.of((BooleanFormula) f);
+          return ImmutableList.of(bf);
         }
 
         @SuppressWarnings("unchecked")
         @Override
-        public Set<BooleanFormula> visitFunction(
+        public List<BooleanFormula> visitFunction(
             Formula f, List<Formula> args, FunctionDeclaration<?> functionDeclaration) {
           if (functionDeclaration.getKind() == FunctionDeclarationKind.OR) {
-            return ImmutableSet.copyOf((List<BooleanFormula>) (List<?>) args);
+            return (List<BooleanFormula>) (List<?>) args;
           }
           return visitDefault(f);
         }
@@ -19,17 +19,27 @@
  */
 package org.sosy_lab.java_smt.basicimpl;
 
+import static com.google.common.base.Preconditions.checkArgument;
 import static com.google.common.base.Preconditions.checkNotNull;
 
 import com.google.common.annotations.VisibleForTesting;
 import com.google.common.base.CharMatcher;
 import com.google.common.base.Preconditions;
+import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Maps;
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.file.Path;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.HashMap;
 import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import javax.annotation.Nullable;
 import org.sosy_lab.common.Appender;
 import org.sosy_lab.java_smt.api.ArrayFormulaManager;
@@ -115,6 +125,12 @@ public abstract class AbstractFormulaManager<TFormulaInfo, TType, TEnv, TFuncDec
 
   private final FormulaCreator<TFormulaInfo, TType, TEnv, TFuncDecl> formulaCreator;
 
+  /** Variables by name and type in least-recently-used order, or null if none are cached. */
+  private @Nullable Map<Map.Entry<String, FormulaType<?>>, Formula> variableCache = null;
+
+  private long variableCacheHits = 0;
+  private long variableCacheMisses = 0;
+
   /** Builds a solver from the given theory implementations */
   @SuppressWarnings("checkstyle:parameternumber")
   protected AbstractFormulaManager(
@@ -216,6 +232,16 @@ public abstract class AbstractFormulaManager<TFormulaInfo, TType, TEnv, TFuncDec
     return arrayManager;
   }
 
+  @Override
+  public BooleanFormula parse(Reader pReader) throws IOException {
+    return SolverUtils.smtLib2Parser(this).parse(pReader);
+  }
+
+  @Override
+  public BooleanFormula parse(Path pFile) throws IOException {
+    return SolverUtils.smtLib2Parser(this).parse(pFile);
+  }
+
   public abstract Appender dumpFormula(TFormulaInfo t);
 
   @Override
@@ -343,8 +369,80 @@ public abstract class AbstractFormulaManager<TFormulaInfo, TType, TEnv, TFuncDec
     return parse(otherContext.dumpFormula(other).toString());
   }
 
+  /**
+   * Remember up to the given number of variables created by {@link #makeVariable}, such that
+   * repeated requests for the same name and type return the existing formula without checking the
+   * name and asking the solver again. A size of zero disables the cache.
+   */
+  public final void setVariableCacheSize(final int pSize) {
+    checkArgument(pSize >= 0, "Cache size must not be negative: %s", pSize);
+    if (pSize == 0) {
+      variableCache = null;
+      return;
+    }
+    variableCache =
+        new LinkedHashMap<Map.Entry<String, FormulaType<?>>, Formula>(16, 0.75f, true) {
+          private static final long serialVersionUID = 1L;
+
+          @Override
+          protected boolean removeEldestEntry(
+              Map.Entry<Map.Entry<String, FormulaType<?>>, Formula> eldest) {
+            return size() > pSize;
+          }
+        };
+  }
+
+  /**
+   * Keep integer and rational numerals and bitvector constants with an absolute value of at most
+   * the given range once they are created, such that creating them again from a {@code long} does
+   * not need to ask the solver. A range of zero disables the caches.
+   */
+  public final void setNumeralCacheRange(final int pRange) {
+    if (integerManager instanceof AbstractNumeralFormulaManager) {
+      ((AbstractNumeralFormulaManager<?, ?, ?, ?, ?, ?>) integerManager)
+          .setNumeralCacheRange(pRange);
+    }
+    if (rationalManager instanceof AbstractNumeralFormulaManager) {
+      ((AbstractNumeralFormulaManager<?, ?, ?, ?, ?, ?>) rationalManager)
+          .setNumeralCacheRange(pRange);
+    }
+    if (bitvectorManager != null) {
+      bitvectorManager.setConstantCacheRange(pRange);
+    }
+  }
+
+  /**
+   * Returns how often {@link #makeVariable} and {@link #makeVariables} found a variable in the
+   * cache.
+   */
+  public final long getVariableCacheHits() {
+    return variableCacheHits;
+  }
+
+  /** Returns how often {@link #makeVariable} and {@link #makeVariables} created a variable. */
+  public final long getVariableCacheMisses() {
+    return variableCacheMisses;
+  }
+
   @Override
   public <T extends Formula> T makeVariable(FormulaType<T> formulaType, String name) {
+    if (variableCache == null) {
+      return makeVariable0(formulaType, name);
+    }
+    Map.Entry<String, FormulaType<?>> key = Maps.immutableEntry(name, formulaType);
+    @SuppressWarnings("unchecked")
+    T cached = (T) variableCache.get(key);
+    if (cached != null) {
+      variableCacheHits++;
+      return cached;
+    }
+    variableCacheMisses++;
+    T variable = makeVariable0(formulaType, name);
+    variableCache.put(key, variable);
+    return variable;
+  }
+
+  private <T extends Formula> T makeVariable0(FormulaType<T> formulaType, String name) {
     checkVariableName(name);
     Formula t;
     if (formulaType.isBooleanType()) {
@@ -373,6 +471,74 @@ public abstract class AbstractFormulaManager<TFormulaInfo, TType, TEnv, TFuncDec
     return out;
   }
 
+  @Override
+  public <T extends Formula> List<T> makeVariables(FormulaType<T> formulaType, List<String> names) {
+    names.forEach(AbstractFormulaManager::checkVariableName);
+    if (variableCache == null) {
+      return makeVariables0(formulaType, names);
+    }
+
+    // take variables from the cache, and create only the missing ones together
+    List<T> result = new ArrayList<>(names.size());
+    Set<String> missing = new LinkedHashSet<>();
+    for (String name : names) {
+      @SuppressWarnings("unchecked")
+      T cached = (T) variableCache.get(Maps.immutableEntry(name, formulaType));
+      if (cached == null) {
+        missing.add(name);
+      } else {
+        variableCacheHits++;
+      }
+      result.add(cached);
+    }
+    if (missing.isEmpty()) {
+      return ImmutableList.copyOf(result);
+    }
+
+    variableCacheMisses += missing.size();
+    List<String> missingNames = ImmutableList.copyOf(missing);
+    List<T> created = makeVariables0(formulaType, missingNames);
+    Map<String, T> createdByName = new HashMap<>();
+    for (int i = 0; i < missingNames.size(); i++) {
+      createdByName.put(missingNames.get(i), created.get(i));
+      variableCache.put(Maps.immutableEntry(missingNames.get(i), formulaType), created.get(i));
+    }
+    for (int i = 0; i < names.size(); i++) {
+      if (result.get(i) == null) {
+        result.set(i, createdByName.get(names.get(i)));
+      }
+    }
+    return ImmutableList.copyOf(result);
+  }
+
+  private <T extends Formula> List<T> makeVariables0(
+      FormulaType<T> formulaType, List<String> names) {
+    ImmutableList.Builder<T> result = ImmutableList.builder();
+    if (formulaType.isArrayType()) {
+      for (String name : names) {
+        result.add(makeVariable0(formulaType, name));
+      }
+    } else {
+      // same checks as in makeVariable0, all other variables are plain constants of the solver type
+      if (formulaType.isIntegerType()) {
+        assert integerManager != null;
+      } else if (formulaType.isRationalType()) {
+        assert rationalManager != null;
+      } else if (formulaType.isBitvectorType()) {
+        assert bitvectorManager != null;
+      } else if (formulaType.isFloatingPointType()) {
+        assert floatingPointManager != null;
+      } else if (!formulaType.isBooleanType()) {
+        throw new IllegalArgumentException("Unknown formula type");
+      }
+      TType type = booleanManager.toSolverType(formulaType);
+      for (TFormulaInfo term : formulaCreator.makeVariables(type, names)) {
+        result.add(formulaCreator.encapsulate(formulaType, term));
+      }
+    }
+    return result.build();
+  }
+
   @Override
   @SuppressWarnings("unchecked")
   public <T extends Formula> T makeApplication(
@@ -21,9 +21,22 @@ package org.sosy_lab.java_smt.basicimpl;
 
 import com.google.common.base.Joiner;
 import com.google.common.base.Preconditions;
+import com.google.common.base.Predicate;
+import com.google.common.base.Predicates;
+import com.google.common.collect.AbstractIterator;
+import com.google.common.collect.FluentIterable;
 import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Lists;
 import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
 import javax.annotation.Nullable;
 import org.sosy_lab.common.rationals.Rational;
 import org.sosy_lab.java_smt.api.ArrayFormula;
@@ -38,6 +51,12 @@ public abstract class AbstractModel<TFormulaInfo, TType, TEnv> implements Model
 
   protected final FormulaCreator<TFormulaInfo, TType, TEnv, ?> creator;
 
+  /**
+   * Values of already evaluated formulas, which may be null. The formulas are used as keys (and not
+   * the solver terms), such that the terms stay alive as long as they are cached.
+   */
+  private final Map<Formula, Object> evaluations = new HashMap<>();
+
   protected AbstractModel(FormulaCreator<TFormulaInfo, TType, TEnv, ?> creator) {
     this.creator = creator;
   }
@@ -45,25 +64,25 @@ public abstract class AbstractModel<TFormulaInfo, TType, TEnv> implements Model
   @Nullable
   @Override
   public BigInteger evaluate(IntegerFormula f) {
-    return (BigInteger) evaluateImpl(creator.extractInfo(f));
+    return (BigInteger) evaluateCached(f);
   }
 
   @Nullable
   @Override
   public Rational evaluate(RationalFormula f) {
-    return (Rational) evaluateImpl(creator.extractInfo(f));
+    return (Rational) evaluateCached(f);
   }
 
   @Nullable
   @Override
   public Boolean evaluate(BooleanFormula f) {
-    return (Boolean) evaluateImpl(creator.extractInfo(f));
+    return (Boolean) evaluateCached(f);
   }
 
   @Nullable
   @Override
   public BigInteger evaluate(BitvectorFormula f) {
-    return (BigInteger) evaluateImpl(creator.extractInfo(f));
+    return (BigInteger) evaluateCached(f);
   }
 
   @Nullable
@@ -72,16 +91,71 @@ public abstract class AbstractModel<TFormulaInfo, TType, TEnv> implements Model
     Preconditions.checkArgument(
         !(f instanceof ArrayFormula),
         "cannot compute a simple constant evaluation for an array-formula");
-    return evaluateImpl(creator.extractInfo(f));
+    return evaluateCached(f);
+  }
+
+  @Nullable
+  private Object evaluateCached(Formula f) {
+    Object value = evaluations.get(f);
+    if (value == null && !evaluations.containsKey(f)) {
+      value = evaluateImpl(creator.extractInfo(f));
+      evaluations.put(f, value);
+    }
+    return value;
+  }
+
+  @Override
+  public final List<Object> evaluateAll(Collection<? extends Formula> formulas) {
+    Set<Formula> missing = new LinkedHashSet<>();
+    for (Formula f : formulas) {
+      Preconditions.checkArgument(
+          !(f instanceof ArrayFormula),
+          "cannot compute a simple constant evaluation for an array-formula");
+      if (!evaluations.containsKey(f)) {
+        missing.add(f);
+      }
+    }
+
+    if (!missing.isEmpty()) {
+      List<Formula> keys = new ArrayList<>(missing);
+      List<TFormulaInfo> terms = Lists.transform(keys, creator::extractInfo);
+      List<Object> values = evaluateAllImpl(terms);
+      Preconditions.checkState(values.size() == keys.size());
+      for (int i = 0; i < keys.size(); i++) {
+        evaluations.put(keys.get(i), values.get(i));
+      }
+    }
+
+    List<Object> result = new ArrayList<>(formulas.size());
+    for (Formula f : formulas) {
+      result.add(evaluations.get(f));
+    }
+    return Collections.unmodifiableList(result);
   }
 
   protected abstract Object evaluateImpl(TFormulaInfo f);
 
+  /**
+   * Evaluate several terms, returning their values (or null) in the same order. Solvers that can
+   * share work between the evaluations should override this method.
+   */
+  protected List<Object> evaluateAllImpl(List<TFormulaInfo> formulas) {
+    List<Object> values = new ArrayList<>(formulas.size());
+    for (TFormulaInfo f : formulas) {
+      values.add(evaluateImpl(f));
+    }
+    return values;
+  }
+
   @Override
   public String toString() {
     return Joiner.on('\n').join(iterator());
   }
 
+  /**
+   * Base class for models that build their assignments lazily while they are iterated. The
+   * assignments of the first complete iteration are cached for later iterations.
+   */
   public abstract static class CachingAbstractModel<TFormulaInfo, TType, TEnv>
       extends AbstractModel<TFormulaInfo, TType, TEnv> {
 
@@ -93,12 +167,57 @@ public abstract class AbstractModel<TFormulaInfo, TType, TEnv> implements Model
 
     @Override
     public final Iterator<ValueAssignment> iterator() {
-      if (modelAssignments == null) {
-        modelAssignments = modelToList();
+      if (modelAssignments != null) {
+        return modelAssignments.iterator();
+      }
+      return new CachingIterator(modelIterator(Predicates.alwaysTrue(), true));
+    }
+
+    @Override
+    public final Iterator<ValueAssignment> iteratorWithoutArrays() {
+      return modelIterator(Predicates.alwaysTrue(), false);
+    }
+
+    @Override
+    public final ImmutableList<ValueAssignment> getAssignments(String pName) {
+      if (modelAssignments != null) {
+        return FluentIterable.from(modelAssignments)
+            .filter(assignment -> assignment.getName().equals(pName))
+            .toList();
       }
-      return modelAssignments.iterator();
+      return ImmutableList.copyOf(modelIterator(pName::equals, true));
     }
 
-    protected abstract ImmutableList<ValueAssignment> modelToList();
+    /**
+     * Iterate over the assignments of the model. Implementations should build each assignment only
+     * when it is requested, and check the name of a symbol before building its assignments.
+     *
+     * @param pNames only symbols with a matching name are included
+     * @param pExpandArrays whether to include the assignments of arrays
+     */
+    protected abstract Iterator<ValueAssignment> modelIterator(
+        Predicate<? super String> pNames, boolean pExpandArrays);
+
+    /** Iterator that stores all elements, and caches them in the model once it is exhausted. */
+    private final class CachingIterator extends AbstractIterator<ValueAssignment> {
+
+      private final Iterator<ValueAssignment> delegate;
+      private final ImmutableList.Builder<ValueAssignment> seen = ImmutableList.builder();
+
+      private CachingIterator(Iterator<ValueAssignment> pDelegate) {
+        delegate = pDelegate;
+      }
+
+      @Override
+      protected ValueAssignment computeNext() {
+        if (delegate.hasNext()) {
+          ValueAssignment next = delegate.next();
+          seen.add(next);
+          return next;
+        }
+        modelAssignments = seen.build();
+        return endOfData();
+      }
+    }
   }
 }
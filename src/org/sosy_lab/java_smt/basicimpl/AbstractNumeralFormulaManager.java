@@ -19,6 +19,7 @@
  */
 package org.sosy_lab.java_smt.basicimpl;
 
+import static com.google.common.base.Preconditions.checkArgument;
 import static com.google.common.base.Preconditions.checkNotNull;
 import static org.sosy_lab.java_smt.basicimpl.AbstractFormulaManager.checkVariableName;
 
@@ -27,7 +28,11 @@ import com.google.common.collect.ImmutableList;
 import com.google.common.collect.Lists;
 import java.math.BigDecimal;
 import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import javax.annotation.Nullable;
 import org.sosy_lab.common.rationals.Rational;
 import org.sosy_lab.java_smt.api.BooleanFormula;
 import org.sosy_lab.java_smt.api.Formula;
@@ -41,9 +46,10 @@ import org.sosy_lab.java_smt.api.NumeralFormulaManager;
  * from {@link Formula} instances to solver-specific formula representations, such that the concrete
  * class needs to handle only its own internal types.
  *
- * @implSpec The method {@link #getFormulaType()} must be safe to be called from the constructor
- *     (the default implementations of {@link org.sosy_lab.java_smt.api.IntegerFormulaManager} and
- *     {@link org.sosy_lab.java_smt.api.RationalFormulaManager} satisfy this).
+ * @implSpec The methods {@link #getFormulaType()} and {@link #getNonLinearSupport} must be safe to
+ *     be called from the constructor (the default implementations of {@link
+ *     org.sosy_lab.java_smt.api.IntegerFormulaManager} and {@link
+ *     org.sosy_lab.java_smt.api.RationalFormulaManager} satisfy this).
  */
 public abstract class AbstractNumeralFormulaManager<
         TFormulaInfo,
@@ -61,12 +67,58 @@ public abstract class AbstractNumeralFormulaManager<
     APPROXIMATE_ALWAYS,
   }
 
+  /** Operations that are non-linear for some arguments. */
+  protected enum NonLinearOperation {
+    MULTIPLY,
+    DIVIDE,
+    MODULO,
+  }
+
+  /** How a solver supports a {@link NonLinearOperation}. */
+  protected enum NonLinearSupport {
+    /** The operation is supported for all arguments. */
+    FULL,
+
+    /**
+     * The operation is supported only if the divisor, or one of the factors, consists of numerals,
+     * see {@link AbstractNumeralFormulaManager#consistsOfNumerals}.
+     */
+    CONSTANT_ONLY,
+
+    /** The operation is not supported. */
+    NONE,
+  }
+
+  /** How an operation is created, computed once from the options and the solver's support. */
+  private enum Dispatch {
+    NATIVE,
+    UF,
+    /** Native if the divisor or a factor is a numeral. */
+    NATIVE_IF_NUMERAL,
+    /** Native if the divisor or a factor consists of numerals. */
+    NATIVE_IF_CONSTANT,
+  }
+
   private final NonLinearArithmetic nonLinearArithmetic;
 
   private final TFuncDecl multUfDecl;
   private final TFuncDecl divUfDecl;
   private final TFuncDecl modUfDecl;
 
+  private final Dispatch multDispatch;
+  private final Dispatch divDispatch;
+  private final Dispatch modDispatch;
+
+  static final int MAX_NUMERAL_CACHE_RANGE = 1 << 20;
+
+  /**
+   * Numerals from {@code -numeralCacheRange} to {@code numeralCacheRange}, indexed by their value
+   * plus the range and created on first use, or null if no numerals are cached.
+   */
+  private @Nullable Object[] smallNumerals = null;
+
+  private int numeralCacheRange = 0;
+
   protected AbstractNumeralFormulaManager(
       FormulaCreator<TFormulaInfo, TType, TEnv, TFuncDecl> pCreator,
       NonLinearArithmetic pNonLinearArithmetic) {
@@ -76,6 +128,74 @@ public abstract class AbstractNumeralFormulaManager<
     multUfDecl = createBinaryFunction("*");
     divUfDecl = createBinaryFunction("/");
     modUfDecl = createBinaryFunction("%");
+
+    // division is always non-linear for ints, and for rationals if param2 is not a constant:
+    // http://smtlib.cs.uiowa.edu/logics-all.shtml#LIA
+    // http://smtlib.cs.uiowa.edu/logics-all.shtml#LRA
+    boolean isInteger = getFormulaType().equals(FormulaType.IntegerType);
+    multDispatch = getDispatch(NonLinearOperation.MULTIPLY, Dispatch.NATIVE_IF_NUMERAL);
+    divDispatch =
+        getDispatch(
+            NonLinearOperation.DIVIDE, isInteger ? Dispatch.UF : Dispatch.NATIVE_IF_NUMERAL);
+    modDispatch = getDispatch(NonLinearOperation.MODULO, Dispatch.UF);
+  }
+
+  private Dispatch getDispatch(NonLinearOperation pOperation, Dispatch pApproximation) {
+    switch (nonLinearArithmetic) {
+      case USE:
+        return Dispatch.NATIVE;
+      case APPROXIMATE_ALWAYS:
+        return pApproximation;
+      case APPROXIMATE_FALLBACK:
+        switch (getNonLinearSupport(pOperation)) {
+          case FULL:
+            return Dispatch.NATIVE;
+          case CONSTANT_ONLY:
+            return Dispatch.NATIVE_IF_CONSTANT;
+          case NONE:
+            return Dispatch.UF;
+          default:
+            throw new AssertionError();
+        }
+      default:
+        throw new AssertionError();
+    }
+  }
+
+  /**
+   * Whether the solver supports the given operation, i.e., whether the corresponding method of
+   * this class is implemented and does not throw {@link UnsupportedOperationException} for the
+   * arguments. Solvers that implement {@link #multiply(Object, Object)}, {@link #divide(Object,
+   * Object)}, or {@link #modulo(Object, Object)} need to override this method. Otherwise, the
+   * operations are approximated in the mode {@link NonLinearArithmetic#APPROXIMATE_FALLBACK}.
+   */
+  protected NonLinearSupport getNonLinearSupport(NonLinearOperation pOperation) {
+    return NonLinearSupport.NONE;
+  }
+
+  /**
+   * Check whether the argument is built only from numerals, which makes it a constant for {@link
+   * NonLinearSupport#CONSTANT_ONLY}.
+   */
+  protected boolean consistsOfNumerals(TFormulaInfo val) {
+    return isNumeral(val);
+  }
+
+  /** Whether the operation is created natively for the arguments, or approximated by an UF. */
+  private boolean isNative(
+      Dispatch pDispatch, TFormulaInfo param1, TFormulaInfo param2, boolean pSymmetric) {
+    switch (pDispatch) {
+      case NATIVE:
+        return true;
+      case UF:
+        return false;
+      case NATIVE_IF_NUMERAL:
+        return isNumeral(param2) || (pSymmetric && isNumeral(param1));
+      case NATIVE_IF_CONSTANT:
+        return consistsOfNumerals(param2) || (pSymmetric && consistsOfNumerals(param1));
+      default:
+        throw new AssertionError();
+    }
   }
 
   private TFuncDecl createBinaryFunction(String name) {
@@ -94,18 +214,93 @@ public abstract class AbstractNumeralFormulaManager<
     return getFormulaCreator().encapsulate(getFormulaType(), pTerm);
   }
 
+  private boolean isSimplifying() {
+    return getFormulaCreator().isSimplifying();
+  }
+
+  /** Return the value of a numeric constant, or null if the term is no constant. */
+  private @Nullable Rational getValue(ParamFormulaType pNumber, TFormulaInfo pTerm) {
+    if (!isNumeral(pTerm)) {
+      return null;
+    }
+    Object value = getFormulaCreator().getConstantValue(pNumber);
+    if (value instanceof BigInteger) {
+      return Rational.ofBigInteger((BigInteger) value);
+    } else if (value instanceof Rational) {
+      return (Rational) value;
+    }
+    return null;
+  }
+
+  private static boolean isZero(@Nullable Rational pValue) {
+    return pValue != null && pValue.equals(Rational.ZERO);
+  }
+
+  private static boolean isOne(@Nullable Rational pValue) {
+    return pValue != null && pValue.equals(Rational.ONE);
+  }
+
+  /**
+   * Check whether an operand can be returned unchanged as result, which is not the case for integer
+   * operands of rational operations.
+   */
+  private boolean hasResultType(ParamFormulaType pNumber) {
+    return getFormulaCreator().getFormulaType(pNumber).equals(getFormulaType());
+  }
+
+  private TFormulaInfo makeConstantImpl(Rational pValue) {
+    return pValue.isIntegral() ? makeNumberImpl(pValue.getNum()) : makeNumberImpl(pValue);
+  }
+
   /** Check whether the argument is a numeric constant (including negated constants). */
   protected abstract boolean isNumeral(TFormulaInfo val);
 
+  /**
+   * Keep all numerals with an absolute value of at most the given range once they are created, such
+   * that {@link #makeNumber(long)} returns them without asking the solver again. A range of zero
+   * disables the cache.
+   */
+  final void setNumeralCacheRange(int pRange) {
+    checkArgument(
+        0 <= pRange && pRange <= MAX_NUMERAL_CACHE_RANGE, "Invalid cache range: %s", pRange);
+    numeralCacheRange = pRange;
+    smallNumerals = pRange == 0 ? null : new Object[2 * pRange + 1];
+  }
+
   @Override
   public ResultFormulaType makeNumber(long i) {
+    Object[] cache = smallNumerals;
+    if (cache != null && -numeralCacheRange <= i && i <= numeralCacheRange) {
+      int index = (int) i + numeralCacheRange;
+      @SuppressWarnings("unchecked")
+      ResultFormulaType number = (ResultFormulaType) cache[index];
+      if (number == null) {
+        number = wrap(makeNumberImpl(i));
+        cache[index] = number;
+      }
+      return number;
+    }
     return wrap(makeNumberImpl(i));
   }
 
   protected abstract TFormulaInfo makeNumberImpl(long i);
 
+  @Override
+  public List<ResultFormulaType> makeNumbers(long... numbers) {
+    // create each distinct literal only once
+    Map<Long, ResultFormulaType> literals = new HashMap<>();
+    ImmutableList.Builder<ResultFormulaType> result = ImmutableList.builder();
+    for (long number : numbers) {
+      result.add(literals.computeIfAbsent(number, value -> makeNumber((long) value)));
+    }
+    return result.build();
+  }
+
   @Override
   public ResultFormulaType makeNumber(BigInteger i) {
+    if (i.bitLength() < Long.SIZE) {
+      return makeNumber(i.longValue());
+    }
     return wrap(makeNumberImpl(i));
   }
 
@@ -189,6 +384,12 @@ public abstract class AbstractNumeralFormulaManager<
   @Override
   public ResultFormulaType negate(ParamFormulaType pNumber) {
     TFormulaInfo param1 = extractInfo(pNumber);
+    if (isSimplifying()) {
+      Rational value = getValue(pNumber, param1);
+      if (value != null) {
+        return wrap(makeConstantImpl(value.negate()));
+      }
+    }
     return wrap(negate(param1));
   }
 
@@ -198,6 +399,17 @@ public abstract class AbstractNumeralFormulaManager<
   public ResultFormulaType add(ParamFormulaType pNumber1, ParamFormulaType pNumber2) {
     TFormulaInfo param1 = extractInfo(pNumber1);
     TFormulaInfo param2 = extractInfo(pNumber2);
+    if (isSimplifying()) {
+      Rational value1 = getValue(pNumber1, param1);
+      Rational value2 = getValue(pNumber2, param2);
+      if (value1 != null && value2 != null) {
+        return wrap(makeConstantImpl(value1.plus(value2)));
+      } else if (isZero(value2) && hasResultType(pNumber1)) {
+        return wrap(param1);
+      } else if (isZero(value1) && hasResultType(pNumber2)) {
+        return wrap(param2);
+      }
+    }
 
     return wrap(add(param1, param2));
   }
@@ -206,6 +418,24 @@ public abstract class AbstractNumeralFormulaManager<
 
   @Override
   public ResultFormulaType sum(List<ParamFormulaType> operands) {
+    if (isSimplifying()) {
+      // fold all constant operands into a single one
+      List<TFormulaInfo> terms = new ArrayList<>(operands.size());
+      Rational constant = Rational.ZERO;
+      for (ParamFormulaType operand : operands) {
+        TFormulaInfo term = extractInfo(operand);
+        Rational value = getValue(operand, term);
+        if (value == null) {
+          terms.add(term);
+        } else {
+          constant = constant.plus(value);
+        }
+      }
+      if (terms.isEmpty() || !isZero(constant)) {
+        terms.add(makeConstantImpl(constant));
+      }
+      return wrap(sumImpl(terms));
+    }
     return wrap(sumImpl(Lists.transform(operands, this::extractInfo)));
   }
 
@@ -221,6 +451,17 @@ public abstract class AbstractNumeralFormulaManager<
   public ResultFormulaType subtract(ParamFormulaType pNumber1, ParamFormulaType pNumber2) {
     TFormulaInfo param1 = extractInfo(pNumber1);
     TFormulaInfo param2 = extractInfo(pNumber2);
+    if (isSimplifying()) {
+      Rational value1 = getValue(pNumber1, param1);
+      Rational value2 = getValue(pNumber2, param2);
+      if (value1 != null && value2 != null) {
+        return wrap(makeConstantImpl(value1.minus(value2)));
+      } else if (param1.equals(param2)) {
+        return wrap(makeConstantImpl(Rational.ZERO));
+      } else if (isZero(value2) && hasResultType(pNumber1)) {
+        return wrap(param1);
+      }
+    }
 
     return wrap(subtract(param1, param2));
   }
@@ -232,23 +473,10 @@ public abstract class AbstractNumeralFormulaManager<
     TFormulaInfo param1 = extractInfo(pNumber1);
     TFormulaInfo param2 = extractInfo(pNumber2);
     TFormulaInfo result;
-    // division is always non-linear for ints, and for rationals if param2 is not a constant:
-    // http://smtlib.cs.uiowa.edu/logics-all.shtml#LIA
-    // http://smtlib.cs.uiowa.edu/logics-all.shtml#LRA
-    if (nonLinearArithmetic == NonLinearArithmetic.APPROXIMATE_ALWAYS
-        && (getFormulaType().equals(FormulaType.IntegerType) || !isNumeral(param2))) {
-      result = makeUf(divUfDecl, param1, param2);
+    if (isNative(divDispatch, param1, param2, false)) {
+      result = divide(param1, param2);
     } else {
-      try {
-        result = divide(param1, param2);
-      } catch (UnsupportedOperationException e) {
-        if (nonLinearArithmetic == NonLinearArithmetic.APPROXIMATE_FALLBACK) {
-          result = makeUf(divUfDecl, param1, param2);
-        } else {
-          assert nonLinearArithmetic == NonLinearArithmetic.USE;
-          throw e;
-        }
-      }
+      result = makeUf(divUfDecl, param1, param2);
     }
     return wrap(result);
   }
@@ -269,19 +497,10 @@ public abstract class AbstractNumeralFormulaManager<
     TFormulaInfo param1 = extractInfo(pNumber1);
     TFormulaInfo param2 = extractInfo(pNumber2);
     TFormulaInfo result;
-    if (nonLinearArithmetic == NonLinearArithmetic.APPROXIMATE_ALWAYS) {
-      result = makeUf(modUfDecl, param1, param2);
+    if (isNative(modDispatch, param1, param2, false)) {
+      result = modulo(param1, param2);
     } else {
-      try {
-        result = modulo(param1, param2);
-      } catch (UnsupportedOperationException e) {
-        if (nonLinearArithmetic == NonLinearArithmetic.APPROXIMATE_FALLBACK) {
-          result = makeUf(modUfDecl, param1, param2);
-        } else {
-          assert nonLinearArithmetic == NonLinearArithmetic.USE;
-          throw e;
-        }
-      }
+      result = makeUf(modUfDecl, param1, param2);
     }
     return wrap(result);
   }
@@ -340,22 +559,24 @@ public abstract class AbstractNumeralFormulaManager<
   public ResultFormulaType multiply(ParamFormulaType pNumber1, ParamFormulaType pNumber2) {
     TFormulaInfo param1 = extractInfo(pNumber1);
     TFormulaInfo param2 = extractInfo(pNumber2);
+    if (isSimplifying()) {
+      Rational value1 = getValue(pNumber1, param1);
+      Rational value2 = getValue(pNumber2, param2);
+      if (value1 != null && value2 != null) {
+        return wrap(makeConstantImpl(value1.times(value2)));
+      } else if (isZero(value1) || isZero(value2)) {
+        return wrap(makeConstantImpl(Rational.ZERO));
+      } else if (isOne(value2) && hasResultType(pNumber1)) {
+        return wrap(param1);
+      } else if (isOne(value1) && hasResultType(pNumber2)) {
+        return wrap(param2);
+      }
+    }
     TFormulaInfo result;
-    if (nonLinearArithmetic == NonLinearArithmetic.APPROXIMATE_ALWAYS
-        && !isNumeral(param1)
-        && !isNumeral(param2)) {
-      result = makeUf(multUfDecl, param1, param2);
+    if (isNative(multDispatch, param1, param2, true)) {
+      result = multiply(param1, param2);
     } else {
-      try {
-        result = multiply(param1, param2);
-      } catch (UnsupportedOperationException e) {
-        if (nonLinearArithmetic == NonLinearArithmetic.APPROXIMATE_FALLBACK) {
-          result = makeUf(multUfDecl, param1, param2);
-        } else {
-          assert nonLinearArithmetic == NonLinearArithmetic.USE;
-          throw e;
-        }
-      }
+      result = makeUf(multUfDecl, param1, param2);
     }
     return wrap(result);
   }
@@ -46,7 +46,21 @@ public abstract class AbstractSolverContext implements SolverContext {
 
   @Override
   public final ProverEnvironment newProverEnvironment(ProverOptions... options) {
-    ProverEnvironment out = newProverEnvironment0(toSet(options));
+    Set<ProverOptions> opts = toSet(options);
+    boolean retractable = opts.contains(ProverOptions.ENABLE_RETRACTABLE_CONSTRAINTS);
+    boolean forking = opts.contains(ProverOptions.ENABLE_FORKING);
+    if (!retractable && !forking) {
+      return newProverEnvironmentWithAssumptions(opts);
+    }
+    return new RetractableProverWrapper(
+        () -> newProverEnvironmentWithAssumptions(opts),
+        fmgr.getBooleanFormulaManager(),
+        retractable,
+        forking);
+  }
+
+  private ProverEnvironment newProverEnvironmentWithAssumptions(Set<ProverOptions> options) {
+    ProverEnvironment out = newProverEnvironment0(options);
     if (!supportsAssumptionSolving()) {
       // In the case we do not already have a prover environment with assumptions,
       // we add a wrapper to it
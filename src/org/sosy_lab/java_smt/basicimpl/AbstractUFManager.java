@@ -22,9 +22,12 @@ package org.sosy_lab.java_smt.basicimpl;
 import static com.google.common.base.Preconditions.checkArgument;
 import static org.sosy_lab.java_smt.basicimpl.AbstractFormulaManager.checkVariableName;
 
-import com.google.common.collect.Lists;
+import com.google.common.collect.ImmutableList;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import org.sosy_lab.java_smt.api.Formula;
 import org.sosy_lab.java_smt.api.FormulaType;
 import org.sosy_lab.java_smt.api.FunctionDeclaration;
@@ -43,6 +46,12 @@ public abstract class AbstractUFManager<TFormulaInfo, TFunctionDecl, TType, TEnv
     extends AbstractBaseFormulaManager<TFormulaInfo, TType, TEnv, TFunctionDecl>
     implements UFManager {
 
+  /**
+   * All declarations of this context, keyed by name, return type and argument types. Declaring the
+   * same function again returns the known declaration without asking the solver.
+   */
+  private final Map<List<Object>, FunctionDeclaration<?>> declarations = new HashMap<>();
+
   protected AbstractUFManager(FormulaCreator<TFormulaInfo, TType, TEnv, TFunctionDecl> pCreator) {
     super(pCreator);
   }
@@ -50,11 +59,28 @@ public abstract class AbstractUFManager<TFormulaInfo, TFunctionDecl, TType, TEnv
   @Override
   public final <T extends Formula> FunctionDeclaration<T> declareUF(
       String pName, FormulaType<T> pReturnType, List<FormulaType<?>> pArgTypes) {
+    ImmutableList<FormulaType<?>> argTypes = ImmutableList.copyOf(pArgTypes);
+    List<Object> key = ImmutableList.of(pName, pReturnType, argTypes);
+
+    @SuppressWarnings("unchecked")
+    FunctionDeclaration<T> declaration = (FunctionDeclaration<T>) declarations.get(key);
+    if (declaration == null) {
+      declaration = declareUF0(pName, pReturnType, argTypes);
+      declarations.put(key, declaration);
+    }
+    return declaration;
+  }
+
+  private <T extends Formula> FunctionDeclaration<T> declareUF0(
+      String pName, FormulaType<T> pReturnType, ImmutableList<FormulaType<?>> pArgTypes) {
     checkArgument(
         !pArgTypes.contains(FormulaType.BooleanType),
         "Uninterpreted functions with boolean arguments are currently not supported in JavaSMT.");
 
-    List<TType> argTypes = Lists.transform(pArgTypes, this::toSolverType);
+    List<TType> argTypes = new ArrayList<>(pArgTypes.size());
+    for (FormulaType<?> argType : pArgTypes) {
+      argTypes.add(toSolverType(argType));
+    }
 
     return FunctionDeclarationImpl.of(
         pName,
@@ -86,7 +112,10 @@ public abstract class AbstractUFManager<TFormulaInfo, TFunctionDecl, TType, TEnv
   public <T extends Formula> T declareAndCallUF(
       String name, FormulaType<T> pReturnType, List<Formula> pArgs) {
     checkVariableName(name);
-    List<FormulaType<?>> argTypes = Lists.transform(pArgs, getFormulaCreator()::getFormulaType);
+    List<FormulaType<?>> argTypes = new ArrayList<>(pArgs.size());
+    for (Formula arg : pArgs) {
+      argTypes.add(getFormulaCreator().getFormulaType(arg));
+    }
     FunctionDeclaration<T> func = declareUF(name, pReturnType, argTypes);
     return callUF(func, pArgs);
   }
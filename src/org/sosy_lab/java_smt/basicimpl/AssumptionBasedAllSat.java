@@ -0,0 +1,231 @@
+/*
+ *  JavaSMT is an API wrapper for a collection of SMT solvers.
+ *  This file is part of JavaSMT.
+ *
+ *  Copyright (C) 2007-2016  Dirk Beyer
+ *  All rights reserved.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.sosy_lab.java_smt.basicimpl;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import com.google.common.collect.ImmutableList;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import org.sosy_lab.java_smt.api.BasicProverEnvironment.AllSatCallback;
+import org.sosy_lab.java_smt.api.BooleanFormula;
+import org.sosy_lab.java_smt.api.BooleanFormulaManager;
+import org.sosy_lab.java_smt.api.Model;
+import org.sosy_lab.java_smt.api.ProverEnvironment;
+import org.sosy_lab.java_smt.api.SolverContext;
+import org.sosy_lab.java_smt.api.SolverContext.ProverOptions;
+import org.sosy_lab.java_smt.api.SolverException;
+
+/**
+ * Solver-independent AllSAT that reports prime implicant cubes instead of full models.
+ *
+ * <p>The native AllSAT of several solvers blocks each projected model completely, which needs one
+ * iteration per model. This implementation shrinks each model to a minimal cube of important
+ * literals that implies the query, reports this cube to the callback and blocks only the cube.
+ * Thus every callback covers all models that extend the cube, and the number of iterations is the
+ * number of cubes.
+ *
+ * <p>A cube implies the query if the negated query together with the cube is unsatisfiable. This
+ * is checked on a second prover with assumptions. The assumptions are fresh Boolean selector
+ * variables that activate the important literals, such that solvers restricted to literal
+ * assumptions can be used, too. If the solver can compute unsat cores over assumptions, the core
+ * is used to drop many literals at once, before the remaining literals are removed one by one.
+ *
+ * <p>If a model contains symbols besides the important predicates, it may happen that no subset of
+ * its important literals implies the query. In this case the full model is reported and blocked,
+ * just as in the native AllSAT.
+ *
+ * <p>The solver has to support {@link
+ * org.sosy_lab.java_smt.api.BasicProverEnvironment#isUnsatWithAssumptions}.
+ */
+public final class AssumptionBasedAllSat {
+
+  private static final String SELECTOR_PREFIX = "__ALLSAT_SELECTOR_";
+
+  private final SolverContext context;
+  private final BooleanFormulaManager bmgr;
+
+  /** Whether the solver computes unsat cores over assumptions, until it refuses to do so. */
+  private boolean useCores = true;
+
+  private int solverCalls = 0;
+  private int cubeCount = 0;
+
+  public AssumptionBasedAllSat(SolverContext pContext) {
+    context = checkNotNull(pContext);
+    bmgr = context.getFormulaManager().getBooleanFormulaManager();
+  }
+
+  /**
+   * Enumerate all cubes over the important predicates that imply the query and cover all its
+   * models.
+   *
+   * @param pQuery the formula to enumerate
+   * @param pCallback receives each cube, given as list of important predicates and negated
+   *     important predicates
+   * @param pImportant the predicates to project the models to
+   * @return the result of the callback
+   */
+  public <R> R allSat(
+      BooleanFormula pQuery, AllSatCallback<R> pCallback, List<BooleanFormula> pImportant)
+      throws SolverException, InterruptedException {
+    checkNotNull(pCallback);
+    ImmutableList<BooleanFormula> important = ImmutableList.copyOf(pImportant);
+
+    try (ProverEnvironment enumerator =
+            context.newProverEnvironment(ProverOptions.GENERATE_MODELS);
+        ProverEnvironment checker = newChecker()) {
+      enumerator.push(pQuery);
+      checker.push(bmgr.not(pQuery));
+
+      // selectors for the positive and negative literal of each important predicate
+      List<BooleanFormula> positive = new ArrayList<>(important.size());
+      List<BooleanFormula> negative = new ArrayList<>(important.size());
+      Map<BooleanFormula, BooleanFormula> literals = new HashMap<>();
+      for (int i = 0; i < important.size(); i++) {
+        BooleanFormula predicate = important.get(i);
+        BooleanFormula pos = bmgr.makeVariable(SELECTOR_PREFIX + "POS_" + i);
+        BooleanFormula neg = bmgr.makeVariable(SELECTOR_PREFIX + "NEG_" + i);
+        checker.addConstraint(bmgr.implication(pos, predicate));
+        checker.addConstraint(bmgr.implication(neg, bmgr.not(predicate)));
+        positive.add(pos);
+        negative.add(neg);
+        literals.put(pos, predicate);
+        literals.put(neg, bmgr.not(predicate));
+      }
+
+      while (!isUnsat(enumerator)) {
+        List<BooleanFormula> selectors = new ArrayList<>(important.size());
+        try (Model model = enumerator.getModel()) {
+          for (int i = 0; i < important.size(); i++) {
+            Boolean value = model.evaluate(important.get(i));
+            if (value != null) {
+              selectors.add(value ? positive.get(i) : negative.get(i));
+            }
+          }
+        }
+
+        List<BooleanFormula> cube = new ArrayList<>();
+        for (BooleanFormula selector : shrink(checker, selectors)) {
+          cube.add(literals.get(selector));
+        }
+        cubeCount++;
+        pCallback.apply(cube);
+
+        enumerator.addConstraint(bmgr.not(bmgr.and(cube)));
+      }
+    }
+    return pCallback.getResult();
+  }
+
+  @SuppressWarnings("resource")
+  private ProverEnvironment newChecker() {
+    try {
+      return context.newProverEnvironment(ProverOptions.GENERATE_UNSAT_CORE_OVER_ASSUMPTIONS);
+    } catch (UnsupportedOperationException e) {
+      // the checker works without cores, just with more solver calls
+      return context.newProverEnvironment();
+    }
+  }
+
+  /**
+   * Reduce the given selectors to a minimal subset that still implies the query. Returns the
+   * selectors unchanged if they do not imply the query.
+   */
+  private List<BooleanFormula> shrink(ProverEnvironment checker, List<BooleanFormula> selectors)
+      throws SolverException, InterruptedException {
+    Optional<List<BooleanFormula>> core = unsatCore(checker, selectors);
+    if (!core.isPresent()) {
+      return selectors;
+    }
+    List<BooleanFormula> cube = retainAll(selectors, core.get());
+
+    // Deletion: each literal is checked once. A literal that was needed for a larger cube is also
+    // needed for all its subsets, thus the literals before the current position stay in the cube.
+    int i = 0;
+    while (i < cube.size()) {
+      List<BooleanFormula> candidate = new ArrayList<>(cube);
+      candidate.remove(i);
+      Optional<List<BooleanFormula>> candidateCore = unsatCore(checker, candidate);
+      if (candidateCore.isPresent()) {
+        cube = retainAll(candidate, candidateCore.get());
+      } else {
+        i++;
+      }
+    }
+    return cube;
+  }
+
+  /**
+   * Check the assumptions on the checker and return a subset of them that is still unsatisfiable,
+   * or nothing if the assumptions are satisfiable.
+   */
+  private Optional<List<BooleanFormula>> unsatCore(
+      ProverEnvironment checker, List<BooleanFormula> assumptions)
+      throws SolverException, InterruptedException {
+    solverCalls++;
+    if (useCores) {
+      try {
+        return checker.unsatCoreOverAssumptions(assumptions);
+      } catch (UnsupportedOperationException e) {
+        useCores = false;
+      }
+    }
+    // without cores, the whole set of assumptions is the only known core
+    return checker.isUnsatWithAssumptions(assumptions)
+        ? Optional.of(assumptions)
+        : Optional.empty();
+  }
+
+  /** Filter the list to the given elements, keeping the order of the list. */
+  private static List<BooleanFormula> retainAll(
+      List<BooleanFormula> list, Collection<BooleanFormula> elements) {
+    Set<BooleanFormula> keep = new HashSet<>(elements);
+    List<BooleanFormula> result = new ArrayList<>(list.size());
+    for (BooleanFormula f : list) {
+      if (keep.contains(f)) {
+        result.add(f);
+      }
+    }
+    return result;
+  }
+
+  private boolean isUnsat(ProverEnvironment enumerator)
+      throws SolverException, InterruptedException {
+    solverCalls++;
+    return enumerator.isUnsat();
+  }
+
+  /** Number of satisfiability checks in all runs of {@link #allSat}. */
+  public int getSolverCalls() {
+    return solverCalls;
+  }
+
+  /** Number of cubes reported in all runs of {@link #allSat}. */
+  public int getCubeCount() {
+    return cubeCount;
+  }
+}
@@ -0,0 +1,76 @@
+/*
+ *  JavaSMT is an API wrapper for a collection of SMT solvers.
+ *  This file is part of JavaSMT.
+ *
+ *  Copyright (C) 2007-2016  Dirk Beyer
+ *  All rights reserved.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.sosy_lab.java_smt.basicimpl;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Supplier;
+import javax.annotation.Nullable;
+
+/**
+ * Lets a solver release the lock of a thread-safe solver context (see {@link
+ * org.sosy_lab.java_smt.concurrent.ConcurrentSolverContext}) during a long native call, e.g., a
+ * satisfiability check, such that other threads can create formulas in the meantime. This is only
+ * allowed for calls that do not touch any state that is shared with other prover environments or
+ * with the formula managers.
+ */
+public final class ContextLockRelease {
+
+  /** The lock that the current thread holds and may release, if any. */
+  private static final ThreadLocal<ReentrantLock> releasableLock = new ThreadLocal<>();
+
+  private ContextLockRelease() {}
+
+  /**
+   * Allow {@link #callWithoutLock} on the current thread to release the given lock, which the
+   * current thread holds, or disallow it if the lock is null.
+   *
+   * @return the previously allowed lock, for restoring it afterwards.
+   */
+  public static @Nullable ReentrantLock setReleasableLock(@Nullable ReentrantLock pLock) {
+    ReentrantLock previous = releasableLock.get();
+    if (pLock == null) {
+      releasableLock.remove();
+    } else {
+      releasableLock.set(pLock);
+    }
+    return previous;
+  }
+
+  /**
+   * Compute a value without holding the lock of the solver context, if the current thread is
+   * allowed to release it. Otherwise, the value is computed as usual.
+   */
+  public static <T> T callWithoutLock(Supplier<T> pAction) {
+    checkNotNull(pAction);
+    ReentrantLock lock = releasableLock.get();
+    if (lock == null || lock.getHoldCount() != 1) {
+      // not allowed, or the lock would still be held after one release
+      return pAction.get();
+    }
+    lock.unlock();
+    try {
+      return pAction.get();
+    } finally {
+      lock.lock();
+    }
+  }
+}
@@ -24,6 +24,7 @@ import static com.google.common.base.Preconditions.checkNotNull;
 import com.google.common.collect.Lists;
 import com.google.errorprone.annotations.CanIgnoreReturnValue;
 import java.util.ArrayDeque;
+import java.util.ArrayList;
 import java.util.Deque;
 import java.util.HashMap;
 import java.util.LinkedHashMap;
@@ -72,6 +73,25 @@ public abstract class FormulaCreator<TFormulaInfo, TType, TEnv, TFuncDecl> {
   private final @Nullable TType rationalType;
   protected final TEnv environment;
 
+  /** The formulas handed out so far, or null if formulas are not interned. */
+  private @Nullable FormulaInterner<TFormulaInfo> interner = null;
+
+  /** Whether the managers simplify trivial operations while building formulas. */
+  private boolean simplifying = false;
+
+  private final FormulaVisitor<Object> constantValueVisitor =
+      new DefaultFormulaVisitor<Object>() {
+        @Override
+        protected @Nullable Object visitDefault(Formula f) {
+          return null;
+        }
+
+        @Override
+        public Object visitConstant(Formula f, Object value) {
+          return value;
+        }
+      };
+
   protected FormulaCreator(
       TEnv env, TType boolType, @Nullable TType pIntegerType, @Nullable TType pRationalType) {
     this.environment = env;
@@ -102,6 +122,54 @@ public abstract class FormulaCreator<TFormulaInfo, TType, TEnv, TFuncDecl> {
     return rationalType;
   }
 
+  /**
+   * Hand out at most one live formula object per term and type from now on. This avoids allocating
+   * a new wrapper for each term that is created or visited, and makes equal formulas identical.
+   */
+  public final void enableInterning() {
+    if (interner == null) {
+      interner = new FormulaInterner<>();
+    }
+  }
+
+  protected final boolean isInterning() {
+    return interner != null;
+  }
+
+  /**
+   * Return the live formula for the term and type if formulas are interned and such a formula
+   * exists. Otherwise, the caller creates a new formula and registers it with {@link #intern}.
+   */
+  @Nullable
+  protected final Formula lookupInterned(TFormulaInfo pTerm, FormulaType<?> pType) {
+    return interner == null ? null : interner.get(pTerm, pType);
+  }
+
+  /** Register a new formula for the term and type if formulas are interned, and return it. */
+  protected final <T extends Formula> T intern(
+      TFormulaInfo pTerm, FormulaType<?> pType, T pFormula) {
+    return interner == null ? pFormula : interner.put(pTerm, pType, pFormula);
+  }
+
+  /**
+   * Fold constants and apply local simplifications like {@code and(true, x) = x}, {@code
+   * not(not(x)) = x} or {@code x + 0 = x} when formulas are built from now on. The simplifications
+   * only look at the direct arguments of each operation and never traverse a whole formula.
+   */
+  public final void enableSimplification() {
+    simplifying = true;
+  }
+
+  protected final boolean isSimplifying() {
+    return simplifying;
+  }
+
+  /** Return the value of the formula if it is a constant, or null otherwise. */
+  @Nullable
+  final Object getConstantValue(Formula pFormula) {
+    return visit(pFormula, constantValueVisitor);
+  }
+
   public abstract TType getBitvectorType(int bitwidth);
 
   public abstract TType getFloatingPointType(FloatingPointType type);
@@ -110,18 +178,40 @@ public abstract class FormulaCreator<TFormulaInfo, TType, TEnv, TFuncDecl> {
 
   public abstract TFormulaInfo makeVariable(TType type, String varName);
 
+  /**
+   * Create variables of the same type for all given names. Solvers that need to declare variables
+   * somewhere can override this method to do that only once for all variables.
+   */
+  public List<TFormulaInfo> makeVariables(TType type, List<String> varNames) {
+    List<TFormulaInfo> result = new ArrayList<>(varNames.size());
+    for (String varName : varNames) {
+      result.add(makeVariable(type, varName));
+    }
+    return result;
+  }
+
   public BooleanFormula encapsulateBoolean(TFormulaInfo pTerm) {
     assert getFormulaType(pTerm).isBooleanType();
+    if (isInterning()) {
+      return encapsulate(FormulaType.BooleanType, pTerm);
+    }
     return new BooleanFormulaImpl<>(pTerm);
   }
 
   protected BitvectorFormula encapsulateBitvector(TFormulaInfo pTerm) {
     assert getFormulaType(pTerm).isBitvectorType();
+    if (isInterning()) {
+      // the type with the bitwidth is needed for the lookup
+      return (BitvectorFormula) encapsulateWithTypeOf(pTerm);
+    }
     return new BitvectorFormulaImpl<>(pTerm);
   }
 
   protected FloatingPointFormula encapsulateFloatingPoint(TFormulaInfo pTerm) {
     assert getFormulaType(pTerm).isFloatingPointType();
+    if (isInterning()) {
+      return (FloatingPointFormula) encapsulateWithTypeOf(pTerm);
+    }
     return new FloatingPointFormulaImpl<>(pTerm);
   }
 
@@ -133,7 +223,16 @@ public abstract class FormulaCreator<TFormulaInfo, TType, TEnv, TFuncDecl> {
             + " but found: "
             + FormulaType.getArrayType(pIndexType, pElementType);
 
-    return new ArrayFormulaImpl<>(pTerm, pIndexType, pElementType);
+    if (!isInterning()) {
+      return new ArrayFormulaImpl<>(pTerm, pIndexType, pElementType);
+    }
+    FormulaType<?> type = FormulaType.getArrayType(pIndexType, pElementType);
+    @SuppressWarnings("unchecked")
+    ArrayFormula<TI, TE> interned = (ArrayFormula<TI, TE>) lookupInterned(pTerm, type);
+    if (interned != null) {
+      return interned;
+    }
+    return intern(pTerm, type, new ArrayFormulaImpl<>(pTerm, pIndexType, pElementType));
   }
 
   public Formula encapsulateWithTypeOf(TFormulaInfo pTerm) {
@@ -146,18 +245,22 @@ public abstract class FormulaCreator<TFormulaInfo, TType, TEnv, TFuncDecl> {
         : String.format(
             "Trying to encapsulate formula %s of type %s as %s",
             pTerm, getFormulaType(pTerm), pType);
+    Formula interned = lookupInterned(pTerm, pType);
+    if (interned != null) {
+      return (T) interned;
+    }
     if (pType.isBooleanType()) {
-      return (T) new BooleanFormulaImpl<>(pTerm);
+      return (T) intern(pTerm, pType, new BooleanFormulaImpl<>(pTerm));
     } else if (pType.isIntegerType()) {
-      return (T) new IntegerFormulaImpl<>(pTerm);
+      return (T) intern(pTerm, pType, new IntegerFormulaImpl<>(pTerm));
     } else if (pType.isRationalType()) {
-      return (T) new RationalFormulaImpl<>(pTerm);
+      return (T) intern(pTerm, pType, new RationalFormulaImpl<>(pTerm));
     } else if (pType.isBitvectorType()) {
-      return (T) new BitvectorFormulaImpl<>(pTerm);
+      return (T) intern(pTerm, pType, new BitvectorFormulaImpl<>(pTerm));
     } else if (pType.isFloatingPointType()) {
-      return (T) new FloatingPointFormulaImpl<>(pTerm);
+      return (T) intern(pTerm, pType, new FloatingPointFormulaImpl<>(pTerm));
     } else if (pType.isFloatingPointRoundingModeType()) {
-      return (T) new FloatingPointRoundingModeFormulaImpl<>(pTerm);
+      return (T) intern(pTerm, pType, new FloatingPointRoundingModeFormulaImpl<>(pTerm));
     } else if (pType.isArrayType()) {
       ArrayFormulaType<?, ?> arrayType = (ArrayFormulaType<?, ?>) pType;
       return (T) encapsulateArray(pTerm, arrayType.getIndexType(), arrayType.getElementType());
@@ -344,11 +447,16 @@ public abstract class FormulaCreator<TFormulaInfo, TType, TEnv, TFuncDecl> {
   @SuppressWarnings("unchecked")
   public final <T extends Formula> T callFunction(
       FunctionDeclaration<T> declaration, List<? extends Formula> args) {
+    // extract the arguments only once, solvers may iterate over them several times
+    List<TFormulaInfo> argInfos = new ArrayList<>(args.size());
+    for (Formula arg : args) {
+      argInfos.add(extractInfo(arg));
+    }
     return encapsulate(
         declaration.getType(),
         callFunctionImpl(
             ((FunctionDeclarationImpl<T, TFuncDecl>) declaration).getSolverDeclaration(),
-            extractInfo(args)));
+            argInfos));
   }
 
   public abstract TFormulaInfo callFunctionImpl(TFuncDecl declaration, List<TFormulaInfo> args);
@@ -0,0 +1,94 @@
+/*
+ *  JavaSMT is an API wrapper for a collection of SMT solvers.
+ *  This file is part of JavaSMT.
+ *
+ *  Copyright (C) 2007-2016  Dirk Beyer
+ *  All rights reserved.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.sosy_lab.java_smt.basicimpl;
+
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Map;
+import javax.annotation.Nullable;
+import org.sosy_lab.java_smt.api.Formula;
+import org.sosy_lab.java_smt.api.FormulaType;
+
+/**
+ * Weak table from terms of a solver to the formulas that wrap them, such that there is at most one
+ * live formula per term and type.
+ *
+ * <p>Terms that are numbers (pointers into the native memory of the solver) are compared by value,
+ * all other terms by identity. The formulas are referenced weakly, thus a term whose formula is no
+ * longer used by the client can be released as before.
+ */
+final class FormulaInterner<TFormulaInfo> {
+
+  private final ReferenceQueue<Formula> queue = new ReferenceQueue<>();
+
+  /** Created for the first term, because only then the kind of the terms is known. */
+  private @Nullable Map<TFormulaInfo, Entry<TFormulaInfo>> entries = null;
+
+  private static final class Entry<TFormulaInfo> extends WeakReference<Formula> {
+    private final TFormulaInfo term;
+    private final FormulaType<?> type;
+
+    private Entry(
+        TFormulaInfo pTerm,
+        FormulaType<?> pType,
+        Formula pFormula,
+        ReferenceQueue<Formula> pQueue) {
+      super(pFormula, pQueue);
+      term = pTerm;
+      type = pType;
+    }
+  }
+
+  /** Return the live formula for the term and type, or null if there is none. */
+  @Nullable
+  Formula get(TFormulaInfo pTerm, FormulaType<?> pType) {
+    if (entries == null) {
+      return null;
+    }
+    expungeStaleEntries();
+    Entry<TFormulaInfo> entry = entries.get(pTerm);
+    if (entry == null || !entry.type.equals(pType)) {
+      return null;
+    }
+    return entry.get();
+  }
+
+  /** Register the formula as the one for the term and type, and return it. */
+  <T extends Formula> T put(TFormulaInfo pTerm, FormulaType<?> pType, T pFormula) {
+    if (entries == null) {
+      entries = pTerm instanceof Number ? new HashMap<>() : new IdentityHashMap<>();
+    }
+    entries.put(pTerm, new Entry<>(pTerm, pType, pFormula, queue));
+    return pFormula;
+  }
+
+  @SuppressWarnings("unchecked")
+  private void expungeStaleEntries() {
+    Reference<? extends Formula> ref;
+    while ((ref = queue.poll()) != null) {
+      Entry<TFormulaInfo> entry = (Entry<TFormulaInfo>) ref;
+      // the entry might have been replaced by a newer one for the same term
+      entries.remove(entry.term, entry);
+    }
+  }
+}
@@ -0,0 +1,543 @@
+/*
+ *  JavaSMT is an API wrapper for a collection of SMT solvers.
+ *  This file is part of JavaSMT.
+ *
+ *  Copyright (C) 2007-2016  Dirk Beyer
+ *  All rights reserved.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.sosy_lab.java_smt.basicimpl;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+import static com.google.common.base.Preconditions.checkState;
+
+import com.google.common.base.Joiner;
+import com.google.common.collect.FluentIterable;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Iterators;
+import java.math.BigInteger;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+import javax.annotation.Nullable;
+import org.sosy_lab.common.rationals.Rational;
+import org.sosy_lab.java_smt.api.BitvectorFormula;
+import org.sosy_lab.java_smt.api.BooleanFormula;
+import org.sosy_lab.java_smt.api.BooleanFormulaManager;
+import org.sosy_lab.java_smt.api.Formula;
+import org.sosy_lab.java_smt.api.Model;
+import org.sosy_lab.java_smt.api.Model.ValueAssignment;
+import org.sosy_lab.java_smt.api.NumeralFormula.IntegerFormula;
+import org.sosy_lab.java_smt.api.NumeralFormula.RationalFormula;
+import org.sosy_lab.java_smt.api.ProverEnvironment;
+import org.sosy_lab.java_smt.api.SolverContext.ProverOptions;
+import org.sosy_lab.java_smt.api.SolverException;
+
+/**
+ * Implements {@link ProverEnvironment#addRetractable} and {@link ProverEnvironment#fork} for all
+ * solvers. Prover environments are only wrapped if one of the features is enabled by the options
+ * {@link ProverOptions#ENABLE_RETRACTABLE_CONSTRAINTS} and {@link ProverOptions#ENABLE_FORKING}.
+ *
+ * <p>Each retractable constraint {@code f} is asserted as {@code a => f} for a fresh Boolean
+ * variable {@code a}, and all checks assume the literals of the active constraints. Retracting a
+ * constraint asserts {@code !a}, which disables the implication without changing the rest of the
+ * solver state.
+ *
+ * <p>The implications of retracted constraints remain in the solver. When there are many of them,
+ * compared to the live constraints, the stack is compacted: all levels since the first retractable
+ * constraint are popped and rebuilt without the retracted constraints. For this, the first
+ * retractable constraint opens an additional level of the stack, which is invisible for the user
+ * and removed together with the user's level that it was opened on.
+ *
+ * <p>A prover environment and its forks draw the activation literals from a shared counter, such
+ * that their names are distinct. Each handle knows the prover environments that it is valid for,
+ * i.e., the one that created it and the forks that copied it.
+ *
+ * <p>Assertions are recorded per level only where they are needed: since the first retractable
+ * constraint for compacting the stack, and from the start if forking is enabled, such that a fork
+ * can replay them on a new prover of the same solver context. Otherwise, nothing is recorded.
+ * Native copies of solvers are not used for forking, because they do not preserve the levels of the
+ * stack (Z3) or are not available (MathSAT, SMTInterpol, Princess).
+ *
+ * <p>The activation literals are hidden from the user: unsat cores contain the original
+ * constraints instead of the implications, and models do not contain the literals.
+ */
+final class RetractableProverWrapper implements ProverEnvironment {
+
+  /** Minimal number of retracted constraints before the stack is compacted. */
+  private static final int COMPACTION_THRESHOLD = 64;
+
+  private static final String LITERAL_PREFIX = "__RETRACTABLE_";
+
+  private static final AtomicInteger families = new AtomicInteger();
+
+  private final Supplier<ProverEnvironment> proverFactory;
+  private final ProverEnvironment delegate;
+  private final BooleanFormulaManager bmgr;
+
+  /** The prefix of the activation literals, shared by forks. */
+  private final String family;
+
+  /** The number of activation literals of the family, shared by forks. */
+  private final AtomicInteger literals;
+
+  /** Identifies this prover environment in the handles that are valid for it. */
+  private final Object owner = new Object();
+
+  /** Whether {@link #addRetractable} may be used. */
+  private final boolean retractableEnabled;
+
+  /** Whether all assertions are recorded for {@link #fork}. */
+  private final boolean forkingEnabled;
+
+  /** Whether the stack contains the level that was opened for the retractable constraints. */
+  private boolean hasInternalLevel = false;
+
+  /** The assertions on each level of the stack, the innermost level first. */
+  private final Deque<Level> levels = new ArrayDeque<>();
+
+  /** The activation literals of all constraints that are currently active. */
+  private final Map<Handle, BooleanFormula> active = new LinkedHashMap<>();
+
+  /** Number of retracted constraints whose implications are still asserted in the solver. */
+  private int retired = 0;
+
+  RetractableProverWrapper(
+      Supplier<ProverEnvironment> pProverFactory,
+      BooleanFormulaManager pBmgr,
+      boolean pRetractableEnabled,
+      boolean pForkingEnabled) {
+    this(
+        pProverFactory,
+        pBmgr,
+        pRetractableEnabled,
+        pForkingEnabled,
+        LITERAL_PREFIX + families.incrementAndGet() + "_",
+        new AtomicInteger());
+  }
+
+  private RetractableProverWrapper(
+      Supplier<ProverEnvironment> pProverFactory,
+      BooleanFormulaManager pBmgr,
+      boolean pRetractableEnabled,
+      boolean pForkingEnabled,
+      String pFamily,
+      AtomicInteger pLiterals) {
+    proverFactory = checkNotNull(pProverFactory);
+    delegate = checkNotNull(pProverFactory.get());
+    bmgr = checkNotNull(pBmgr);
+    retractableEnabled = pRetractableEnabled;
+    forkingEnabled = pForkingEnabled;
+    family = pFamily;
+    literals = pLiterals;
+    levels.push(new Level(false));
+  }
+
+  /** A retractable constraint. */
+  private static final class Handle implements AssertionHandle {
+    private final BooleanFormula literal;
+
+    /** The prover environments that this handle is valid for, which may be on other threads. */
+    private final Set<Object> owners = ConcurrentHashMap.newKeySet();
+
+    private Handle(BooleanFormula pLiteral, Object pOwner) {
+      literal = pLiteral;
+      owners.add(pOwner);
+    }
+  }
+
+  /** The recorded assertions of one level of the stack. */
+  private static final class Level {
+    /** Whether this level was opened by this wrapper, and not by the user. */
+    private final boolean internal;
+
+    private final List<Assertion> assertions = new ArrayList<>();
+
+    /** The negated literals that were asserted on this level for retracting constraints. */
+    private final List<BooleanFormula> retractions = new ArrayList<>();
+
+    private Level(boolean pInternal) {
+      internal = pInternal;
+    }
+  }
+
+  /** A recorded assertion, either a normal or a retractable one. */
+  private static final class Assertion {
+    private final BooleanFormula formula;
+    private final @Nullable Handle handle;
+
+    /** The formula that is asserted in the solver, i.e., the implication for a retractable one. */
+    private final BooleanFormula asserted;
+
+    private Assertion(BooleanFormula pFormula, @Nullable Handle pHandle, BooleanFormula pAsserted) {
+      formula = pFormula;
+      handle = pHandle;
+      asserted = pAsserted;
+    }
+  }
+
+  private boolean isRetired(Assertion assertion) {
+    return assertion.handle != null && !active.containsKey(assertion.handle);
+  }
+
+  @Override
+  public void push() {
+    delegate.push();
+    levels.push(new Level(false));
+  }
+
+  @Override
+  public void pop() {
+    Level level = levels.peek();
+    checkState(levels.size() > (level.internal ? 2 : 1), "cannot pop from empty stack");
+    popLevel();
+    if (level.internal) {
+      // the internal level belongs to the user's level below it
+      popLevel();
+    }
+  }
+
+  private void popLevel() {
+    Level level = levels.pop();
+    if (level.internal) {
+      hasInternalLevel = false;
+    }
+    for (Assertion assertion : level.assertions) {
+      if (assertion.handle != null && active.remove(assertion.handle) == null) {
+        retired--;
+      }
+    }
+    delegate.pop();
+  }
+
+  @Override
+  @Nullable
+  public Void addConstraint(BooleanFormula constraint) throws InterruptedException {
+    Void result = delegate.addConstraint(constraint);
+    if (forkingEnabled || hasInternalLevel) {
+      levels.peek().assertions.add(new Assertion(constraint, null, constraint));
+    }
+    return result;
+  }
+
+  @Override
+  public AssertionHandle addRetractable(BooleanFormula constraint) throws InterruptedException {
+    if (!retractableEnabled) {
+      throw new UnsupportedOperationException(
+          "Retractable constraints require the prover option "
+              + ProverOptions.ENABLE_RETRACTABLE_CONSTRAINTS);
+    }
+    if (!hasInternalLevel) {
+      delegate.push();
+      levels.push(new Level(true));
+      hasInternalLevel = true;
+    }
+    Handle handle = new Handle(bmgr.makeVariable(family + literals.getAndIncrement()), owner);
+    BooleanFormula implication = bmgr.implication(handle.literal, constraint);
+    delegate.addConstraint(implication);
+    levels.peek().assertions.add(new Assertion(constraint, handle, implication));
+    active.put(handle, handle.literal);
+    return handle;
+  }
+
+  @Override
+  public void retract(AssertionHandle pHandle) throws InterruptedException {
+    checkArgument(
+        pHandle instanceof Handle && ((Handle) pHandle).owners.contains(owner),
+        "constraint was not added to this prover environment");
+    Handle handle = (Handle) pHandle;
+    if (active.remove(handle) == null) {
+      return; // already retracted or popped
+    }
+    BooleanFormula retraction = bmgr.not(handle.literal);
+    delegate.addConstraint(retraction);
+    levels.peek().retractions.add(retraction);
+    retired++;
+    if (retired >= COMPACTION_THRESHOLD) {
+      compactIfNecessary();
+    }
+  }
+
+  /** Rebuild the levels without the retracted constraints, if there are many of them. */
+  private void compactIfNecessary() throws InterruptedException {
+    List<Level> rebuilt = new ArrayList<>();
+    int live = 0;
+    for (Level level : levels) {
+      rebuilt.add(level);
+      live += level.assertions.size();
+      if (level.internal) {
+        break;
+      }
+    }
+    live -= retired;
+    if (retired < live) {
+      return;
+    }
+
+    for (int i = 0; i < rebuilt.size(); i++) {
+      delegate.pop();
+    }
+    for (Level level : rebuilt) {
+      level.assertions.removeIf(this::isRetired);
+      level.retractions.clear();
+    }
+    for (Level level : ImmutableList.copyOf(rebuilt).reverse()) {
+      delegate.push();
+      assertAll(delegate, level);
+    }
+    retired = 0;
+  }
+
+  /** Assert the recorded assertions of the level on the prover, except the retracted ones. */
+  private void assertAll(ProverEnvironment prover, Level level) throws InterruptedException {
+    for (Assertion assertion : level.assertions) {
+      if (!isRetired(assertion)) {
+        prover.addConstraint(assertion.asserted);
+      }
+    }
+  }
+
+  @Override
+  public ProverEnvironment fork() throws InterruptedException {
+    if (!forkingEnabled) {
+      throw new UnsupportedOperationException(
+          "Forking requires the prover option " + ProverOptions.ENABLE_FORKING);
+    }
+    RetractableProverWrapper fork =
+        new RetractableProverWrapper(
+            proverFactory, bmgr, retractableEnabled, true, family, literals);
+    fork.hasInternalLevel = hasInternalLevel;
+    fork.active.putAll(active);
+    for (Handle handle : active.keySet()) {
+      handle.owners.add(fork.owner);
+    }
+    fork.levels.clear();
+    Iterator<Level> outermostFirst = levels.descendingIterator();
+    boolean first = true;
+    while (outermostFirst.hasNext()) {
+      Level level = outermostFirst.next();
+      if (!first) {
+        fork.delegate.push();
+      }
+      first = false;
+      Level copy = new Level(level.internal);
+      for (Assertion assertion : level.assertions) {
+        if (!isRetired(assertion)) {
+          copy.assertions.add(assertion);
+        }
+      }
+      fork.assertAll(fork.delegate, copy);
+      fork.levels.push(copy);
+    }
+    return fork;
+  }
+
+  private List<BooleanFormula> withActiveLiterals(Collection<BooleanFormula> assumptions) {
+    List<BooleanFormula> result = new ArrayList<>(assumptions.size() + active.size());
+    result.addAll(assumptions);
+    result.addAll(active.values());
+    return result;
+  }
+
+  @Override
+  public boolean isUnsat() throws SolverException, InterruptedException {
+    if (active.isEmpty()) {
+      return delegate.isUnsat();
+    }
+    return delegate.isUnsatWithAssumptions(active.values());
+  }
+
+  @Override
+  public boolean isUnsatWithAssumptions(Collection<BooleanFormula> assumptions)
+      throws SolverException, InterruptedException {
+    if (active.isEmpty()) {
+      return delegate.isUnsatWithAssumptions(assumptions);
+    }
+    return delegate.isUnsatWithAssumptions(withActiveLiterals(assumptions));
+  }
+
+  @Override
+  public Optional<List<BooleanFormula>> unsatCoreOverAssumptions(
+      Collection<BooleanFormula> assumptions) throws SolverException, InterruptedException {
+    if (active.isEmpty()) {
+      return delegate.unsatCoreOverAssumptions(assumptions);
+    }
+    Optional<List<BooleanFormula>> core =
+        delegate.unsatCoreOverAssumptions(withActiveLiterals(assumptions));
+    if (!core.isPresent()) {
+      return core;
+    }
+    List<BooleanFormula> result = new ArrayList<>(core.get());
+    result.removeAll(active.values());
+    return Optional.of(result);
+  }
+
+  private static boolean isLiteral(ValueAssignment assignment) {
+    return assignment.getName().startsWith(LITERAL_PREFIX);
+  }
+
+  @Override
+  public Model getModel() throws SolverException {
+    Model model = delegate.getModel();
+    if (!retractableEnabled) {
+      return model;
+    }
+    return new ModelWithoutLiterals(model);
+  }
+
+  @Override
+  public ImmutableList<ValueAssignment> getModelAssignments() throws SolverException {
+    ImmutableList<ValueAssignment> assignments = delegate.getModelAssignments();
+    if (!retractableEnabled) {
+      return assignments;
+    }
+    return FluentIterable.from(assignments).filter(assignment -> !isLiteral(assignment)).toList();
+  }
+
+  @Override
+  public List<BooleanFormula> getUnsatCore() {
+    List<BooleanFormula> core = delegate.getUnsatCore();
+    if (!hasInternalLevel) {
+      return core;
+    }
+    Map<BooleanFormula, BooleanFormula> originals = new HashMap<>();
+    // the literals appear in the core if the solver asserts assumptions as constraints
+    Set<BooleanFormula> literals = new HashSet<>(active.values());
+    for (Level level : levels) {
+      for (Assertion assertion : level.assertions) {
+        if (assertion.handle != null) {
+          originals.put(assertion.asserted, assertion.formula);
+        }
+      }
+      literals.addAll(level.retractions);
+    }
+    List<BooleanFormula> result = new ArrayList<>(core.size());
+    for (BooleanFormula f : core) {
+      if (!literals.contains(f)) {
+        result.add(originals.getOrDefault(f, f));
+      }
+    }
+    return result;
+  }
+
+  @Override
+  public <R> R allSat(AllSatCallback<R> callback, List<BooleanFormula> important)
+      throws InterruptedException, SolverException {
+    if (active.isEmpty()) {
+      return delegate.allSat(callback, important);
+    }
+    // AllSAT does not support assumptions, thus we assert the active literals temporarily.
+    delegate.push();
+    try {
+      for (BooleanFormula literal : active.values()) {
+        delegate.addConstraint(literal);
+      }
+      return delegate.allSat(callback, important);
+    } finally {
+      delegate.pop();
+    }
+  }
+
+  @Override
+  public void close() {
+    delegate.close();
+  }
+
+  @Override
+  public String toString() {
+    return delegate.toString();
+  }
+
+  /** A model that hides the activation literals. */
+  private static final class ModelWithoutLiterals implements Model {
+
+    private final Model delegate;
+
+    private ModelWithoutLiterals(Model pDelegate) {
+      delegate = pDelegate;
+    }
+
+    @Override
+    public @Nullable Object evaluate(Formula f) {
+      return delegate.evaluate(f);
+    }
+
+    @Override
+    public @Nullable BigInteger evaluate(IntegerFormula f) {
+      return delegate.evaluate(f);
+    }
+
+    @Override
+    public @Nullable Rational evaluate(RationalFormula f) {
+      return delegate.evaluate(f);
+    }
+
+    @Override
+    public @Nullable Boolean evaluate(BooleanFormula f) {
+      return delegate.evaluate(f);
+    }
+
+    @Override
+    public @Nullable BigInteger evaluate(BitvectorFormula f) {
+      return delegate.evaluate(f);
+    }
+
+    @Override
+    public List<Object> evaluateAll(Collection<? extends Formula> formulas) {
+      return delegate.evaluateAll(formulas);
+    }
+
+    @Override
+    public Iterator<ValueAssignment> iterator() {
+      return Iterators.filter(delegate.iterator(), assignment -> !isLiteral(assignment));
+    }
+
+    @Override
+    public Iterator<ValueAssignment> iteratorWithoutArrays() {
+      return Iterators.filter(
+          delegate.iteratorWithoutArrays(), assignment -> !isLiteral(assignment));
+    }
+
+    @Override
+    public ImmutableList<ValueAssignment> getAssignments(String name) {
+      if (name.startsWith(LITERAL_PREFIX)) {
+        return ImmutableList.of();
+      }
+      return delegate.getAssignments(name);
+    }
+
+    @Override
+    public String toString() {
+      return Joiner.on('\n').join(iterator());
+    }
+
+    @Override
+    public void close() {
+      delegate.close();
+    }
+  }
+}
@@ -0,0 +1,311 @@
+/*
+ *  JavaSMT is an API wrapper for a collection of SMT solvers.
+ *  This file is part of JavaSMT.
+ *
+ *  Copyright (C) 2007-2016  Dirk Beyer
+ *  All rights reserved.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.sosy_lab.java_smt.caching;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+import static com.google.common.base.Preconditions.checkState;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.hash.HashCode;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import javax.annotation.Nullable;
+import org.sosy_lab.java_smt.api.BooleanFormula;
+import org.sosy_lab.java_smt.api.Model;
+import org.sosy_lab.java_smt.api.Model.ValueAssignment;
+import org.sosy_lab.java_smt.api.ProverEnvironment;
+import org.sosy_lab.java_smt.api.SolverException;
+import org.sosy_lab.java_smt.caching.PersistentResultCache.CachedResult;
+
+/**
+ * Prover environment that answers satisfiability checks from a {@link PersistentResultCache} if
+ * possible.
+ *
+ * <p>All operations on the assertion stack are forwarded to the wrapped prover, such that the
+ * solver can be queried for a model after a cache hit. This is done lazily, i.e., the solver is
+ * only asked to check the query if a model is requested.
+ */
+class CachingProverEnvironment implements ProverEnvironment {
+
+  private final ProverEnvironment wrapped;
+  private final StructuralHasher hasher;
+  private final PersistentResultCache cache;
+  private final boolean withUnsatCores;
+
+  /** The asserted formulas, one list per level, the innermost level first. */
+  private final Deque<List<BooleanFormula>> assertedFormulas = new ArrayDeque<>();
+
+  /** The level of each retractable constraint, until it is retracted. */
+  private final Map<AssertionHandle, List<BooleanFormula>> retractableLevels =
+      new IdentityHashMap<>();
+
+  /** The formula of each retractable constraint, until it is retracted. */
+  private final Map<AssertionHandle, BooleanFormula> retractableFormulas =
+      new IdentityHashMap<>();
+
+  /** The assumptions of the last check that was answered from the cache, if any. */
+  private @Nullable Collection<BooleanFormula> pendingAssumptions = null;
+
+  /** Whether the last check was answered from the cache and not yet by the wrapped prover. */
+  private boolean pendingCheck = false;
+
+  /** The unsat core of the last check, if it was answered from the cache. */
+  private @Nullable List<BooleanFormula> cachedUnsatCore = null;
+
+  CachingProverEnvironment(
+      ProverEnvironment pWrapped,
+      StructuralHasher pHasher,
+      PersistentResultCache pCache,
+      boolean pWithUnsatCores) {
+    wrapped = checkNotNull(pWrapped);
+    hasher = checkNotNull(pHasher);
+    cache = checkNotNull(pCache);
+    withUnsatCores = pWithUnsatCores;
+    assertedFormulas.push(new ArrayList<>());
+  }
+
+  @Override
+  public void push() {
+    wrapped.push();
+    assertedFormulas.push(new ArrayList<>());
+    resetCheck();
+  }
+
+  @Override
+  public void pop() {
+    checkState(assertedFormulas.size() > 1, "cannot pop from empty stack");
+    wrapped.pop();
+    assertedFormulas.pop();
+    resetCheck();
+  }
+
+  @Override
+  @Nullable
+  public Void addConstraint(BooleanFormula constraint) throws InterruptedException {
+    wrapped.addConstraint(constraint);
+    assertedFormulas.peek().add(constraint);
+    resetCheck();
+    return null;
+  }
+
+  @Override
+  public AssertionHandle addRetractable(BooleanFormula constraint) throws InterruptedException {
+    AssertionHandle handle = wrapped.addRetractable(constraint);
+    assertedFormulas.peek().add(constraint);
+    retractableLevels.put(handle, assertedFormulas.peek());
+    retractableFormulas.put(handle, constraint);
+    resetCheck();
+    return handle;
+  }
+
+  @Override
+  public void retract(AssertionHandle handle) throws InterruptedException {
+    wrapped.retract(handle);
+    List<BooleanFormula> level = retractableLevels.remove(handle);
+    BooleanFormula constraint = retractableFormulas.remove(handle);
+    if (level != null) {
+      // If the level was already popped, this has no effect.
+      for (int i = 0; i < level.size(); i++) {
+        if (level.get(i) == constraint) {
+          level.remove(i);
+          break;
+        }
+      }
+    }
+    resetCheck();
+  }
+
+  @Override
+  public ProverEnvironment fork() throws InterruptedException {
+    CachingProverEnvironment fork =
+        new CachingProverEnvironment(wrapped.fork(), hasher, cache, withUnsatCores);
+    Map<List<BooleanFormula>, List<BooleanFormula>> copies = new IdentityHashMap<>();
+    fork.assertedFormulas.clear();
+    Iterator<List<BooleanFormula>> levels = assertedFormulas.descendingIterator();
+    while (levels.hasNext()) {
+      List<BooleanFormula> level = levels.next();
+      List<BooleanFormula> copy = new ArrayList<>(level);
+      copies.put(level, copy);
+      fork.assertedFormulas.push(copy);
+    }
+    for (Map.Entry<AssertionHandle, List<BooleanFormula>> entry : retractableLevels.entrySet()) {
+      List<BooleanFormula> copy = copies.get(entry.getValue());
+      if (copy != null) { // otherwise the level was already popped
+        fork.retractableLevels.put(entry.getKey(), copy);
+        fork.retractableFormulas.put(entry.getKey(), retractableFormulas.get(entry.getKey()));
+      }
+    }
+    return fork;
+  }
+
+  private void resetCheck() {
+    pendingCheck = false;
+    pendingAssumptions = null;
+    cachedUnsatCore = null;
+  }
+
+  /** All asserted formulas, in the order of assertion. */
+  private List<BooleanFormula> getAssertedFormulas() {
+    List<BooleanFormula> result = new ArrayList<>();
+    Iterator<List<BooleanFormula>> levels = assertedFormulas.descendingIterator();
+    while (levels.hasNext()) {
+      result.addAll(levels.next());
+    }
+    return result;
+  }
+
+  @Override
+  public boolean isUnsat() throws SolverException, InterruptedException {
+    resetCheck();
+    List<BooleanFormula> formulas = getAssertedFormulas();
+    HashCode key = hasher.hash(formulas, ImmutableList.of());
+    if (key == null) {
+      return wrapped.isUnsat();
+    }
+    CachedResult result = cache.get(key);
+    if (result != null) {
+      int[] core = result.getUnsatCore();
+      if (!withUnsatCores || !result.isUnsat()) {
+        pendingCheck = true;
+        return result.isUnsat();
+      } else if (core != null) {
+        ImmutableList.Builder<BooleanFormula> unsatCore = ImmutableList.builder();
+        for (int index : core) {
+          unsatCore.add(formulas.get(index));
+        }
+        cachedUnsatCore = unsatCore.build();
+        pendingCheck = true;
+        return true;
+      }
+      // the unsat core is missing, check again to get it
+    }
+
+    boolean unsat = wrapped.isUnsat();
+    cache.put(key, unsat, unsat && withUnsatCores ? getUnsatCoreIndices(formulas) : null);
+    return unsat;
+  }
+
+  /** Map the unsat core of the wrapped prover to indices of asserted formulas. */
+  private @Nullable int[] getUnsatCoreIndices(List<BooleanFormula> formulas) {
+    Map<BooleanFormula, Integer> indices = new HashMap<>();
+    for (int i = formulas.size() - 1; i >= 0; i--) {
+      indices.put(formulas.get(i), i);
+    }
+    List<BooleanFormula> core = wrapped.getUnsatCore();
+    int[] result = new int[core.size()];
+    for (int i = 0; i < result.length; i++) {
+      Integer index = indices.get(core.get(i));
+      if (index == null) {
+        // the solver returned something else than the asserted formulas
+        return null;
+      }
+      result[i] = index;
+    }
+    return result;
+  }
+
+  @Override
+  public boolean isUnsatWithAssumptions(Collection<BooleanFormula> assumptions)
+      throws SolverException, InterruptedException {
+    resetCheck();
+    if (withUnsatCores) {
+      // unsat cores over assumptions are not stored
+      return wrapped.isUnsatWithAssumptions(assumptions);
+    }
+    HashCode key = hasher.hash(getAssertedFormulas(), assumptions);
+    if (key == null) {
+      return wrapped.isUnsatWithAssumptions(assumptions);
+    }
+    CachedResult result = cache.get(key);
+    if (result != null) {
+      pendingCheck = true;
+      pendingAssumptions = ImmutableList.copyOf(assumptions);
+      return result.isUnsat();
+    }
+
+    boolean unsat = wrapped.isUnsatWithAssumptions(assumptions);
+    cache.put(key, unsat, null);
+    return unsat;
+  }
+
+  /** Let the wrapped prover check the query that was answered from the cache. */
+  private void checkPending() throws SolverException {
+    if (pendingCheck) {
+      try {
+        if (pendingAssumptions == null) {
+          wrapped.isUnsat();
+        } else {
+          wrapped.isUnsatWithAssumptions(pendingAssumptions);
+        }
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        throw new SolverException("Interrupted while checking a cached query", e);
+      }
+      resetCheck();
+    }
+  }
+
+  @Override
+  public Model getModel() throws SolverException {
+    checkPending();
+    return wrapped.getModel();
+  }
+
+  @Override
+  public ImmutableList<ValueAssignment> getModelAssignments() throws SolverException {
+    checkPending();
+    return wrapped.getModelAssignments();
+  }
+
+  @Override
+  public List<BooleanFormula> getUnsatCore() {
+    if (cachedUnsatCore != null) {
+      return cachedUnsatCore;
+    }
+    return wrapped.getUnsatCore();
+  }
+
+  @Override
+  public Optional<List<BooleanFormula>> unsatCoreOverAssumptions(
+      Collection<BooleanFormula> assumptions) throws SolverException, InterruptedException {
+    resetCheck();
+    return wrapped.unsatCoreOverAssumptions(assumptions);
+  }
+
+  @Override
+  public <R> R allSat(AllSatCallback<R> callback, List<BooleanFormula> important)
+      throws InterruptedException, SolverException {
+    resetCheck();
+    return wrapped.allSat(callback, important);
+  }
+
+  @Override
+  public void close() {
+    wrapped.close();
+  }
+}
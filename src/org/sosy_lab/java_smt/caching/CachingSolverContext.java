@@ -0,0 +1,174 @@
+/*
+ *  JavaSMT is an API wrapper for a collection of SMT solvers.
+ *  This file is part of JavaSMT.
+ *
+ *  Copyright (C) 2007-2016  Dirk Beyer
+ *  All rights reserved.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.sosy_lab.java_smt.caching;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.logging.Level;
+import org.sosy_lab.common.configuration.Configuration;
+import org.sosy_lab.common.configuration.FileOption;
+import org.sosy_lab.common.configuration.FileOption.Type;
+import org.sosy_lab.common.configuration.InvalidConfigurationException;
+import org.sosy_lab.common.configuration.Option;
+import org.sosy_lab.common.configuration.Options;
+import org.sosy_lab.common.log.LogManager;
+import org.sosy_lab.java_smt.SolverContextFactory.Solvers;
+import org.sosy_lab.java_smt.api.FormulaManager;
+import org.sosy_lab.java_smt.api.InterpolatingProverEnvironment;
+import org.sosy_lab.java_smt.api.OptimizationProverEnvironment;
+import org.sosy_lab.java_smt.api.ProverEnvironment;
+import org.sosy_lab.java_smt.api.SolverContext;
+
+/**
+ * {@link SolverContext} that wraps all prover environments such that the results of their
+ * satisfiability checks are stored in a file and reused in later runs.
+ *
+ * <p>Queries are identified by a structural hash of the asserted formulas that does not depend on
+ * the names of symbols, together with the name and version of the solver. Interpolating and
+ * optimizing prover environments are not cached.
+ */
+public final class CachingSolverContext implements SolverContext {
+
+  @Options(prefix = "solver.resultCache")
+  private static class CacheSettings {
+
+    @Option(secure = true, description = "File for storing the results of satisfiability checks.")
+    @FileOption(Type.OUTPUT_FILE)
+    private Path file = Paths.get("javasmt-results.cache");
+
+    @Option(
+        secure = true,
+        description =
+            "Maximal size of the result cache file in bytes. "
+                + "The space is reserved when the file is opened, "
+                + "and further results are not stored once the file is full.")
+    private int maxSize = 64 << 20;
+
+    @Option(secure = true, description = "Also store unsat cores in the result cache.")
+    private boolean storeUnsatCores = true;
+
+    private CacheSettings(Configuration config) throws InvalidConfigurationException {
+      config.inject(this);
+      if (maxSize < 1024) {
+        throw new InvalidConfigurationException(
+            "Option solver.resultCache.maxSize needs to be at least 1024, but is " + maxSize);
+      }
+    }
+  }
+
+  private final LogManager logger;
+  private final SolverContext delegate;
+  private final PersistentResultCache cache;
+  private final boolean storeUnsatCores;
+
+  private CachingSolverContext(
+      LogManager pLogger,
+      SolverContext pDelegate,
+      PersistentResultCache pCache,
+      boolean pStoreUnsatCores) {
+    logger = checkNotNull(pLogger);
+    delegate = checkNotNull(pDelegate);
+    cache = checkNotNull(pCache);
+    storeUnsatCores = pStoreUnsatCores;
+  }
+
+  public static CachingSolverContext create(
+      Configuration config, LogManager logger, SolverContext delegate)
+      throws InvalidConfigurationException {
+    CacheSettings settings = new CacheSettings(config);
+    PersistentResultCache cache;
+    try {
+      cache = PersistentResultCache.open(settings.file, settings.maxSize);
+    } catch (IOException e) {
+      throw new InvalidConfigurationException(
+          "Cannot open result cache " + settings.file + ": " + e.getMessage(), e);
+    }
+    logger.log(Level.FINE, "Loaded", cache.size(), "results from", settings.file);
+    return new CachingSolverContext(logger, delegate, cache, settings.storeUnsatCores);
+  }
+
+  @Override
+  public FormulaManager getFormulaManager() {
+    return delegate.getFormulaManager();
+  }
+
+  @Override
+  public ProverEnvironment newProverEnvironment(ProverOptions... pOptions) {
+    StructuralHasher hasher =
+        new StructuralHasher(
+            delegate.getFormulaManager(), delegate.getSolverName() + " " + delegate.getVersion());
+    boolean withUnsatCores = false;
+    for (ProverOptions option : pOptions) {
+      withUnsatCores |= option == ProverOptions.GENERATE_UNSAT_CORE;
+    }
+    return new CachingProverEnvironment(
+        delegate.newProverEnvironment(pOptions),
+        hasher,
+        cache,
+        withUnsatCores && storeUnsatCores);
+  }
+
+  @Override
+  public InterpolatingProverEnvironment<?> newProverEnvironmentWithInterpolation(
+      ProverOptions... options) {
+    return delegate.newProverEnvironmentWithInterpolation(options);
+  }
+
+  @Override
+  public OptimizationProverEnvironment newOptimizationProverEnvironment(ProverOptions... options) {
+    return delegate.newOptimizationProverEnvironment(options);
+  }
+
+  @Override
+  public String getVersion() {
+    return delegate.getVersion();
+  }
+
+  @Override
+  public Solvers getSolverName() {
+    return delegate.getSolverName();
+  }
+
+  @Override
+  public void close() {
+    logger.log(
+        Level.FINE,
+        "Result cache:",
+        cache.getHits(),
+        "hits,",
+        cache.getMisses(),
+        "misses,",
+        cache.size(),
+        "entries");
+    if (cache.isFull()) {
+      logger.log(Level.INFO, "Result cache file is full, some results were not stored.");
+    }
+    try {
+      cache.close();
+    } catch (IOException e) {
+      logger.logUserException(Level.WARNING, e, "Could not write result cache");
+    } finally {
+      delegate.close();
+    }
+  }
+}
@@ -0,0 +1,253 @@
+/*
+ *  JavaSMT is an API wrapper for a collection of SMT solvers.
+ *  This file is part of JavaSMT.
+ *
+ *  Copyright (C) 2007-2016  Dirk Beyer
+ *  All rights reserved.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.sosy_lab.java_smt.caching;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkState;
+
+import com.google.common.hash.HashCode;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.zip.CRC32;
+import javax.annotation.Nullable;
+
+/**
+ * Persistent map from query keys to results of satisfiability checks, backed by a memory-mapped
+ * append-only file.
+ *
+ * <p>The file starts with a header, followed by a sequence of records. Each record consists of the
+ * length of its payload, the payload itself, and a CRC32 checksum of the payload. New records are
+ * written behind the last valid record, with the length written last. If the process crashes while
+ * writing a record, the record is incomplete or its checksum does not match, and it is discarded
+ * (together with everything behind it) when the file is loaded the next time. Older records are
+ * never modified.
+ *
+ * <p>The file is mapped with its maximal size, which is reserved on disk up-front (as a sparse
+ * file on most file systems). Once it is full, new results are dropped, such that the in-memory
+ * map never holds more entries than the file. A cache file must not be used by several contexts or
+ * processes at the same time.
+ */
+final class PersistentResultCache implements AutoCloseable {
+
+  /** The result of a satisfiability check, optionally with an unsat core. */
+  static final class CachedResult {
+    private final boolean unsat;
+    private final @Nullable int[] unsatCore;
+
+    private CachedResult(boolean pUnsat, @Nullable int[] pUnsatCore) {
+      unsat = pUnsat;
+      unsatCore = pUnsatCore;
+    }
+
+    boolean isUnsat() {
+      return unsat;
+    }
+
+    /** Indices of the asserted formulas that form the unsat core, if one was stored. */
+    @Nullable
+    int[] getUnsatCore() {
+      return unsatCore;
+    }
+  }
+
+  private static final long MAGIC = 0x4A534D5452455331L; // "JSMTRES1"
+  private static final int HEADER_SIZE = Long.BYTES;
+  private static final int KEY_SIZE = 32; // size of a SHA-256 hash
+  private static final int NO_CORE = -1;
+
+  private final FileChannel channel;
+  private final MappedByteBuffer buffer;
+  private final Map<HashCode, CachedResult> results = new HashMap<>();
+
+  /** Position behind the last valid record. */
+  private int end;
+
+  private boolean full = false;
+  private boolean closed = false;
+
+  private int hits = 0;
+  private int misses = 0;
+
+  private PersistentResultCache(FileChannel pChannel, MappedByteBuffer pBuffer) {
+    channel = pChannel;
+    buffer = pBuffer;
+  }
+
+  /**
+   * Open the cache file, or create it if it does not exist.
+   *
+   * @param pFile the file to open
+   * @param pMaxSize the maximal size of the file in bytes
+   * @throws IOException if the file can not be opened or is not a cache file
+   */
+  static PersistentResultCache open(Path pFile, int pMaxSize) throws IOException {
+    checkArgument(pMaxSize > HEADER_SIZE, "size of cache file is too small: %s", pMaxSize);
+    FileChannel channel =
+        FileChannel.open(
+            pFile, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+    try {
+      long oldSize = channel.size();
+      if (oldSize > 0 && oldSize < HEADER_SIZE) {
+        throw new IOException("File " + pFile + " is not a result cache");
+      }
+      long size = Math.min(Math.max(oldSize, pMaxSize), Integer.MAX_VALUE);
+      MappedByteBuffer buffer = channel.map(MapMode.READ_WRITE, 0, size);
+      PersistentResultCache cache = new PersistentResultCache(channel, buffer);
+      if (oldSize == 0) {
+        buffer.putLong(0, MAGIC);
+        cache.end = HEADER_SIZE;
+      } else if (buffer.getLong(0) == MAGIC) {
+        cache.load();
+      } else {
+        throw new IOException("File " + pFile + " is not a result cache");
+      }
+      return cache;
+    } catch (IOException | RuntimeException e) {
+      channel.close();
+      throw e;
+    }
+  }
+
+  /** Read all valid records, and stop at the first invalid one. */
+  private void load() {
+    int pos = HEADER_SIZE;
+    while (pos + 2 * Integer.BYTES <= buffer.capacity()) {
+      int length = buffer.getInt(pos);
+      if (length < KEY_SIZE + 1 + Integer.BYTES
+          || length > buffer.capacity() - pos - 2 * Integer.BYTES) {
+        break;
+      }
+      byte[] payload = new byte[length];
+      buffer.position(pos + Integer.BYTES);
+      buffer.get(payload);
+      if (buffer.getInt() != checksum(payload)) {
+        break;
+      }
+      readPayload(payload);
+      pos += length + 2 * Integer.BYTES;
+    }
+    end = pos;
+  }
+
+  private void readPayload(byte[] payload) {
+    ByteBuffer in = ByteBuffer.wrap(payload);
+    byte[] key = new byte[KEY_SIZE];
+    in.get(key);
+    boolean unsat = in.get() != 0;
+    int coreSize = in.getInt();
+    int[] core = null;
+    if (coreSize != NO_CORE) {
+      core = new int[coreSize];
+      for (int i = 0; i < coreSize; i++) {
+        core[i] = in.getInt();
+      }
+    }
+    results.put(HashCode.fromBytes(key), new CachedResult(unsat, core));
+  }
+
+  /** Return the stored result for the given key, or {@code null}. */
+  @Nullable
+  CachedResult get(HashCode pKey) {
+    checkState(!closed);
+    CachedResult result = results.get(pKey);
+    if (result == null) {
+      misses++;
+    } else {
+      hits++;
+    }
+    return result;
+  }
+
+  /**
+   * Store the result for the given key and append it to the file, if there is enough space left in
+   * the file. Otherwise the result is dropped.
+   *
+   * @param pUnsatCore indices of the asserted formulas that form an unsat core, or {@code null}
+   */
+  void put(HashCode pKey, boolean pUnsat, @Nullable int[] pUnsatCore) {
+    checkState(!closed);
+    checkArgument(pKey.bits() == KEY_SIZE * Byte.SIZE);
+
+    int coreSize = pUnsatCore == null ? 0 : pUnsatCore.length;
+    int length = KEY_SIZE + 1 + Integer.BYTES * (1 + coreSize);
+    if (full || (long) end + length + 2 * Integer.BYTES > buffer.capacity()) {
+      full = true;
+      return;
+    }
+    results.put(pKey, new CachedResult(pUnsat, pUnsatCore));
+
+    ByteBuffer payload = ByteBuffer.allocate(length);
+    payload.put(pKey.asBytes());
+    payload.put((byte) (pUnsat ? 1 : 0));
+    payload.putInt(pUnsatCore == null ? NO_CORE : coreSize);
+    for (int i = 0; i < coreSize; i++) {
+      payload.putInt(pUnsatCore[i]);
+    }
+
+    // the record becomes valid only after its length is written
+    buffer.position(end + Integer.BYTES);
+    buffer.put(payload.array());
+    buffer.putInt(checksum(payload.array()));
+    buffer.putInt(end, length);
+    end += length + 2 * Integer.BYTES;
+  }
+
+  /** Whether results were dropped because the maximal size of the file was reached. */
+  boolean isFull() {
+    return full;
+  }
+
+  int size() {
+    return results.size();
+  }
+
+  int getHits() {
+    return hits;
+  }
+
+  int getMisses() {
+    return misses;
+  }
+
+  private static int checksum(byte[] data) {
+    CRC32 crc = new CRC32();
+    crc.update(data, 0, data.length);
+    return (int) crc.getValue();
+  }
+
+  @Override
+  public void close() throws IOException {
+    if (!closed) {
+      closed = true;
+      try {
+        buffer.force();
+      } finally {
+        channel.close();
+      }
+    }
+  }
+}
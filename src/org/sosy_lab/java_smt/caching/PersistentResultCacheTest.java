@@ -0,0 +1,118 @@
+/*
+ *  JavaSMT is an API wrapper for a collection of SMT solvers.
+ *  This file is part of JavaSMT.
+ *
+ *  Copyright (C) 2007-2016  Dirk Beyer
+ *  All rights reserved.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.sosy_lab.java_smt.caching;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import com.google.common.hash.HashCode;
+import com.google.common.hash.Hashing;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.sosy_lab.java_smt.caching.PersistentResultCache.CachedResult;
+
+public class PersistentResultCacheTest {
+
+  @Rule public final TemporaryFolder folder = new TemporaryFolder();
+
+  private static HashCode key(int i) {
+    return Hashing.sha256().hashInt(i);
+  }
+
+  @Test
+  public void resultsArePersisted() throws IOException {
+    Path file = folder.newFile().toPath();
+    try (PersistentResultCache cache = PersistentResultCache.open(file, 4096)) {
+      cache.put(key(1), true, new int[] {0, 2});
+      cache.put(key(2), false, null);
+    }
+
+    try (PersistentResultCache cache = PersistentResultCache.open(file, 4096)) {
+      assertThat(cache.size()).isEqualTo(2);
+      CachedResult first = cache.get(key(1));
+      assertThat(first.isUnsat()).isTrue();
+      assertThat(first.getUnsatCore()).asList().containsExactly(0, 2).inOrder();
+      CachedResult second = cache.get(key(2));
+      assertThat(second.isUnsat()).isFalse();
+      assertThat(second.getUnsatCore()).isNull();
+      assertThat(cache.get(key(3))).isNull();
+    }
+  }
+
+  @Test
+  public void corruptRecordIsDiscarded() throws IOException {
+    Path file = folder.newFile().toPath();
+    try (PersistentResultCache cache = PersistentResultCache.open(file, 4096)) {
+      cache.put(key(1), true, null);
+      cache.put(key(2), false, null);
+    }
+
+    // simulate a torn write of the second record: header (8), first record (4+37+4), length (4)
+    try (RandomAccessFile raf = new RandomAccessFile(file.toFile(), "rw")) {
+      raf.seek(8 + 45 + 4 + 10);
+      raf.writeByte(0xFF);
+    }
+
+    try (PersistentResultCache cache = PersistentResultCache.open(file, 4096)) {
+      assertThat(cache.size()).isEqualTo(1);
+      assertThat(cache.get(key(1)).isUnsat()).isTrue();
+
+      // new records overwrite the corrupt one
+      cache.put(key(3), false, null);
+    }
+
+    try (PersistentResultCache cache = PersistentResultCache.open(file, 4096)) {
+      assertThat(cache.size()).isEqualTo(2);
+      assertThat(cache.get(key(3))).isNotNull();
+    }
+  }
+
+  @Test
+  public void sizeIsLimited() throws IOException {
+    Path file = folder.newFile().toPath();
+    try (PersistentResultCache cache = PersistentResultCache.open(file, 1024)) {
+      for (int i = 0; i < 100; i++) {
+        cache.put(key(i), false, null);
+      }
+      assertThat(cache.isFull()).isTrue();
+      // 1016 bytes for records of 45 bytes each, the remaining results are dropped
+      assertThat(cache.size()).isEqualTo(22);
+      assertThat(cache.get(key(21))).isNotNull();
+      assertThat(cache.get(key(22))).isNull();
+    }
+    assertThat(file.toFile().length()).isEqualTo(1024);
+
+    try (PersistentResultCache cache = PersistentResultCache.open(file, 1024)) {
+      assertThat(cache.size()).isEqualTo(22);
+    }
+  }
+
+  @Test(expected = IOException.class)
+  public void otherFileIsRejected() throws IOException {
+    Path file = folder.newFile().toPath();
+    Files.write(file, "not a cache file".getBytes(StandardCharsets.UTF_8));
+    PersistentResultCache.open(file, 1024).close();
+  }
+}
@@ -0,0 +1,250 @@
+/*
+ *  JavaSMT is an API wrapper for a collection of SMT solvers.
+ *  This file is part of JavaSMT.
+ *
+ *  Copyright (C) 2007-2016  Dirk Beyer
+ *  All rights reserved.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.sosy_lab.java_smt.caching;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.hash.HashCode;
+import com.google.common.hash.HashFunction;
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
+import java.util.ArrayDeque;
+import java.util.Collection;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import javax.annotation.Nullable;
+import org.sosy_lab.java_smt.api.BooleanFormula;
+import org.sosy_lab.java_smt.api.Formula;
+import org.sosy_lab.java_smt.api.FormulaManager;
+import org.sosy_lab.java_smt.api.FunctionDeclaration;
+import org.sosy_lab.java_smt.api.FunctionDeclarationKind;
+import org.sosy_lab.java_smt.api.QuantifiedFormulaManager.Quantifier;
+import org.sosy_lab.java_smt.api.visitors.FormulaVisitor;
+import org.sosy_lab.java_smt.api.visitors.TraversalProcess;
+
+/**
+ * Computes a hash of a query that is independent of the names of its symbols.
+ *
+ * <p>Variables and uninterpreted functions are renamed by the position of their first occurrence,
+ * such that two queries that only differ in the names of their symbols get the same hash. Such
+ * queries are equisatisfiable, and their asserted formulas correspond one-to-one in the given
+ * order, such that an unsat core can also be stored as a list of indices.
+ *
+ * <p>Queries with operators whose parameters are not visible to a {@link FormulaVisitor} (bitvector
+ * extraction and {@link FunctionDeclarationKind#OTHER}) are not hashed at all, because different
+ * queries like {@code extract[7:0](x)} and {@code extract[15:8](x)} would get the same hash.
+ */
+final class StructuralHasher {
+
+  private static final int VARIABLE = 0;
+  private static final int BOUND_VARIABLE = 1;
+  private static final int CONSTANT = 2;
+  private static final int FUNCTION = 3;
+  private static final int UF = 4;
+  private static final int QUANTIFIER = 5;
+
+  /** Hash function for the sub-terms, fast and with a low probability of collisions. */
+  private static final HashFunction NODE_HASH = Hashing.murmur3_128();
+
+  /** Hash function for the key of a query, which is persisted across runs. */
+  private static final HashFunction KEY_HASH = Hashing.sha256();
+
+  private final FormulaManager fmgr;
+  private final String solverKey;
+
+  StructuralHasher(FormulaManager pFmgr, String pSolverKey) {
+    fmgr = checkNotNull(pFmgr);
+    solverKey = checkNotNull(pSolverKey);
+  }
+
+  /**
+   * Compute the key for checking the conjunction of the given formulas (in this order) together
+   * with the given assumptions.
+   *
+   * @return the key, or null if the query cannot be hashed reliably and must not be cached.
+   */
+  @Nullable
+  HashCode hash(List<BooleanFormula> pFormulas, Collection<BooleanFormula> pAssumptions) {
+    Computation computation = new Computation();
+    Hasher hasher = KEY_HASH.newHasher();
+    hasher.putString(solverKey, UTF_8);
+    hasher.putInt(pFormulas.size());
+    for (BooleanFormula f : pFormulas) {
+      HashCode hash = computation.hash(f);
+      if (hash == null) {
+        return null;
+      }
+      hasher.putBytes(hash.asBytes());
+    }
+    hasher.putInt(pAssumptions.size());
+    for (BooleanFormula f : pAssumptions) {
+      HashCode hash = computation.hash(f);
+      if (hash == null) {
+        return null;
+      }
+      hasher.putBytes(hash.asBytes());
+    }
+    return hasher.hash();
+  }
+
+  /** Information about one distinct sub-term, as obtained from the visitor. */
+  private static final class Node {
+    private final int tag;
+    private final String type;
+    private final String label;
+    private final ImmutableList<Formula> args;
+
+    private Node(int pTag, String pType, String pLabel, ImmutableList<Formula> pArgs) {
+      tag = pTag;
+      type = pType;
+      label = pLabel;
+      args = pArgs;
+    }
+  }
+
+  /** The state for hashing the formulas of one query. */
+  private class Computation implements FormulaVisitor<TraversalProcess> {
+
+    private final Map<Formula, Node> nodes = new HashMap<>();
+    private final Map<Formula, HashCode> hashes = new HashMap<>();
+
+    /** Indices of the symbols, in the order of their first occurrence. */
+    private final Map<String, Integer> symbols = new HashMap<>();
+
+    /** Whether an operator was found whose parameters are not visible to the visitor. */
+    private boolean unhashable = false;
+
+    private @Nullable HashCode hash(Formula root) {
+      if (!hashes.containsKey(root)) {
+        fmgr.visitRecursively(root, this);
+      }
+      if (unhashable) {
+        return null;
+      }
+
+      // post-order traversal over the collected nodes, without recursion
+      Deque<Formula> waitlist = new ArrayDeque<>();
+      waitlist.push(root);
+      while (!waitlist.isEmpty()) {
+        Formula f = waitlist.peek();
+        if (hashes.containsKey(f)) {
+          waitlist.pop();
+          continue;
+        }
+        Node node = checkNotNull(nodes.get(f));
+        boolean argsDone = true;
+        // push in reverse order, such that symbols are numbered from left to right
+        for (Formula arg : node.args.reverse()) {
+          if (!hashes.containsKey(arg)) {
+            argsDone = false;
+            waitlist.push(arg);
+          }
+        }
+        if (argsDone) {
+          waitlist.pop();
+          hashes.put(f, hashNode(node));
+        }
+      }
+      return hashes.get(root);
+    }
+
+    private HashCode hashNode(Node node) {
+      Hasher hasher = NODE_HASH.newHasher();
+      hasher.putInt(node.tag);
+      hasher.putString(node.type, UTF_8);
+      if (node.tag == VARIABLE || node.tag == UF) {
+        hasher.putInt(symbolIndex(node.tag + node.label));
+      } else {
+        hasher.putString(node.label, UTF_8);
+      }
+      hasher.putInt(node.args.size());
+      for (Formula arg : node.args) {
+        hasher.putBytes(hashes.get(arg).asBytes());
+      }
+      return hasher.hash();
+    }
+
+    private int symbolIndex(String symbol) {
+      Integer index = symbols.get(symbol);
+      if (index == null) {
+        index = symbols.size();
+        symbols.put(symbol, index);
+      }
+      return index;
+    }
+
+    private TraversalProcess add(Formula f, int tag, String label, ImmutableList<Formula> args) {
+      if (hashes.containsKey(f)) {
+        // already hashed for a previous formula of the same query
+        return TraversalProcess.SKIP;
+      }
+      nodes.put(f, new Node(tag, fmgr.getFormulaType(f).toString(), label, args));
+      return TraversalProcess.CONTINUE;
+    }
+
+    @Override
+    public TraversalProcess visitFreeVariable(Formula f, String name) {
+      return add(f, VARIABLE, name, ImmutableList.of());
+    }
+
+    @Override
+    public TraversalProcess visitBoundVariable(Formula f, int deBruijnIdx) {
+      return add(f, BOUND_VARIABLE, Integer.toString(deBruijnIdx), ImmutableList.of());
+    }
+
+    @Override
+    public TraversalProcess visitConstant(Formula f, Object value) {
+      return add(f, CONSTANT, value.toString(), ImmutableList.of());
+    }
+
+    @Override
+    public TraversalProcess visitFunction(
+        Formula f, List<Formula> args, FunctionDeclaration<?> functionDeclaration) {
+      FunctionDeclarationKind kind = functionDeclaration.getKind();
+      if (kind == FunctionDeclarationKind.UF) {
+        return add(f, UF, functionDeclaration.getName(), ImmutableList.copyOf(args));
+      }
+      if (kind == FunctionDeclarationKind.BV_EXTRACT || kind == FunctionDeclarationKind.OTHER) {
+        // the indices of such operators are not part of the name or the arguments
+        unhashable = true;
+        return TraversalProcess.ABORT;
+      }
+      String label = kind + " " + functionDeclaration.getName();
+      return add(f, FUNCTION, label, ImmutableList.copyOf(args));
+    }
+
+    @Override
+    public TraversalProcess visitQuantifier(
+        BooleanFormula f,
+        Quantifier quantifier,
+        List<Formula> boundVariables,
+        BooleanFormula body) {
+      StringBuilder label = new StringBuilder(quantifier.toString());
+      for (Formula var : boundVariables) {
+        label.append(' ').append(fmgr.getFormulaType(var));
+      }
+      return add(f, QUANTIFIER, label.toString(), ImmutableList.of(body));
+    }
+  }
+}
@@ -0,0 +1,138 @@
+/*
+ *  JavaSMT is an API wrapper for a collection of SMT solvers.
+ *  This file is part of JavaSMT.
+ *
+ *  Copyright (C) 2007-2016  Dirk Beyer
+ *  All rights reserved.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.sosy_lab.java_smt.concurrent;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import java.util.function.Supplier;
+import org.sosy_lab.common.time.TimeSpan;
+import org.sosy_lab.java_smt.SolverContextFactory.Solvers;
+import org.sosy_lab.java_smt.api.FormulaManager;
+import org.sosy_lab.java_smt.api.InterpolatingProverEnvironment;
+import org.sosy_lab.java_smt.api.OptimizationProverEnvironment;
+import org.sosy_lab.java_smt.api.ProverEnvironment;
+import org.sosy_lab.java_smt.api.SolverContext;
+import org.sosy_lab.java_smt.concurrent.LockingInvocationHandler.ContextLock;
+
+/**
+ * {@link SolverContext} that can be shared between several threads.
+ *
+ * <p>The native solvers do not allow concurrent access to a single context, thus all calls that
+ * reach the wrapped context (formula creation, prover operations, model evaluation) are serialized
+ * by one lock. Prover environments and models created through this context should still be used by
+ * only one thread at a time, as their state (e.g., the assertion stack) is not shared. Statistics
+ * about the contention on the lock are available via {@link #getLockAcquisitions()}, {@link
+ * #getContendedAcquisitions()}, and {@link #getLockWaitTime()}.
+ *
+ * <p>Which calls really need to be serialized depends on the solver:
+ *
+ * <ul>
+ *   <li>Z3: a context must not be used by several threads at the same time, including checks of
+ *       its solvers, thus all calls hold the lock.
+ *   <li>MathSAT5: the environments of the prover environments share the term manager of the
+ *       context, thus all calls hold the lock.
+ *   <li>SMTInterpol: each prover environment has its own solver instance, but all instances
+ *       share the term factory of the context, which is not thread-safe, thus all calls hold the
+ *       lock.
+ *   <li>Princess: formulas are immutable and each prover environment has its own prover, thus the
+ *       native part of a satisfiability check runs without the lock. Symbols that are declared in
+ *       the meantime are added to the checking prover afterwards. All other calls hold the lock.
+ * </ul>
+ *
+ * <p>The string representation of formulas is computed without the lock and should not be
+ * requested concurrently to other operations.
+ */
+public final class ConcurrentSolverContext implements SolverContext {
+
+  private final SolverContext delegate;
+  private final ContextLock lock;
+  private final FormulaManager fmgr;
+
+  public ConcurrentSolverContext(SolverContext pDelegate) {
+    delegate = checkNotNull(pDelegate);
+    lock = new ContextLock(delegate.getSolverName() == Solvers.PRINCESS);
+    fmgr = LockingInvocationHandler.wrap(lock, FormulaManager.class, delegate.getFormulaManager());
+  }
+
+  @Override
+  public FormulaManager getFormulaManager() {
+    return fmgr;
+  }
+
+  @Override
+  public ProverEnvironment newProverEnvironment(ProverOptions... pOptions) {
+    ProverEnvironment prover = withLock(() -> delegate.newProverEnvironment(pOptions));
+    return LockingInvocationHandler.wrap(lock, ProverEnvironment.class, prover);
+  }
+
+  @Override
+  public InterpolatingProverEnvironment<?> newProverEnvironmentWithInterpolation(
+      ProverOptions... pOptions) {
+    InterpolatingProverEnvironment<?> prover =
+        withLock(() -> delegate.newProverEnvironmentWithInterpolation(pOptions));
+    return LockingInvocationHandler.wrap(lock, InterpolatingProverEnvironment.class, prover);
+  }
+
+  @Override
+  public OptimizationProverEnvironment newOptimizationProverEnvironment(
+      ProverOptions... pOptions) {
+    OptimizationProverEnvironment prover =
+        withLock(() -> delegate.newOptimizationProverEnvironment(pOptions));
+    return LockingInvocationHandler.wrap(lock, OptimizationProverEnvironment.class, prover);
+  }
+
+  private <T> T withLock(Supplier<T> action) {
+    return LockingInvocationHandler.callWithLock(lock, action);
+  }
+
+  /** Number of times that the lock of this context was acquired. */
+  public long getLockAcquisitions() {
+    return lock.getAcquisitions();
+  }
+
+  /** Number of times that a thread had to wait for the lock of this context. */
+  public long getContendedAcquisitions() {
+    return lock.getContendedAcquisitions();
+  }
+
+  /** Total time that threads spent waiting for the lock of this context. */
+  public TimeSpan getLockWaitTime() {
+    return lock.getWaitTime();
+  }
+
+  @Override
+  public String getVersion() {
+    return delegate.getVersion();
+  }
+
+  @Override
+  public Solvers getSolverName() {
+    return delegate.getSolverName();
+  }
+
+  @Override
+  public void close() {
+    withLock(
+        () -> {
+          delegate.close();
+          return null;
+        });
+  }
+}
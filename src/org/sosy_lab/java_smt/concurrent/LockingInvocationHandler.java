@@ -0,0 +1,246 @@
+/*
+ *  JavaSMT is an API wrapper for a collection of SMT solvers.
+ *  This file is part of JavaSMT.
+ *
+ *  Copyright (C) 2007-2016  Dirk Beyer
+ *  All rights reserved.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.sosy_lab.java_smt.concurrent;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.Collection;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.BiConsumer;
+import java.util.function.BinaryOperator;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import java.util.stream.Collector;
+import javax.annotation.Nullable;
+import org.sosy_lab.common.Appender;
+import org.sosy_lab.common.time.TimeSpan;
+import org.sosy_lab.java_smt.api.BasicProverEnvironment;
+import org.sosy_lab.java_smt.api.FormulaManager;
+import org.sosy_lab.java_smt.api.Model;
+import org.sosy_lab.java_smt.api.Model.ValueAssignment;
+import org.sosy_lab.java_smt.basicimpl.ContextLockRelease;
+
+/**
+ * Forwards all calls of an interface to an object of the solver context while holding the lock of
+ * the context. Returned managers, prover environments, models, iterators, appenders and collectors
+ * are wrapped in the same way, such that everything that can reach the native solver goes through
+ * the lock. The formulas of returned value assignments are created eagerly while holding the lock.
+ *
+ * <p>If the solver allows it, satisfiability checks of prover environments may release the lock
+ * while the native check is running, see {@link ContextLockRelease}.
+ */
+final class LockingInvocationHandler implements InvocationHandler {
+
+  /** The lock of one solver context, with its contention statistics. */
+  static final class ContextLock {
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final LongAdder acquisitions = new LongAdder();
+    private final LongAdder contended = new LongAdder();
+    private final LongAdder waitNanos = new LongAdder();
+
+    /** Proxies of the formula managers, which are created only once. Guarded by the lock. */
+    private final Map<Object, Object> managerProxies = new IdentityHashMap<>();
+
+    /** Whether the solver may release the lock during satisfiability checks. */
+    private final boolean releasableDuringChecks;
+
+    ContextLock(boolean pReleasableDuringChecks) {
+      releasableDuringChecks = pReleasableDuringChecks;
+    }
+
+    private void lock() {
+      if (!lock.tryLock()) {
+        contended.increment();
+        long start = System.nanoTime();
+        lock.lock();
+        waitNanos.add(System.nanoTime() - start);
+      }
+      acquisitions.increment();
+    }
+
+    private void unlock() {
+      lock.unlock();
+    }
+
+    long getAcquisitions() {
+      return acquisitions.sum();
+    }
+
+    long getContendedAcquisitions() {
+      return contended.sum();
+    }
+
+    TimeSpan getWaitTime() {
+      return TimeSpan.ofNanos(waitNanos.sum());
+    }
+  }
+
+  private final ContextLock contextLock;
+  private final Object target;
+
+  private LockingInvocationHandler(ContextLock pContextLock, Object pTarget) {
+    contextLock = checkNotNull(pContextLock);
+    target = checkNotNull(pTarget);
+  }
+
+  /** Create a proxy for the given interface that forwards to the target under the lock. */
+  static <T> T wrap(ContextLock pLock, Class<T> pInterface, T pTarget) {
+    Object proxy =
+        Proxy.newProxyInstance(
+            pInterface.getClassLoader(),
+            new Class<?>[] {pInterface},
+            new LockingInvocationHandler(pLock, pTarget));
+    return pInterface.cast(proxy);
+  }
+
+  /** Compute a value while holding the lock. */
+  static <T> T callWithLock(ContextLock pLock, Supplier<T> pAction) {
+    pLock.lock();
+    try {
+      return pAction.get();
+    } finally {
+      pLock.unlock();
+    }
+  }
+
+  /** Whether values of the given type can reach the solver and need to be wrapped. */
+  private boolean needsWrapping(Class<?> type) {
+    return isManager(type)
+        || BasicProverEnvironment.class.isAssignableFrom(type)
+        || Model.class.equals(type)
+        || Iterator.class.equals(type)
+        || Appender.class.equals(type)
+        || Collector.class.equals(type)
+        || (target instanceof Collector && isCollectorFunction(type));
+  }
+
+  /** The functions of a collector, e.g., its finisher, which creates the formula. */
+  private static boolean isCollectorFunction(Class<?> type) {
+    return Supplier.class.equals(type)
+        || BiConsumer.class.equals(type)
+        || BinaryOperator.class.equals(type)
+        || Function.class.equals(type);
+  }
+
+  private static boolean isManager(Class<?> type) {
+    return type.isInterface()
+        && type.getPackage().equals(FormulaManager.class.getPackage())
+        && type.getSimpleName().endsWith("Manager");
+  }
+
+  @Override
+  public @Nullable Object invoke(Object proxy, Method method, @Nullable Object[] args)
+      throws Throwable {
+    if (method.getDeclaringClass().equals(Object.class)) {
+      switch (method.getName()) {
+        case "equals":
+          return args != null && args[0] == proxy;
+        case "hashCode":
+          return System.identityHashCode(proxy);
+        default:
+          break;
+      }
+    }
+    if (args != null) {
+      unwrapArguments(args);
+    }
+
+    boolean releasable = contextLock.releasableDuringChecks && isCheck(method);
+    contextLock.lock();
+    ReentrantLock previous =
+        releasable ? ContextLockRelease.setReleasableLock(contextLock.lock) : null;
+    try {
+      Object result = method.invoke(target, args);
+      if (result == null || !needsWrapping(method.getReturnType())) {
+        createAssignmentFormulas(result);
+        return result;
+      }
+      return wrapResult(method.getReturnType(), result);
+    } catch (InvocationTargetException e) {
+      throw e.getCause();
+    } finally {
+      if (releasable) {
+        ContextLockRelease.setReleasableLock(previous);
+      }
+      contextLock.unlock();
+    }
+  }
+
+  /** Whether the method is a satisfiability check of a prover environment. */
+  private boolean isCheck(Method method) {
+    return target instanceof BasicProverEnvironment && method.getName().startsWith("isUnsat");
+  }
+
+  /**
+   * The formulas of value assignments are created lazily by the solver, thus they are created here
+   * while the lock is held.
+   */
+  private void createAssignmentFormulas(@Nullable Object result) {
+    if (result instanceof ValueAssignment) {
+      ((ValueAssignment) result).getAssignmentAsFormula();
+    } else if (result instanceof Collection
+        && (target instanceof Model || target instanceof BasicProverEnvironment)) {
+      for (Object element : (Collection<?>) result) {
+        if (element instanceof ValueAssignment) {
+          ((ValueAssignment) element).getAssignmentAsFormula();
+        }
+      }
+    }
+  }
+
+  /** Replace proxies of this package by their targets, e.g., for translating formulas. */
+  private static void unwrapArguments(Object[] args) {
+    for (int i = 0; i < args.length; i++) {
+      Object arg = args[i];
+      if (arg != null && Proxy.isProxyClass(arg.getClass())) {
+        InvocationHandler handler = Proxy.getInvocationHandler(arg);
+        if (handler instanceof LockingInvocationHandler) {
+          args[i] = ((LockingInvocationHandler) handler).target;
+        }
+      }
+    }
+  }
+
+  private Object wrapResult(Class<?> type, Object result) {
+    if (!isManager(type)) {
+      return wrapUnchecked(type, result);
+    }
+    Object wrapped = contextLock.managerProxies.get(result);
+    if (wrapped == null) {
+      wrapped = wrapUnchecked(type, result);
+      contextLock.managerProxies.put(result, wrapped);
+    }
+    return wrapped;
+  }
+
+  @SuppressWarnings("unchecked")
+  private <T> T wrapUnchecked(Class<T> type, Object result) {
+    return wrap(contextLock, type, (T) result);
+  }
+}
@@ -19,14 +19,39 @@
  */
 package org.sosy_lab.java_smt.logging;
 
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import java.util.logging.Level;
 import org.sosy_lab.common.log.LogManager;
+import org.sosy_lab.java_smt.api.BooleanFormula;
 import org.sosy_lab.java_smt.api.ProverEnvironment;
 
 /** Wraps a prover environment with a logging object. */
 class LoggingProverEnvironment extends LoggingBasicProverEnvironment<Void>
     implements ProverEnvironment {
 
+  private final ProverEnvironment wrapped;
+
   LoggingProverEnvironment(LogManager logger, ProverEnvironment pe) {
     super(pe, logger);
+    this.wrapped = checkNotNull(pe);
+  }
+
+  @Override
+  public AssertionHandle addRetractable(BooleanFormula constraint) throws InterruptedException {
+    logger.log(Level.FINE, "retractable formula added:", constraint);
+    return wrapped.addRetractable(constraint);
+  }
+
+  @Override
+  public void retract(AssertionHandle handle) throws InterruptedException {
+    logger.log(Level.FINE, "retractable formula removed");
+    wrapped.retract(handle);
+  }
+
+  @Override
+  public ProverEnvironment fork() throws InterruptedException {
+    logger.log(Level.FINE, "prover environment forked");
+    return new LoggingProverEnvironment(logger, wrapped.fork());
   }
 }
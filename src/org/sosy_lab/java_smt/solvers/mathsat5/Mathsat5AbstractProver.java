@@ -139,7 +139,7 @@ abstract class Mathsat5AbstractProver<T2> implements BasicProverEnvironment<T2>
   @Override
   public ImmutableList<ValueAssignment> getModelAssignments() throws SolverException {
     try (Mathsat5Model model = new Mathsat5Model(getMsatModel(), creator, this)) {
-      return model.modelToList();
+      return ImmutableList.copyOf(model);
     }
   }
 
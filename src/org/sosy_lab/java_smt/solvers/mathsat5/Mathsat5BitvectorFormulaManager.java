@@ -44,6 +44,7 @@ import static org.sosy_lab.java_smt.solvers.mathsat5.Mathsat5NativeApi.msat_make
 import static org.sosy_lab.java_smt.solvers.mathsat5.Mathsat5NativeApi.msat_make_bv_xor;
 import static org.sosy_lab.java_smt.solvers.mathsat5.Mathsat5NativeApi.msat_make_bv_zext;
 import static org.sosy_lab.java_smt.solvers.mathsat5.Mathsat5NativeApi.msat_make_equal;
+import static org.sosy_lab.java_smt.solvers.mathsat5.Mathsat5NativeApi.msat_term_is_number;
 
 import java.math.BigInteger;
 import org.sosy_lab.java_smt.basicimpl.AbstractBitvectorFormulaManager;
@@ -84,8 +85,11 @@ class Mathsat5BitvectorFormulaManager
 
   @Override
   public Long makeBitvectorImpl(int pLength, long pI) {
+    if (pI < 0 && pLength < Long.SIZE && pI >= -(1L << (pLength - 1))) {
+      pI += 1L << pLength; // two's complement, like for BigInteger values below
+    }
     int i = (int) pI;
-    if (i == pI && i > 0) { // fits into an int
+    if (i == pI && i >= 0) { // fits into an int
       return Mathsat5NativeApi.msat_make_bv_int_number(mathsatEnv, i, pLength);
     }
     return makeBitvectorImpl(pLength, BigInteger.valueOf(pI));
@@ -150,6 +154,11 @@ class Mathsat5BitvectorFormulaManager
     return msat_make_bv_xor(mathsatEnv, pBits1, pBits2);
   }
 
+  @Override
+  protected boolean isConstant(Long pParam) {
+    return msat_term_is_number(mathsatEnv, pParam);
+  }
+
   @Override
   public Long negate(Long pNumber) {
     return msat_make_bv_neg(mathsatEnv, pNumber);
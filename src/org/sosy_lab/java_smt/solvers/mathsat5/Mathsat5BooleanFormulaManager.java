@@ -27,10 +27,13 @@ import static org.sosy_lab.java_smt.solvers.mathsat5.Mathsat5NativeApi.msat_make
 import static org.sosy_lab.java_smt.solvers.mathsat5.Mathsat5NativeApi.msat_make_or;
 import static org.sosy_lab.java_smt.solvers.mathsat5.Mathsat5NativeApi.msat_make_term_ite;
 import static org.sosy_lab.java_smt.solvers.mathsat5.Mathsat5NativeApi.msat_make_true;
+import static org.sosy_lab.java_smt.solvers.mathsat5.Mathsat5NativeApi.msat_term_get_arg;
 import static org.sosy_lab.java_smt.solvers.mathsat5.Mathsat5NativeApi.msat_term_get_type;
 import static org.sosy_lab.java_smt.solvers.mathsat5.Mathsat5NativeApi.msat_term_is_false;
+import static org.sosy_lab.java_smt.solvers.mathsat5.Mathsat5NativeApi.msat_term_is_not;
 import static org.sosy_lab.java_smt.solvers.mathsat5.Mathsat5NativeApi.msat_term_is_true;
 
+import javax.annotation.Nullable;
 import org.sosy_lab.java_smt.basicimpl.AbstractBooleanFormulaManager;
 
 class Mathsat5BooleanFormulaManager extends AbstractBooleanFormulaManager<Long, Long, Long, Long> {
@@ -100,6 +103,11 @@ class Mathsat5BooleanFormulaManager extends AbstractBooleanFormulaManager<Long,
     return msat_make_not(mathsatEnv, pBits);
   }
 
+  @Override
+  protected @Nullable Long getNegatedArgumentImpl(Long pBits) {
+    return msat_term_is_not(mathsatEnv, pBits) ? msat_term_get_arg(pBits, 0) : null;
+  }
+
   @Override
   public Long and(Long pBits1, Long pBits2) {
     return msat_make_and(mathsatEnv, pBits1, pBits2);
@@ -226,21 +226,29 @@ class Mathsat5FormulaCreator extends FormulaCreator<Long, Long, Long, Long> {
                 && getFormulaType(pTerm).equals(FormulaType.IntegerType))
         : String.format(
             "Trying to encapsulate formula of type %s as %s", getFormulaType(pTerm), pType);
+    Formula interned = lookupInterned(pTerm, pType);
+    if (interned != null) {
+      return (T) interned;
+    }
     if (pType.isBooleanType()) {
-      return (T) new Mathsat5BooleanFormula(pTerm);
+      return (T) intern(pTerm, pType, new Mathsat5BooleanFormula(pTerm));
     } else if (pType.isIntegerType()) {
-      return (T) new Mathsat5IntegerFormula(pTerm);
+      return (T) intern(pTerm, pType, new Mathsat5IntegerFormula(pTerm));
     } else if (pType.isRationalType()) {
-      return (T) new Mathsat5RationalFormula(pTerm);
+      return (T) intern(pTerm, pType, new Mathsat5RationalFormula(pTerm));
     } else if (pType.isArrayType()) {
       ArrayFormulaType<?, ?> arrFt = (ArrayFormulaType<?, ?>) pType;
-      return (T) new Mathsat5ArrayFormula<>(pTerm, arrFt.getIndexType(), arrFt.getElementType());
+      return (T)
+          intern(
+              pTerm,
+              pType,
+              new Mathsat5ArrayFormula<>(pTerm, arrFt.getIndexType(), arrFt.getElementType()));
     } else if (pType.isBitvectorType()) {
-      return (T) new Mathsat5BitvectorFormula(pTerm);
+      return (T) intern(pTerm, pType, new Mathsat5BitvectorFormula(pTerm));
     } else if (pType.isFloatingPointType()) {
-      return (T) new Mathsat5FloatingPointFormula(pTerm);
+      return (T) intern(pTerm, pType, new Mathsat5FloatingPointFormula(pTerm));
     } else if (pType.isFloatingPointRoundingModeType()) {
-      return (T) new Mathsat5FloatingPointRoundingModeFormula(pTerm);
+      return (T) intern(pTerm, pType, new Mathsat5FloatingPointRoundingModeFormula(pTerm));
     }
     throw new IllegalArgumentException("Cannot create formulas of type " + pType + " in MathSAT");
   }
@@ -248,18 +256,24 @@ class Mathsat5FormulaCreator extends FormulaCreator<Long, Long, Long, Long> {
   @Override
   public BooleanFormula encapsulateBoolean(Long pTerm) {
     assert getFormulaType(pTerm).isBooleanType();
-    return new Mathsat5BooleanFormula(pTerm);
+    return encapsulate(FormulaType.BooleanType, pTerm);
   }
 
   @Override
   public BitvectorFormula encapsulateBitvector(Long pTerm) {
     assert getFormulaType(pTerm).isBitvectorType();
+    if (isInterning()) {
+      return (BitvectorFormula) encapsulateWithTypeOf(pTerm);
+    }
     return new Mathsat5BitvectorFormula(pTerm);
   }
 
   @Override
   protected FloatingPointFormula encapsulateFloatingPoint(Long pTerm) {
     assert getFormulaType(pTerm).isFloatingPointType();
+    if (isInterning()) {
+      return (FloatingPointFormula) encapsulateWithTypeOf(pTerm);
+    }
     return new Mathsat5FloatingPointFormula(pTerm);
   }
 
@@ -267,6 +281,9 @@ class Mathsat5FormulaCreator extends FormulaCreator<Long, Long, Long, Long> {
   protected <TI extends Formula, TE extends Formula> ArrayFormula<TI, TE> encapsulateArray(
       Long pTerm, FormulaType<TI> pIndexType, FormulaType<TE> pElementType) {
     assert getFormulaType(pTerm).equals(FormulaType.getArrayType(pIndexType, pElementType));
+    if (isInterning()) {
+      return encapsulate(FormulaType.getArrayType(pIndexType, pElementType), pTerm);
+    }
     return new Mathsat5ArrayFormula<>(pTerm, pIndexType, pElementType);
   }
 
@@ -34,14 +34,18 @@ import static org.sosy_lab.java_smt.solvers.mathsat5.Mathsat5NativeApi.msat_term
 import static org.sosy_lab.java_smt.solvers.mathsat5.Mathsat5NativeApi.msat_term_is_array_write;
 
 import com.google.common.base.Preconditions;
-import com.google.common.collect.ImmutableList;
-import com.google.common.collect.ImmutableList.Builder;
+import com.google.common.base.Predicate;
+import com.google.common.collect.AbstractIterator;
+import com.google.common.collect.Iterators;
 import com.google.common.collect.Lists;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.HashSet;
+import java.util.Iterator;
 import java.util.List;
 import java.util.NoSuchElementException;
+import java.util.Set;
 import org.sosy_lab.java_smt.basicimpl.AbstractModel.CachingAbstractModel;
 
 class Mathsat5Model extends CachingAbstractModel<Long, Long, Long> {
@@ -50,6 +54,9 @@ class Mathsat5Model extends CachingAbstractModel<Long, Long, Long> {
   private final Mathsat5FormulaCreator formulaCreator;
   private boolean closed = false;
 
+  /** Native model iterators that were not yet exhausted, and need to be destroyed on close. */
+  private final Set<Long> openIterators = new HashSet<>();
+
   /** for detecting closed environments, Exception is better than SegFault. */
   private final Mathsat5AbstractProver<?> prover;
 
@@ -69,27 +76,43 @@ class Mathsat5Model extends CachingAbstractModel<Long, Long, Long> {
   }
 
   @Override
-  protected ImmutableList<ValueAssignment> modelToList() {
+  protected Iterator<ValueAssignment> modelIterator(
+      Predicate<? super String> pNames, boolean pExpandArrays) {
     Preconditions.checkState(!closed);
     Preconditions.checkState(!prover.closed, "cannot use model after prover is closed");
-    Builder<ValueAssignment> assignments = ImmutableList.builder();
-
     long modelIterator = msat_model_create_iterator(model);
-    while (msat_model_iterator_has_next(modelIterator)) {
-      long[] key = new long[1];
-      long[] value = new long[1];
-      if (msat_model_iterator_next(modelIterator, key, value)) {
-        throw new NoSuchElementException();
-      }
+    openIterators.add(modelIterator);
 
-      if (msat_is_array_type(creator.getEnv(), msat_term_get_type(value[0]))) {
-        assignments.addAll(getArrayAssignments(key[0], key[0], value[0], Collections.emptyList()));
-      } else {
-        assignments.add(getAssignment(key[0], value[0]));
-      }
-    }
-    msat_destroy_model_iterator(modelIterator);
-    return assignments.build();
+    return Iterators.concat(
+        new AbstractIterator<Iterator<ValueAssignment>>() {
+          @Override
+          protected Iterator<ValueAssignment> computeNext() {
+            Preconditions.checkState(!closed);
+            Preconditions.checkState(!prover.closed, "cannot use model after prover is closed");
+            if (!msat_model_iterator_has_next(modelIterator)) {
+              openIterators.remove(modelIterator);
+              msat_destroy_model_iterator(modelIterator);
+              return endOfData();
+            }
+            long[] key = new long[1];
+            long[] value = new long[1];
+            if (msat_model_iterator_next(modelIterator, key, value)) {
+              throw new NoSuchElementException();
+            }
+
+            if (!pNames.apply(formulaCreator.getName(key[0]))) {
+              return Collections.emptyIterator();
+            } else if (msat_is_array_type(creator.getEnv(), msat_term_get_type(value[0]))) {
+              if (!pExpandArrays) {
+                return Collections.emptyIterator();
+              }
+              return getArrayAssignments(key[0], key[0], value[0], Collections.emptyList())
+                  .iterator();
+            } else {
+              return Iterators.singletonIterator(getAssignment(key[0], value[0]));
+            }
+          }
+        });
   }
 
   private ValueAssignment getAssignment(long key, long value) {
@@ -102,7 +125,7 @@ class Mathsat5Model extends CachingAbstractModel<Long, Long, Long> {
     return new ValueAssignment(
         creator.encapsulateWithTypeOf(key),
         creator.encapsulateWithTypeOf(value),
-        creator.encapsulateBoolean(msat_make_eq(creator.getEnv(), key, value)),
+        () -> creator.encapsulateBoolean(msat_make_eq(creator.getEnv(), key, value)),
         formulaCreator.getName(key),
         formulaCreator.convertValue(key, value),
         argumentInterpretation);
@@ -125,7 +148,7 @@ class Mathsat5Model extends CachingAbstractModel<Long, Long, Long> {
             new ValueAssignment(
                 creator.encapsulateWithTypeOf(select),
                 creator.encapsulateWithTypeOf(content),
-                creator.encapsulateBoolean(msat_make_eq(creator.getEnv(), select, content)),
+                () -> creator.encapsulateBoolean(msat_make_eq(creator.getEnv(), select, content)),
                 formulaCreator.getName(symbol),
                 evaluateImpl(content),
                 innerIndices));
@@ -138,6 +161,10 @@ class Mathsat5Model extends CachingAbstractModel<Long, Long, Long> {
   @Override
   public void close() {
     if (!closed) {
+      for (long modelIterator : openIterators) {
+        msat_destroy_model_iterator(modelIterator);
+      }
+      openIterators.clear();
       msat_destroy_model(model);
       closed = true;
     }
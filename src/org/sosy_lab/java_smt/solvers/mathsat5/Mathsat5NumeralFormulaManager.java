@@ -45,6 +45,17 @@ abstract class Mathsat5NumeralFormulaManager<
     this.mathsatEnv = pCreator.getEnv();
   }
 
+  @Override
+  protected NonLinearSupport getNonLinearSupport(NonLinearOperation pOperation) {
+    switch (pOperation) {
+      case MULTIPLY:
+      case DIVIDE:
+        return NonLinearSupport.FULL;
+      default:
+        return NonLinearSupport.NONE;
+    }
+  }
+
   @Override
   protected boolean isNumeral(Long val) {
     return msat_term_is_number(mathsatEnv, val);
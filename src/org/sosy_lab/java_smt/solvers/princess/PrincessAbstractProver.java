@@ -44,6 +44,7 @@ import org.sosy_lab.java_smt.api.BasicProverEnvironment;
 import org.sosy_lab.java_smt.api.BooleanFormula;
 import org.sosy_lab.java_smt.api.Model.ValueAssignment;
 import org.sosy_lab.java_smt.api.SolverException;
+import org.sosy_lab.java_smt.basicimpl.ContextLockRelease;
 import scala.Enumeration.Value;
 import scala.Option;
 
@@ -60,6 +61,16 @@ abstract class PrincessAbstractProver<E, AF> implements BasicProverEnvironment<E
   protected boolean closed = false;
   protected boolean wasLastSatCheckSat = false; // and stack is not changed
 
+  /**
+   * Whether a satisfiability check is running, which might be without the lock of a thread-safe
+   * context (cf. {@link ContextLockRelease}). Symbols that are declared by other threads in the
+   * meantime are queued and added after the check. Both fields are only accessed while holding the
+   * lock of the context.
+   */
+  private boolean checking = false;
+
+  private final List<Runnable> pendingDeclarations = new ArrayList<>();
+
   protected PrincessAbstractProver(
       PrincessFormulaManager pMgr,
       PrincessFormulaCreator creator,
@@ -81,7 +92,15 @@ abstract class PrincessAbstractProver<E, AF> implements BasicProverEnvironment<E
   public boolean isUnsat() throws SolverException {
     Preconditions.checkState(!closed);
     wasLastSatCheckSat = false;
-    final Value result = api.checkSat(true);
+    final Value result;
+    checking = true;
+    try {
+      result = ContextLockRelease.callWithoutLock(() -> api.checkSat(true));
+    } finally {
+      checking = false;
+      pendingDeclarations.forEach(Runnable::run);
+      pendingDeclarations.clear();
+    }
     if (result.equals(SimpleAPI.ProverStatus$.MODULE$.Sat())) {
       wasLastSatCheckSat = true;
       return false;
@@ -150,7 +169,7 @@ abstract class PrincessAbstractProver<E, AF> implements BasicProverEnvironment<E
   @Override
   public ImmutableList<ValueAssignment> getModelAssignments() throws SolverException {
     try (PrincessModel model = getModel()) {
-      return model.modelToList();
+      return ImmutableList.copyOf(model);
     }
   }
 
@@ -249,27 +268,69 @@ abstract class PrincessAbstractProver<E, AF> implements BasicProverEnvironment<E
   /** add external definition: boolean variable. */
   void addSymbol(IFormula f) {
     Preconditions.checkState(!closed);
-    api.addBooleanVariable(f);
-    if (!trackingStack.isEmpty()) {
-      trackingStack.peek().booleanSymbols.add(f);
-    }
+    declare(
+        () -> {
+          api.addBooleanVariable(f);
+          if (!trackingStack.isEmpty()) {
+            trackingStack.peek().booleanSymbols.add(f);
+          }
+        });
   }
 
   /** add external definition: integer variable. */
   void addSymbol(ITerm f) {
     Preconditions.checkState(!closed);
-    api.addConstant(f);
-    if (!trackingStack.isEmpty()) {
-      trackingStack.peek().intSymbols.add(f);
-    }
+    declare(
+        () -> {
+          api.addConstant(f);
+          if (!trackingStack.isEmpty()) {
+            trackingStack.peek().intSymbols.add(f);
+          }
+        });
+  }
+
+  /** add external definitions: boolean variables. */
+  void addBooleanSymbols(List<IFormula> fs) {
+    Preconditions.checkState(!closed);
+    declare(
+        () -> {
+          api.addBooleanVariables(iterableAsScalaIterable(fs));
+          if (!trackingStack.isEmpty()) {
+            trackingStack.peek().booleanSymbols.addAll(fs);
+          }
+        });
+  }
+
+  /** add external definitions: integer variables. */
+  void addTermSymbols(List<ITerm> fs) {
+    Preconditions.checkState(!closed);
+    declare(
+        () -> {
+          api.addConstants(iterableAsScalaIterable(fs));
+          if (!trackingStack.isEmpty()) {
+            trackingStack.peek().intSymbols.addAll(fs);
+          }
+        });
   }
 
   /** add external definition: uninterpreted function. */
   void addSymbol(IFunction f) {
     Preconditions.checkState(!closed);
-    api.addFunction(f);
-    if (!trackingStack.isEmpty()) {
-      trackingStack.peek().functionSymbols.add(f);
+    declare(
+        () -> {
+          api.addFunction(f);
+          if (!trackingStack.isEmpty()) {
+            trackingStack.peek().functionSymbols.add(f);
+          }
+        });
+  }
+
+  /** Run a declaration now, or after the running satisfiability check. */
+  private void declare(Runnable declaration) {
+    if (checking) {
+      pendingDeclarations.add(declaration);
+    } else {
+      declaration.run();
     }
   }
 
@@ -21,6 +21,7 @@ package org.sosy_lab.java_smt.solvers.princess;
 
 import ap.basetypes.IdealInt;
 import ap.parser.IExpression;
+import ap.parser.IIntLit;
 import ap.parser.ITerm;
 import ap.theories.ModuloArithmetic$;
 import ap.types.Sort;
@@ -35,6 +36,12 @@ class PrincessBitvectorFormulaManager
     super(pCreator);
   }
 
+  @Override
+  protected boolean isConstant(IExpression pParam) {
+    // only literals are visited as constants, cf. PrincessFormulaCreator#visit
+    return pParam instanceof IIntLit;
+  }
+
   @Override
   protected IExpression negate(IExpression pParam1) {
     return ModuloArithmetic$.MODULE$.bvneg((ITerm) pParam1);
@@ -128,6 +135,16 @@ class PrincessBitvectorFormulaManager
 
   @Override
   protected IExpression makeBitvectorImpl(int pLength, long pI) {
+    if (pLength < Long.SIZE - 1) {
+      long n = 1L << pLength;
+      if (pI < 0 && pI >= -(n >> 1)) {
+        pI += n;
+      }
+      if (0 <= pI && pI < n) {
+        return ModuloArithmetic$.MODULE$.bv(pLength, IdealInt.apply(pI));
+      }
+    }
+    // out of range or too wide, handled (and reported) like BigInteger values
     return makeBitvectorImpl(pLength, BigInteger.valueOf(pI));
   }
 
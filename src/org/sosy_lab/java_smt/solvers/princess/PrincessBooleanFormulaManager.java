@@ -29,6 +29,7 @@ import ap.parser.INot;
 import ap.parser.ITerm;
 import ap.parser.ITermITE;
 import ap.types.Sort;
+import javax.annotation.Nullable;
 import org.sosy_lab.java_smt.basicimpl.AbstractBooleanFormulaManager;
 import scala.Enumeration;
 
@@ -87,6 +88,11 @@ class PrincessBooleanFormulaManager
     }
   }
 
+  @Override
+  protected @Nullable IFormula getNegatedArgumentImpl(IExpression pBits) {
+    return pBits instanceof INot ? ((INot) pBits).subformula() : null;
+  }
+
   @Override
   public IFormula and(IExpression t1, IExpression t2) {
     if (t1 == t2) {
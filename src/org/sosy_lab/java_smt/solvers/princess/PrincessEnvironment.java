@@ -416,6 +416,48 @@ class PrincessEnvironment {
     }
   }
 
+  /**
+   * Create several variables of the same type. In contrast to {@link #makeVariable}, the new
+   * variables are added to each prover only once, together.
+   */
+  public List<IExpression> makeVariables(Sort type, List<String> varnames) {
+    List<IExpression> result = new ArrayList<>(varnames.size());
+    if (type == BOOL_SORT) {
+      List<IFormula> newVars = new ArrayList<>();
+      for (String varname : varnames) {
+        IFormula var = boolVariablesCache.get(varname);
+        if (var == null) {
+          var = api.createBooleanVariable(varname);
+          boolVariablesCache.put(varname, var);
+          newVars.add(var);
+        }
+        result.add(var);
+      }
+      if (!newVars.isEmpty()) {
+        for (PrincessAbstractProver<?, ?> prover : registeredProvers) {
+          prover.addBooleanSymbols(newVars);
+        }
+      }
+    } else {
+      List<ITerm> newVars = new ArrayList<>();
+      for (String varname : varnames) {
+        ITerm var = sortedVariablesCache.get(varname);
+        if (var == null) {
+          var = api.createConstant(varname, type);
+          sortedVariablesCache.put(varname, var);
+          newVars.add(var);
+        }
+        result.add(var);
+      }
+      if (!newVars.isEmpty()) {
+        for (PrincessAbstractProver<?, ?> prover : registeredProvers) {
+          prover.addTermSymbols(newVars);
+        }
+      }
+    }
+    return result;
+  }
+
   /** This function declares a new functionSymbol with the given argument types and result. */
   public IFunction declareFun(String name, Sort returnType, List<Sort> args) {
     if (functionsCache.containsKey(name)) {
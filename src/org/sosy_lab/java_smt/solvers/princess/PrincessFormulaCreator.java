@@ -62,7 +62,6 @@ import org.sosy_lab.java_smt.api.BitvectorFormula;
 import org.sosy_lab.java_smt.api.BooleanFormula;
 import org.sosy_lab.java_smt.api.Formula;
 import org.sosy_lab.java_smt.api.FormulaType;
-import org.sosy_lab.java_smt.api.FormulaType.ArrayFormulaType;
 import org.sosy_lab.java_smt.api.FunctionDeclarationKind;
 import org.sosy_lab.java_smt.api.NumeralFormula.IntegerFormula;
 import org.sosy_lab.java_smt.api.visitors.FormulaVisitor;
@@ -130,7 +129,7 @@ class PrincessFormulaCreator
       } else if (sort == PrincessEnvironment.INTEGER_SORT) {
         return FormulaType.IntegerType;
       } else if (sort instanceof SimpleArray.ArraySort) {
-        return new ArrayFormulaType<>(FormulaType.IntegerType, FormulaType.IntegerType);
+        return FormulaType.getArrayType(FormulaType.IntegerType, FormulaType.IntegerType);
       } else {
         scala.Option<Object> bitWidth = ModuloArithmetic.UnsignedBVSort$.MODULE$.unapply(sort);
         if (bitWidth.isDefined()) {
@@ -146,6 +145,11 @@ class PrincessFormulaCreator
     return getEnv().makeVariable(type, varName);
   }
 
+  @Override
+  public List<IExpression> makeVariables(Sort type, List<String> varNames) {
+    return getEnv().makeVariables(type, varNames);
+  }
+
   @Override
   public Sort getBitvectorType(int pBitwidth) {
     return ModuloArithmetic.UnsignedBVSort$.MODULE$.apply(pBitwidth);
@@ -178,7 +182,7 @@ class PrincessFormulaCreator
       final FormulaType<?> arrayIndexType = getArrayFormulaIndexType((ArrayFormula<?, ?>) pFormula);
       final FormulaType<?> arrayElementType =
           getArrayFormulaElementType((ArrayFormula<?, ?>) pFormula);
-      return (FormulaType<T>) new ArrayFormulaType<>(arrayIndexType, arrayElementType);
+      return (FormulaType<T>) FormulaType.getArrayType(arrayIndexType, arrayElementType);
     }
 
     return super.getFormulaType(pFormula);
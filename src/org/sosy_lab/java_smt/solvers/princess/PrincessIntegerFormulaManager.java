@@ -39,6 +39,11 @@ class PrincessIntegerFormulaManager
     super(pCreator, pNonLinearArithmetic);
   }
 
+  @Override
+  protected NonLinearSupport getNonLinearSupport(NonLinearOperation pOperation) {
+    return NonLinearSupport.FULL;
+  }
+
   @Override
   protected ITerm makeNumberImpl(long i) {
     return new IIntLit(IdealInt.apply(i));
@@ -46,7 +51,7 @@ class PrincessIntegerFormulaManager
 
   @Override
   protected ITerm makeNumberImpl(BigInteger pI) {
-    return new IIntLit(IdealInt.apply(pI.toString()));
+    return new IIntLit(IdealInt.apply(pI));
   }
 
   @Override
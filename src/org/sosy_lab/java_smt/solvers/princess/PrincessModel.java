@@ -42,15 +42,17 @@ import ap.parser.IFunApp;
 import ap.parser.IIntLit;
 import ap.parser.ITerm;
 import ap.types.Sort;
-import com.google.common.collect.ImmutableList;
-import com.google.common.collect.ImmutableSet;
-import com.google.common.collect.ImmutableSet.Builder;
+import com.google.common.base.Predicate;
+import com.google.common.collect.FluentIterable;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import javax.annotation.Nullable;
 import org.sosy_lab.java_smt.basicimpl.AbstractModel.CachingAbstractModel;
 import org.sosy_lab.java_smt.basicimpl.FormulaCreator;
@@ -79,22 +81,20 @@ class PrincessModel extends CachingAbstractModel<IExpression, Sort, PrincessEnvi
   }
 
   @Override
-  protected ImmutableList<ValueAssignment> modelToList() {
+  protected Iterator<ValueAssignment> modelIterator(
+      Predicate<? super String> pNames, boolean pExpandArrays) {
     scala.collection.Map<ModelLocation, ModelValue> interpretation = model.interpretation();
 
-    // first get the addresses of arrays
-    Map<IdealInt, ITerm> arrays = getArrayAddresses(interpretation);
+    // first get the addresses of arrays, without them array accesses are skipped
+    Map<IdealInt, ITerm> arrays =
+        pExpandArrays ? getArrayAddresses(interpretation) : Collections.emptyMap();
 
     // then iterate over the model and generate the assignments
-    Builder<ValueAssignment> assignments = ImmutableSet.builder();
-    for (Tuple2<ModelLocation, ModelValue> entry : asJavaIterable(interpretation)) {
-      ValueAssignment assignment = getAssignment(entry._1, entry._2, arrays);
-      if (assignment != null) {
-        assignments.add(assignment);
-      }
-    }
-
-    return assignments.build().asList();
+    Set<ValueAssignment> seen = new HashSet<>();
+    return FluentIterable.from(asJavaIterable(interpretation))
+        .transform(entry -> getAssignment(entry._1, entry._2, arrays, pNames))
+        .filter(assignment -> assignment != null && seen.add(assignment))
+        .iterator();
   }
 
   /**
@@ -119,7 +119,10 @@ class PrincessModel extends CachingAbstractModel<IExpression, Sort, PrincessEnvi
   }
 
   private @Nullable ValueAssignment getAssignment(
-      ModelLocation key, ModelValue value, Map<IdealInt, ITerm> arrays) {
+      ModelLocation key,
+      ModelValue value,
+      Map<IdealInt, ITerm> arrays,
+      Predicate<? super String> names) {
     Object directValue = getValue(value);
     IExpression fValue = getValueFormula(value);
     final IExpression fKey;
@@ -196,6 +199,9 @@ class PrincessModel extends CachingAbstractModel<IExpression, Sort, PrincessEnvi
           String.format("unknown type of key: %s -> %s (%s)", key, value, key.getClass()));
     }
 
+    if (!names.apply(name)) {
+      return null;
+    }
     return new ValueAssignment(
         creator.encapsulateWithTypeOf(fKey),
         creator.encapsulateWithTypeOf(fValue),
@@ -20,8 +20,6 @@
 
 package org.sosy_lab.java_smt.solvers.smtinterpol;
 
-import static com.google.common.base.Preconditions.checkState;
-
 import com.google.common.base.Preconditions;
 import com.google.common.collect.ImmutableList;
 import de.uni_freiburg.informatik.ultimate.logic.Annotation;
@@ -58,10 +56,6 @@ abstract class SmtInterpolBasicProver<T, AF> implements BasicProverEnvironment<T
       new UniqueIdGenerator(); // for different termnames
 
   SmtInterpolBasicProver(SmtInterpolFormulaManager pMgr) {
-    checkState(
-        pMgr.getEnvironment().getStackDepth() == 0,
-        "Not allowed to create a new prover environment while solver stack is still non-empty, "
-            + "parallel stacks are not supported.");
     mgr = pMgr;
     env = pMgr.createEnvironment();
     creator = pMgr.getFormulaCreator();
@@ -100,7 +94,7 @@ abstract class SmtInterpolBasicProver<T, AF> implements BasicProverEnvironment<T
   @Override
   public ImmutableList<ValueAssignment> getModelAssignments() throws SolverException {
     try (SmtInterpolModel model = getModel()) {
-      return model.modelToList();
+      return ImmutableList.copyOf(model);
     }
   }
 
@@ -19,14 +19,14 @@
  */
 package org.sosy_lab.java_smt.solvers.smtinterpol;
 
+import com.google.common.collect.ImmutableSet;
+import de.uni_freiburg.informatik.ultimate.logic.ApplicationTerm;
 import de.uni_freiburg.informatik.ultimate.logic.FunctionSymbol;
 import de.uni_freiburg.informatik.ultimate.logic.Sort;
 import de.uni_freiburg.informatik.ultimate.logic.Term;
 import de.uni_freiburg.informatik.ultimate.logic.Theory;
 import java.util.Collection;
-import java.util.stream.Collector;
-import java.util.stream.Collectors;
-import org.sosy_lab.java_smt.api.BooleanFormula;
+import javax.annotation.Nullable;
 import org.sosy_lab.java_smt.basicimpl.AbstractBooleanFormulaManager;
 
 class SmtInterpolBooleanFormulaManager
@@ -89,18 +89,23 @@ class SmtInterpolBooleanFormulaManager
   }
 
   @Override
-  public Term and(Term pBits1, Term pBits2) {
-    return theory.and(pBits1, pBits2);
+  protected @Nullable Term getNegatedArgumentImpl(Term pBits) {
+    if (pBits instanceof ApplicationTerm
+        && ((ApplicationTerm) pBits).getFunction() == theory.mNot) {
+      return ((ApplicationTerm) pBits).getParameters()[0];
+    }
+    return null;
   }
 
   @Override
-  protected Term andImpl(Collection<Term> pParams) {
-    return theory.and(pParams.toArray(new Term[pParams.size()]));
+  public Term and(Term pBits1, Term pBits2) {
+    return theory.and(pBits1, pBits2);
   }
 
   @Override
-  public Collector<BooleanFormula, ?, BooleanFormula> toConjunction() {
-    return Collectors.collectingAndThen(Collectors.toList(), this::and);
+  protected Term andImpl(Collection<Term> pParams) {
+    // terms are unique, so removing duplicates is cheap and keeps the n-ary term small
+    return theory.and(ImmutableSet.copyOf(pParams).toArray(new Term[0]));
   }
 
   @Override
@@ -110,12 +115,7 @@ class SmtInterpolBooleanFormulaManager
 
   @Override
   protected Term orImpl(Collection<Term> pParams) {
-    return theory.or(pParams.toArray(new Term[pParams.size()]));
-  }
-
-  @Override
-  public Collector<BooleanFormula, ?, BooleanFormula> toDisjunction() {
-    return Collectors.collectingAndThen(Collectors.toList(), this::or);
+    return theory.or(ImmutableSet.copyOf(pParams).toArray(new Term[0]));
   }
 
   @Override
@@ -25,6 +25,7 @@ import static com.google.common.base.Preconditions.checkState;
 
 import com.google.common.base.Preconditions;
 import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.ImmutableSet;
 import com.google.errorprone.annotations.CanIgnoreReturnValue;
 import de.uni_freiburg.informatik.ultimate.logic.Annotation;
@@ -45,6 +46,7 @@ import de.uni_freiburg.informatik.ultimate.logic.Theory;
 import de.uni_freiburg.informatik.ultimate.logic.simplification.SimplifyDDA;
 import de.uni_freiburg.informatik.ultimate.smtinterpol.LogProxy;
 import de.uni_freiburg.informatik.ultimate.smtinterpol.option.OptionMap;
+import de.uni_freiburg.informatik.ultimate.smtinterpol.option.OptionMap.CopyMode;
 import de.uni_freiburg.informatik.ultimate.smtinterpol.smtlib2.ParseEnvironment;
 import de.uni_freiburg.informatik.ultimate.smtinterpol.smtlib2.SMTInterpol;
 import java.io.FileNotFoundException;
@@ -56,6 +58,7 @@ import java.math.BigInteger;
 import java.nio.charset.Charset;
 import java.nio.file.Path;
 import java.util.List;
+import java.util.concurrent.locks.ReentrantLock;
 import java.util.logging.Level;
 import javax.annotation.Nullable;
 import org.sosy_lab.common.ShutdownNotifier;
@@ -72,6 +75,15 @@ import org.sosy_lab.java_smt.api.SolverException;
  * This is a Wrapper around SmtInterpol. It guarantees the stack-behavior of function-declarations
  * towards the SmtSolver, so functions remain declared, if levels are popped. This Wrapper allows to
  * set a logfile for all Smt-Queries (default "smtinterpol.smt2").
+ *
+ * <p>The environment of the solver context is used for declarations, term creation and parsing.
+ * Each prover gets its own solver instance from {@link #newSolverInstance()}, which shares the
+ * {@link Theory} and thus all terms and declarations, but has its own assertion stack.
+ *
+ * <p>The shared theory is not thread-safe, thus the environment of the context and all its solver
+ * instances must only be used by one thread at a time. Concurrent calls are detected and rejected
+ * with an {@link IllegalStateException}. Use {@link
+ * org.sosy_lab.java_smt.concurrent.ConcurrentSolverContext} for access from several threads.
  */
 @Options(prefix = "solver.smtinterpol")
 class SmtInterpolEnvironment {
@@ -102,8 +114,13 @@ class SmtInterpolEnvironment {
   /** the wrapped Script */
   private final Script script;
 
+  private final SMTInterpol smtInterpol;
+
   private final Theory theory;
 
+  /** Held by the thread that currently uses the theory, shared with all solver instances. */
+  private final ReentrantLock usage;
+
   /** The current depth of the stack in the solver. */
   private int stackDepth = 0;
 
@@ -121,8 +138,7 @@ class SmtInterpolEnvironment {
     smtLogfile = pSmtLogfile;
     smtInterpolLogProxy = new LogProxyForwarder(logger.withComponentName("SMTInterpol"));
 
-    final SMTInterpol smtInterpol =
-        new SMTInterpol(smtInterpolLogProxy, pShutdownNotifier::shouldShutdown);
+    smtInterpol = new SMTInterpol(smtInterpolLogProxy, pShutdownNotifier::shouldShutdown);
 
     if (smtLogfile != null) {
       script = createLoggingWrapper(smtInterpol);
@@ -152,6 +168,55 @@ class SmtInterpolEnvironment {
     }
 
     theory = smtInterpol.getTheory();
+    usage = new ReentrantLock();
+  }
+
+  /** Creates a new solver instance with the same options and the same theory as the parent. */
+  private SmtInterpolEnvironment(SmtInterpolEnvironment pParent) {
+    checkResults = pParent.checkResults;
+    furtherOptions = pParent.furtherOptions;
+    logger = pParent.logger;
+    shutdownNotifier = pParent.shutdownNotifier;
+    smtLogfile = pParent.smtLogfile;
+    smtInterpolLogProxy = pParent.smtInterpolLogProxy;
+
+    // The copy shares the theory, the declarations and the termination request of the parent,
+    // but not its assertions.
+    smtInterpol = new SMTInterpol(pParent.smtInterpol, ImmutableMap.of(), CopyMode.CURRENT_VALUE);
+    if (smtLogfile != null) {
+      script = createLoggingWrapper(smtInterpol);
+    } else {
+      script = smtInterpol;
+    }
+    theory = pParent.theory;
+    usage = pParent.usage;
+  }
+
+  /**
+   * Create an independent solver instance for a prover. Declarations are global and terms are
+   * shared, such that all formulas of this environment can be asserted on the new instance.
+   */
+  SmtInterpolEnvironment newSolverInstance() {
+    enter();
+    try {
+      return new SmtInterpolEnvironment(this);
+    } finally {
+      usage.unlock();
+    }
+  }
+
+  /**
+   * Mark the shared theory as used by the current thread. Each call has to be followed by {@code
+   * usage.unlock()}.
+   *
+   * @throws IllegalStateException if another thread uses the theory at the same time.
+   */
+  private void enter() {
+    if (!usage.tryLock()) {
+      throw new IllegalStateException(
+          "SMTInterpol is used by several threads at the same time, "
+              + "use ConcurrentSolverContext to share a solver context between threads");
+    }
   }
 
   private Script createLoggingWrapper(SMTInterpol smtInterpol) {
@@ -213,25 +278,35 @@ class SmtInterpolEnvironment {
    * function-declarations in SMTLIB2-format. Use Prefix-notation!
    */
   public List<Term> parseStringToTerms(String s) {
-    FormulaCollectionScript parseScript = new FormulaCollectionScript(script, theory);
-    ParseEnvironment parseEnv =
-        new ParseEnvironment(parseScript, new OptionMap(smtInterpolLogProxy, true)) {
-          @Override
-          public void printError(String pMessage) {
-            throw new SMTLIBException(pMessage);
-          }
-
-          @Override
-          public void printSuccess() {}
-        };
-
-    parseEnv.parseStream(new StringReader(s), "<stdin>");
-
-    return parseScript.getAssertedTerms();
+    enter();
+    try {
+      FormulaCollectionScript parseScript = new FormulaCollectionScript(script, theory);
+      ParseEnvironment parseEnv =
+          new ParseEnvironment(parseScript, new OptionMap(smtInterpolLogProxy, true)) {
+            @Override
+            public void printError(String pMessage) {
+              throw new SMTLIBException(pMessage);
+            }
+
+            @Override
+            public void printSuccess() {}
+          };
+
+      parseEnv.parseStream(new StringReader(s), "<stdin>");
+
+      return parseScript.getAssertedTerms();
+    } finally {
+      usage.unlock();
+    }
   }
 
   public void setOption(String opt, Object value) {
-    script.setOption(opt, value);
+    enter();
+    try {
+      script.setOption(opt, value);
+    } finally {
+      usage.unlock();
+    }
   }
 
   /**
@@ -242,27 +317,37 @@ class SmtInterpolEnvironment {
   @CanIgnoreReturnValue
   public FunctionSymbol declareFun(String fun, Sort[] paramSorts, Sort resultSort) {
     checkSymbol(fun);
-    FunctionSymbol fsym = theory.getFunction(fun, paramSorts);
+    enter();
+    try {
+      FunctionSymbol fsym = theory.getFunction(fun, paramSorts);
 
-    if (fsym == null) {
-      script.declareFun(fun, paramSorts, resultSort);
-      return theory.getFunction(fun, paramSorts);
-    } else {
-      if (!fsym.getReturnSort().equals(resultSort)) {
-        throw new SMTLIBException(
-            "Function " + fun + " is already declared with different definition");
-      }
-      if (fun.equals("true") || fun.equals("false")) {
-        throw new SMTLIBException("Cannot declare a variable named " + fun);
+      if (fsym == null) {
+        script.declareFun(fun, paramSorts, resultSort);
+        return theory.getFunction(fun, paramSorts);
+      } else {
+        if (!fsym.getReturnSort().equals(resultSort)) {
+          throw new SMTLIBException(
+              "Function " + fun + " is already declared with different definition");
+        }
+        if (fun.equals("true") || fun.equals("false")) {
+          throw new SMTLIBException("Cannot declare a variable named " + fun);
+        }
+        return fsym;
       }
-      return fsym;
+    } finally {
+      usage.unlock();
     }
   }
 
   public void push(int levels) {
     checkArgument(levels > 0);
-    script.push(levels);
-    stackDepth += levels;
+    enter();
+    try {
+      script.push(levels);
+      stackDepth += levels;
+    } finally {
+      usage.unlock();
+    }
   }
 
   /**
@@ -272,8 +357,13 @@ class SmtInterpolEnvironment {
   public void pop(int levels) {
     checkArgument(levels >= 0);
     checkState(stackDepth >= levels, "not enough levels to remove");
-    script.pop(levels);
-    stackDepth -= levels;
+    enter();
+    try {
+      script.pop(levels);
+      stackDepth -= levels;
+    } finally {
+      usage.unlock();
+    }
   }
 
   /** This function adds the term on top of the stack. */
@@ -283,7 +373,12 @@ class SmtInterpolEnvironment {
         "assertions should be on higher levels, "
             + "because we might need to remove the term again and "
             + "we have a shared environment for all provers.");
-    script.assertTerm(term);
+    enter();
+    try {
+      script.assertTerm(term);
+    } finally {
+      usage.unlock();
+    }
   }
 
   /**
@@ -297,14 +392,24 @@ class SmtInterpolEnvironment {
     // so we check here, too.
     shutdownNotifier.shutdownIfNecessary();
 
-    LBool result = script.checkSat();
+    LBool result;
+    Object reason = null;
+    enter();
+    try {
+      result = script.checkSat();
+      if (result == LBool.UNKNOWN) {
+        reason = script.getInfo(":reason-unknown");
+      }
+    } finally {
+      usage.unlock();
+    }
+
     switch (result) {
       case SAT:
         return true;
       case UNSAT:
         return false;
       case UNKNOWN:
-        Object reason = script.getInfo(":reason-unknown");
         if (!(reason instanceof ReasonUnknown)) {
           throw new SMTLIBException("checkSat returned UNKNOWN with unknown reason " + reason);
         }
@@ -331,16 +436,31 @@ class SmtInterpolEnvironment {
     // so we check here, too.
     shutdownNotifier.shutdownIfNecessary();
 
-    return script.checkAllsat(importantPredicates);
+    enter();
+    try {
+      return script.checkAllsat(importantPredicates);
+    } finally {
+      usage.unlock();
+    }
   }
 
   /** This function returns a map, that contains assignments term->term for all terms in terms. */
   public Model getModel() {
-    return script.getModel();
+    enter();
+    try {
+      return script.getModel();
+    } finally {
+      usage.unlock();
+    }
   }
 
   public Object getInfo(String info) {
-    return script.getInfo(info);
+    enter();
+    try {
+      return script.getInfo(info);
+    } finally {
+      usage.unlock();
+    }
   }
 
   public Sort getBooleanSort() {
@@ -357,61 +477,126 @@ class SmtInterpolEnvironment {
 
   /** This function returns an n-ary sort with given parameters. */
   Sort sort(String sortname, Sort... params) {
-    return script.sort(sortname, params);
+    enter();
+    try {
+      return script.sort(sortname, params);
+    } finally {
+      usage.unlock();
+    }
   }
 
   public Term term(String funcname, Term... params) {
-    return script.term(funcname, params);
+    enter();
+    try {
+      return script.term(funcname, params);
+    } finally {
+      usage.unlock();
+    }
   }
 
   public Term term(
       String funcname, BigInteger[] indices, @Nullable Sort returnSort, Term... params) {
-    return script.term(funcname, indices, returnSort, params);
+    enter();
+    try {
+      return script.term(funcname, indices, returnSort, params);
+    } finally {
+      usage.unlock();
+    }
   }
 
   public TermVariable variable(String varname, Sort sort) {
     checkSymbol(varname);
-    return script.variable(varname, sort);
+    enter();
+    try {
+      return script.variable(varname, sort);
+    } finally {
+      usage.unlock();
+    }
   }
 
   public Term quantifier(int quantor, TermVariable[] vars, Term body, Term[]... patterns) {
-    return script.quantifier(quantor, vars, body, patterns);
+    enter();
+    try {
+      return script.quantifier(quantor, vars, body, patterns);
+    } finally {
+      usage.unlock();
+    }
   }
 
   public Term let(TermVariable[] pVars, Term[] pValues, Term pBody) {
-    return script.let(pVars, pValues, pBody);
+    enter();
+    try {
+      return script.let(pVars, pValues, pBody);
+    } finally {
+      usage.unlock();
+    }
   }
 
   public Term annotate(Term t, Annotation... annotations) {
-    return script.annotate(t, annotations);
+    enter();
+    try {
+      return script.annotate(t, annotations);
+    } finally {
+      usage.unlock();
+    }
   }
 
   /** returns a number of type INT or REAL */
   public Term numeral(BigInteger num) {
-    return script.numeral(num);
+    enter();
+    try {
+      return script.numeral(num);
+    } finally {
+      usage.unlock();
+    }
   }
 
   /** returns a number of type INT or REAL */
   public Term numeral(String num) {
-    return script.numeral(num);
+    enter();
+    try {
+      return script.numeral(num);
+    } finally {
+      usage.unlock();
+    }
   }
 
   /** returns a number of type REAL */
   public Term decimal(String num) {
-    return script.decimal(num);
+    enter();
+    try {
+      return script.decimal(num);
+    } finally {
+      usage.unlock();
+    }
   }
 
   /** returns a number of type REAL */
   public Term decimal(BigDecimal num) {
-    return script.decimal(num);
+    enter();
+    try {
+      return script.decimal(num);
+    } finally {
+      usage.unlock();
+    }
   }
 
   public Term hexadecimal(String hex) {
-    return script.hexadecimal(hex);
+    enter();
+    try {
+      return script.hexadecimal(hex);
+    } finally {
+      usage.unlock();
+    }
   }
 
   public Term binary(String bin) {
-    return script.binary(bin);
+    enter();
+    try {
+      return script.binary(bin);
+    } finally {
+      usage.unlock();
+    }
   }
 
   /**
@@ -420,20 +605,25 @@ class SmtInterpolEnvironment {
    */
   public Term[] getInterpolants(Term[] partition) throws SolverException, InterruptedException {
     checkState(stackDepth > 0, "interpolants should be on higher levels");
+    enter();
     try {
-      return script.getInterpolants(partition);
-    } catch (UnsupportedOperationException e) {
-      if (e.getMessage() != null && e.getMessage().startsWith("Cannot interpolate ")) {
-        // Not a bug, interpolation procedure is incomplete
-        throw new SolverException(e.getMessage(), e);
-      } else {
-        throw e;
-      }
-    } catch (SMTLIBException e) {
-      if ("Timeout exceeded".equals(e.getMessage())) {
-        shutdownNotifier.shutdownIfNecessary();
+      try {
+        return script.getInterpolants(partition);
+      } catch (UnsupportedOperationException e) {
+        if (e.getMessage() != null && e.getMessage().startsWith("Cannot interpolate ")) {
+          // Not a bug, interpolation procedure is incomplete
+          throw new SolverException(e.getMessage(), e);
+        } else {
+          throw e;
+        }
+      } catch (SMTLIBException e) {
+        if ("Timeout exceeded".equals(e.getMessage())) {
+          shutdownNotifier.shutdownIfNecessary();
+        }
+        throw new AssertionError(e);
       }
-      throw new AssertionError(e);
+    } finally {
+      usage.unlock();
     }
   }
 
@@ -468,37 +658,52 @@ class SmtInterpolEnvironment {
   public Term[] getTreeInterpolants(Term[] partition, int[] startOfSubTree)
       throws SolverException, InterruptedException {
     checkState(stackDepth > 0, "interpolants should be on higher levels");
+    enter();
     try {
-      return script.getInterpolants(partition, startOfSubTree);
-    } catch (UnsupportedOperationException e) {
-      if (e.getMessage() != null && e.getMessage().startsWith("Cannot interpolate ")) {
-        // Not a bug, interpolation procedure is incomplete
-        throw new SolverException(e.getMessage(), e);
-      } else {
-        throw e;
-      }
-    } catch (SMTLIBException e) {
-      if ("Timeout exceeded".equals(e.getMessage())) {
-        shutdownNotifier.shutdownIfNecessary();
+      try {
+        return script.getInterpolants(partition, startOfSubTree);
+      } catch (UnsupportedOperationException e) {
+        if (e.getMessage() != null && e.getMessage().startsWith("Cannot interpolate ")) {
+          // Not a bug, interpolation procedure is incomplete
+          throw new SolverException(e.getMessage(), e);
+        } else {
+          throw e;
+        }
+      } catch (SMTLIBException e) {
+        if ("Timeout exceeded".equals(e.getMessage())) {
+          shutdownNotifier.shutdownIfNecessary();
+        }
+        throw new AssertionError(e);
       }
-      throw new AssertionError(e);
+    } finally {
+      usage.unlock();
     }
   }
 
   public Term[] getUnsatCore() {
     checkState(stackDepth > 0, "unsat core should be on higher levels");
-    return script.getUnsatCore();
+    enter();
+    try {
+      return script.getUnsatCore();
+    } finally {
+      usage.unlock();
+    }
   }
 
   public Term simplify(Term input) {
-    SimplifyDDA s = new SimplifyDDA(script, true);
-    return s.getSimplifiedTerm(input);
+    enter();
+    try {
+      SimplifyDDA s = new SimplifyDDA(script, true);
+      return s.getSimplifiedTerm(input);
+    } finally {
+      usage.unlock();
+    }
   }
 
   /** This function returns the version of SmtInterpol, for logging. */
   public String getVersion() {
-    QuotedObject program = (QuotedObject) script.getInfo(":name");
-    QuotedObject version = (QuotedObject) script.getInfo(":version");
+    QuotedObject program = (QuotedObject) getInfo(":name");
+    QuotedObject version = (QuotedObject) getInfo(":version");
     return program.getValue() + " " + version.getValue();
   }
 
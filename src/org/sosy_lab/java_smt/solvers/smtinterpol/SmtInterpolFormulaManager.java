@@ -153,7 +153,7 @@ class SmtInterpolFormulaManager
 
   /** This method returns a 'shared' environment or a complete new environment. */
   SmtInterpolEnvironment createEnvironment() {
-    return getEnvironment();
+    return getEnvironment().newSolverInstance();
   }
 
   @Override
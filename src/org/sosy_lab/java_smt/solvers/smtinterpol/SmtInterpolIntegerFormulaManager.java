@@ -35,6 +35,14 @@ class SmtInterpolIntegerFormulaManager
     super(pCreator, pNonLinearArithmetic);
   }
 
+  @Override
+  protected NonLinearSupport getNonLinearSupport(NonLinearOperation pOperation) {
+    if (pOperation == NonLinearOperation.MODULO) {
+      return NonLinearSupport.CONSTANT_ONLY;
+    }
+    return super.getNonLinearSupport(pOperation);
+  }
+
   @Override
   protected Term makeNumberImpl(long i) {
     return getFormulaCreator().getEnv().numeral(BigInteger.valueOf(i));
@@ -19,9 +19,9 @@
  */
 package org.sosy_lab.java_smt.solvers.smtinterpol;
 
+import com.google.common.base.Predicate;
 import com.google.common.collect.ImmutableList;
-import com.google.common.collect.ImmutableSet;
-import com.google.common.collect.ImmutableSet.Builder;
+import com.google.common.collect.Iterators;
 import com.google.common.collect.Lists;
 import de.uni_freiburg.informatik.ultimate.logic.ApplicationTerm;
 import de.uni_freiburg.informatik.ultimate.logic.ConstantTerm;
@@ -33,7 +33,12 @@ import de.uni_freiburg.informatik.ultimate.logic.Term;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 import javax.annotation.Nullable;
 import org.sosy_lab.java_smt.api.FormulaType;
 import org.sosy_lab.java_smt.basicimpl.AbstractModel.CachingAbstractModel;
@@ -63,24 +68,40 @@ class SmtInterpolModel extends CachingAbstractModel<Term, Sort, SmtInterpolEnvir
   }
 
   @Override
-  protected ImmutableList<ValueAssignment> modelToList() {
-
-    Builder<ValueAssignment> assignments = ImmutableSet.builder();
+  protected Iterator<ValueAssignment> modelIterator(
+      Predicate<? super String> pNames, boolean pExpandArrays) {
 
+    // collecting the symbols is cheap, the assignments are built on demand
+    Map<Term, String> symbols = new LinkedHashMap<>();
     for (Term t : assertedTerms) {
       creator.extractVariablesAndUFs(
           t,
           true,
           (name, f) -> {
-            if (f.getSort().isArraySort()) {
-              assignments.addAll(getArrayAssignment(name, f, f, Collections.emptyList()));
-            } else {
-              assignments.add(getAssignment(name, (ApplicationTerm) f));
+            if (pNames.apply(name) && (pExpandArrays || !f.getSort().isArraySort())) {
+              symbols.putIfAbsent(f, name);
             }
           });
     }
 
-    return assignments.build().asList();
+    Iterator<ValueAssignment> assignments =
+        Iterators.concat(
+            Iterators.<Map.Entry<Term, String>, Iterator<ValueAssignment>>transform(
+                symbols.entrySet().iterator(),
+                entry -> {
+                  Term f = entry.getKey();
+                  if (f.getSort().isArraySort()) {
+                    return getArrayAssignment(entry.getValue(), f, f, Collections.emptyList())
+                        .iterator();
+                  } else {
+                    return Iterators.singletonIterator(
+                        getAssignment(entry.getValue(), (ApplicationTerm) f));
+                  }
+                }));
+
+    // different symbols can lead to equal assignments
+    Set<ValueAssignment> seen = new HashSet<>();
+    return Iterators.filter(assignments, seen::add);
   }
 
   private Collection<ValueAssignment> getArrayAssignment(
@@ -109,7 +130,7 @@ class SmtInterpolModel extends CachingAbstractModel<Term, Sort, SmtInterpolEnvir
               new ValueAssignment(
                   creator.encapsulateWithTypeOf(select),
                   creator.encapsulateWithTypeOf(model.evaluate(content)),
-                  creator.encapsulateBoolean(creator.getEnv().term("=", select, content)),
+                  () -> creator.encapsulateBoolean(creator.getEnv().term("=", select, content)),
                   symbol,
                   evaluateImpl(content),
                   innerIndices));
@@ -135,7 +156,7 @@ class SmtInterpolModel extends CachingAbstractModel<Term, Sort, SmtInterpolEnvir
     return new ValueAssignment(
         creator.encapsulateWithTypeOf(term),
         creator.encapsulateWithTypeOf(value),
-        creator.encapsulateBoolean(creator.getEnv().term("=", term, value)),
+        () -> creator.encapsulateBoolean(creator.getEnv().term("=", term, value)),
         key,
         evaluateImpl(term),
         argumentInterpretation);
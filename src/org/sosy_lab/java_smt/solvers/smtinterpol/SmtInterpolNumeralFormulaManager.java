@@ -50,6 +50,17 @@ abstract class SmtInterpolNumeralFormulaManager<
     env = pCreator.getEnv();
   }
 
+  @Override
+  protected NonLinearSupport getNonLinearSupport(NonLinearOperation pOperation) {
+    switch (pOperation) {
+      case MULTIPLY:
+      case DIVIDE:
+        return NonLinearSupport.CONSTANT_ONLY;
+      default:
+        return NonLinearSupport.NONE;
+    }
+  }
+
   /** check for ConstantTerm with Number or ApplicationTerm with negative Number */
   @Override
   protected final boolean isNumeral(Term t) {
@@ -90,7 +101,8 @@ abstract class SmtInterpolNumeralFormulaManager<
    *
    * <p>Example: TRUE for "1", "2+3", "ite(x,2,3) and FALSE for "x", "x+2", "ite(1=2,x,0)"
    */
-  boolean consistsOfNumerals(Term val) {
+  @Override
+  protected boolean consistsOfNumerals(Term val) {
     Set<Term> finished = new HashSet<>();
     Deque<Term> waitlist = new ArrayDeque<>();
     waitlist.add(val);
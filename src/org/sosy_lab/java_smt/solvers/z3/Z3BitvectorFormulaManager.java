@@ -106,6 +106,11 @@ class Z3BitvectorFormulaManager extends AbstractBitvectorFormulaManager<Long, Lo
     return Native.mkBvxor(z3context, pBits1, pBits2);
   }
 
+  @Override
+  protected boolean isConstant(Long pParam) {
+    return Native.isNumeralAst(z3context, pParam);
+  }
+
   @Override
   public Long negate(Long pNumber) {
     return Native.mkBvneg(z3context, pNumber);
@@ -21,11 +21,11 @@ package org.sosy_lab.java_smt.solvers.z3;
 
 import com.google.common.primitives.Longs;
 import com.microsoft.z3.Native;
+import com.microsoft.z3.enumerations.Z3_ast_kind;
+import com.microsoft.z3.enumerations.Z3_decl_kind;
 import java.util.Collection;
 import java.util.Iterator;
-import java.util.stream.Collector;
-import java.util.stream.Collectors;
-import org.sosy_lab.java_smt.api.BooleanFormula;
+import javax.annotation.Nullable;
 import org.sosy_lab.java_smt.basicimpl.AbstractBooleanFormulaManager;
 
 class Z3BooleanFormulaManager extends AbstractBooleanFormulaManager<Long, Long, Long, Long> {
@@ -63,6 +63,16 @@ class Z3BooleanFormulaManager extends AbstractBooleanFormulaManager<Long, Long,
     return Native.mkNot(z3context, pParam);
   }
 
+  @Override
+  protected @Nullable Long getNegatedArgumentImpl(Long pParam) {
+    if (Native.getAstKind(z3context, pParam) == Z3_ast_kind.Z3_APP_AST.toInt()
+        && Native.getDeclKind(z3context, Native.getAppDecl(z3context, pParam))
+            == Z3_decl_kind.Z3_OP_NOT.toInt()) {
+      return Native.getAppArg(z3context, pParam, 0);
+    }
+    return null;
+  }
+
   @Override
   protected Long and(Long pParam1, Long pParam2) {
     if (isTrue(pParam1)) {
@@ -104,11 +114,6 @@ class Z3BooleanFormulaManager extends AbstractBooleanFormulaManager<Long, Long,
     return Native.mkOr(z3context, params.size(), Longs.toArray(params));
   }
 
-  @Override
-  public Collector<BooleanFormula, ?, BooleanFormula> toDisjunction() {
-    return Collectors.collectingAndThen(Collectors.toList(), this::or);
-  }
-
   @Override
   protected Long andImpl(Collection<Long> params) {
     if (params.size() == 2) {
@@ -118,11 +123,6 @@ class Z3BooleanFormulaManager extends AbstractBooleanFormulaManager<Long, Long,
     return Native.mkAnd(z3context, params.size(), Longs.toArray(params));
   }
 
-  @Override
-  public Collector<BooleanFormula, ?, BooleanFormula> toConjunction() {
-    return Collectors.collectingAndThen(Collectors.toList(), this::and);
-  }
-
   @Override
   protected Long xor(Long pParam1, Long pParam2) {
     return Native.mkXor(z3context, pParam1, pParam2);
@@ -222,8 +222,21 @@ class Z3FormulaCreator extends FormulaCreator<Long, Long, Long, Long> {
       Long pTerm, FormulaType<TD> pIndexType, FormulaType<TR> pElementType) {
     assert getFormulaType(pTerm).equals(FormulaType.getArrayType(pIndexType, pElementType));
     cleanupReferences();
-    return storePhantomReference(
-        new Z3ArrayFormula<>(getEnv(), pTerm, pIndexType, pElementType), pTerm);
+    if (!isInterning()) {
+      return storePhantomReference(
+          new Z3ArrayFormula<>(getEnv(), pTerm, pIndexType, pElementType), pTerm);
+    }
+    FormulaType<?> type = FormulaType.getArrayType(pIndexType, pElementType);
+    @SuppressWarnings("unchecked")
+    ArrayFormula<TD, TR> interned = (ArrayFormula<TD, TR>) lookupInterned(pTerm, type);
+    if (interned != null) {
+      return interned;
+    }
+    return intern(
+        pTerm,
+        type,
+        storePhantomReference(
+            new Z3ArrayFormula<>(getEnv(), pTerm, pIndexType, pElementType), pTerm));
   }
 
   private <T extends Z3Formula> T storePhantomReference(T out, Long pTerm) {
@@ -234,6 +247,11 @@ class Z3FormulaCreator extends FormulaCreator<Long, Long, Long, Long> {
     return out;
   }
 
+  /** Register a new formula for phantom references and interning. */
+  private <T extends Z3Formula> T store(T out, FormulaType<?> pType, Long pTerm) {
+    return intern(pTerm, pType, storePhantomReference(out, pTerm));
+  }
+
   @SuppressWarnings("unchecked")
   @Override
   public <T extends Formula> T encapsulate(FormulaType<T> pType, Long pTerm) {
@@ -243,24 +261,28 @@ class Z3FormulaCreator extends FormulaCreator<Long, Long, Long, Long> {
         : String.format(
             "Trying to encapsulate formula of type %s as %s", getFormulaType(pTerm), pType);
     cleanupReferences();
+    Formula interned = lookupInterned(pTerm, pType);
+    if (interned != null) {
+      return (T) interned;
+    }
     if (pType.isBooleanType()) {
-      return (T) storePhantomReference(new Z3BooleanFormula(getEnv(), pTerm), pTerm);
+      return (T) store(new Z3BooleanFormula(getEnv(), pTerm), pType, pTerm);
     } else if (pType.isIntegerType()) {
-      return (T) storePhantomReference(new Z3IntegerFormula(getEnv(), pTerm), pTerm);
+      return (T) store(new Z3IntegerFormula(getEnv(), pTerm), pType, pTerm);
     } else if (pType.isRationalType()) {
-      return (T) storePhantomReference(new Z3RationalFormula(getEnv(), pTerm), pTerm);
+      return (T) store(new Z3RationalFormula(getEnv(), pTerm), pType, pTerm);
     } else if (pType.isBitvectorType()) {
-      return (T) storePhantomReference(new Z3BitvectorFormula(getEnv(), pTerm), pTerm);
+      return (T) store(new Z3BitvectorFormula(getEnv(), pTerm), pType, pTerm);
     } else if (pType.isFloatingPointType()) {
-      return (T) storePhantomReference(new Z3FloatingPointFormula(getEnv(), pTerm), pTerm);
+      return (T) store(new Z3FloatingPointFormula(getEnv(), pTerm), pType, pTerm);
     } else if (pType.isFloatingPointRoundingModeType()) {
-      return (T)
-          storePhantomReference(new Z3FloatingPointRoundingModeFormula(getEnv(), pTerm), pTerm);
+      return (T) store(new Z3FloatingPointRoundingModeFormula(getEnv(), pTerm), pType, pTerm);
     } else if (pType.isArrayType()) {
       ArrayFormulaType<?, ?> arrFt = (ArrayFormulaType<?, ?>) pType;
       return (T)
-          storePhantomReference(
+          store(
               new Z3ArrayFormula<>(getEnv(), pTerm, arrFt.getIndexType(), arrFt.getElementType()),
+              pType,
               pTerm);
     }
 
@@ -270,13 +292,15 @@ class Z3FormulaCreator extends FormulaCreator<Long, Long, Long, Long> {
   @Override
   public BooleanFormula encapsulateBoolean(Long pTerm) {
     assert getFormulaType(pTerm).isBooleanType();
-    cleanupReferences();
-    return storePhantomReference(new Z3BooleanFormula(getEnv(), pTerm), pTerm);
+    return encapsulate(FormulaType.BooleanType, pTerm);
   }
 
   @Override
   public BitvectorFormula encapsulateBitvector(Long pTerm) {
     assert getFormulaType(pTerm).isBitvectorType();
+    if (isInterning()) {
+      return (BitvectorFormula) encapsulateWithTypeOf(pTerm);
+    }
     cleanupReferences();
     return storePhantomReference(new Z3BitvectorFormula(getEnv(), pTerm), pTerm);
   }
@@ -284,6 +308,9 @@ class Z3FormulaCreator extends FormulaCreator<Long, Long, Long, Long> {
   @Override
   protected FloatingPointFormula encapsulateFloatingPoint(Long pTerm) {
     assert getFormulaType(pTerm).isFloatingPointType();
+    if (isInterning()) {
+      return (FloatingPointFormula) encapsulateWithTypeOf(pTerm);
+    }
     cleanupReferences();
     return storePhantomReference(new Z3FloatingPointFormula(getEnv(), pTerm), pTerm);
   }
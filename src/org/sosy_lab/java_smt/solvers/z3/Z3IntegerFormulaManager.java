@@ -37,6 +37,14 @@ class Z3IntegerFormulaManager extends Z3NumeralFormulaManager<IntegerFormula, In
     return getFormulaCreator().getIntegerType();
   }
 
+  @Override
+  protected NonLinearSupport getNonLinearSupport(NonLinearOperation pOperation) {
+    if (pOperation == NonLinearOperation.MODULO) {
+      return NonLinearSupport.FULL;
+    }
+    return super.getNonLinearSupport(pOperation);
+  }
+
   @Override
   protected Long makeNumberImpl(double pNumber) {
     return makeNumberImpl((long) pNumber);
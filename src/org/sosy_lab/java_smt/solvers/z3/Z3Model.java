@@ -20,11 +20,15 @@
 package org.sosy_lab.java_smt.solvers.z3;
 
 import com.google.common.base.Preconditions;
+import com.google.common.base.Predicate;
 import com.google.common.base.Verify;
 import com.google.common.base.VerifyException;
+import com.google.common.collect.ContiguousSet;
+import com.google.common.collect.DiscreteDomain;
 import com.google.common.collect.ImmutableList;
-import com.google.common.collect.ImmutableList.Builder;
+import com.google.common.collect.Iterators;
 import com.google.common.collect.Lists;
+import com.google.common.collect.Range;
 import com.microsoft.z3.Native;
 import com.microsoft.z3.enumerations.Z3_decl_kind;
 import com.microsoft.z3.enumerations.Z3_sort_kind;
@@ -32,10 +36,12 @@ import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.HashSet;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Set;
 import java.util.regex.Pattern;
 import javax.annotation.Nullable;
+import org.sosy_lab.java_smt.api.BooleanFormula;
 import org.sosy_lab.java_smt.basicimpl.AbstractModel.CachingAbstractModel;
 
 class Z3Model extends CachingAbstractModel<Long, Long, Long> {
@@ -78,31 +84,113 @@ class Z3Model extends CachingAbstractModel<Long, Long, Long> {
     return null;
   }
 
+  /**
+   * Evaluate all terms with a single call to Z3, such that the evaluator can share the values of
+   * common sub-terms. The terms are passed as arguments of a fresh uninterpreted function, which is
+   * not part of the model and thus keeps its evaluated arguments.
+   */
+  @Override
+  protected List<Object> evaluateAllImpl(List<Long> formulas) {
+    Preconditions.checkState(!closed);
+    if (formulas.size() < 2) {
+      return super.evaluateAllImpl(formulas);
+    }
+
+    long[] args = new long[formulas.size()];
+    long[] sorts = new long[formulas.size()];
+    for (int i = 0; i < args.length; i++) {
+      args[i] = formulas.get(i);
+      sorts[i] = Native.getSort(z3context, args[i]);
+    }
+    long tupleDecl =
+        Native.mkFreshFuncDecl(
+            z3context, "evaluateAll", args.length, sorts, Native.mkBoolSort(z3context));
+    Native.incRef(z3context, tupleDecl);
+    long tuple = Native.mkApp(z3context, tupleDecl, args.length, args);
+    Native.incRef(z3context, tuple);
+
+    try {
+      Native.LongPtr out = new Native.LongPtr();
+      boolean status = Native.modelEval(z3context, model, tuple, false, out);
+      Verify.verify(status, "Error during model evaluation");
+      long evaluated = out.value;
+      Native.incRef(z3context, evaluated);
+      try {
+        if (!Native.isApp(z3context, evaluated)
+            || !Native.isEqFuncDecl(
+                z3context, tupleDecl, Native.getAppDecl(z3context, evaluated))) {
+          // should not happen, but evaluating each term on its own is always correct
+          return super.evaluateAllImpl(formulas);
+        }
+        List<Object> values = new ArrayList<>(args.length);
+        for (int i = 0; i < args.length; i++) {
+          long value = Native.getAppArg(z3context, evaluated, i);
+          values.add(z3creator.isConstant(value) ? z3creator.convertValue(value) : null);
+        }
+        return values;
+      } finally {
+        Native.decRef(z3context, evaluated);
+      }
+    } finally {
+      Native.decRef(z3context, tuple);
+      Native.decRef(z3context, tupleDecl);
+    }
+  }
+
   @Override
-  protected ImmutableList<ValueAssignment> modelToList() {
+  protected Iterator<ValueAssignment> modelIterator(
+      Predicate<? super String> pNames, boolean pExpandArrays) {
     Preconditions.checkState(!closed);
-    Builder<ValueAssignment> out = ImmutableList.builder();
+    Iterator<Integer> constIndices =
+        ContiguousSet.create(
+                Range.closedOpen(0, Native.modelGetNumConsts(z3context, model)),
+                DiscreteDomain.integers())
+            .iterator();
+    Iterator<Integer> funcIndices =
+        ContiguousSet.create(
+                Range.closedOpen(0, Native.modelGetNumFuncs(z3context, model)),
+                DiscreteDomain.integers())
+            .iterator();
+
+    // Iterate through constants, then through function applications.
+    return Iterators.concat(
+        Iterators.concat(
+            Iterators.<Integer, Iterator<ValueAssignment>>transform(
+                constIndices, constIdx -> getConstAssignments(constIdx, pNames, pExpandArrays))),
+        Iterators.concat(
+            Iterators.<Integer, Iterator<ValueAssignment>>transform(
+                funcIndices, funcIdx -> getFunctionAssignments(funcIdx, pNames))));
+  }
 
-    // Iterate through constants.
-    for (int constIdx = 0; constIdx < Native.modelGetNumConsts(z3context, model); constIdx++) {
-      long keyDecl = Native.modelGetConstDecl(z3context, model, constIdx);
-      Native.incRef(z3context, keyDecl);
-      out.addAll(getConstAssignments(keyDecl));
+  private Iterator<ValueAssignment> getConstAssignments(
+      int constIdx, Predicate<? super String> pNames, boolean pExpandArrays) {
+    Preconditions.checkState(!closed);
+    long keyDecl = Native.modelGetConstDecl(z3context, model, constIdx);
+    Native.incRef(z3context, keyDecl);
+    try {
+      if (!pNames.apply(z3creator.symbolToString(Native.getDeclName(z3context, keyDecl)))) {
+        return Collections.emptyIterator();
+      }
+      return getConstAssignments(keyDecl, pExpandArrays).iterator();
+    } finally {
       Native.decRef(z3context, keyDecl);
     }
+  }
 
-    // Iterate through function applications.
-    for (int funcIdx = 0; funcIdx < Native.modelGetNumFuncs(z3context, model); funcIdx++) {
-      long funcDecl = Native.modelGetFuncDecl(z3context, model, funcIdx);
-      Native.incRef(z3context, funcDecl);
-      if (!isInternalSymbol(funcDecl)) {
-        String functionName = z3creator.symbolToString(Native.getDeclName(z3context, funcDecl));
-        out.addAll(getFunctionAssignments(funcDecl, funcDecl, functionName));
+  private Iterator<ValueAssignment> getFunctionAssignments(
+      int funcIdx, Predicate<? super String> pNames) {
+    Preconditions.checkState(!closed);
+    long funcDecl = Native.modelGetFuncDecl(z3context, model, funcIdx);
+    Native.incRef(z3context, funcDecl);
+    try {
+      String functionName = z3creator.symbolToString(Native.getDeclName(z3context, funcDecl));
+      if (isInternalSymbol(funcDecl) || !pNames.apply(functionName)) {
+        return Collections.emptyIterator();
       }
+      return getFunctionAssignments(funcDecl, funcDecl, functionName).iterator();
+    } finally {
       Native.decRef(z3context, funcDecl);
     }
-
-    return out.build();
   }
 
   /**
@@ -118,7 +206,7 @@ class Z3Model extends CachingAbstractModel<Long, Long, Long> {
   }
 
   /** @return ValueAssignments for a constant declaration in the model */
-  private Collection<ValueAssignment> getConstAssignments(long keyDecl) {
+  private Collection<ValueAssignment> getConstAssignments(long keyDecl, boolean expandArrays) {
     Preconditions.checkArgument(
         Native.getArity(z3context, keyDecl) == 0, "Declaration is not a constant");
 
@@ -127,9 +215,6 @@ class Z3Model extends CachingAbstractModel<Long, Long, Long> {
     checkReturnValue(value, keyDecl);
     Native.incRef(z3context, value);
 
-    long equality = Native.mkEq(z3context, var, value);
-    Native.incRef(z3context, equality);
-
     try {
       long symbol = Native.getDeclName(z3context, keyDecl);
       if (z3creator.isConstant(value)) {
@@ -137,11 +222,14 @@ class Z3Model extends CachingAbstractModel<Long, Long, Long> {
             new ValueAssignment(
                 z3creator.encapsulateWithTypeOf(var),
                 z3creator.encapsulateWithTypeOf(value),
-                z3creator.encapsulateBoolean(equality),
+                () -> makeEquality(var, value),
                 z3creator.symbolToString(symbol),
                 z3creator.convertValue(value),
                 ImmutableList.of()));
 
+      } else if (!expandArrays) {
+        return Collections.emptyList();
+
       } else if (Native.isAsArray(z3context, value)) {
         long arrayFormula = Native.mkConst(z3context, symbol, Native.getSort(z3context, value));
         Native.incRef(z3context, arrayFormula);
@@ -200,14 +288,11 @@ class Z3Model extends CachingAbstractModel<Long, Long, Long> {
         long nestedValue = Native.getAppArg(z3context, value, 2);
         Native.incRef(z3context, nestedValue);
 
-        long equality = Native.mkEq(z3context, select, nestedValue);
-        Native.incRef(z3context, equality);
-
         out.add(
             new ValueAssignment(
                 z3creator.encapsulateWithTypeOf(select),
                 z3creator.encapsulateWithTypeOf(nestedValue),
-                z3creator.encapsulateBoolean(equality),
+                () -> makeEquality(select, nestedValue),
                 z3creator.symbolToString(arraySymbol),
                 z3creator.convertValue(nestedValue),
                 ImmutableList.of(evaluateImpl(arrayIndex))));
@@ -265,15 +350,11 @@ class Z3Model extends CachingAbstractModel<Long, Long, Long> {
       innerIndices.add(evaluateImpl(arrayIndex));
 
       if (z3creator.isConstant(arrayValue)) {
-
-        long equality = Native.mkEq(z3context, select, arrayValue);
-        Native.incRef(z3context, equality);
-
         lst.add(
             new ValueAssignment(
                 z3creator.encapsulateWithTypeOf(select),
                 z3creator.encapsulateWithTypeOf(arrayValue),
-                z3creator.encapsulateBoolean(equality),
+                () -> makeEquality(select, arrayValue),
                 z3creator.symbolToString(arraySymbol),
                 z3creator.convertValue(arrayValue),
                 innerIndices));
@@ -291,6 +372,16 @@ class Z3Model extends CachingAbstractModel<Long, Long, Long> {
     return lst;
   }
 
+  /**
+   * Create the equality of key and value of an assignment. Both terms are referenced by the
+   * encapsulated key and value of the assignment, thus they are still alive when this is called.
+   */
+  private BooleanFormula makeEquality(long key, long value) {
+    long equality = Native.mkEq(z3context, key, value);
+    Native.incRef(z3context, equality);
+    return z3creator.encapsulateBoolean(equality);
+  }
+
   private void checkReturnValue(long value, long funcDecl) {
     if (value == 0) {
       throw new VerifyException(
@@ -379,13 +470,10 @@ class Z3Model extends CachingAbstractModel<Long, Long, Long> {
       Native.decRef(z3context, arg);
     }
 
-    long equality = Native.mkEq(z3context, func, entryValue);
-    Native.incRef(z3context, equality);
-
     return new ValueAssignment(
         z3creator.encapsulateWithTypeOf(func),
         z3creator.encapsulateWithTypeOf(entryValue),
-        z3creator.encapsulateBoolean(equality),
+        () -> makeEquality(func, entryValue),
         functionName,
         value,
         argumentInterpretation);
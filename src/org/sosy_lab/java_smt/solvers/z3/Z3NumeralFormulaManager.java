@@ -40,6 +40,17 @@ abstract class Z3NumeralFormulaManager<
 
   protected abstract long getNumeralType();
 
+  @Override
+  protected NonLinearSupport getNonLinearSupport(NonLinearOperation pOperation) {
+    switch (pOperation) {
+      case MULTIPLY:
+      case DIVIDE:
+        return NonLinearSupport.FULL;
+      default:
+        return NonLinearSupport.NONE;
+    }
+  }
+
   @Override
   protected boolean isNumeral(Long val) {
     return Native.isNumeralAst(z3context, val);
@@ -124,7 +124,7 @@ abstract class Z3SolverBasedProver<T> implements BasicProverEnvironment<T> {
   public ImmutableList<ValueAssignment> getModelAssignments() throws SolverException {
     Preconditions.checkState(!closed);
     try (Z3Model model = getModel()) {
-      return model.modelToList();
+      return ImmutableList.copyOf(model);
     }
   }
 
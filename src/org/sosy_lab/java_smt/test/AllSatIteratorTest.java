@@ -0,0 +1,132 @@
+/*
+ *  JavaSMT is an API wrapper for a collection of SMT solvers.
+ *  This file is part of JavaSMT.
+ *
+ *  Copyright (C) 2007-2016  Dirk Beyer
+ *  All rights reserved.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.sosy_lab.java_smt.test;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import com.google.common.collect.ImmutableList;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.Parameterized;
+import org.junit.runners.Parameterized.Parameter;
+import org.junit.runners.Parameterized.Parameters;
+import org.sosy_lab.java_smt.SolverContextFactory.Solvers;
+import org.sosy_lab.java_smt.api.BooleanFormula;
+import org.sosy_lab.java_smt.api.NumeralFormula.IntegerFormula;
+import org.sosy_lab.java_smt.api.ProverEnvironment;
+import org.sosy_lab.java_smt.api.SolverContext.ProverOptions;
+import org.sosy_lab.java_smt.api.SolverException;
+import org.sosy_lab.java_smt.utils.AllSatIterator;
+import org.sosy_lab.java_smt.utils.SolverUtils;
+
+@RunWith(Parameterized.class)
+public class AllSatIteratorTest extends SolverBasedTest0 {
+
+  @Parameters(name = "{0}")
+  public static Object[] getAllSolvers() {
+    return Solvers.values();
+  }
+
+  @Parameter(0)
+  public Solvers solver;
+
+  @Override
+  protected Solvers solverToUse() {
+    return solver;
+  }
+
+  private ProverEnvironment prover;
+  private BooleanFormula a;
+  private BooleanFormula b;
+  private BooleanFormula c;
+
+  @Before
+  public void setupEnvironment() {
+    prover = context.newProverEnvironment(ProverOptions.GENERATE_MODELS);
+    a = bmgr.makeVariable("a");
+    b = bmgr.makeVariable("b");
+    c = bmgr.makeVariable("c");
+  }
+
+  @After
+  public void closeEnvironment() {
+    if (prover != null) {
+      prover.close();
+    }
+  }
+
+  private AllSatIterator iterator(BooleanFormula... important) {
+    return SolverUtils.allSatIterator(mgr, prover, ImmutableList.copyOf(important));
+  }
+
+  @Test
+  public void enumeratesAllModels() throws SolverException, InterruptedException {
+    prover.push(bmgr.xor(a, b));
+
+    try (AllSatIterator models = iterator(a, b)) {
+      assertThat(ImmutableList.copyOf(models))
+          .containsExactly(ImmutableList.of(a, bmgr.not(b)), ImmutableList.of(bmgr.not(a), b));
+      assertThat(models.getModelCount()).isEqualTo(2);
+      assertThat(models.getSolverCalls()).isEqualTo(3);
+    }
+
+    // the blocking clauses are gone
+    assertThat(prover.isUnsat()).isFalse();
+  }
+
+  @Test
+  public void unsatFormula() throws SolverException, InterruptedException {
+    IntegerFormula x = imgr.makeVariable("x");
+    prover.push(bmgr.and(a, imgr.equal(x, imgr.makeNumber(1)), imgr.equal(x, imgr.makeNumber(2))));
+
+    try (AllSatIterator models = iterator(a)) {
+      assertThat(models.nextModel()).isNull();
+      assertThat(models.hasNext()).isFalse();
+    }
+  }
+
+  @Test
+  public void earlyTermination() throws SolverException, InterruptedException {
+    prover.push(bmgr.or(a, b, c));
+
+    int allModels;
+    try (AllSatIterator models = iterator(a, b, c)) {
+      allModels = ImmutableList.copyOf(models).size();
+    }
+
+    List<List<BooleanFormula>> firstModels;
+    try (Stream<List<BooleanFormula>> models = iterator(a, b, c).stream()) {
+      firstModels = models.limit(1).collect(Collectors.toList());
+    }
+    assertThat(firstModels).hasSize(1);
+
+    // closing the stream has restored the stack, so all models are found again
+    try (AllSatIterator models = iterator(a, b, c)) {
+      assertThat(ImmutableList.copyOf(models)).hasSize(allModels);
+    }
+    prover.pop();
+    assertThat(prover.isUnsat()).isFalse();
+  }
+}
@@ -0,0 +1,154 @@
+/*
+ *  JavaSMT is an API wrapper for a collection of SMT solvers.
+ *  This file is part of JavaSMT.
+ *
+ *  Copyright (C) 2007-2016  Dirk Beyer
+ *  All rights reserved.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.sosy_lab.java_smt.test;
+
+import static com.google.common.truth.Truth.assertThat;
+import static com.google.common.truth.TruthJUnit.assume;
+import static org.sosy_lab.java_smt.SolverContextFactory.Solvers.MATHSAT5;
+import static org.sosy_lab.java_smt.SolverContextFactory.Solvers.Z3;
+
+import com.google.common.collect.ImmutableList;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.Parameterized;
+import org.junit.runners.Parameterized.Parameter;
+import org.junit.runners.Parameterized.Parameters;
+import org.sosy_lab.java_smt.SolverContextFactory.Solvers;
+import org.sosy_lab.java_smt.api.BasicProverEnvironment.AllSatCallback;
+import org.sosy_lab.java_smt.api.BooleanFormula;
+import org.sosy_lab.java_smt.api.NumeralFormula.IntegerFormula;
+import org.sosy_lab.java_smt.api.SolverException;
+import org.sosy_lab.java_smt.basicimpl.AssumptionBasedAllSat;
+
+@RunWith(Parameterized.class)
+public class AssumptionBasedAllSatTest extends SolverBasedTest0 {
+
+  @Parameters(name = "{0}")
+  public static Object[] getAllSolvers() {
+    return Solvers.values();
+  }
+
+  @Parameter(0)
+  public Solvers solver;
+
+  @Override
+  protected Solvers solverToUse() {
+    return solver;
+  }
+
+  @Before
+  public void requireAssumptions() {
+    assume()
+        .withMessage("Solver %s does not support solving with assumptions", solverToUse())
+        .that(solverToUse())
+        .isAnyOf(Z3, MATHSAT5);
+  }
+
+  private static class CubeCollector implements AllSatCallback<List<List<BooleanFormula>>> {
+
+    private final List<List<BooleanFormula>> cubes = new ArrayList<>();
+
+    @Override
+    public void apply(List<BooleanFormula> pCube) {
+      cubes.add(ImmutableList.copyOf(pCube));
+    }
+
+    @Override
+    public List<List<BooleanFormula>> getResult() {
+      return cubes;
+    }
+  }
+
+  private void assertCoverage(BooleanFormula query, List<List<BooleanFormula>> cubes)
+      throws SolverException, InterruptedException {
+    List<BooleanFormula> disjuncts = new ArrayList<>();
+    for (List<BooleanFormula> cube : cubes) {
+      assertThatFormula(bmgr.and(cube)).implies(query);
+      disjuncts.add(bmgr.and(cube));
+    }
+    assertThatFormula(bmgr.or(disjuncts)).isEquivalentTo(query);
+  }
+
+  @Test
+  public void primeImplicants() throws SolverException, InterruptedException {
+    BooleanFormula a = bmgr.makeVariable("a");
+    BooleanFormula b = bmgr.makeVariable("b");
+    BooleanFormula c = bmgr.makeVariable("c");
+    BooleanFormula query = bmgr.or(a, bmgr.and(b, c));
+
+    List<List<BooleanFormula>> cubes =
+        new AssumptionBasedAllSat(context)
+            .allSat(query, new CubeCollector(), ImmutableList.of(a, b, c));
+
+    assertThat(cubes).containsExactly(ImmutableList.of(a), ImmutableList.of(b, c));
+    assertCoverage(query, cubes);
+  }
+
+  @Test
+  public void fewerCubesThanModels() throws SolverException, InterruptedException {
+    List<BooleanFormula> vars = new ArrayList<>();
+    for (int i = 0; i < 8; i++) {
+      vars.add(bmgr.makeVariable("p" + i));
+    }
+    BooleanFormula query = bmgr.or(vars);
+
+    AssumptionBasedAllSat allSat = new AssumptionBasedAllSat(context);
+    List<List<BooleanFormula>> cubes = allSat.allSat(query, new CubeCollector(), vars);
+
+    // 255 models, but one cube per variable
+    assertThat(cubes).hasSize(vars.size());
+    assertThat(allSat.getCubeCount()).isEqualTo(vars.size());
+    assertCoverage(query, cubes);
+  }
+
+  @Test
+  public void theoryPredicates() throws SolverException, InterruptedException {
+    IntegerFormula x = imgr.makeVariable("x");
+    BooleanFormula b1 = bmgr.makeVariable("b1");
+    BooleanFormula b2 = bmgr.makeVariable("b2");
+    BooleanFormula query =
+        bmgr.and(
+            bmgr.equivalence(b1, imgr.greaterThan(x, imgr.makeNumber(0))),
+            bmgr.equivalence(b2, imgr.greaterThan(x, imgr.makeNumber(5))));
+
+    List<List<BooleanFormula>> cubes =
+        new AssumptionBasedAllSat(context)
+            .allSat(query, new CubeCollector(), ImmutableList.of(b1, b2));
+
+    // the cubes do not imply the query, because x is not important, thus models are not shrunk
+    assertThat(cubes)
+        .containsExactly(
+            ImmutableList.of(b1, b2),
+            ImmutableList.of(b1, bmgr.not(b2)),
+            ImmutableList.of(bmgr.not(b1), bmgr.not(b2)));
+  }
+
+  @Test
+  public void unsatQuery() throws SolverException, InterruptedException {
+    BooleanFormula a = bmgr.makeVariable("a");
+    List<List<BooleanFormula>> cubes =
+        new AssumptionBasedAllSat(context)
+            .allSat(bmgr.and(a, bmgr.not(a)), new CubeCollector(), ImmutableList.of(a));
+    assertThat(cubes).isEmpty();
+  }
+}
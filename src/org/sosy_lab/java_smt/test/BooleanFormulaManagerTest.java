@@ -149,6 +149,23 @@ public class BooleanFormulaManagerTest extends SolverBasedTest0 {
     assertThatFormula(bmgr.and(bmgr.toConjunctionArgs(input, false))).isEquivalentTo(input);
   }
 
+  @Test
+  public void testConjunctionArgsExtractionLarge() {
+    ImmutableList.Builder<BooleanFormula> builder = ImmutableList.builder();
+    for (int i = 0; i < 100000; i++) {
+      builder.add(bmgr.makeVariable("v" + i));
+    }
+    List<BooleanFormula> vars = builder.build();
+
+    BooleanFormula input = bmgr.and(vars);
+    Truth.assertThat(bmgr.toConjunctionArgs(input, true)).containsExactlyElementsIn(vars);
+    Truth.assertThat(vars.stream().collect(bmgr.toConjunction())).isEqualTo(input);
+
+    BooleanFormula withDuplicates = bmgr.and(vars.get(0), vars.get(1), vars.get(0));
+    Truth.assertThat(bmgr.toConjunctionArgs(withDuplicates, true))
+        .containsExactly(vars.get(0), vars.get(1));
+  }
+
   @Test
   public void testDisjunctionArgsExtractionEmpty() throws SolverException, InterruptedException {
     BooleanFormula input = bmgr.makeBoolean(false);
@@ -0,0 +1,215 @@
+/*
+ *  JavaSMT is an API wrapper for a collection of SMT solvers.
+ *  This file is part of JavaSMT.
+ *
+ *  Copyright (C) 2007-2016  Dirk Beyer
+ *  All rights reserved.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.sosy_lab.java_smt.test;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.Parameterized;
+import org.junit.runners.Parameterized.Parameter;
+import org.junit.runners.Parameterized.Parameters;
+import org.sosy_lab.java_smt.SolverContextFactory.Solvers;
+import org.sosy_lab.java_smt.api.BooleanFormula;
+import org.sosy_lab.java_smt.api.BooleanFormulaManager;
+import org.sosy_lab.java_smt.api.IntegerFormulaManager;
+import org.sosy_lab.java_smt.api.Model;
+import org.sosy_lab.java_smt.api.Model.ValueAssignment;
+import org.sosy_lab.java_smt.api.NumeralFormula.IntegerFormula;
+import org.sosy_lab.java_smt.api.ProverEnvironment;
+import org.sosy_lab.java_smt.api.SolverContext.ProverOptions;
+import org.sosy_lab.java_smt.api.SolverException;
+import org.sosy_lab.java_smt.concurrent.ConcurrentSolverContext;
+
+@RunWith(Parameterized.class)
+public class ConcurrentSolverContextTest extends SolverBasedTest0 {
+
+  private static final int THREADS = 4;
+  private static final int FORMULAS_PER_THREAD = 100;
+
+  @Parameters(name = "{0}")
+  public static Object[] getAllSolvers() {
+    return Solvers.values();
+  }
+
+  @Parameter(0)
+  public Solvers solver;
+
+  @Override
+  protected Solvers solverToUse() {
+    return solver;
+  }
+
+  // not closed, the wrapped context is closed by the test base class
+  private ConcurrentSolverContext concurrentContext;
+  private BooleanFormulaManager cbmgr;
+  private IntegerFormulaManager cimgr;
+
+  @Before
+  public void setUp() {
+    concurrentContext = new ConcurrentSolverContext(context);
+    cbmgr = concurrentContext.getFormulaManager().getBooleanFormulaManager();
+    cimgr = concurrentContext.getFormulaManager().getIntegerFormulaManager();
+  }
+
+  @Test
+  public void managersAreReused() {
+    assertThat(concurrentContext.getFormulaManager().getBooleanFormulaManager())
+        .isSameAs(cbmgr);
+  }
+
+  @Test
+  public void concurrentFormulaCreation()
+      throws SolverException, InterruptedException, ExecutionException {
+    ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+    List<Future<BooleanFormula>> results = new ArrayList<>();
+    try {
+      for (int t = 0; t < THREADS; t++) {
+        final int thread = t;
+        results.add(
+            executor.submit(
+                () -> {
+                  List<BooleanFormula> constraints = new ArrayList<>();
+                  for (int i = 0; i < FORMULAS_PER_THREAD; i++) {
+                    IntegerFormula x = cimgr.makeVariable("x_" + thread + "_" + i);
+                    constraints.add(
+                        cbmgr.and(
+                            cimgr.greaterOrEquals(x, cimgr.makeNumber(i)),
+                            cimgr.lessThan(x, cimgr.makeNumber(i + thread + 1))));
+                  }
+                  return cbmgr.and(constraints);
+                }));
+      }
+
+      List<BooleanFormula> parts = new ArrayList<>();
+      for (Future<BooleanFormula> result : results) {
+        parts.add(result.get());
+      }
+
+      try (ProverEnvironment prover =
+          concurrentContext.newProverEnvironment(ProverOptions.GENERATE_MODELS)) {
+        prover.addConstraint(cbmgr.and(parts));
+        assertThat(prover.isUnsat()).isFalse();
+        try (Model model = prover.getModel()) {
+          // the only value in [i, i+1) is i
+          assertThat(model.evaluate(cimgr.makeVariable("x_0_7"))).isEqualTo(BigInteger.valueOf(7));
+        }
+      }
+    } finally {
+      executor.shutdownNow();
+    }
+
+    // each formula needs several calls to the solver
+    assertThat(concurrentContext.getLockAcquisitions())
+        .isAtLeast((long) THREADS * FORMULAS_PER_THREAD);
+    assertThat(concurrentContext.getContendedAcquisitions())
+        .isAtMost(concurrentContext.getLockAcquisitions());
+  }
+
+  @Test
+  public void concurrentProvers() throws InterruptedException, ExecutionException {
+    ExecutorService executor = Executors.newFixedThreadPool(2);
+    List<Future<Boolean>> results = new ArrayList<>();
+    try {
+      for (int t = 0; t < 2; t++) {
+        final int thread = t;
+        results.add(
+            executor.submit(
+                () -> {
+                  // both threads use a prover of the same context at the same time
+                  try (ProverEnvironment prover =
+                      concurrentContext.newProverEnvironment(ProverOptions.GENERATE_MODELS)) {
+                    IntegerFormula x = cimgr.makeVariable("p" + thread);
+                    for (int i = 0; i < FORMULAS_PER_THREAD; i++) {
+                      prover.push(cimgr.equal(x, cimgr.makeNumber(i)));
+                      if (prover.isUnsat()) {
+                        return false;
+                      }
+                      try (Model model = prover.getModel()) {
+                        if (!BigInteger.valueOf(i).equals(model.evaluate(x))) {
+                          return false;
+                        }
+                      }
+                      prover.push(cimgr.lessThan(x, cimgr.makeNumber(i)));
+                      if (!prover.isUnsat()) {
+                        return false;
+                      }
+                      prover.pop();
+                      prover.pop();
+                    }
+                    return true;
+                  }
+                }));
+      }
+
+      for (Future<Boolean> result : results) {
+        assertThat(result.get()).isTrue();
+      }
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+
+  @Test
+  public void collectorsAndAppendersUseLock() {
+    List<BooleanFormula> vars = new ArrayList<>();
+    for (int i = 0; i < 3; i++) {
+      vars.add(cbmgr.makeVariable("c" + i));
+    }
+    long before = concurrentContext.getLockAcquisitions();
+    BooleanFormula conjunction = vars.stream().collect(cbmgr.toConjunction());
+    assertThat(concurrentContext.getLockAcquisitions()).isGreaterThan(before);
+
+    before = concurrentContext.getLockAcquisitions();
+    assertThat(concurrentContext.getFormulaManager().dumpFormula(conjunction).toString())
+        .isNotEmpty();
+    assertThat(concurrentContext.getLockAcquisitions()).isGreaterThan(before + 1);
+  }
+
+  @Test
+  public void assignmentFormulasAreCreatedEagerly() throws SolverException, InterruptedException {
+    IntegerFormula x = cimgr.makeVariable("x");
+    try (ProverEnvironment prover =
+        concurrentContext.newProverEnvironment(ProverOptions.GENERATE_MODELS)) {
+      prover.addConstraint(cimgr.equal(x, cimgr.makeNumber(3)));
+      assertThat(prover.isUnsat()).isFalse();
+      for (ValueAssignment assignment : prover.getModelAssignments()) {
+        long before = concurrentContext.getLockAcquisitions();
+        assertThatFormula(assignment.getAssignmentAsFormula()).isSatisfiable();
+        assertThat(concurrentContext.getLockAcquisitions()).isEqualTo(before);
+      }
+    }
+  }
+
+  @Test
+  public void formulasAreCompatible() throws SolverException, InterruptedException {
+    BooleanFormula a = cbmgr.makeVariable("a");
+    // formulas from the wrapped context and from the facade can be mixed
+    assertThatFormula(bmgr.and(a, bmgr.not(bmgr.makeVariable("a")))).isUnsatisfiable();
+  }
+}
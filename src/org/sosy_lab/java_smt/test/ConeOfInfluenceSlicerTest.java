@@ -0,0 +1,192 @@
+/*
+ *  JavaSMT is an API wrapper for a collection of SMT solvers.
+ *  This file is part of JavaSMT.
+ *
+ *  Copyright (C) 2007-2016  Dirk Beyer
+ *  All rights reserved.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.sosy_lab.java_smt.test;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import com.google.common.collect.ImmutableList;
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.Parameterized;
+import org.junit.runners.Parameterized.Parameter;
+import org.junit.runners.Parameterized.Parameters;
+import org.sosy_lab.common.configuration.InvalidConfigurationException;
+import org.sosy_lab.java_smt.SolverContextFactory.Solvers;
+import org.sosy_lab.java_smt.api.BooleanFormula;
+import org.sosy_lab.java_smt.api.FormulaType;
+import org.sosy_lab.java_smt.api.Model;
+import org.sosy_lab.java_smt.api.NumeralFormula.IntegerFormula;
+import org.sosy_lab.java_smt.api.ProverEnvironment;
+import org.sosy_lab.java_smt.api.ProverEnvironment.AssertionHandle;
+import org.sosy_lab.java_smt.api.SolverContext;
+import org.sosy_lab.java_smt.api.SolverContext.ProverOptions;
+import org.sosy_lab.java_smt.api.SolverException;
+import org.sosy_lab.java_smt.utils.ConeOfInfluenceSlicer;
+import org.sosy_lab.java_smt.utils.SolverUtils;
+
+@RunWith(Parameterized.class)
+public class ConeOfInfluenceSlicerTest extends SolverBasedTest0 {
+
+  @Parameters(name = "{0}")
+  public static Object[] getAllSolvers() {
+    return Solvers.values();
+  }
+
+  @Parameter(0)
+  public Solvers solver;
+
+  @Override
+  protected Solvers solverToUse() {
+    return solver;
+  }
+
+  private ConeOfInfluenceSlicer slicer;
+
+  private IntegerFormula x;
+  private IntegerFormula y;
+  private IntegerFormula z;
+  private BooleanFormula xy;
+  private BooleanFormula yPos;
+  private BooleanFormula zPos;
+
+  @Before
+  public void setUp() {
+    slicer = SolverUtils.coneOfInfluenceSlicer(mgr);
+    x = imgr.makeVariable("x");
+    y = imgr.makeVariable("y");
+    z = imgr.makeVariable("z");
+    xy = imgr.lessThan(x, y);
+    yPos = imgr.greaterThan(y, imgr.makeNumber(0));
+    zPos = imgr.greaterThan(z, imgr.makeNumber(0));
+  }
+
+  @Test
+  public void partition() {
+    assertThat(slicer.partition(ImmutableList.of(bmgr.and(xy, zPos), yPos, bmgr.makeTrue())))
+        .containsExactly(ImmutableList.of(xy, yPos), ImmutableList.of(zPos))
+        .inOrder();
+  }
+
+  @Test
+  public void partitionWithUf() {
+    IntegerFormula fx = fmgr.declareAndCallUF("f", FormulaType.IntegerType, x);
+    IntegerFormula fz = fmgr.declareAndCallUF("f", FormulaType.IntegerType, z);
+    BooleanFormula first = imgr.equal(fx, imgr.makeNumber(1));
+    BooleanFormula second = imgr.equal(fz, imgr.makeNumber(2));
+    // both constraints are related by the function
+    assertThat(slicer.partition(ImmutableList.of(first, second)))
+        .containsExactly(ImmutableList.of(first, second));
+  }
+
+  @Test
+  public void slice() {
+    assertThat(slicer.slice(ImmutableList.of(xy, zPos, yPos), imgr.equal(x, imgr.makeNumber(3))))
+        .containsExactly(xy, yPos);
+  }
+
+  @Test
+  public void cachedParts() throws SolverException, InterruptedException {
+    try (ProverEnvironment prover = slicer.newSlicingProver(context)) {
+      prover.addConstraint(xy);
+      prover.addConstraint(zPos);
+      assertThat(prover.isUnsat()).isFalse();
+      assertThat(slicer.getSolverCalls()).isEqualTo(2);
+
+      // only the part with y changes
+      prover.push(yPos);
+      assertThat(prover.isUnsat()).isFalse();
+      assertThat(slicer.getSolverCalls()).isEqualTo(3);
+      assertThat(slicer.getCacheHits()).isEqualTo(1);
+
+      prover.pop();
+      assertThat(prover.isUnsat()).isFalse();
+      assertThat(slicer.getSolverCalls()).isEqualTo(3);
+
+      // only the part with z is related to the assumption
+      BooleanFormula zNeg = imgr.lessThan(z, imgr.makeNumber(0));
+      assertThat(prover.isUnsatWithAssumptions(ImmutableList.of(zNeg))).isTrue();
+      assertThat(slicer.getSolverCalls()).isEqualTo(4);
+    }
+  }
+
+  @Test
+  public void retractableConstraintsAndForking() throws SolverException, InterruptedException {
+    try (ProverEnvironment prover =
+        slicer.newSlicingProver(
+            context, ProverOptions.ENABLE_RETRACTABLE_CONSTRAINTS, ProverOptions.ENABLE_FORKING)) {
+      prover.addConstraint(zPos);
+      AssertionHandle zNeg = prover.addRetractable(imgr.lessThan(z, imgr.makeNumber(0)));
+      assertThat(prover.isUnsat()).isTrue();
+
+      try (ProverEnvironment fork = prover.fork()) {
+        prover.retract(zNeg);
+        assertThat(prover.isUnsat()).isFalse();
+        assertThat(fork.isUnsat()).isTrue();
+        fork.retract(zNeg);
+        assertThat(fork.isUnsat()).isFalse();
+      }
+    }
+  }
+
+  @Test
+  public void modelOfAllParts() throws SolverException, InterruptedException {
+    try (ProverEnvironment prover =
+        slicer.newSlicingProver(context, ProverOptions.GENERATE_MODELS)) {
+      prover.addConstraint(imgr.equal(x, imgr.makeNumber(1)));
+      prover.addConstraint(imgr.equal(z, imgr.makeNumber(2)));
+      assertThat(prover.isUnsat()).isFalse();
+      try (Model model = prover.getModel()) {
+        assertThat(model.evaluate(x)).isEqualTo(BigInteger.ONE);
+        assertThat(model.evaluate(z)).isEqualTo(BigInteger.valueOf(2));
+      }
+    }
+  }
+
+  @Test
+  public void parallelParts()
+      throws SolverException, InterruptedException, InvalidConfigurationException {
+    List<SolverContext> workers = new ArrayList<>();
+    try {
+      for (int i = 0; i < 2; i++) {
+        workers.add(factory.generateContext());
+      }
+      slicer.setParallelWorkers(workers);
+      try (ProverEnvironment prover = slicer.newSlicingProver(context)) {
+        for (int i = 0; i < 5; i++) {
+          IntegerFormula v = imgr.makeVariable("v" + i);
+          prover.addConstraint(imgr.greaterThan(v, imgr.makeNumber(i)));
+        }
+        assertThat(prover.isUnsat()).isFalse();
+        assertThat(slicer.getSolverCalls()).isEqualTo(5);
+
+        prover.addConstraint(imgr.lessThan(imgr.makeVariable("v3"), imgr.makeNumber(0)));
+        assertThat(prover.isUnsat()).isTrue();
+      }
+    } finally {
+      for (SolverContext worker : workers) {
+        worker.close();
+      }
+    }
+  }
+}
@@ -0,0 +1,86 @@
+/*
+ *  JavaSMT is an API wrapper for a collection of SMT solvers.
+ *  This file is part of JavaSMT.
+ *
+ *  Copyright (C) 2007-2016  Dirk Beyer
+ *  All rights reserved.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.sosy_lab.java_smt.test;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.Parameterized;
+import org.junit.runners.Parameterized.Parameter;
+import org.junit.runners.Parameterized.Parameters;
+import org.sosy_lab.common.configuration.ConfigurationBuilder;
+import org.sosy_lab.java_smt.SolverContextFactory.Solvers;
+import org.sosy_lab.java_smt.api.BitvectorFormula;
+import org.sosy_lab.java_smt.api.BooleanFormula;
+import org.sosy_lab.java_smt.api.NumeralFormula.IntegerFormula;
+import org.sosy_lab.java_smt.api.SolverException;
+
+@RunWith(Parameterized.class)
+public class FormulaInterningTest extends SolverBasedTest0 {
+
+  @Parameters(name = "{0}")
+  public static Object[] getAllSolvers() {
+    return Solvers.values();
+  }
+
+  @Parameter(0)
+  public Solvers solver;
+
+  @Override
+  protected Solvers solverToUse() {
+    return solver;
+  }
+
+  @Override
+  protected ConfigurationBuilder createTestConfigBuilder() {
+    return super.createTestConfigBuilder().setOption("solver.internFormulas", "true");
+  }
+
+  @Test
+  public void variablesAreIdentical() {
+    assertThat(bmgr.makeVariable("a")).isSameAs(bmgr.makeVariable("a"));
+    assertThat(imgr.makeVariable("x")).isSameAs(imgr.makeVariable("x"));
+  }
+
+  @Test
+  public void visitedVariablesAreIdentical() {
+    IntegerFormula x = imgr.makeVariable("x");
+    BooleanFormula a = bmgr.makeVariable("a");
+    BooleanFormula f = bmgr.and(a, imgr.lessThan(x, imgr.makeNumber(3)));
+    assertThat(mgr.extractVariables(f).get("x")).isSameAs(x);
+    assertThat(mgr.extractVariables(f).get("a")).isSameAs(a);
+  }
+
+  @Test
+  public void bitvectors() {
+    requireBitvectors();
+    BitvectorFormula x = bvmgr.makeVariable(8, "x");
+    assertThat(bvmgr.makeVariable(8, "x")).isSameAs(x);
+  }
+
+  @Test
+  public void solvingIsUnchanged() throws SolverException, InterruptedException {
+    IntegerFormula x = imgr.makeVariable("x");
+    BooleanFormula f = imgr.greaterThan(x, imgr.makeNumber(0));
+    assertThatFormula(bmgr.and(f, bmgr.not(f))).isUnsatisfiable();
+    assertThatFormula(bmgr.or(f, bmgr.not(f))).isTautological();
+  }
+}
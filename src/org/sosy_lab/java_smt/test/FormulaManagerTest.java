@@ -29,6 +29,7 @@ import com.google.common.collect.ImmutableMap;
 import com.google.common.testing.EqualsTester;
 import java.math.BigDecimal;
 import java.math.BigInteger;
+import java.util.List;
 import java.util.Map;
 import org.junit.Test;
 import org.junit.runner.RunWith;
@@ -40,7 +41,9 @@ import org.sosy_lab.java_smt.api.BooleanFormula;
 import org.sosy_lab.java_smt.api.FormulaType;
 import org.sosy_lab.java_smt.api.FunctionDeclaration;
 import org.sosy_lab.java_smt.api.NumeralFormula.IntegerFormula;
+import org.sosy_lab.java_smt.api.ProverEnvironment;
 import org.sosy_lab.java_smt.api.SolverException;
+import org.sosy_lab.java_smt.basicimpl.AbstractFormulaManager;
 
 @RunWith(Parameterized.class)
 public class FormulaManagerTest extends SolverBasedTest0 {
@@ -217,4 +220,80 @@ public class FormulaManagerTest extends SolverBasedTest0 {
 
     assertThat(mgr.extractVariables(constraint).keySet()).containsExactly("x", "y");
   }
+
+  @Test
+  public void bulkVariableCreation() throws SolverException, InterruptedException {
+    try (ProverEnvironment prover = context.newProverEnvironment()) {
+      List<IntegerFormula> ints = mgr.makeVariables(IntegerType, ImmutableList.of("a", "b", "a"));
+      assertThat(ints)
+          .containsExactly(imgr.makeVariable("a"), imgr.makeVariable("b"), imgr.makeVariable("a"))
+          .inOrder();
+      List<BooleanFormula> bools = mgr.makeVariables(BooleanType, ImmutableList.of("p", "q"));
+      assertThat(bools).containsExactly(bmgr.makeVariable("p"), bmgr.makeVariable("q")).inOrder();
+
+      // the prover existed before the variables were created
+      prover.addConstraint(bmgr.and(bools.get(0), imgr.greaterThan(ints.get(0), ints.get(1))));
+      assertThat(prover.isUnsat()).isFalse();
+    }
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void bulkVariableCreationWithInvalidName() {
+    mgr.makeVariables(IntegerType, ImmutableList.of("valid", "and"));
+  }
+
+  @Test
+  public void bulkNumberCreation() {
+    assertThat(imgr.makeNumbers(1, -2, 1))
+        .containsExactly(imgr.makeNumber(1), imgr.makeNumber(-2), imgr.makeNumber(1))
+        .inOrder();
+    assertThat(imgr.makeNumbers()).isEmpty();
+  }
+
+  @Test
+  public void variableCache() {
+    assume().that(mgr).isInstanceOf(AbstractFormulaManager.class);
+    AbstractFormulaManager<?, ?, ?, ?> abstractMgr = (AbstractFormulaManager<?, ?, ?, ?>) mgr;
+
+    IntegerFormula x = mgr.makeVariable(IntegerType, "cached");
+    long hits = abstractMgr.getVariableCacheHits();
+    long misses = abstractMgr.getVariableCacheMisses();
+    assertThat(mgr.makeVariable(IntegerType, "cached")).isSameAs(x);
+    assertThat(mgr.makeVariable(IntegerType, "cached2")).isEqualTo(imgr.makeVariable("cached2"));
+    assertThat(abstractMgr.getVariableCacheHits()).isEqualTo(hits + 1);
+    assertThat(abstractMgr.getVariableCacheMisses()).isEqualTo(misses + 1);
+  }
+
+  @Test
+  public void bulkVariableCreationUsesCache() {
+    assume().that(mgr).isInstanceOf(AbstractFormulaManager.class);
+    AbstractFormulaManager<?, ?, ?, ?> abstractMgr = (AbstractFormulaManager<?, ?, ?, ?>) mgr;
+
+    IntegerFormula x = mgr.makeVariable(IntegerType, "bulk");
+    long hits = abstractMgr.getVariableCacheHits();
+    long misses = abstractMgr.getVariableCacheMisses();
+    List<IntegerFormula> vars =
+        mgr.makeVariables(IntegerType, ImmutableList.of("bulk", "bulk2", "bulk2"));
+    assertThat(vars.get(0)).isSameAs(x);
+    assertThat(vars.get(2)).isSameAs(vars.get(1));
+    assertThat(mgr.makeVariable(IntegerType, "bulk2")).isSameAs(vars.get(1));
+    assertThat(abstractMgr.getVariableCacheHits()).isEqualTo(hits + 2);
+    assertThat(abstractMgr.getVariableCacheMisses()).isEqualTo(misses + 1);
+  }
+
+  @Test
+  public void numeralCache() throws SolverException, InterruptedException {
+    assertThat(imgr.makeNumber(-1)).isSameAs(imgr.makeNumber(-1));
+    assertThat(imgr.makeNumber(BigInteger.ONE)).isSameAs(imgr.makeNumber(1));
+    assertThat(imgr.makeNumber(1L << 40)).isEqualTo(imgr.makeNumber(BigInteger.ONE.shiftLeft(40)));
+
+    requireBitvectors();
+    assertThat(bvmgr.makeBitvector(8, 3)).isSameAs(bvmgr.makeBitvector(8, 3));
+    assertThat(bvmgr.makeBitvector(8, 3)).isNotEqualTo(bvmgr.makeBitvector(16, 3));
+    assertThatFormula(bvmgr.equal(bvmgr.makeBitvector(8, -1), bvmgr.makeBitvector(8, 255)))
+        .isTautological();
+    assertThatFormula(
+            bvmgr.equal(bvmgr.makeBitvector(40, -2), bvmgr.makeBitvector(40, (1L << 40) - 2)))
+        .isTautological();
+  }
 }
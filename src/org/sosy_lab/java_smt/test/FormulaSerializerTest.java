@@ -0,0 +1,144 @@
+/*
+ *  JavaSMT is an API wrapper for a collection of SMT solvers.
+ *  This file is part of JavaSMT.
+ *
+ *  Copyright (C) 2007-2016  Dirk Beyer
+ *  All rights reserved.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.sosy_lab.java_smt.test;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.math.BigInteger;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.Parameterized;
+import org.junit.runners.Parameterized.Parameter;
+import org.junit.runners.Parameterized.Parameters;
+import org.sosy_lab.java_smt.SolverContextFactory.Solvers;
+import org.sosy_lab.java_smt.api.ArrayFormula;
+import org.sosy_lab.java_smt.api.BitvectorFormula;
+import org.sosy_lab.java_smt.api.BooleanFormula;
+import org.sosy_lab.java_smt.api.FormulaType;
+import org.sosy_lab.java_smt.api.NumeralFormula.IntegerFormula;
+import org.sosy_lab.java_smt.api.SolverException;
+import org.sosy_lab.java_smt.utils.FormulaSerializer;
+import org.sosy_lab.java_smt.utils.SolverUtils;
+
+@RunWith(Parameterized.class)
+public class FormulaSerializerTest extends SolverBasedTest0 {
+
+  @Parameters(name = "{0}")
+  public static Object[] getAllSolvers() {
+    return Solvers.values();
+  }
+
+  @Parameter(0)
+  public Solvers solver;
+
+  @Override
+  protected Solvers solverToUse() {
+    return solver;
+  }
+
+  private FormulaSerializer serializer;
+
+  @Before
+  public void setUp() {
+    serializer = SolverUtils.formulaSerializer(mgr);
+  }
+
+  private byte[] write(BooleanFormula f) throws IOException {
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    serializer.write(f, out);
+    return out.toByteArray();
+  }
+
+  private BooleanFormula roundTrip(BooleanFormula f) throws IOException {
+    return serializer.read(new ByteArrayInputStream(write(f)));
+  }
+
+  @Test
+  public void booleanRoundTrip() throws SolverException, InterruptedException, IOException {
+    BooleanFormula a = bmgr.makeVariable("a");
+    BooleanFormula b = bmgr.makeVariable("b");
+    BooleanFormula c = bmgr.makeVariable("c");
+    BooleanFormula f =
+        bmgr.and(bmgr.or(a, bmgr.not(b)), bmgr.implication(bmgr.xor(a, c), b), bmgr.makeTrue());
+
+    assertThatFormula(roundTrip(f)).isEquivalentTo(f);
+  }
+
+  @Test
+  public void integerAndUfRoundTrip() throws SolverException, InterruptedException, IOException {
+    IntegerFormula x = imgr.makeVariable("x");
+    IntegerFormula y = imgr.makeVariable("y");
+    IntegerFormula big = imgr.makeNumber(BigInteger.ONE.shiftLeft(100).negate());
+    IntegerFormula fx = fmgr.declareAndCallUF("f", FormulaType.IntegerType, imgr.add(x, y));
+    BooleanFormula f =
+        bmgr.and(
+            imgr.greaterThan(fx, big),
+            imgr.lessOrEquals(imgr.subtract(x, imgr.makeNumber(-7)), y),
+            bmgr.ifThenElse(imgr.equal(x, y), imgr.equal(fx, x), imgr.equal(fx, y)));
+
+    assertThatFormula(roundTrip(f)).isEquivalentTo(f);
+  }
+
+  @Test
+  public void bitvectorRoundTrip() throws SolverException, InterruptedException, IOException {
+    requireBitvectors();
+
+    BitvectorFormula x = bvmgr.makeVariable(16, "x");
+    BitvectorFormula y = bvmgr.makeVariable(16, "y");
+    BooleanFormula f =
+        bmgr.and(
+            bvmgr.lessThan(bvmgr.add(x, bvmgr.makeBitvector(16, 42)), y, true),
+            bvmgr.equal(bvmgr.xor(x, y), bvmgr.shiftLeft(y, bvmgr.makeBitvector(16, 1))));
+
+    assertThatFormula(roundTrip(f)).isEquivalentTo(f);
+  }
+
+  @Test
+  public void arrayRoundTrip() throws SolverException, InterruptedException, IOException {
+    requireArrays();
+
+    ArrayFormula<IntegerFormula, IntegerFormula> arr =
+        amgr.makeArray("arr", FormulaType.IntegerType, FormulaType.IntegerType);
+    IntegerFormula i = imgr.makeVariable("i");
+    BooleanFormula f =
+        imgr.equal(
+            amgr.select(amgr.store(arr, i, imgr.makeNumber(3)), i),
+            imgr.add(amgr.select(arr, imgr.makeNumber(0)), imgr.makeNumber(1)));
+
+    assertThatFormula(roundTrip(f)).isEquivalentTo(f);
+  }
+
+  @Test
+  public void sharedTermsAreWrittenOnce() throws IOException {
+    IntegerFormula x = imgr.makeVariable("x");
+    IntegerFormula sum = x;
+    for (int i = 0; i < 20; i++) {
+      sum = imgr.add(sum, sum);
+    }
+    BooleanFormula f = imgr.equal(sum, imgr.makeNumber(0));
+
+    // the tree has 2^20 nodes, the DAG only about 20
+    assertThat(write(f).length).isLessThan(1000);
+  }
+}
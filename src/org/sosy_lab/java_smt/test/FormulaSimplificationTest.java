@@ -0,0 +1,158 @@
+/*
+ *  JavaSMT is an API wrapper for a collection of SMT solvers.
+ *  This file is part of JavaSMT.
+ *
+ *  Copyright (C) 2007-2016  Dirk Beyer
+ *  All rights reserved.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.sosy_lab.java_smt.test;
+
+import static com.google.common.truth.Truth.assertThat;
+import static com.google.common.truth.TruthJUnit.assume;
+
+import com.google.common.collect.ImmutableList;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.Parameterized;
+import org.junit.runners.Parameterized.Parameter;
+import org.junit.runners.Parameterized.Parameters;
+import org.sosy_lab.common.configuration.ConfigurationBuilder;
+import org.sosy_lab.java_smt.SolverContextFactory.Solvers;
+import org.sosy_lab.java_smt.api.BitvectorFormula;
+import org.sosy_lab.java_smt.api.BooleanFormula;
+import org.sosy_lab.java_smt.api.NumeralFormula.IntegerFormula;
+import org.sosy_lab.java_smt.api.SolverException;
+
+@RunWith(Parameterized.class)
+public class FormulaSimplificationTest extends SolverBasedTest0 {
+
+  @Parameters(name = "{0}")
+  public static Object[] getAllSolvers() {
+    return Solvers.values();
+  }
+
+  @Parameter(0)
+  public Solvers solver;
+
+  @Override
+  protected Solvers solverToUse() {
+    return solver;
+  }
+
+  @Override
+  protected ConfigurationBuilder createTestConfigBuilder() {
+    return super.createTestConfigBuilder().setOption("solver.simplifyFormulas", "true");
+  }
+
+  @Test
+  public void neutralAndAbsorbingElements() {
+    BooleanFormula a = bmgr.makeVariable("a");
+    assertThat(bmgr.and(a, bmgr.makeTrue())).isEqualTo(a);
+    assertThat(bmgr.or(bmgr.makeFalse(), a)).isEqualTo(a);
+    assertThat(bmgr.isFalse(bmgr.and(bmgr.makeFalse(), a))).isTrue();
+    assertThat(bmgr.isTrue(bmgr.or(a, bmgr.makeTrue()))).isTrue();
+    assertThat(bmgr.implication(bmgr.makeTrue(), a)).isEqualTo(a);
+    assertThat(bmgr.xor(a, bmgr.makeFalse())).isEqualTo(a);
+  }
+
+  @Test
+  public void doubleNegation() {
+    BooleanFormula a = bmgr.makeVariable("a");
+    assertThat(bmgr.not(bmgr.not(a))).isEqualTo(a);
+    assertThat(bmgr.isFalse(bmgr.not(bmgr.makeTrue()))).isTrue();
+  }
+
+  @Test
+  public void duplicateAndComplementaryOperands() throws SolverException, InterruptedException {
+    BooleanFormula a = bmgr.makeVariable("a");
+    BooleanFormula b = bmgr.makeVariable("b");
+    assertThat(bmgr.and(a, a)).isEqualTo(a);
+    assertThat(bmgr.and(ImmutableList.of(a, bmgr.makeTrue(), a))).isEqualTo(a);
+    assertThat(bmgr.isFalse(bmgr.and(a, bmgr.not(a)))).isTrue();
+    assertThat(bmgr.isFalse(bmgr.and(a, b, bmgr.not(a)))).isTrue();
+    assertThat(bmgr.isTrue(bmgr.or(bmgr.not(b), a, b))).isTrue();
+    assertThatFormula(bmgr.or(a, b, a, bmgr.makeFalse())).isEquivalentTo(bmgr.or(a, b));
+  }
+
+  @Test
+  public void ifThenElse() {
+    IntegerFormula x = imgr.makeVariable("x");
+    IntegerFormula y = imgr.makeVariable("y");
+    BooleanFormula c = bmgr.makeVariable("c");
+    assertThat(bmgr.ifThenElse(bmgr.makeTrue(), x, y)).isEqualTo(x);
+    assertThat(bmgr.ifThenElse(bmgr.makeFalse(), x, y)).isEqualTo(y);
+    assertThat(bmgr.ifThenElse(c, x, x)).isEqualTo(x);
+  }
+
+  @Test
+  public void integerArithmetic() throws SolverException, InterruptedException {
+    IntegerFormula x = imgr.makeVariable("x");
+    IntegerFormula zero = imgr.makeNumber(0);
+    IntegerFormula one = imgr.makeNumber(1);
+    assertThat(imgr.add(imgr.makeNumber(2), imgr.makeNumber(3))).isEqualTo(imgr.makeNumber(5));
+    assertThat(imgr.multiply(imgr.makeNumber(4), imgr.makeNumber(3)))
+        .isEqualTo(imgr.makeNumber(12));
+    assertThat(imgr.add(x, zero)).isEqualTo(x);
+    assertThat(imgr.subtract(x, zero)).isEqualTo(x);
+    assertThat(imgr.multiply(one, x)).isEqualTo(x);
+    assertThat(imgr.multiply(x, zero)).isEqualTo(zero);
+    assertThat(imgr.subtract(x, x)).isEqualTo(zero);
+
+    IntegerFormula sum = imgr.sum(ImmutableList.of(imgr.makeNumber(2), x, imgr.makeNumber(3)));
+    assertThatFormula(imgr.equal(sum, imgr.add(x, imgr.makeNumber(5)))).isTautological();
+  }
+
+  @Test
+  public void bitvectorIdentities() {
+    requireBitvectors();
+    BitvectorFormula x = bvmgr.makeVariable(8, "x");
+    assertThat(bvmgr.and(x, x)).isEqualTo(x);
+    assertThat(bvmgr.or(x, x)).isEqualTo(x);
+    assertThat(bvmgr.xor(x, x)).isEqualTo(bvmgr.subtract(x, x));
+  }
+
+  @Test
+  public void bitvectorConstants() throws SolverException, InterruptedException {
+    requireBitvectors();
+    assume()
+        .withMessage("Solver %s does not represent bitvector constants as constants", solver)
+        .that(solver)
+        .isNotEqualTo(Solvers.PRINCESS);
+
+    BitvectorFormula x = bvmgr.makeVariable(8, "x");
+    BitvectorFormula zero = bvmgr.makeBitvector(8, 0);
+    assertThat(bvmgr.add(bvmgr.makeBitvector(8, 200), bvmgr.makeBitvector(8, 100)))
+        .isEqualTo(bvmgr.makeBitvector(8, 44));
+    assertThat(bvmgr.not(zero)).isEqualTo(bvmgr.makeBitvector(8, 255));
+    assertThat(bvmgr.add(x, zero)).isEqualTo(x);
+    assertThat(bvmgr.and(zero, x)).isEqualTo(zero);
+    assertThat(bvmgr.xor(x, zero)).isEqualTo(x);
+    assertThatFormula(bvmgr.equal(bvmgr.negate(bvmgr.makeBitvector(8, 1)), bvmgr.not(zero)))
+        .isTautological();
+  }
+
+  @Test
+  public void solvingIsUnchanged() throws SolverException, InterruptedException {
+    IntegerFormula x = imgr.makeVariable("x");
+    BooleanFormula a = bmgr.makeVariable("a");
+    BooleanFormula f =
+        bmgr.and(
+            bmgr.or(a, bmgr.makeFalse()),
+            imgr.greaterThan(imgr.add(x, imgr.makeNumber(0)), imgr.makeNumber(2)),
+            bmgr.not(bmgr.not(imgr.lessThan(x, imgr.makeNumber(4)))));
+    assertThatFormula(f).isSatisfiable();
+    assertThatFormula(bmgr.and(f, imgr.equal(x, imgr.makeNumber(5)))).isUnsatisfiable();
+  }
+}
@@ -347,6 +347,47 @@ public class ModelTest extends SolverBasedTest0 {
     }
   }
 
+  @Test
+  public void testEvaluateAll() throws SolverException, InterruptedException {
+    IntegerFormula x = imgr.makeVariable("x");
+    IntegerFormula y = imgr.makeVariable("y");
+    BooleanFormula b = bmgr.makeVariable("b");
+    IntegerFormula sum = imgr.add(x, y);
+    try (ProverEnvironment prover = context.newProverEnvironment(ProverOptions.GENERATE_MODELS)) {
+      prover.push(
+          bmgr.and(imgr.equal(x, imgr.makeNumber(1)), imgr.equal(y, imgr.makeNumber(2)), b));
+      assertThat(prover).isSatisfiable();
+      try (Model m = prover.getModel()) {
+        assertThat(m.evaluate(x)).isEqualTo(BigInteger.ONE);
+        assertThat(m.evaluateAll(ImmutableList.of(x, sum, b, imgr.makeNumber(5), x)))
+            .containsExactly(
+                BigInteger.ONE, BigInteger.valueOf(3), true, BigInteger.valueOf(5), BigInteger.ONE)
+            .inOrder();
+        assertThat(m.evaluate(sum)).isEqualTo(BigInteger.valueOf(3));
+        assertThat(m.evaluateAll(ImmutableList.of())).isEmpty();
+      }
+    }
+  }
+
+  @Test
+  public void testEvaluateAllPartial() throws SolverException, InterruptedException {
+    assume()
+        .withMessage("As of now, only Z3 and Princess support partial models")
+        .that(solver)
+        .isIn(SOLVERS_WITH_PARTIAL_MODEL);
+    IntegerFormula x = imgr.makeVariable("x");
+    IntegerFormula y = imgr.makeVariable("y");
+    try (ProverEnvironment prover = context.newProverEnvironment(ProverOptions.GENERATE_MODELS)) {
+      prover.push(imgr.equal(x, imgr.makeNumber(1)));
+      assertThat(prover).isSatisfiable();
+      try (Model m = prover.getModel()) {
+        assertThat(m.evaluateAll(ImmutableList.of(y, x, y)))
+            .containsExactly(null, BigInteger.ONE, null)
+            .inOrder();
+      }
+    }
+  }
+
   @Test
   public void testGetArrays() throws SolverException, InterruptedException {
     requireArrays();
@@ -369,6 +410,63 @@ public class ModelTest extends SolverBasedTest0 {
     }
   }
 
+  @Test
+  public void testGetAssignmentsByName() throws SolverException, InterruptedException {
+    IntegerFormula x = imgr.makeVariable("x");
+    IntegerFormula y = imgr.makeVariable("y");
+    IntegerFormula fx = fmgr.declareAndCallUF("f", IntegerType, x);
+    try (ProverEnvironment prover = context.newProverEnvironment(ProverOptions.GENERATE_MODELS)) {
+      prover.push(
+          bmgr.and(
+              imgr.equal(x, imgr.makeNumber(1)),
+              imgr.equal(y, imgr.makeNumber(2)),
+              imgr.equal(fx, imgr.makeNumber(3))));
+      assertThat(prover).isSatisfiable();
+
+      try (Model m = prover.getModel()) {
+        List<ValueAssignment> xs = m.getAssignments("x");
+        assertThat(xs).hasSize(1);
+        assertThat(xs.get(0).getValue()).isEqualTo(BigInteger.ONE);
+        assertThatFormula(xs.get(0).getAssignmentAsFormula())
+            .isEquivalentTo(imgr.equal(x, imgr.makeNumber(1)));
+
+        List<ValueAssignment> fs = m.getAssignments("f");
+        assertThat(fs).hasSize(1);
+        assertThat(fs.get(0).getValue()).isEqualTo(BigInteger.valueOf(3));
+        assertThat(fs.get(0).getArgumentsInterpretation()).containsExactly(BigInteger.ONE);
+
+        assertThat(m.getAssignments("z")).isEmpty();
+
+        // the same results after the model was iterated completely
+        assertThat(ImmutableList.copyOf(m)).containsAllIn(xs);
+        assertThat(m.getAssignments("x")).isEqualTo(xs);
+      }
+    }
+  }
+
+  @Test
+  public void testIteratorWithoutArrays() throws SolverException, InterruptedException {
+    requireArrays();
+    IntegerFormula x = imgr.makeVariable("x");
+    ArrayFormula<IntegerFormula, IntegerFormula> array =
+        amgr.makeArray("array", IntegerType, IntegerType);
+
+    try (ProverEnvironment prover = context.newProverEnvironment(ProverOptions.GENERATE_MODELS)) {
+      prover.push(
+          bmgr.and(
+              imgr.equal(x, imgr.makeNumber(1)),
+              imgr.equal(amgr.select(array, x), imgr.makeNumber(5))));
+      assertThat(prover).isSatisfiable();
+
+      try (Model m = prover.getModel()) {
+        List<String> names = new ArrayList<>();
+        m.iteratorWithoutArrays().forEachRemaining(assignment -> names.add(assignment.getName()));
+        assertThat(names).contains("x");
+        assertThat(names).doesNotContain("array");
+      }
+    }
+  }
+
   @Test
   public void testGetArrays2() throws SolverException, InterruptedException {
     requireArrays();
@@ -0,0 +1,133 @@
+/*
+ *  JavaSMT is an API wrapper for a collection of SMT solvers.
+ *  This file is part of JavaSMT.
+ *
+ *  Copyright (C) 2007-2016  Dirk Beyer
+ *  All rights reserved.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.sosy_lab.java_smt.test;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import com.google.common.collect.ImmutableList;
+import java.math.BigInteger;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.Parameterized;
+import org.junit.runners.Parameterized.Parameter;
+import org.junit.runners.Parameterized.Parameters;
+import org.sosy_lab.common.configuration.ConfigurationBuilder;
+import org.sosy_lab.java_smt.SolverContextFactory.Solvers;
+import org.sosy_lab.java_smt.api.BooleanFormula;
+import org.sosy_lab.java_smt.api.Model;
+import org.sosy_lab.java_smt.api.NumeralFormula.IntegerFormula;
+import org.sosy_lab.java_smt.api.SolverException;
+import org.sosy_lab.java_smt.basicimpl.AbstractNumeralFormulaManager.NonLinearArithmetic;
+import org.sosy_lab.java_smt.utils.NonLinearRefinementProver;
+import org.sosy_lab.java_smt.utils.SolverUtils;
+
+@RunWith(Parameterized.class)
+public class NonLinearRefinementProverTest extends SolverBasedTest0 {
+
+  @Parameters(name = "{0}")
+  public static Object[] getAllSolvers() {
+    return Solvers.values();
+  }
+
+  @Parameter(0)
+  public Solvers solver;
+
+  @Override
+  protected Solvers solverToUse() {
+    return solver;
+  }
+
+  @Override
+  protected ConfigurationBuilder createTestConfigBuilder() {
+    return super.createTestConfigBuilder()
+        .setOption("solver.nonLinearArithmetic", NonLinearArithmetic.APPROXIMATE_ALWAYS.name());
+  }
+
+  @Test
+  public void genuineModel() throws SolverException, InterruptedException {
+    IntegerFormula x = imgr.makeVariable("x");
+    IntegerFormula y = imgr.makeVariable("y");
+    try (NonLinearRefinementProver prover = SolverUtils.nonLinearRefinementProver(context)) {
+      prover.push(imgr.equal(imgr.multiply(x, y), imgr.makeNumber(6)));
+      prover.push(imgr.equal(x, imgr.makeNumber(2)));
+      assertThat(prover.isUnsat()).isFalse();
+      try (Model model = prover.getModel()) {
+        assertThat(model.evaluate(y)).isEqualTo(BigInteger.valueOf(3));
+      }
+    }
+  }
+
+  @Test
+  public void squareIsNotNegative() throws SolverException, InterruptedException {
+    IntegerFormula x = imgr.makeVariable("x");
+    BooleanFormula query = imgr.lessThan(imgr.multiply(x, x), imgr.makeNumber(0));
+
+    // the abstraction alone is too weak
+    assertThatFormula(query).isSatisfiable();
+
+    try (NonLinearRefinementProver prover = SolverUtils.nonLinearRefinementProver(context)) {
+      prover.push(query);
+      assertThat(prover.isUnsat()).isTrue();
+      assertThat(prover.getRefinements()).isGreaterThan(0);
+    }
+  }
+
+  @Test
+  public void divisionAndModulo() throws SolverException, InterruptedException {
+    IntegerFormula x = imgr.makeVariable("x");
+    IntegerFormula three = imgr.makeNumber(3);
+    try (NonLinearRefinementProver prover = SolverUtils.nonLinearRefinementProver(context)) {
+      prover.push(imgr.equal(imgr.modulo(x, three), imgr.makeNumber(5)));
+      assertThat(prover.isUnsat()).isTrue();
+      prover.pop();
+
+      prover.push(imgr.equal(imgr.divide(x, three), imgr.makeNumber(2)));
+      prover.push(imgr.greaterThan(x, imgr.makeNumber(8)));
+      assertThat(prover.isUnsat()).isTrue();
+      prover.pop();
+
+      prover.push(imgr.greaterThan(x, imgr.makeNumber(7)));
+      assertThat(prover.isUnsat()).isFalse();
+      try (Model model = prover.getModel()) {
+        assertThat(model.evaluate(x)).isEqualTo(BigInteger.valueOf(8));
+      }
+    }
+  }
+
+  @Test
+  public void assumptions() throws SolverException, InterruptedException {
+    BooleanFormula small = bmgr.makeVariable("small");
+    IntegerFormula x = imgr.makeVariable("x");
+    IntegerFormula y = imgr.makeVariable("y");
+    try (NonLinearRefinementProver prover = SolverUtils.nonLinearRefinementProver(context)) {
+      prover.push(imgr.equal(imgr.multiply(x, y), imgr.makeNumber(12)));
+      prover.push(
+          bmgr.implication(
+              small,
+              bmgr.and(
+                  imgr.greaterThan(x, imgr.makeNumber(0)),
+                  imgr.lessThan(x, imgr.makeNumber(4)),
+                  imgr.greaterThan(y, imgr.makeNumber(0)),
+                  imgr.lessThan(y, imgr.makeNumber(4)))));
+      assertThat(prover.isUnsatWithAssumptions(ImmutableList.of(small))).isTrue();
+      assertThat(prover.isUnsat()).isFalse();
+    }
+  }
+}
@@ -0,0 +1,148 @@
+/*
+ *  JavaSMT is an API wrapper for a collection of SMT solvers.
+ *  This file is part of JavaSMT.
+ *
+ *  Copyright (C) 2007-2016  Dirk Beyer
+ *  All rights reserved.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.sosy_lab.java_smt.test;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.Parameterized;
+import org.junit.runners.Parameterized.Parameter;
+import org.junit.runners.Parameterized.Parameters;
+import org.sosy_lab.common.configuration.InvalidConfigurationException;
+import org.sosy_lab.java_smt.SolverContextFactory.Solvers;
+import org.sosy_lab.java_smt.api.BasicProverEnvironment.AllSatCallback;
+import org.sosy_lab.java_smt.api.BooleanFormula;
+import org.sosy_lab.java_smt.api.NumeralFormula.IntegerFormula;
+import org.sosy_lab.java_smt.api.ProverEnvironment;
+import org.sosy_lab.java_smt.api.SolverContext;
+import org.sosy_lab.java_smt.api.SolverException;
+import org.sosy_lab.java_smt.utils.SolverUtils;
+
+@RunWith(Parameterized.class)
+public class ParallelAllSatTest extends SolverBasedTest0 {
+
+  @Parameters(name = "{0}")
+  public static Object[] getAllSolvers() {
+    return Solvers.values();
+  }
+
+  @Parameter(0)
+  public Solvers solver;
+
+  @Override
+  protected Solvers solverToUse() {
+    return solver;
+  }
+
+  private final List<SolverContext> workers = new ArrayList<>();
+
+  @Before
+  public void createWorkers() throws InvalidConfigurationException {
+    for (int i = 0; i < 3; i++) {
+      workers.add(factory.generateContext());
+    }
+  }
+
+  @After
+  public void closeWorkers() {
+    for (SolverContext worker : workers) {
+      worker.close();
+    }
+  }
+
+  private static class CollectingCallback implements AllSatCallback<Set<Set<BooleanFormula>>> {
+
+    private final Set<Set<BooleanFormula>> models = new HashSet<>();
+
+    @Override
+    public void apply(List<BooleanFormula> pModel) {
+      models.add(ImmutableSet.copyOf(pModel));
+    }
+
+    @Override
+    public Set<Set<BooleanFormula>> getResult() {
+      return models;
+    }
+  }
+
+  private Set<Set<BooleanFormula>> sequentialAllSat(
+      BooleanFormula query, List<BooleanFormula> important)
+      throws SolverException, InterruptedException {
+    try (ProverEnvironment prover = context.newProverEnvironment()) {
+      prover.push(query);
+      return prover.allSat(new CollectingCallback(), important);
+    }
+  }
+
+  @Test
+  public void sameModelsAsSequential() throws SolverException, InterruptedException {
+    List<BooleanFormula> important = new ArrayList<>();
+    for (int i = 0; i < 6; i++) {
+      important.add(bmgr.makeVariable("p" + i));
+    }
+    BooleanFormula query =
+        bmgr.and(
+            bmgr.or(important.get(0), important.get(3)),
+            bmgr.xor(important.get(1), important.get(4)),
+            bmgr.implication(important.get(2), important.get(5)));
+
+    Set<Set<BooleanFormula>> models =
+        SolverUtils.parallelAllSat(mgr, workers).allSat(query, important, new CollectingCallback());
+
+    assertThat(models).hasSize(3 * 2 * 3);
+    assertThat(models).isEqualTo(sequentialAllSat(query, important));
+  }
+
+  @Test
+  public void theoryAtoms() throws SolverException, InterruptedException {
+    IntegerFormula x = imgr.makeVariable("x");
+    List<BooleanFormula> important =
+        ImmutableList.of(
+            imgr.greaterThan(x, imgr.makeNumber(0)),
+            imgr.greaterThan(x, imgr.makeNumber(5)),
+            imgr.lessThan(x, imgr.makeNumber(10)));
+    BooleanFormula query = imgr.lessThan(x, imgr.makeNumber(20));
+
+    Set<Set<BooleanFormula>> models =
+        SolverUtils.parallelAllSat(mgr, workers).allSat(query, important, new CollectingCallback());
+
+    // x<=0, 0<x<=5, 5<x<10, 10<=x<20
+    assertThat(models).hasSize(4);
+    assertThat(models).isEqualTo(sequentialAllSat(query, important));
+  }
+
+  @Test
+  public void unsatQuery() throws SolverException, InterruptedException {
+    BooleanFormula p = bmgr.makeVariable("p");
+    Set<Set<BooleanFormula>> models =
+        SolverUtils.parallelAllSat(mgr, workers)
+            .allSat(bmgr.and(p, bmgr.not(p)), ImmutableList.of(p), new CollectingCallback());
+    assertThat(models).isEmpty();
+  }
+}
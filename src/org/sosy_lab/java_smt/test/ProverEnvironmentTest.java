@@ -96,6 +96,30 @@ public class ProverEnvironmentTest extends SolverBasedTest0 {
     }
   }
 
+  @Test
+  public void independentStacksTest() throws SolverException, InterruptedException {
+    BooleanFormula b = bmgr.makeVariable("b");
+    BooleanFormula c = bmgr.makeVariable("c");
+
+    try (ProverEnvironment pe1 = context.newProverEnvironment();
+        ProverEnvironment pe2 = context.newProverEnvironment()) {
+      pe1.push(b);
+      pe2.push(bmgr.not(b));
+      pe1.push(c);
+      assertThat(pe1.isUnsat()).isFalse();
+      assertThat(pe2.isUnsat()).isFalse();
+
+      pe2.push(b);
+      assertThat(pe2.isUnsat()).isTrue();
+      assertThat(pe1.isUnsat()).isFalse();
+
+      pe2.pop();
+      pe1.push(bmgr.not(c));
+      assertThat(pe1.isUnsat()).isTrue();
+      assertThat(pe2.isUnsat()).isFalse();
+    }
+  }
+
   @Test
   public void unsatCoreTest() throws SolverException, InterruptedException {
     try (BasicProverEnvironment<?> pe = context.newProverEnvironment(GENERATE_UNSAT_CORE)) {
@@ -0,0 +1,156 @@
+/*
+ *  JavaSMT is an API wrapper for a collection of SMT solvers.
+ *  This file is part of JavaSMT.
+ *
+ *  Copyright (C) 2007-2016  Dirk Beyer
+ *  All rights reserved.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.sosy_lab.java_smt.test;
+
+import static com.google.common.truth.Truth.assertThat;
+import static org.junit.Assert.fail;
+
+import java.math.BigInteger;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.Parameterized;
+import org.junit.runners.Parameterized.Parameter;
+import org.junit.runners.Parameterized.Parameters;
+import org.sosy_lab.java_smt.SolverContextFactory.Solvers;
+import org.sosy_lab.java_smt.api.BooleanFormula;
+import org.sosy_lab.java_smt.api.Model;
+import org.sosy_lab.java_smt.api.NumeralFormula.IntegerFormula;
+import org.sosy_lab.java_smt.api.ProverEnvironment;
+import org.sosy_lab.java_smt.api.ProverEnvironment.AssertionHandle;
+import org.sosy_lab.java_smt.api.SolverContext.ProverOptions;
+import org.sosy_lab.java_smt.api.SolverException;
+
+@RunWith(Parameterized.class)
+public class ProverForkTest extends SolverBasedTest0 {
+
+  @Parameters(name = "{0}")
+  public static Object[] getAllSolvers() {
+    return Solvers.values();
+  }
+
+  @Parameter(0)
+  public Solvers solver;
+
+  @Override
+  protected Solvers solverToUse() {
+    return solver;
+  }
+
+  @Test
+  public void forkCopiesStack() throws SolverException, InterruptedException {
+    IntegerFormula x = imgr.makeVariable("x");
+    try (ProverEnvironment prover =
+        context.newProverEnvironment(ProverOptions.GENERATE_MODELS, ProverOptions.ENABLE_FORKING)) {
+      prover.addConstraint(imgr.greaterThan(x, imgr.makeNumber(0)));
+      prover.push(imgr.lessThan(x, imgr.makeNumber(10)));
+
+      try (ProverEnvironment fork = prover.fork()) {
+        // the branches are independent
+        prover.push(imgr.equal(x, imgr.makeNumber(3)));
+        fork.push(imgr.equal(x, imgr.makeNumber(7)));
+        assertThat(prover.isUnsat()).isFalse();
+        assertThat(fork.isUnsat()).isFalse();
+        try (Model model = fork.getModel()) {
+          assertThat(model.evaluate(x)).isEqualTo(BigInteger.valueOf(7));
+        }
+        try (Model model = prover.getModel()) {
+          assertThat(model.evaluate(x)).isEqualTo(BigInteger.valueOf(3));
+        }
+
+        // the levels are copied, too
+        fork.pop();
+        fork.pop();
+        fork.push(imgr.equal(x, imgr.makeNumber(20)));
+        assertThat(fork.isUnsat()).isFalse();
+        fork.pop();
+        fork.push(imgr.equal(x, imgr.makeNumber(0)));
+        assertThat(fork.isUnsat()).isTrue();
+
+        assertThat(prover.isUnsat()).isFalse();
+      }
+    }
+  }
+
+  @Test
+  public void forkCopiesRetractableConstraints() throws SolverException, InterruptedException {
+    BooleanFormula a = bmgr.makeVariable("a");
+    BooleanFormula b = bmgr.makeVariable("b");
+    try (ProverEnvironment prover =
+        context.newProverEnvironment(
+            ProverOptions.ENABLE_FORKING, ProverOptions.ENABLE_RETRACTABLE_CONSTRAINTS)) {
+      prover.addConstraint(bmgr.or(a, b));
+      AssertionHandle notA = prover.addRetractable(bmgr.not(a));
+      AssertionHandle notB = prover.addRetractable(bmgr.not(b));
+      prover.retract(notB);
+
+      try (ProverEnvironment fork = prover.fork()) {
+        assertThat(fork.isUnsat()).isFalse();
+        fork.push(b);
+        assertThat(fork.isUnsat()).isFalse();
+        fork.pop();
+        fork.push(bmgr.not(b));
+        assertThat(fork.isUnsat()).isTrue();
+
+        // handles are valid in both prover environments, but only affect one of them
+        fork.retract(notA);
+        assertThat(fork.isUnsat()).isFalse();
+        prover.push(bmgr.not(b));
+        assertThat(prover.isUnsat()).isTrue();
+      }
+    }
+  }
+
+  @Test
+  public void forkHasOwnHandles() throws SolverException, InterruptedException {
+    BooleanFormula a = bmgr.makeVariable("a");
+    try (ProverEnvironment prover =
+        context.newProverEnvironment(
+            ProverOptions.ENABLE_FORKING, ProverOptions.ENABLE_RETRACTABLE_CONSTRAINTS)) {
+      try (ProverEnvironment fork = prover.fork()) {
+        // both create an activation literal, which must not be the same
+        AssertionHandle inProver = prover.addRetractable(a);
+        AssertionHandle inFork = fork.addRetractable(bmgr.not(a));
+        assertThat(prover.isUnsat()).isFalse();
+        assertThat(fork.isUnsat()).isFalse();
+
+        try {
+          fork.retract(inProver);
+          fail("handle of the parent accepted by the fork");
+        } catch (IllegalArgumentException expected) {
+          // handles that were created after forking are not shared
+        }
+        try {
+          prover.retract(inFork);
+          fail("handle of the fork accepted by the parent");
+        } catch (IllegalArgumentException expected) {
+          // handles that were created after forking are not shared
+        }
+      }
+    }
+  }
+
+  @Test(expected = UnsupportedOperationException.class)
+  public void forkRequiresOption() throws InterruptedException {
+    try (ProverEnvironment prover = context.newProverEnvironment()) {
+      prover.addConstraint(bmgr.makeVariable("a"));
+      prover.fork().close();
+    }
+  }
+}
@@ -0,0 +1,157 @@
+/*
+ *  JavaSMT is an API wrapper for a collection of SMT solvers.
+ *  This file is part of JavaSMT.
+ *
+ *  Copyright (C) 2007-2016  Dirk Beyer
+ *  All rights reserved.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.sosy_lab.java_smt.test;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import com.google.common.collect.Range;
+import java.io.IOException;
+import java.math.BigInteger;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.junit.runners.Parameterized;
+import org.junit.runners.Parameterized.Parameter;
+import org.junit.runners.Parameterized.Parameters;
+import org.sosy_lab.common.configuration.ConfigurationBuilder;
+import org.sosy_lab.common.configuration.InvalidConfigurationException;
+import org.sosy_lab.java_smt.SolverContextFactory.Solvers;
+import org.sosy_lab.java_smt.api.BitvectorFormula;
+import org.sosy_lab.java_smt.api.BooleanFormula;
+import org.sosy_lab.java_smt.api.BooleanFormulaManager;
+import org.sosy_lab.java_smt.api.IntegerFormulaManager;
+import org.sosy_lab.java_smt.api.Model;
+import org.sosy_lab.java_smt.api.NumeralFormula.IntegerFormula;
+import org.sosy_lab.java_smt.api.ProverEnvironment;
+import org.sosy_lab.java_smt.api.SolverContext;
+import org.sosy_lab.java_smt.api.SolverContext.ProverOptions;
+import org.sosy_lab.java_smt.api.SolverException;
+
+@RunWith(Parameterized.class)
+public class ResultCacheTest extends SolverBasedTest0 {
+
+  @Parameters(name = "{0}")
+  public static Object[] getAllSolvers() {
+    return Solvers.values();
+  }
+
+  @Parameter(0)
+  public Solvers solver;
+
+  @Rule public final TemporaryFolder folder = new TemporaryFolder();
+
+  @Override
+  protected Solvers solverToUse() {
+    return solver;
+  }
+
+  @Override
+  protected ConfigurationBuilder createTestConfigBuilder() {
+    try {
+      return super.createTestConfigBuilder()
+          .setOption("solver.useResultCache", "true")
+          .setOption("solver.resultCache.file", folder.newFile().getAbsolutePath())
+          .setOption("solver.resultCache.maxSize", "65536");
+    } catch (IOException e) {
+      throw new AssertionError(e);
+    }
+  }
+
+  /** Query that is satisfiable iff the bound is larger than one. */
+  private static BooleanFormula query(SolverContext pContext, String pName, int pBound) {
+    IntegerFormulaManager ints = pContext.getFormulaManager().getIntegerFormulaManager();
+    BooleanFormulaManager bools = pContext.getFormulaManager().getBooleanFormulaManager();
+    IntegerFormula x = ints.makeVariable(pName);
+    return bools.and(
+        ints.greaterThan(x, ints.makeNumber(0)), ints.lessThan(x, ints.makeNumber(pBound)));
+  }
+
+  @Test
+  public void repeatedQueries() throws SolverException, InterruptedException {
+    for (int i = 0; i < 3; i++) {
+      try (ProverEnvironment prover = context.newProverEnvironment()) {
+        prover.push(query(context, "x", 5));
+        assertThat(prover.isUnsat()).isFalse();
+        prover.push(query(context, "x", 1));
+        assertThat(prover.isUnsat()).isTrue();
+        prover.pop();
+        assertThat(prover.isUnsat()).isFalse();
+      }
+    }
+  }
+
+  @Test
+  public void modelAfterCachedResult()
+      throws SolverException, InterruptedException, InvalidConfigurationException {
+    try (ProverEnvironment prover = context.newProverEnvironment()) {
+      prover.push(query(context, "x", 5));
+      assertThat(prover.isUnsat()).isFalse();
+    }
+
+    // the second context loads the results from the file, the query differs only in its names
+    try (SolverContext context2 = factory.generateContext();
+        ProverEnvironment prover =
+            context2.newProverEnvironment(ProverOptions.GENERATE_MODELS)) {
+      IntegerFormula y = context2.getFormulaManager().getIntegerFormulaManager().makeVariable("y");
+      prover.push(query(context2, "y", 5));
+      assertThat(prover.isUnsat()).isFalse();
+      try (Model model = prover.getModel()) {
+        assertThat(model.evaluate(y)).isIn(Range.open(BigInteger.ZERO, BigInteger.valueOf(5)));
+      }
+    }
+  }
+
+  @Test
+  public void unsatCoreFromCache() throws SolverException, InterruptedException {
+    BooleanFormula a = bmgr.makeVariable("a");
+    BooleanFormula b = bmgr.makeVariable("b");
+    for (int i = 0; i < 2; i++) {
+      try (ProverEnvironment prover =
+          context.newProverEnvironment(ProverOptions.GENERATE_UNSAT_CORE)) {
+        prover.addConstraint(bmgr.or(a, b));
+        prover.addConstraint(bmgr.not(a));
+        prover.addConstraint(bmgr.not(b));
+        assertThat(prover.isUnsat()).isTrue();
+        assertThat(prover.getUnsatCore())
+            .containsExactly(bmgr.or(a, b), bmgr.not(a), bmgr.not(b));
+      }
+    }
+  }
+
+  @Test
+  public void extractIndicesAreDistinguished() throws SolverException, InterruptedException {
+    requireBitvectors();
+
+    BitvectorFormula x = bvmgr.makeVariable(16, "x");
+    BooleanFormula isLarge = bvmgr.equal(x, bvmgr.makeBitvector(16, 0x100));
+    BitvectorFormula zero = bvmgr.makeBitvector(8, 0);
+    try (ProverEnvironment prover = context.newProverEnvironment()) {
+      prover.push(bvmgr.equal(bvmgr.extract(x, 7, 0, false), zero));
+      prover.push(isLarge);
+      assertThat(prover.isUnsat()).isFalse();
+    }
+    try (ProverEnvironment prover = context.newProverEnvironment()) {
+      prover.push(bvmgr.equal(bvmgr.extract(x, 15, 8, false), zero));
+      prover.push(isLarge);
+      assertThat(prover.isUnsat()).isTrue();
+    }
+  }
+}
@@ -0,0 +1,197 @@
+/*
+ *  JavaSMT is an API wrapper for a collection of SMT solvers.
+ *  This file is part of JavaSMT.
+ *
+ *  Copyright (C) 2007-2016  Dirk Beyer
+ *  All rights reserved.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.sosy_lab.java_smt.test;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import com.google.common.collect.ImmutableList;
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.Parameterized;
+import org.junit.runners.Parameterized.Parameter;
+import org.junit.runners.Parameterized.Parameters;
+import org.sosy_lab.java_smt.SolverContextFactory.Solvers;
+import org.sosy_lab.java_smt.api.BooleanFormula;
+import org.sosy_lab.java_smt.api.Model;
+import org.sosy_lab.java_smt.api.Model.ValueAssignment;
+import org.sosy_lab.java_smt.api.NumeralFormula.IntegerFormula;
+import org.sosy_lab.java_smt.api.ProverEnvironment;
+import org.sosy_lab.java_smt.api.ProverEnvironment.AssertionHandle;
+import org.sosy_lab.java_smt.api.SolverContext.ProverOptions;
+import org.sosy_lab.java_smt.api.SolverException;
+
+@RunWith(Parameterized.class)
+public class RetractableConstraintTest extends SolverBasedTest0 {
+
+  @Parameters(name = "{0}")
+  public static Object[] getAllSolvers() {
+    return Solvers.values();
+  }
+
+  @Parameter(0)
+  public Solvers solver;
+
+  @Override
+  protected Solvers solverToUse() {
+    return solver;
+  }
+
+  @Test
+  public void retractRestoresSatisfiability() throws SolverException, InterruptedException {
+    IntegerFormula x = imgr.makeVariable("x");
+    try (ProverEnvironment prover =
+        context.newProverEnvironment(
+            ProverOptions.GENERATE_MODELS, ProverOptions.ENABLE_RETRACTABLE_CONSTRAINTS)) {
+      prover.addConstraint(imgr.greaterThan(x, imgr.makeNumber(5)));
+      AssertionHandle handle = prover.addRetractable(imgr.lessThan(x, imgr.makeNumber(3)));
+      assertThat(prover.isUnsat()).isTrue();
+
+      prover.retract(handle);
+      assertThat(prover.isUnsat()).isFalse();
+      try (Model model = prover.getModel()) {
+        assertThat(model.evaluate(x)).isGreaterThan(BigInteger.valueOf(5));
+      }
+
+      // retracting twice has no effect
+      prover.retract(handle);
+      assertThat(prover.isUnsat()).isFalse();
+    }
+  }
+
+  @Test
+  public void activeConstraintsAndAssumptions() throws SolverException, InterruptedException {
+    BooleanFormula a = bmgr.makeVariable("a");
+    BooleanFormula b = bmgr.makeVariable("b");
+    try (ProverEnvironment prover =
+        context.newProverEnvironment(ProverOptions.ENABLE_RETRACTABLE_CONSTRAINTS)) {
+      AssertionHandle handle = prover.addRetractable(bmgr.implication(a, b));
+      assertThat(prover.isUnsatWithAssumptions(ImmutableList.of(a, bmgr.not(b)))).isTrue();
+      prover.retract(handle);
+      assertThat(prover.isUnsatWithAssumptions(ImmutableList.of(a, bmgr.not(b)))).isFalse();
+    }
+  }
+
+  @Test
+  public void popRemovesConstraint() throws SolverException, InterruptedException {
+    BooleanFormula a = bmgr.makeVariable("a");
+    try (ProverEnvironment prover =
+        context.newProverEnvironment(ProverOptions.ENABLE_RETRACTABLE_CONSTRAINTS)) {
+      prover.addConstraint(a);
+      prover.push();
+      AssertionHandle handle = prover.addRetractable(bmgr.not(a));
+      assertThat(prover.isUnsat()).isTrue();
+      prover.pop();
+      assertThat(prover.isUnsat()).isFalse();
+
+      // the constraint is already gone
+      prover.retract(handle);
+      assertThat(prover.isUnsat()).isFalse();
+    }
+  }
+
+  @Test
+  public void retractedConstraintsAreCompacted() throws SolverException, InterruptedException {
+    IntegerFormula x = imgr.makeVariable("x");
+    try (ProverEnvironment prover =
+        context.newProverEnvironment(ProverOptions.ENABLE_RETRACTABLE_CONSTRAINTS)) {
+      prover.addConstraint(imgr.greaterOrEquals(x, imgr.makeNumber(0)));
+      AssertionHandle upperBound = prover.addRetractable(imgr.lessThan(x, imgr.makeNumber(1000)));
+      prover.push();
+      prover.addConstraint(imgr.lessOrEquals(x, imgr.makeNumber(500)));
+
+      List<AssertionHandle> handles = new ArrayList<>();
+      for (int i = 0; i < 300; i++) {
+        handles.add(prover.addRetractable(imgr.equal(x, imgr.makeNumber(-i - 1))));
+        assertThat(prover.isUnsat()).isTrue();
+        prover.retract(handles.get(i));
+        assertThat(prover.isUnsat()).isFalse();
+      }
+
+      // the constraints added before and between the retractable ones are still there
+      AssertionHandle tooLarge = prover.addRetractable(imgr.equal(x, imgr.makeNumber(600)));
+      assertThat(prover.isUnsat()).isTrue();
+      prover.retract(tooLarge);
+      prover.retract(upperBound);
+      prover.pop();
+      prover.push(imgr.equal(x, imgr.makeNumber(-1)));
+      assertThat(prover.isUnsat()).isTrue();
+      prover.pop();
+      prover.push(imgr.equal(x, imgr.makeNumber(2000)));
+      assertThat(prover.isUnsat()).isFalse();
+      prover.pop();
+    }
+  }
+
+  @Test
+  public void unsatCoreContainsOriginalConstraints() throws SolverException, InterruptedException {
+    BooleanFormula a = bmgr.makeVariable("a");
+    BooleanFormula b = bmgr.makeVariable("b");
+    try (ProverEnvironment prover =
+        context.newProverEnvironment(
+            ProverOptions.GENERATE_UNSAT_CORE, ProverOptions.ENABLE_RETRACTABLE_CONSTRAINTS)) {
+      prover.addConstraint(bmgr.or(a, b));
+      prover.retract(prover.addRetractable(a));
+      prover.addRetractable(bmgr.not(a));
+      prover.addRetractable(bmgr.not(b));
+      assertThat(prover.isUnsat()).isTrue();
+      assertThat(prover.getUnsatCore()).containsExactly(bmgr.or(a, b), bmgr.not(a), bmgr.not(b));
+    }
+  }
+
+  @Test
+  public void modelHidesActivationLiterals() throws SolverException, InterruptedException {
+    IntegerFormula x = imgr.makeVariable("x");
+    try (ProverEnvironment prover =
+        context.newProverEnvironment(
+            ProverOptions.GENERATE_MODELS, ProverOptions.ENABLE_RETRACTABLE_CONSTRAINTS)) {
+      prover.addRetractable(imgr.greaterThan(x, imgr.makeNumber(0)));
+      prover.retract(prover.addRetractable(imgr.lessThan(x, imgr.makeNumber(0))));
+      assertThat(prover.isUnsat()).isFalse();
+      for (ValueAssignment assignment : prover.getModelAssignments()) {
+        assertThat(assignment.getName()).isEqualTo("x");
+      }
+      try (Model model = prover.getModel()) {
+        for (ValueAssignment assignment : model) {
+          assertThat(assignment.getName()).isEqualTo("x");
+        }
+      }
+    }
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void foreignHandle() throws InterruptedException {
+    try (ProverEnvironment first =
+            context.newProverEnvironment(ProverOptions.ENABLE_RETRACTABLE_CONSTRAINTS);
+        ProverEnvironment second =
+            context.newProverEnvironment(ProverOptions.ENABLE_RETRACTABLE_CONSTRAINTS)) {
+      second.retract(first.addRetractable(bmgr.makeVariable("a")));
+    }
+  }
+
+  @Test(expected = UnsupportedOperationException.class)
+  public void retractableRequiresOption() throws InterruptedException {
+    try (ProverEnvironment prover = context.newProverEnvironment()) {
+      prover.addRetractable(bmgr.makeVariable("a"));
+    }
+  }
+}
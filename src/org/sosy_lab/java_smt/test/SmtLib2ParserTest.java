@@ -0,0 +1,141 @@
+/*
+ *  JavaSMT is an API wrapper for a collection of SMT solvers.
+ *  This file is part of JavaSMT.
+ *
+ *  Copyright (C) 2007-2016  Dirk Beyer
+ *  All rights reserved.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.sosy_lab.java_smt.test;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.Parameterized;
+import org.junit.runners.Parameterized.Parameter;
+import org.junit.runners.Parameterized.Parameters;
+import org.sosy_lab.java_smt.SolverContextFactory.Solvers;
+import org.sosy_lab.java_smt.api.BitvectorFormula;
+import org.sosy_lab.java_smt.api.BooleanFormula;
+import org.sosy_lab.java_smt.api.FormulaType;
+import org.sosy_lab.java_smt.api.NumeralFormula.IntegerFormula;
+import org.sosy_lab.java_smt.api.SolverException;
+
+@RunWith(Parameterized.class)
+public class SmtLib2ParserTest extends SolverBasedTest0 {
+
+  private static final String BOOLEAN_QUERY =
+      "(set-info :source |test|)\n"
+          + "(declare-fun a () Bool)\n"
+          + "(declare-fun |b c| () Bool)\n"
+          + "(declare-const d Bool)\n"
+          + "; comment with (unbalanced parenthesis\n"
+          + "(define-fun .def_1 () Bool (xor a |b c|))\n"
+          + "(assert (! (or d (and .def_1 (=> a |b c|))) :named first))\n"
+          + "(assert (let ((x (not d)) (y a)) (let ((x (and x y))) (= x first x))))\n"
+          + "(check-sat)\n";
+
+  private static final String INTEGER_QUERY =
+      "(declare-fun x () Int)\n"
+          + "(declare-fun y () Int)\n"
+          + "(declare-fun f (Int) Int)\n"
+          + "(assert (and (< x y 10) (= (f (- x 3)) (- 5)) (distinct x (* 2 y))))\n";
+
+  private static final String BITVECTOR_QUERY =
+      "(declare-fun x () (_ BitVec 8))\n"
+          + "(declare-fun y () (_ BitVec 8))\n"
+          + "(assert (bvult (bvadd x #xff) y))\n"
+          + "(assert (= ((_ extract 3 0) x) #b1010))\n"
+          + "(assert (= (bvand x y) (_ bv7 8)))\n";
+
+  @Parameters(name = "{0}")
+  public static Object[] getAllSolvers() {
+    return Solvers.values();
+  }
+
+  @Parameter(0)
+  public Solvers solver;
+
+  @Override
+  protected Solvers solverToUse() {
+    return solver;
+  }
+
+  @Test
+  public void booleanFromReader() throws SolverException, InterruptedException, IOException {
+    BooleanFormula a = bmgr.makeVariable("a");
+    BooleanFormula bc = bmgr.makeVariable("b c");
+    BooleanFormula d = bmgr.makeVariable("d");
+    BooleanFormula first = bmgr.or(d, bmgr.and(bmgr.xor(a, bc), bmgr.implication(a, bc)));
+    BooleanFormula x = bmgr.and(bmgr.not(d), a);
+    BooleanFormula expected =
+        bmgr.and(first, bmgr.equivalence(x, first), bmgr.equivalence(first, x));
+
+    BooleanFormula parsed = mgr.parse(new StringReader(BOOLEAN_QUERY));
+    assertThatFormula(parsed).isEquivalentTo(expected);
+  }
+
+  @Test
+  public void integerFromReader() throws SolverException, InterruptedException, IOException {
+    IntegerFormula x = imgr.makeVariable("x");
+    IntegerFormula y = imgr.makeVariable("y");
+    IntegerFormula fx =
+        fmgr.declareAndCallUF("f", FormulaType.IntegerType, imgr.subtract(x, imgr.makeNumber(3)));
+    BooleanFormula expected =
+        bmgr.and(
+            imgr.lessThan(x, y),
+            imgr.lessThan(y, imgr.makeNumber(10)),
+            imgr.equal(fx, imgr.makeNumber(-5)),
+            bmgr.not(imgr.equal(x, imgr.multiply(imgr.makeNumber(2), y))));
+
+    BooleanFormula parsed = mgr.parse(new StringReader(INTEGER_QUERY));
+    assertThatFormula(parsed).isEquivalentTo(expected);
+  }
+
+  @Test
+  public void bitvectorFromFile() throws SolverException, InterruptedException, IOException {
+    requireBitvectors();
+
+    BitvectorFormula x = bvmgr.makeVariable(8, "x");
+    BitvectorFormula y = bvmgr.makeVariable(8, "y");
+    BooleanFormula expected =
+        bmgr.and(
+            bvmgr.lessThan(bvmgr.add(x, bvmgr.makeBitvector(8, 255)), y, false),
+            bvmgr.equal(bvmgr.extract(x, 3, 0, false), bvmgr.makeBitvector(4, 10)),
+            bvmgr.equal(bvmgr.and(x, y), bvmgr.makeBitvector(8, 7)));
+
+    Path file = Files.createTempFile("query", ".smt2");
+    try {
+      Files.write(file, BITVECTOR_QUERY.getBytes(StandardCharsets.UTF_8));
+      assertThatFormula(mgr.parse(file)).isEquivalentTo(expected);
+    } finally {
+      Files.delete(file);
+    }
+  }
+
+  @Test
+  public void matchesStringParser() throws SolverException, InterruptedException, IOException {
+    assertThatFormula(mgr.parse(new StringReader(INTEGER_QUERY)))
+        .isEquivalentTo(mgr.parse(INTEGER_QUERY));
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void unknownSymbol() throws IOException {
+    mgr.parse(new StringReader("(assert (and a b))"));
+  }
+}
@@ -0,0 +1,162 @@
+/*
+ *  JavaSMT is an API wrapper for a collection of SMT solvers.
+ *  This file is part of JavaSMT.
+ *
+ *  Copyright (C) 2007-2016  Dirk Beyer
+ *  All rights reserved.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.sosy_lab.java_smt.test;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.nio.charset.StandardCharsets;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.Parameterized;
+import org.junit.runners.Parameterized.Parameter;
+import org.junit.runners.Parameterized.Parameters;
+import org.sosy_lab.java_smt.SolverContextFactory.Solvers;
+import org.sosy_lab.java_smt.api.BitvectorFormula;
+import org.sosy_lab.java_smt.api.BooleanFormula;
+import org.sosy_lab.java_smt.api.FloatingPointFormula;
+import org.sosy_lab.java_smt.api.FormulaType;
+import org.sosy_lab.java_smt.api.FormulaType.FloatingPointType;
+import org.sosy_lab.java_smt.api.NumeralFormula.IntegerFormula;
+import org.sosy_lab.java_smt.api.SolverException;
+import org.sosy_lab.java_smt.utils.SmtLib2Printer;
+import org.sosy_lab.java_smt.utils.SolverUtils;
+
+@RunWith(Parameterized.class)
+public class SmtLib2PrinterTest extends SolverBasedTest0 {
+
+  @Parameters(name = "{0}")
+  public static Object[] getAllSolvers() {
+    return Solvers.values();
+  }
+
+  @Parameter(0)
+  public Solvers solver;
+
+  @Override
+  protected Solvers solverToUse() {
+    return solver;
+  }
+
+  private SmtLib2Printer printer;
+
+  @Before
+  public void setUp() {
+    printer = SolverUtils.smtLib2Printer(mgr);
+  }
+
+  private BooleanFormula reparse(BooleanFormula f) throws IOException {
+    StringBuilder out = new StringBuilder();
+    printer.print(f, out);
+    return mgr.parse(out.toString());
+  }
+
+  @Test
+  public void booleanRoundTrip() throws SolverException, InterruptedException, IOException {
+    BooleanFormula a = bmgr.makeVariable("main::a");
+    BooleanFormula b = bmgr.makeVariable("b");
+    BooleanFormula c = bmgr.makeVariable("c");
+    BooleanFormula shared = bmgr.xor(a, b);
+    BooleanFormula f =
+        bmgr.or(bmgr.and(shared, c), bmgr.implication(shared, bmgr.not(c)), bmgr.makeFalse());
+
+    assertThatFormula(reparse(f)).isEquivalentTo(f);
+  }
+
+  @Test
+  public void sharedTermsAreBound() throws IOException {
+    IntegerFormula x = imgr.makeVariable("x");
+    IntegerFormula y = imgr.makeVariable("y");
+    IntegerFormula sum = imgr.add(x, y);
+    BooleanFormula f =
+        bmgr.and(imgr.greaterThan(sum, imgr.makeNumber(1)), imgr.lessThan(sum, x));
+
+    String dump = printer.asAppender(f).toString();
+    assertThat(dump).contains("(declare-fun x () Int)");
+    assertThat(dump).contains("(declare-fun y () Int)");
+    assertThat(dump).contains("(let ((");
+  }
+
+  @Test
+  public void integerAndUfRoundTrip() throws SolverException, InterruptedException, IOException {
+    IntegerFormula x = imgr.makeVariable("x");
+    IntegerFormula y = imgr.makeVariable("y");
+    IntegerFormula fx =
+        fmgr.declareAndCallUF("f", FormulaType.IntegerType, imgr.subtract(x, imgr.makeNumber(3)));
+    BooleanFormula f =
+        bmgr.and(
+            imgr.equal(fx, imgr.makeNumber(-5)),
+            imgr.lessOrEquals(imgr.add(x, y), fx),
+            bmgr.not(imgr.equal(x, y)));
+
+    assertThatFormula(reparse(f)).isEquivalentTo(f);
+  }
+
+  @Test
+  public void bitvectorRoundTrip() throws SolverException, InterruptedException, IOException {
+    requireBitvectors();
+
+    BitvectorFormula x = bvmgr.makeVariable(8, "x");
+    BitvectorFormula y = bvmgr.makeVariable(8, "y");
+    BitvectorFormula sum = bvmgr.add(x, bvmgr.makeBitvector(8, -1));
+    BooleanFormula f =
+        bmgr.and(bvmgr.lessThan(sum, y, true), bvmgr.equal(bvmgr.and(sum, y), x));
+
+    assertThatFormula(reparse(f)).isEquivalentTo(f);
+  }
+
+  @Test
+  public void floatingPointRoundTrip() throws SolverException, InterruptedException, IOException {
+    requireFloats();
+
+    for (FloatingPointType type :
+        new FloatingPointType[] {
+          FormulaType.getSinglePrecisionFloatingPointType(),
+          FormulaType.getDoublePrecisionFloatingPointType(),
+          FormulaType.getFloatingPointType(5, 10)
+        }) {
+      FloatingPointFormula x = fpmgr.makeVariable("x" + type.getMantissaSize(), type);
+      BooleanFormula f =
+          bmgr.and(
+              fpmgr.lessThan(fpmgr.makeNumber(-2.5, type), x),
+              fpmgr.lessThan(x, fpmgr.makePlusInfinity(type)),
+              bmgr.not(fpmgr.equalWithFPSemantics(x, fpmgr.makeNumber(0.375, type))),
+              bmgr.not(fpmgr.isNaN(fpmgr.add(x, fpmgr.makeNumber(1.0, type)))));
+
+      assertThatFormula(reparse(f)).isEquivalentTo(f);
+    }
+  }
+
+  @Test
+  public void channelOutput() throws SolverException, InterruptedException, IOException {
+    BooleanFormula a = bmgr.makeVariable("a");
+    BooleanFormula b = bmgr.makeVariable("b");
+    BooleanFormula f = bmgr.or(bmgr.and(a, b), bmgr.not(a));
+
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    printer.print(f, Channels.newChannel(bytes));
+    BooleanFormula parsed = mgr.parse(new String(bytes.toByteArray(), StandardCharsets.UTF_8));
+
+    assertThatFormula(parsed).isEquivalentTo(f);
+  }
+}
@@ -1023,4 +1023,22 @@ public class SolverTheoriesTest extends SolverBasedTest0 {
     } catch (IllegalArgumentException expected) {
     }
   }
+
+  @Test
+  public void formulaTypesAreCanonical() {
+    assertThat(FormulaType.getBitvectorTypeWithSize(32))
+        .isSameAs(FormulaType.getBitvectorTypeWithSize(32));
+    assertThat(FormulaType.getBitvectorTypeWithSize(1000))
+        .isSameAs(FormulaType.getBitvectorTypeWithSize(1000));
+    assertThat(FormulaType.getFloatingPointType(8, 23))
+        .isSameAs(FormulaType.getSinglePrecisionFloatingPointType());
+    assertThat(FormulaType.getArrayType(FormulaType.IntegerType, FormulaType.RationalType))
+        .isSameAs(FormulaType.getArrayType(FormulaType.IntegerType, FormulaType.RationalType));
+    assertThat(FormulaType.fromString("Bitvector<8>"))
+        .isSameAs(FormulaType.getBitvectorTypeWithSize(8));
+
+    requireBitvectors();
+    BitvectorFormula x = bvmgr.makeVariable(16, "x");
+    assertThat(mgr.getFormulaType(x)).isSameAs(FormulaType.getBitvectorTypeWithSize(16));
+  }
 }
@@ -22,6 +22,9 @@ package org.sosy_lab.java_smt.test;
 import static com.google.common.truth.TruthJUnit.assume;
 import static org.sosy_lab.java_smt.test.BooleanFormulaSubject.assertUsing;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
 import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
@@ -42,6 +45,7 @@ import org.sosy_lab.java_smt.api.IntegerFormulaManager;
 import org.sosy_lab.java_smt.api.NumeralFormula.IntegerFormula;
 import org.sosy_lab.java_smt.api.SolverContext;
 import org.sosy_lab.java_smt.api.SolverException;
+import org.sosy_lab.java_smt.utils.SolverUtils;
 
 /** Testing formula serialization. */
 @RunWith(Parameterized.class)
@@ -122,6 +126,18 @@ public class TranslateFormulaTest {
     assertUsing(to).that(createTestFormula(managerTo)).isEquivalentTo(parsed);
   }
 
+  @Test
+  public void testSerializing() throws SolverException, InterruptedException, IOException {
+    BooleanFormula input = createTestFormula(managerFrom);
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    SolverUtils.formulaSerializer(managerFrom).write(input, out);
+    BooleanFormula parsed =
+        SolverUtils.formulaSerializer(managerTo)
+            .read(new ByteArrayInputStream(out.toByteArray()));
+
+    assertUsing(to).that(createTestFormula(managerTo)).isEquivalentTo(parsed);
+  }
+
   private BooleanFormula createTestFormula(FormulaManager mgr) {
     BooleanFormulaManager bfmgr = mgr.getBooleanFormulaManager();
     IntegerFormulaManager ifmgr = mgr.getIntegerFormulaManager();
@@ -73,6 +73,22 @@ public class UFManagerTest extends SolverBasedTest0 {
     }
   }
 
+  @Test
+  public void testDeclarationIsReused() {
+    FunctionDeclaration<?> f1 =
+        fmgr.declareUF("reused", FormulaType.IntegerType, FormulaType.IntegerType);
+    FunctionDeclaration<?> f2 =
+        fmgr.declareUF(
+            "reused", FormulaType.IntegerType, ImmutableList.of(FormulaType.IntegerType));
+    Truth.assertThat(f2).isSameAs(f1);
+
+    Formula call1 = fmgr.declareAndCallUF("reused", FormulaType.IntegerType, imgr.makeNumber(1));
+    Formula call2 = fmgr.callUF(f1, imgr.makeNumber(1));
+    Truth.assertThat(call2).isEqualTo(call1);
+    Truth.assertThat(getDeclaration(call1).getArgumentTypes())
+        .containsExactly(FormulaType.IntegerType);
+  }
+
   private FunctionDeclaration<?> getDeclaration(Formula pFormula) {
     return mgr.visit(
         pFormula,
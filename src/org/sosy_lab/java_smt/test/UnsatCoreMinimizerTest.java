@@ -0,0 +1,178 @@
+/*
+ *  JavaSMT is an API wrapper for a collection of SMT solvers.
+ *  This file is part of JavaSMT.
+ *
+ *  Copyright (C) 2007-2016  Dirk Beyer
+ *  All rights reserved.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.sosy_lab.java_smt.test;
+
+import static com.google.common.truth.Truth.assertThat;
+import static com.google.common.truth.TruthJUnit.assume;
+import static org.sosy_lab.java_smt.SolverContextFactory.Solvers.MATHSAT5;
+import static org.sosy_lab.java_smt.SolverContextFactory.Solvers.Z3;
+
+import com.google.common.collect.ImmutableList;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.Parameterized;
+import org.junit.runners.Parameterized.Parameter;
+import org.junit.runners.Parameterized.Parameters;
+import org.sosy_lab.common.configuration.InvalidConfigurationException;
+import org.sosy_lab.common.time.TimeSpan;
+import org.sosy_lab.java_smt.SolverContextFactory.Solvers;
+import org.sosy_lab.java_smt.api.BooleanFormula;
+import org.sosy_lab.java_smt.api.NumeralFormula.IntegerFormula;
+import org.sosy_lab.java_smt.api.ProverEnvironment;
+import org.sosy_lab.java_smt.api.SolverContext;
+import org.sosy_lab.java_smt.api.SolverContext.ProverOptions;
+import org.sosy_lab.java_smt.api.SolverException;
+import org.sosy_lab.java_smt.utils.SolverUtils;
+import org.sosy_lab.java_smt.utils.UnsatCoreMinimizer;
+import org.sosy_lab.java_smt.utils.UnsatCoreMinimizer.Strategy;
+
+@RunWith(Parameterized.class)
+public class UnsatCoreMinimizerTest extends SolverBasedTest0 {
+
+  @Parameters(name = "{0}")
+  public static Object[] getAllSolvers() {
+    return Solvers.values();
+  }
+
+  @Parameter(0)
+  public Solvers solver;
+
+  @Override
+  protected Solvers solverToUse() {
+    return solver;
+  }
+
+  private List<BooleanFormula> constraints;
+
+  @Before
+  public void setUp() {
+    assume()
+        .withMessage("Solver %s does not support solving with assumptions", solverToUse())
+        .that(solverToUse())
+        .isAnyOf(Z3, MATHSAT5);
+
+    IntegerFormula x = imgr.makeVariable("x");
+    IntegerFormula y = imgr.makeVariable("y");
+    IntegerFormula z = imgr.makeVariable("z");
+    constraints =
+        ImmutableList.of(
+            imgr.equal(z, imgr.makeNumber(3)),
+            imgr.greaterThan(x, imgr.makeNumber(10)),
+            imgr.greaterThan(y, x),
+            imgr.lessThan(x, imgr.makeNumber(5)),
+            imgr.equal(y, imgr.makeNumber(1)),
+            imgr.greaterThan(x, imgr.makeNumber(0)),
+            imgr.lessThan(z, imgr.makeNumber(100)));
+  }
+
+  private ProverEnvironment newProver(SolverContext pContext) {
+    try {
+      return pContext.newProverEnvironment(ProverOptions.GENERATE_UNSAT_CORE_OVER_ASSUMPTIONS);
+    } catch (UnsupportedOperationException e) {
+      return pContext.newProverEnvironment();
+    }
+  }
+
+  private void assertMinimal(List<BooleanFormula> core)
+      throws SolverException, InterruptedException {
+    assertThat(constraints).containsAllIn(core).inOrder();
+    assertThatFormula(bmgr.and(core)).isUnsatisfiable();
+    for (int i = 0; i < core.size(); i++) {
+      List<BooleanFormula> smaller = new ArrayList<>(core);
+      smaller.remove(i);
+      assertThatFormula(bmgr.and(smaller)).isSatisfiable();
+    }
+  }
+
+  @Test
+  public void allStrategies() throws SolverException, InterruptedException {
+    for (Strategy strategy : Strategy.values()) {
+      UnsatCoreMinimizer minimizer = SolverUtils.unsatCoreMinimizer(mgr, strategy);
+      try (ProverEnvironment prover = newProver(context)) {
+        List<BooleanFormula> core = minimizer.minimize(prover, constraints);
+        assertMinimal(core);
+        assertThat(minimizer.wasLastResultMinimal()).isTrue();
+
+        // the prover is in its original state again
+        assertThat(prover.isUnsat()).isFalse();
+      }
+    }
+  }
+
+  @Test
+  public void background() throws SolverException, InterruptedException {
+    BooleanFormula xIsTwenty = imgr.equal(imgr.makeVariable("x"), imgr.makeNumber(20));
+    UnsatCoreMinimizer minimizer =
+        SolverUtils.unsatCoreMinimizer(mgr, Strategy.CLAUSE_SET_REFINEMENT);
+    try (ProverEnvironment prover = newProver(context)) {
+      List<BooleanFormula> core =
+          minimizer.minimize(prover, ImmutableList.of(xIsTwenty), constraints);
+      // x=20 contradicts x<5 alone, and y>x together with y=1
+      assertThat(core)
+          .isAnyOf(
+              ImmutableList.of(constraints.get(3)),
+              ImmutableList.of(constraints.get(2), constraints.get(4)));
+    }
+  }
+
+  @Test
+  public void parallelProbing()
+      throws SolverException, InterruptedException, InvalidConfigurationException {
+    List<SolverContext> workers = new ArrayList<>();
+    try {
+      for (int i = 0; i < 2; i++) {
+        workers.add(factory.generateContext());
+      }
+      for (Strategy strategy :
+          ImmutableList.of(Strategy.DELETION, Strategy.CLAUSE_SET_REFINEMENT)) {
+        UnsatCoreMinimizer minimizer = SolverUtils.unsatCoreMinimizer(mgr, strategy);
+        minimizer.setParallelWorkers(workers);
+        try (ProverEnvironment prover = newProver(context)) {
+          assertMinimal(minimizer.minimize(prover, ImmutableList.of(), constraints));
+        }
+      }
+    } finally {
+      for (SolverContext worker : workers) {
+        worker.close();
+      }
+    }
+  }
+
+  @Test
+  public void exhaustedTimeBudget() throws SolverException, InterruptedException {
+    UnsatCoreMinimizer minimizer = SolverUtils.unsatCoreMinimizer(mgr, Strategy.DELETION);
+    minimizer.setTimeBudget(TimeSpan.ofNanos(1));
+    try (ProverEnvironment prover = newProver(context)) {
+      List<BooleanFormula> core = minimizer.minimize(prover, constraints);
+      assertThatFormula(bmgr.and(core)).isUnsatisfiable();
+    }
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void satisfiableConstraints() throws SolverException, InterruptedException {
+    UnsatCoreMinimizer minimizer = SolverUtils.unsatCoreMinimizer(mgr, Strategy.QUICK_XPLAIN);
+    try (ProverEnvironment prover = newProver(context)) {
+      assertThat(minimizer.minimize(prover, constraints.subList(0, 3))).isEmpty();
+    }
+  }
+}
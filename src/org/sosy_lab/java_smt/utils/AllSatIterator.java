@@ -0,0 +1,206 @@
+/*
+ *  JavaSMT is an API wrapper for a collection of SMT solvers.
+ *  This file is part of JavaSMT.
+ *
+ *  Copyright (C) 2007-2016  Dirk Beyer
+ *  All rights reserved.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.sosy_lab.java_smt.utils;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import com.google.common.collect.ImmutableList;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+import javax.annotation.Nullable;
+import org.sosy_lab.common.time.TimeSpan;
+import org.sosy_lab.common.time.Timer;
+import org.sosy_lab.java_smt.api.BasicProverEnvironment;
+import org.sosy_lab.java_smt.api.BooleanFormula;
+import org.sosy_lab.java_smt.api.BooleanFormulaManager;
+import org.sosy_lab.java_smt.api.FormulaManager;
+import org.sosy_lab.java_smt.api.Model;
+import org.sosy_lab.java_smt.api.SolverException;
+
+/**
+ * Lazy enumeration of all satisfying assignments of the formulas on a prover stack, projected to a
+ * list of important predicates. This is the pull-based counterpart of {@link
+ * BasicProverEnvironment#allSat}: each requested model costs one satisfiability check, and the
+ * consumer can stop at any time.
+ *
+ * <p>Each model is a list that contains the important predicates that are true and the negations
+ * of those that are false in the model. Predicates without a value in a partial model are omitted.
+ * After each model, a blocking clause is added to the prover. The enumeration uses one level of the
+ * prover stack, which is removed when the enumeration is exhausted or {@link #close() closed}, such
+ * that the prover is in its original state afterwards. The prover must not be used otherwise
+ * during the enumeration, and it needs to be created with {@link
+ * org.sosy_lab.java_smt.api.SolverContext.ProverOptions#GENERATE_MODELS}.
+ *
+ * <p>Because {@link Iterator} does not allow checked exceptions, {@link #hasNext()} and {@link
+ * #next()} wrap them into an {@link AllSatException}. Use {@link #nextModel()} to get them
+ * directly.
+ */
+public class AllSatIterator implements Iterator<List<BooleanFormula>>, AutoCloseable {
+
+  /** Unchecked wrapper for exceptions of the solver during the iteration. */
+  public static class AllSatException extends RuntimeException {
+
+    private static final long serialVersionUID = 1L;
+
+    private AllSatException(Exception pCause) {
+      super(pCause);
+    }
+  }
+
+  private final BooleanFormulaManager bmgr;
+  private final BasicProverEnvironment<?> prover;
+  private final ImmutableList<BooleanFormula> important;
+
+  private final Timer solverTime = new Timer();
+  private int modelCount = 0;
+
+  /** The next model if it was already computed by {@link #hasNext()}. */
+  private @Nullable List<BooleanFormula> pending = null;
+
+  /** Whether the enumeration is finished and the prover stack is restored. */
+  private boolean closed = false;
+
+  AllSatIterator(
+      FormulaManager pFmgr, BasicProverEnvironment<?> pProver, List<BooleanFormula> pImportant) {
+    bmgr = pFmgr.getBooleanFormulaManager();
+    prover = checkNotNull(pProver);
+    important = ImmutableList.copyOf(pImportant);
+    prover.push();
+  }
+
+  /**
+   * Compute the next model.
+   *
+   * @return the next model, or {@code null} if all models were enumerated
+   */
+  public @Nullable List<BooleanFormula> nextModel() throws SolverException, InterruptedException {
+    if (pending != null) {
+      List<BooleanFormula> result = pending;
+      pending = null;
+      return result;
+    }
+    if (closed) {
+      return null;
+    }
+
+    boolean unsat;
+    solverTime.start();
+    try {
+      unsat = prover.isUnsat();
+    } finally {
+      solverTime.stop();
+    }
+    if (unsat) {
+      close();
+      return null;
+    }
+
+    List<BooleanFormula> model = new ArrayList<>(important.size());
+    try (Model m = prover.getModel()) {
+      List<Object> values = m.evaluateAll(important);
+      for (int i = 0; i < important.size(); i++) {
+        Object value = values.get(i);
+        if (value != null) {
+          BooleanFormula predicate = important.get(i);
+          model.add((Boolean) value ? predicate : bmgr.not(predicate));
+        }
+      }
+    }
+
+    // block the current model to get a new one in the next iteration
+    prover.addConstraint(bmgr.not(bmgr.and(model)));
+    modelCount++;
+    return Collections.unmodifiableList(model);
+  }
+
+  @Override
+  public boolean hasNext() {
+    if (pending == null && !closed) {
+      try {
+        pending = nextModel();
+      } catch (SolverException e) {
+        throw new AllSatException(e);
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        throw new AllSatException(e);
+      }
+    }
+    return pending != null;
+  }
+
+  @Override
+  public List<BooleanFormula> next() {
+    if (!hasNext()) {
+      throw new NoSuchElementException();
+    }
+    List<BooleanFormula> result = checkNotNull(pending);
+    pending = null;
+    return result;
+  }
+
+  /**
+   * Return a sequential stream of the remaining models. Closing the stream closes this iterator.
+   */
+  public Stream<List<BooleanFormula>> stream() {
+    return StreamSupport.stream(
+            Spliterators.spliteratorUnknownSize(
+                this, Spliterator.ORDERED | Spliterator.NONNULL | Spliterator.DISTINCT),
+            false)
+        .onClose(this::close);
+  }
+
+  /** Number of models that were computed so far. */
+  public int getModelCount() {
+    return modelCount;
+  }
+
+  /** Number of satisfiability checks that were done so far. */
+  public int getSolverCalls() {
+    return solverTime.getNumberOfIntervals();
+  }
+
+  /** Total time spent in satisfiability checks so far. */
+  public TimeSpan getSolverTime() {
+    return solverTime.getSumTime();
+  }
+
+  /** Stop the enumeration and remove the blocking clauses from the prover. */
+  @Override
+  public void close() {
+    if (!closed) {
+      closed = true;
+      prover.pop();
+    }
+  }
+
+  @Override
+  public String toString() {
+    return String.format(
+        "AllSatIterator(%d models, %d solver calls, %s)",
+        modelCount, getSolverCalls(), getSolverTime());
+  }
+}
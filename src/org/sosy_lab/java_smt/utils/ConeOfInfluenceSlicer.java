@@ -0,0 +1,226 @@
+/*
+ *  JavaSMT is an API wrapper for a collection of SMT solvers.
+ *  This file is part of JavaSMT.
+ *
+ *  Copyright (C) 2007-2016  Dirk Beyer
+ *  All rights reserved.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.sosy_lab.java_smt.utils;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import javax.annotation.Nullable;
+import org.sosy_lab.java_smt.api.BooleanFormula;
+import org.sosy_lab.java_smt.api.BooleanFormulaManager;
+import org.sosy_lab.java_smt.api.FormulaManager;
+import org.sosy_lab.java_smt.api.ProverEnvironment;
+import org.sosy_lab.java_smt.api.SolverContext;
+import org.sosy_lab.java_smt.api.SolverContext.ProverOptions;
+
+/**
+ * Splits conjunctions into independent parts.
+ *
+ * <p>Two conjuncts depend on each other if they share a variable or an uninterpreted function, or
+ * if both depend on a third conjunct. A conjunction is satisfiable if and only if each of its
+ * independent parts is satisfiable, thus the parts can be checked separately. This helps if large
+ * conjunctions are asserted, but only a small part of them is related to the property of interest.
+ *
+ * <p>The prover environments returned by {@link #newSlicingProver} check each part separately and
+ * cache the results of the parts, such that later checks only need to solve the parts that were
+ * changed or that are related to the assumptions of the check. The cache is shared by all prover
+ * environments of this slicer.
+ */
+public class ConeOfInfluenceSlicer {
+
+  /** Maximal number of entries in each of the caches. */
+  private static final int CACHE_SIZE = 10000;
+
+  private final FormulaManager fmgr;
+  private final BooleanFormulaManager bmgr;
+
+  /** The symbols of the conjuncts seen so far. */
+  private final Map<BooleanFormula, ImmutableSet<String>> symbols = newCache();
+
+  /** Whether a part is unsatisfiable, for the parts that were already checked. */
+  private final Map<ImmutableSet<BooleanFormula>, Boolean> results = newCache();
+
+  private ImmutableList<SolverContext> workers = ImmutableList.of();
+
+  private int solverCalls = 0;
+  private int cacheHits = 0;
+
+  ConeOfInfluenceSlicer(FormulaManager pFmgr) {
+    fmgr = checkNotNull(pFmgr);
+    bmgr = fmgr.getBooleanFormulaManager();
+  }
+
+  private static <K, V> Map<K, V> newCache() {
+    return new LinkedHashMap<K, V>(16, 0.75f, true) {
+      private static final long serialVersionUID = 1L;
+
+      @Override
+      protected boolean removeEldestEntry(Map.Entry<K, V> eldest) {
+        return size() > CACHE_SIZE;
+      }
+    };
+  }
+
+  /**
+   * Use the given solver contexts to check several parts at once. The contexts need to be
+   * distinct from the context of the formula manager, and each of them is used by one thread only.
+   * All formulas are translated to the workers in the calling thread. An empty list, which is the
+   * default, disables parallel checking.
+   */
+  public void setParallelWorkers(List<? extends SolverContext> pWorkers) {
+    workers = ImmutableList.copyOf(pWorkers);
+  }
+
+  /**
+   * Split the conjunction of the given constraints into independent parts. Nested conjunctions are
+   * flattened and constraints that are {@code true} are dropped.
+   *
+   * @return the parts, each of them a list of conjuncts, in the order of their first conjunct
+   */
+  public ImmutableList<ImmutableList<BooleanFormula>> partition(
+      Collection<BooleanFormula> constraints) {
+    List<BooleanFormula> conjuncts = flatten(constraints);
+    int[] parent = new int[conjuncts.size()];
+    Map<String, Integer> owners = new HashMap<>();
+    for (int i = 0; i < conjuncts.size(); i++) {
+      parent[i] = i;
+      for (String symbol : symbolsOf(conjuncts.get(i))) {
+        Integer owner = owners.putIfAbsent(symbol, i);
+        if (owner != null) {
+          parent[find(parent, i)] = find(parent, owner);
+        }
+      }
+    }
+
+    Map<Integer, ImmutableList.Builder<BooleanFormula>> parts = new LinkedHashMap<>();
+    for (int i = 0; i < conjuncts.size(); i++) {
+      parts.computeIfAbsent(find(parent, i), k -> ImmutableList.builder()).add(conjuncts.get(i));
+    }
+    ImmutableList.Builder<ImmutableList<BooleanFormula>> result = ImmutableList.builder();
+    for (ImmutableList.Builder<BooleanFormula> part : parts.values()) {
+      result.add(part.build());
+    }
+    return result.build();
+  }
+
+  /**
+   * Return the conjuncts of the given constraints that the property depends on, i.e., the cone of
+   * influence of the property. The property is satisfiable together with the constraints if and
+   * only if it is satisfiable together with the returned conjuncts and the rest is satisfiable.
+   */
+  public ImmutableList<BooleanFormula> slice(
+      Collection<BooleanFormula> constraints, BooleanFormula property) {
+    Set<BooleanFormula> propertyConjuncts = bmgr.toConjunctionArgs(property, true);
+    List<BooleanFormula> all = new ArrayList<>(constraints);
+    all.add(property);
+    ImmutableList.Builder<BooleanFormula> result = ImmutableList.builder();
+    for (ImmutableList<BooleanFormula> part : partition(all)) {
+      if (part.stream().anyMatch(propertyConjuncts::contains)) {
+        for (BooleanFormula conjunct : part) {
+          if (!propertyConjuncts.contains(conjunct)) {
+            result.add(conjunct);
+          }
+        }
+      }
+    }
+    return result.build();
+  }
+
+  /**
+   * Create a prover environment that checks the independent parts of its assertions separately.
+   * Only the checks for satisfiability use the parts, models and unsat cores are computed by an
+   * additional prover environment with all assertions, which is checked again when necessary.
+   *
+   * @param context the context of the formula manager of this slicer
+   * @param options the options of the prover environments that are created
+   */
+  public ProverEnvironment newSlicingProver(SolverContext context, ProverOptions... options) {
+    checkArgument(
+        context.getFormulaManager() == fmgr, "context does not belong to the formula manager");
+    return new SlicingProverEnvironment(this, context, options);
+  }
+
+  private List<BooleanFormula> flatten(Collection<BooleanFormula> constraints) {
+    Set<BooleanFormula> conjuncts = new LinkedHashSet<>();
+    for (BooleanFormula constraint : constraints) {
+      conjuncts.addAll(bmgr.toConjunctionArgs(constraint, true));
+    }
+    return new ArrayList<>(conjuncts);
+  }
+
+  private ImmutableSet<String> symbolsOf(BooleanFormula conjunct) {
+    ImmutableSet<String> result = symbols.get(conjunct);
+    if (result == null) {
+      result = ImmutableSet.copyOf(fmgr.extractVariablesAndUFs(conjunct).keySet());
+      symbols.put(conjunct, result);
+    }
+    return result;
+  }
+
+  private static int find(int[] parent, int i) {
+    while (parent[i] != i) {
+      parent[i] = parent[parent[i]]; // path halving
+      i = parent[i];
+    }
+    return i;
+  }
+
+  FormulaManager getFormulaManager() {
+    return fmgr;
+  }
+
+  ImmutableList<SolverContext> getWorkers() {
+    return workers;
+  }
+
+  @Nullable
+  Boolean getCachedResult(ImmutableSet<BooleanFormula> part) {
+    Boolean result = results.get(part);
+    if (result != null) {
+      cacheHits++;
+    }
+    return result;
+  }
+
+  void putResult(ImmutableSet<BooleanFormula> part, boolean unsat) {
+    solverCalls++;
+    results.put(part, unsat);
+  }
+
+  /** Number of parts that were checked by a solver. */
+  public int getSolverCalls() {
+    return solverCalls;
+  }
+
+  /** Number of parts whose result was taken from the cache. */
+  public int getCacheHits() {
+    return cacheHits;
+  }
+}
@@ -0,0 +1,852 @@
+/*
+ *  JavaSMT is an API wrapper for a collection of SMT solvers.
+ *  This file is part of JavaSMT.
+ *
+ *  Copyright (C) 2007-2016  Dirk Beyer
+ *  All rights reserved.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.sosy_lab.java_smt.utils;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import javax.annotation.Nullable;
+import org.sosy_lab.common.rationals.Rational;
+import org.sosy_lab.java_smt.api.ArrayFormula;
+import org.sosy_lab.java_smt.api.BitvectorFormula;
+import org.sosy_lab.java_smt.api.BitvectorFormulaManager;
+import org.sosy_lab.java_smt.api.BooleanFormula;
+import org.sosy_lab.java_smt.api.BooleanFormulaManager;
+import org.sosy_lab.java_smt.api.Formula;
+import org.sosy_lab.java_smt.api.FormulaManager;
+import org.sosy_lab.java_smt.api.FormulaType;
+import org.sosy_lab.java_smt.api.FormulaType.ArrayFormulaType;
+import org.sosy_lab.java_smt.api.FormulaType.BitvectorType;
+import org.sosy_lab.java_smt.api.FormulaType.FloatingPointType;
+import org.sosy_lab.java_smt.api.FunctionDeclaration;
+import org.sosy_lab.java_smt.api.FunctionDeclarationKind;
+import org.sosy_lab.java_smt.api.NumeralFormula;
+import org.sosy_lab.java_smt.api.NumeralFormulaManager;
+import org.sosy_lab.java_smt.api.QuantifiedFormulaManager.Quantifier;
+import org.sosy_lab.java_smt.api.visitors.FormulaVisitor;
+import org.sosy_lab.java_smt.api.visitors.TraversalProcess;
+
+/**
+ * Compact binary serialization of formulas, independent of the solver.
+ *
+ * <p>A serialized formula is a stream of records. Sorts, symbol names and declarations of
+ * uninterpreted functions are stored in pools and emitted once before their first use, all terms
+ * are stored as a node table in topological order, such that every distinct sub-term is written
+ * exactly once and arguments are referenced by their (delta-encoded) node id. All numbers are
+ * written as variable-length integers.
+ *
+ * <p>The reader rebuilds the formula through the {@link FormulaManager} of this instance, thus a
+ * formula can be written with one solver and read with another one. Quantifiers and operators
+ * that can not be reconstructed from {@link FunctionDeclarationKind} alone (e.g. bitvector
+ * extraction, floating-point operations or {@link FunctionDeclarationKind#OTHER}) are not
+ * supported.
+ *
+ * <p>The streams are neither buffered nor closed by this class.
+ */
+public class FormulaSerializer {
+
+  private static final int MAGIC = 0x4A534D54; // "JSMT"
+  private static final int VERSION = 1;
+
+  // record tags
+  private static final int END = 0;
+  private static final int SORT = 1;
+  private static final int SYMBOL = 2;
+  private static final int DECLARATION = 3;
+  private static final int VARIABLE = 4;
+  private static final int CONSTANT = 5;
+  private static final int APPLICATION = 6;
+  private static final int UF_APPLICATION = 7;
+
+  // sort tags
+  private static final int SORT_BOOL = 0;
+  private static final int SORT_INT = 1;
+  private static final int SORT_REAL = 2;
+  private static final int SORT_BITVECTOR = 3;
+  private static final int SORT_FLOATINGPOINT = 4;
+  private static final int SORT_ROUNDINGMODE = 5;
+  private static final int SORT_ARRAY = 6;
+
+  // constant tags
+  private static final int CONST_FALSE = 0;
+  private static final int CONST_TRUE = 1;
+  private static final int CONST_INTEGER = 2;
+  private static final int CONST_RATIONAL = 3;
+  private static final int CONST_DECIMAL = 4;
+
+  private static final FunctionDeclarationKind[] KINDS = FunctionDeclarationKind.values();
+
+  private final FormulaManager fmgr;
+  private final BooleanFormulaManager bmgr;
+
+  FormulaSerializer(FormulaManager pFmgr) {
+    fmgr = checkNotNull(pFmgr);
+    bmgr = pFmgr.getBooleanFormulaManager();
+  }
+
+  /**
+   * Write the given formula into the stream.
+   *
+   * @throws UnsupportedOperationException if the formula contains quantifiers or operators that
+   *     can not be serialized.
+   */
+  public void write(BooleanFormula pFormula, OutputStream pOut) throws IOException {
+    NodeCollector collector = new NodeCollector();
+    fmgr.visitRecursively(pFormula, collector);
+    new Writer(pOut, collector.nodes).write(pFormula);
+  }
+
+  /** Read a formula from the stream and rebuild it with the formula manager of this instance. */
+  public BooleanFormula read(InputStream pIn) throws IOException {
+    return new Reader(pIn).read();
+  }
+
+  /** Information about one distinct sub-term, as obtained from the visitor. */
+  private static final class Node {
+    private final FormulaType<?> type;
+    private final @Nullable String name;
+    private final @Nullable Object value;
+    private final @Nullable FunctionDeclaration<?> declaration;
+    private final List<Formula> args;
+
+    private Node(
+        FormulaType<?> pType,
+        @Nullable String pName,
+        @Nullable Object pValue,
+        @Nullable FunctionDeclaration<?> pDeclaration,
+        List<Formula> pArgs) {
+      type = pType;
+      name = pName;
+      value = pValue;
+      declaration = pDeclaration;
+      args = pArgs;
+    }
+  }
+
+  private class NodeCollector implements FormulaVisitor<TraversalProcess> {
+
+    private final Map<Formula, Node> nodes = new LinkedHashMap<>();
+
+    @Override
+    public TraversalProcess visitFreeVariable(Formula f, String name) {
+      nodes.put(f, new Node(fmgr.getFormulaType(f), name, null, null, new ArrayList<>(0)));
+      return TraversalProcess.CONTINUE;
+    }
+
+    @Override
+    public TraversalProcess visitBoundVariable(Formula f, int deBruijnIdx) {
+      throw new UnsupportedOperationException("cannot serialize quantified formula: " + f);
+    }
+
+    @Override
+    public TraversalProcess visitConstant(Formula f, Object value) {
+      nodes.put(f, new Node(fmgr.getFormulaType(f), null, value, null, new ArrayList<>(0)));
+      return TraversalProcess.CONTINUE;
+    }
+
+    @Override
+    public TraversalProcess visitFunction(
+        Formula f, List<Formula> args, FunctionDeclaration<?> functionDeclaration) {
+      FunctionDeclarationKind kind = functionDeclaration.getKind();
+      if (kind == FunctionDeclarationKind.BV_EXTRACT
+          || kind == FunctionDeclarationKind.OTHER
+          || kind.name().startsWith("FP_")) {
+        throw new UnsupportedOperationException(
+            "cannot serialize operator " + functionDeclaration.getName());
+      }
+      nodes.put(f, new Node(fmgr.getFormulaType(f), null, null, functionDeclaration, args));
+      return TraversalProcess.CONTINUE;
+    }
+
+    @Override
+    public TraversalProcess visitQuantifier(
+        BooleanFormula f,
+        Quantifier quantifier,
+        List<Formula> boundVariables,
+        BooleanFormula body) {
+      throw new UnsupportedOperationException("cannot serialize quantified formula: " + f);
+    }
+  }
+
+  private static final class Writer {
+
+    private final OutputStream out;
+    private final Map<Formula, Node> nodes;
+    private final Map<Formula, Integer> nodeIds = new HashMap<>();
+    private final Map<FormulaType<?>, Integer> sortIds = new HashMap<>();
+    private final Map<String, Integer> symbolIds = new HashMap<>();
+    private final Map<FunctionDeclaration<?>, Integer> declarationIds = new HashMap<>();
+
+    private Writer(OutputStream pOut, Map<Formula, Node> pNodes) {
+      out = checkNotNull(pOut);
+      nodes = pNodes;
+    }
+
+    private void write(Formula root) throws IOException {
+      writeInt(MAGIC);
+      writeVarInt(VERSION);
+
+      // post-order traversal over the collected nodes, without recursion
+      Deque<Formula> waitlist = new ArrayDeque<>();
+      waitlist.push(root);
+      while (!waitlist.isEmpty()) {
+        Formula f = waitlist.peek();
+        if (nodeIds.containsKey(f)) {
+          waitlist.pop();
+          continue;
+        }
+        Node node = checkNotNull(nodes.get(f));
+        boolean argsDone = true;
+        for (Formula arg : node.args) {
+          if (!nodeIds.containsKey(arg)) {
+            argsDone = false;
+            waitlist.push(arg);
+          }
+        }
+        if (argsDone) {
+          waitlist.pop();
+          writeNode(node);
+          nodeIds.put(f, nodeIds.size());
+        }
+      }
+
+      writeVarInt(END);
+      writeVarInt(nodeIds.get(root));
+    }
+
+    private void writeNode(Node node) throws IOException {
+      int sort = sortId(node.type);
+      if (node.declaration == null && node.name != null) {
+        int symbol = symbolId(node.name);
+        writeVarInt(VARIABLE);
+        writeVarInt(sort);
+        writeVarInt(symbol);
+
+      } else if (node.declaration == null) {
+        writeConstant(node.type, sort, checkNotNull(node.value));
+
+      } else if (node.declaration.getKind() == FunctionDeclarationKind.UF) {
+        int declaration = declarationId(node.declaration);
+        writeVarInt(UF_APPLICATION);
+        writeVarInt(declaration);
+        writeArgs(node.args);
+
+      } else {
+        writeVarInt(APPLICATION);
+        writeVarInt(node.declaration.getKind().ordinal());
+        writeVarInt(sort);
+        writeArgs(node.args);
+      }
+    }
+
+    private void writeArgs(List<Formula> args) throws IOException {
+      int current = nodeIds.size();
+      writeVarInt(args.size());
+      for (Formula arg : args) {
+        // arguments are always older than the current node, the delta is small for local terms
+        writeVarInt(current - nodeIds.get(arg));
+      }
+    }
+
+    private void writeConstant(FormulaType<?> type, int sort, Object value) throws IOException {
+      if (value instanceof Boolean) {
+        writeVarInt(CONSTANT);
+        writeVarInt(sort);
+        writeVarInt((Boolean) value ? CONST_TRUE : CONST_FALSE);
+      } else if (value instanceof BigInteger) {
+        writeVarInt(CONSTANT);
+        writeVarInt(sort);
+        writeVarInt(CONST_INTEGER);
+        writeBigInteger((BigInteger) value);
+      } else if (value instanceof Rational) {
+        writeVarInt(CONSTANT);
+        writeVarInt(sort);
+        writeVarInt(CONST_RATIONAL);
+        writeBigInteger(((Rational) value).getNum());
+        writeBigInteger(((Rational) value).getDen());
+      } else if (value instanceof BigDecimal) {
+        writeVarInt(CONSTANT);
+        writeVarInt(sort);
+        writeVarInt(CONST_DECIMAL);
+        writeBigInteger(((BigDecimal) value).unscaledValue());
+        writeVarLong(encodeZigZag(((BigDecimal) value).scale()));
+      } else {
+        throw new UnsupportedOperationException(
+            "cannot serialize constant " + value + " of sort " + type);
+      }
+    }
+
+    private int sortId(FormulaType<?> type) throws IOException {
+      Integer id = sortIds.get(type);
+      if (id != null) {
+        return id;
+      }
+      if (type.isBooleanType()) {
+        writeVarInt(SORT);
+        writeVarInt(SORT_BOOL);
+      } else if (type.isIntegerType()) {
+        writeVarInt(SORT);
+        writeVarInt(SORT_INT);
+      } else if (type.isRationalType()) {
+        writeVarInt(SORT);
+        writeVarInt(SORT_REAL);
+      } else if (type.isBitvectorType()) {
+        writeVarInt(SORT);
+        writeVarInt(SORT_BITVECTOR);
+        writeVarInt(((BitvectorType) type).getSize());
+      } else if (type.isFloatingPointType()) {
+        writeVarInt(SORT);
+        writeVarInt(SORT_FLOATINGPOINT);
+        writeVarInt(((FloatingPointType) type).getExponentSize());
+        writeVarInt(((FloatingPointType) type).getMantissaSize());
+      } else if (type.isFloatingPointRoundingModeType()) {
+        writeVarInt(SORT);
+        writeVarInt(SORT_ROUNDINGMODE);
+      } else if (type.isArrayType()) {
+        ArrayFormulaType<?, ?> arrayType = (ArrayFormulaType<?, ?>) type;
+        int index = sortId(arrayType.getIndexType());
+        int element = sortId(arrayType.getElementType());
+        writeVarInt(SORT);
+        writeVarInt(SORT_ARRAY);
+        writeVarInt(index);
+        writeVarInt(element);
+      } else {
+        throw new UnsupportedOperationException("cannot serialize sort " + type);
+      }
+      id = sortIds.size();
+      sortIds.put(type, id);
+      return id;
+    }
+
+    private int symbolId(String name) throws IOException {
+      Integer id = symbolIds.get(name);
+      if (id == null) {
+        byte[] bytes = name.getBytes(StandardCharsets.UTF_8);
+        writeVarInt(SYMBOL);
+        writeVarInt(bytes.length);
+        out.write(bytes);
+        id = symbolIds.size();
+        symbolIds.put(name, id);
+      }
+      return id;
+    }
+
+    private int declarationId(FunctionDeclaration<?> declaration) throws IOException {
+      Integer id = declarationIds.get(declaration);
+      if (id == null) {
+        int symbol = symbolId(declaration.getName());
+        int returnSort = sortId(declaration.getType());
+        List<Integer> argSorts = new ArrayList<>();
+        for (FormulaType<?> argType : declaration.getArgumentTypes()) {
+          argSorts.add(sortId(argType));
+        }
+        writeVarInt(DECLARATION);
+        writeVarInt(symbol);
+        writeVarInt(returnSort);
+        writeVarInt(argSorts.size());
+        for (int argSort : argSorts) {
+          writeVarInt(argSort);
+        }
+        id = declarationIds.size();
+        declarationIds.put(declaration, id);
+      }
+      return id;
+    }
+
+    private void writeBigInteger(BigInteger value) throws IOException {
+      if (value.bitLength() < 63) {
+        // small values as zig-zag varint, marked by the lowest bit
+        writeVarLong(encodeZigZag(value.longValue()) << 1);
+      } else {
+        byte[] bytes = value.toByteArray();
+        writeVarLong(((long) bytes.length << 1) | 1);
+        out.write(bytes);
+      }
+    }
+
+    private void writeInt(int value) throws IOException {
+      out.write(value >>> 24);
+      out.write(value >>> 16);
+      out.write(value >>> 8);
+      out.write(value);
+    }
+
+    private void writeVarInt(int value) throws IOException {
+      writeVarLong(value & 0xFFFFFFFFL);
+    }
+
+    private void writeVarLong(long pValue) throws IOException {
+      long value = pValue;
+      while ((value & ~0x7FL) != 0) {
+        out.write((int) ((value & 0x7F) | 0x80));
+        value >>>= 7;
+      }
+      out.write((int) value);
+    }
+  }
+
+  private class Reader {
+
+    private final InputStream in;
+    private final List<Formula> nodes = new ArrayList<>();
+    private final List<FormulaType<?>> sorts = new ArrayList<>();
+    private final List<String> symbols = new ArrayList<>();
+    private final List<FunctionDeclaration<?>> declarations = new ArrayList<>();
+
+    private Reader(InputStream pIn) {
+      in = checkNotNull(pIn);
+    }
+
+    private BooleanFormula read() throws IOException {
+      if (readInt() != MAGIC) {
+        throw new IllegalArgumentException("input is not a serialized formula");
+      }
+      int version = readVarInt();
+      if (version != VERSION) {
+        throw new IllegalArgumentException("unsupported serialization version " + version);
+      }
+
+      while (true) {
+        int tag = readVarInt();
+        switch (tag) {
+          case END:
+            Formula root = nodes.get(readVarInt());
+            if (!(root instanceof BooleanFormula)) {
+              throw new IllegalArgumentException("serialized formula is not Boolean");
+            }
+            return (BooleanFormula) root;
+          case SORT:
+            sorts.add(readSort());
+            break;
+          case SYMBOL:
+            byte[] bytes = new byte[readVarInt()];
+            readFully(bytes);
+            symbols.add(new String(bytes, StandardCharsets.UTF_8));
+            break;
+          case DECLARATION:
+            String name = symbols.get(readVarInt());
+            FormulaType<?> returnType = sorts.get(readVarInt());
+            int argCount = readVarInt();
+            List<FormulaType<?>> argTypes = new ArrayList<>(argCount);
+            for (int i = 0; i < argCount; i++) {
+              argTypes.add(sorts.get(readVarInt()));
+            }
+            declarations.add(fmgr.getUFManager().declareUF(name, returnType, argTypes));
+            break;
+          case VARIABLE:
+            FormulaType<?> type = sorts.get(readVarInt());
+            nodes.add(fmgr.makeVariable(type, symbols.get(readVarInt())));
+            break;
+          case CONSTANT:
+            nodes.add(readConstant(sorts.get(readVarInt())));
+            break;
+          case APPLICATION:
+            FunctionDeclarationKind kind = KINDS[readVarInt()];
+            FormulaType<?> resultType = sorts.get(readVarInt());
+            nodes.add(build(kind, resultType, readArgs()));
+            break;
+          case UF_APPLICATION:
+            FunctionDeclaration<?> declaration = declarations.get(readVarInt());
+            nodes.add(fmgr.getUFManager().callUF(declaration, readArgs()));
+            break;
+          default:
+            throw new IllegalArgumentException("invalid record " + tag);
+        }
+      }
+    }
+
+    private List<Formula> readArgs() throws IOException {
+      int current = nodes.size();
+      int count = readVarInt();
+      List<Formula> args = new ArrayList<>(count);
+      for (int i = 0; i < count; i++) {
+        args.add(nodes.get(current - readVarInt()));
+      }
+      return args;
+    }
+
+    private FormulaType<?> readSort() throws IOException {
+      int tag = readVarInt();
+      switch (tag) {
+        case SORT_BOOL:
+          return FormulaType.BooleanType;
+        case SORT_INT:
+          return FormulaType.IntegerType;
+        case SORT_REAL:
+          return FormulaType.RationalType;
+        case SORT_BITVECTOR:
+          return FormulaType.getBitvectorTypeWithSize(readVarInt());
+        case SORT_FLOATINGPOINT:
+          int exponent = readVarInt();
+          return FormulaType.getFloatingPointType(exponent, readVarInt());
+        case SORT_ROUNDINGMODE:
+          return FormulaType.FloatingPointRoundingModeType;
+        case SORT_ARRAY:
+          FormulaType<?> index = sorts.get(readVarInt());
+          return FormulaType.getArrayType(index, sorts.get(readVarInt()));
+        default:
+          throw new IllegalArgumentException("invalid sort " + tag);
+      }
+    }
+
+    private Formula readConstant(FormulaType<?> type) throws IOException {
+      int tag = readVarInt();
+      switch (tag) {
+        case CONST_FALSE:
+          return bmgr.makeFalse();
+        case CONST_TRUE:
+          return bmgr.makeTrue();
+        case CONST_INTEGER:
+          BigInteger value = readBigInteger();
+          if (type.isBitvectorType()) {
+            return fmgr.getBitvectorFormulaManager()
+                .makeBitvector(((BitvectorType) type).getSize(), value);
+          } else if (type.isRationalType()) {
+            return fmgr.getRationalFormulaManager().makeNumber(value);
+          }
+          return fmgr.getIntegerFormulaManager().makeNumber(value);
+        case CONST_RATIONAL:
+          BigInteger num = readBigInteger();
+          return fmgr.getRationalFormulaManager().makeNumber(Rational.of(num, readBigInteger()));
+        case CONST_DECIMAL:
+          BigInteger unscaled = readBigInteger();
+          int scale = (int) decodeZigZag(readVarLong());
+          return fmgr.getRationalFormulaManager().makeNumber(new BigDecimal(unscaled, scale));
+        default:
+          throw new IllegalArgumentException("invalid constant " + tag);
+      }
+    }
+
+    private BigInteger readBigInteger() throws IOException {
+      long header = readVarLong();
+      if ((header & 1) == 0) {
+        return BigInteger.valueOf(decodeZigZag(header >>> 1));
+      }
+      byte[] bytes = new byte[(int) (header >>> 1)];
+      readFully(bytes);
+      return new BigInteger(bytes);
+    }
+
+    private int readInt() throws IOException {
+      return (readByte() << 24) | (readByte() << 16) | (readByte() << 8) | readByte();
+    }
+
+    private int readVarInt() throws IOException {
+      return (int) readVarLong();
+    }
+
+    private long readVarLong() throws IOException {
+      long result = 0;
+      for (int shift = 0; shift < 64; shift += 7) {
+        int b = readByte();
+        result |= (long) (b & 0x7F) << shift;
+        if ((b & 0x80) == 0) {
+          return result;
+        }
+      }
+      throw new IllegalArgumentException("malformed variable-length integer");
+    }
+
+    private int readByte() throws IOException {
+      int b = in.read();
+      if (b < 0) {
+        throw new EOFException();
+      }
+      return b;
+    }
+
+    private void readFully(byte[] bytes) throws IOException {
+      int offset = 0;
+      while (offset < bytes.length) {
+        int read = in.read(bytes, offset, bytes.length - offset);
+        if (read < 0) {
+          throw new EOFException();
+        }
+        offset += read;
+      }
+    }
+  }
+
+  /** Rebuild an application of a built-in operator. */
+  private Formula build(FunctionDeclarationKind kind, FormulaType<?> type, List<Formula> args) {
+    switch (kind) {
+      case AND:
+        return bmgr.and(toBooleans(args));
+      case OR:
+        return bmgr.or(toBooleans(args));
+      case NOT:
+        return bmgr.not((BooleanFormula) args.get(0));
+      case XOR:
+        return bmgr.xor((BooleanFormula) args.get(0), (BooleanFormula) args.get(1));
+      case IFF:
+        return bmgr.equivalence((BooleanFormula) args.get(0), (BooleanFormula) args.get(1));
+      case IMPLIES:
+        return bmgr.implication((BooleanFormula) args.get(0), (BooleanFormula) args.get(1));
+      case ITE:
+        return bmgr.ifThenElse((BooleanFormula) args.get(0), args.get(1), args.get(2));
+      case EQ:
+      case BV_EQ:
+        {
+          List<BooleanFormula> equalities = new ArrayList<>(args.size() - 1);
+          for (int i = 1; i < args.size(); i++) {
+            equalities.add(equal(args.get(i - 1), args.get(i)));
+          }
+          return bmgr.and(equalities);
+        }
+      case DISTINCT:
+        {
+          List<BooleanFormula> inequalities = new ArrayList<>();
+          for (int i = 0; i < args.size(); i++) {
+            for (int j = i + 1; j < args.size(); j++) {
+              inequalities.add(bmgr.not(equal(args.get(i), args.get(j))));
+            }
+          }
+          return bmgr.and(inequalities);
+        }
+
+      case STORE:
+        return fmgr.getArrayFormulaManager().store(toArray(args.get(0)), args.get(1), args.get(2));
+      case SELECT:
+        return fmgr.getArrayFormulaManager().select(toArray(args.get(0)), args.get(1));
+
+      case UMINUS:
+        return numeralManager(type, args).negate((NumeralFormula) args.get(0));
+      case ADD:
+        return numeralManager(type, args).sum(toNumerals(args));
+      case SUB:
+      case MUL:
+      case DIV:
+      case MODULO:
+        {
+          NumeralFormulaManager<NumeralFormula, ? extends NumeralFormula> nmgr =
+              numeralManager(type, args);
+          if (kind == FunctionDeclarationKind.SUB && args.size() == 1) {
+            return nmgr.negate((NumeralFormula) args.get(0));
+          }
+          NumeralFormula result = (NumeralFormula) args.get(0);
+          for (int i = 1; i < args.size(); i++) {
+            NumeralFormula arg = (NumeralFormula) args.get(i);
+            if (kind == FunctionDeclarationKind.SUB) {
+              result = nmgr.subtract(result, arg);
+            } else if (kind == FunctionDeclarationKind.MUL) {
+              result = nmgr.multiply(result, arg);
+            } else if (kind == FunctionDeclarationKind.DIV) {
+              result = nmgr.divide(result, arg);
+            } else {
+              result = nmgr.modulo(result, arg);
+            }
+          }
+          return result;
+        }
+      case LT:
+        return numeralManager(type, args)
+            .lessThan((NumeralFormula) args.get(0), (NumeralFormula) args.get(1));
+      case LTE:
+        return numeralManager(type, args)
+            .lessOrEquals((NumeralFormula) args.get(0), (NumeralFormula) args.get(1));
+      case GT:
+        return numeralManager(type, args)
+            .greaterThan((NumeralFormula) args.get(0), (NumeralFormula) args.get(1));
+      case GTE:
+        return numeralManager(type, args)
+            .greaterOrEquals((NumeralFormula) args.get(0), (NumeralFormula) args.get(1));
+      case EQ_ZERO:
+        {
+          NumeralFormulaManager<NumeralFormula, ? extends NumeralFormula> nmgr =
+              numeralManager(type, args);
+          return nmgr.equal((NumeralFormula) args.get(0), nmgr.makeNumber(0));
+        }
+      case GTE_ZERO:
+        {
+          NumeralFormulaManager<NumeralFormula, ? extends NumeralFormula> nmgr =
+              numeralManager(type, args);
+          return nmgr.greaterOrEquals((NumeralFormula) args.get(0), nmgr.makeNumber(0));
+        }
+
+      default:
+        return buildBitvector(kind, args);
+    }
+  }
+
+  private Formula buildBitvector(FunctionDeclarationKind kind, List<Formula> args) {
+    BitvectorFormulaManager bvmgr = fmgr.getBitvectorFormulaManager();
+    BitvectorFormula first = (BitvectorFormula) args.get(0);
+    if (args.size() == 1) {
+      switch (kind) {
+        case BV_NOT:
+          return bvmgr.not(first);
+        case BV_NEG:
+          return bvmgr.negate(first);
+        default:
+          throw new IllegalArgumentException("invalid unary operator " + kind);
+      }
+    }
+
+    BitvectorFormula second = (BitvectorFormula) args.get(1);
+    switch (kind) {
+      case BV_ULT:
+        return bvmgr.lessThan(first, second, false);
+      case BV_SLT:
+        return bvmgr.lessThan(first, second, true);
+      case BV_ULE:
+        return bvmgr.lessOrEquals(first, second, false);
+      case BV_SLE:
+        return bvmgr.lessOrEquals(first, second, true);
+      case BV_UGT:
+        return bvmgr.greaterThan(first, second, false);
+      case BV_SGT:
+        return bvmgr.greaterThan(first, second, true);
+      case BV_UGE:
+        return bvmgr.greaterOrEquals(first, second, false);
+      case BV_SGE:
+        return bvmgr.greaterOrEquals(first, second, true);
+      default:
+        // n-ary operators, applied from left to right
+    }
+
+    BitvectorFormula result = first;
+    for (int i = 1; i < args.size(); i++) {
+      BitvectorFormula arg = (BitvectorFormula) args.get(i);
+      switch (kind) {
+        case BV_OR:
+          result = bvmgr.or(result, arg);
+          break;
+        case BV_AND:
+          result = bvmgr.and(result, arg);
+          break;
+        case BV_XOR:
+          result = bvmgr.xor(result, arg);
+          break;
+        case BV_SUB:
+          result = bvmgr.subtract(result, arg);
+          break;
+        case BV_ADD:
+          result = bvmgr.add(result, arg);
+          break;
+        case BV_SDIV:
+          result = bvmgr.divide(result, arg, true);
+          break;
+        case BV_UDIV:
+          result = bvmgr.divide(result, arg, false);
+          break;
+        case BV_SREM:
+          result = bvmgr.modulo(result, arg, true);
+          break;
+        case BV_UREM:
+          result = bvmgr.modulo(result, arg, false);
+          break;
+        case BV_MUL:
+          result = bvmgr.multiply(result, arg);
+          break;
+        case BV_SHL:
+          result = bvmgr.shiftLeft(result, arg);
+          break;
+        case BV_LSHR:
+          result = bvmgr.shiftRight(result, arg, false);
+          break;
+        case BV_ASHR:
+          result = bvmgr.shiftRight(result, arg, true);
+          break;
+        case BV_CONCAT:
+          result = bvmgr.concat(result, arg);
+          break;
+        default:
+          throw new IllegalArgumentException("cannot rebuild operator " + kind);
+      }
+    }
+    return result;
+  }
+
+  private BooleanFormula equal(Formula a, Formula b) {
+    FormulaType<?> type = fmgr.getFormulaType(a);
+    if (type.isBooleanType()) {
+      return bmgr.equivalence((BooleanFormula) a, (BooleanFormula) b);
+    } else if (type.isBitvectorType()) {
+      return fmgr.getBitvectorFormulaManager().equal((BitvectorFormula) a, (BitvectorFormula) b);
+    } else if (type.isArrayType()) {
+      return fmgr.getArrayFormulaManager().equivalence(toArray(a), toArray(b));
+    } else if (type.isNumeralType()) {
+      return numeralManager(type, Arrays.asList(a, b))
+          .equal((NumeralFormula) a, (NumeralFormula) b);
+    }
+    throw new IllegalArgumentException("cannot rebuild equality over sort " + type);
+  }
+
+  /**
+   * Use the manager for reals if the result or any of the arguments is real, otherwise the one for
+   * integers.
+   */
+  @SuppressWarnings("unchecked")
+  private NumeralFormulaManager<NumeralFormula, ? extends NumeralFormula> numeralManager(
+      FormulaType<?> type, List<Formula> args) {
+    boolean isReal = type.isRationalType();
+    for (Formula arg : args) {
+      isReal |= fmgr.getFormulaType(arg).isRationalType();
+    }
+    if (isReal) {
+      return fmgr.getRationalFormulaManager();
+    }
+    return (NumeralFormulaManager<NumeralFormula, ? extends NumeralFormula>)
+        (NumeralFormulaManager<?, ?>) fmgr.getIntegerFormulaManager();
+  }
+
+  private static List<BooleanFormula> toBooleans(List<Formula> args) {
+    List<BooleanFormula> result = new ArrayList<>(args.size());
+    for (Formula arg : args) {
+      result.add((BooleanFormula) arg);
+    }
+    return result;
+  }
+
+  private static List<NumeralFormula> toNumerals(List<Formula> args) {
+    List<NumeralFormula> result = new ArrayList<>(args.size());
+    for (Formula arg : args) {
+      result.add((NumeralFormula) arg);
+    }
+    return result;
+  }
+
+  @SuppressWarnings("unchecked")
+  private static ArrayFormula<Formula, Formula> toArray(Formula f) {
+    return (ArrayFormula<Formula, Formula>) f;
+  }
+
+  private static long encodeZigZag(long value) {
+    return (value << 1) ^ (value >> 63);
+  }
+
+  private static long decodeZigZag(long value) {
+    return (value >>> 1) ^ -(value & 1);
+  }
+}
@@ -0,0 +1,508 @@
+/*
+ *  JavaSMT is an API wrapper for a collection of SMT solvers.
+ *  This file is part of JavaSMT.
+ *
+ *  Copyright (C) 2007-2016  Dirk Beyer
+ *  All rights reserved.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.sosy_lab.java_smt.utils;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkState;
+
+import com.google.common.collect.ImmutableList;
+import java.math.BigInteger;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Deque;
+import java.util.EnumSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+import javax.annotation.Nullable;
+import org.sosy_lab.java_smt.api.BooleanFormula;
+import org.sosy_lab.java_smt.api.BooleanFormulaManager;
+import org.sosy_lab.java_smt.api.Formula;
+import org.sosy_lab.java_smt.api.FormulaManager;
+import org.sosy_lab.java_smt.api.FunctionDeclaration;
+import org.sosy_lab.java_smt.api.FunctionDeclarationKind;
+import org.sosy_lab.java_smt.api.IntegerFormulaManager;
+import org.sosy_lab.java_smt.api.Model;
+import org.sosy_lab.java_smt.api.Model.ValueAssignment;
+import org.sosy_lab.java_smt.api.NumeralFormula.IntegerFormula;
+import org.sosy_lab.java_smt.api.ProverEnvironment;
+import org.sosy_lab.java_smt.api.SolverContext;
+import org.sosy_lab.java_smt.api.SolverContext.ProverOptions;
+import org.sosy_lab.java_smt.api.SolverException;
+import org.sosy_lab.java_smt.api.visitors.DefaultFormulaVisitor;
+import org.sosy_lab.java_smt.api.visitors.TraversalProcess;
+import org.sosy_lab.java_smt.basicimpl.AbstractNumeralFormulaManager.NonLinearArithmetic;
+
+/**
+ * Prover environment that refines the approximation of non-linear integer arithmetic by
+ * uninterpreted functions, see {@link NonLinearArithmetic#APPROXIMATE_ALWAYS} and {@link
+ * NonLinearArithmetic#APPROXIMATE_FALLBACK}.
+ *
+ * <p>Each satisfiability check is a counterexample-guided loop: if the abstraction is satisfiable,
+ * the applications of the functions for multiplication, division, and modulo are evaluated in the
+ * model. If all of them match the real operations, the model is genuine and the query is
+ * satisfiable. Otherwise, linear lemmas that exclude the wrong values are added for the violated
+ * applications only, and the check is repeated. The lemmas are
+ *
+ * <ul>
+ *   <li>for multiplication, the tangent planes at the wrong point, and the sign rules and the
+ *       monotonicity of the absolute values if they are violated,
+ *   <li>for division and modulo, the definition of integer division for the divisor in the model.
+ * </ul>
+ *
+ * <p>The lemmas are valid for the real operations, thus unsatisfiability of the abstraction with
+ * lemmas is genuine. They are added on the current level of the stack. The number of refinements
+ * per check is limited, see {@link #setMaxRefinements}.
+ *
+ * <p>Only integer arithmetic is refined, approximated rational operations remain uninterpreted.
+ * Models of the AllSAT enumeration are not refined. Retractable constraints and forking are
+ * forwarded to the wrapped prover environment.
+ */
+public class NonLinearRefinementProver implements ProverEnvironment {
+
+  private static final String MULTIPLY = "Integer_*_";
+  private static final String DIVIDE = "Integer_/_";
+  private static final String MODULO = "Integer_%_";
+
+  private static final String QUOTIENT_PREFIX = "__NLA_QUOTIENT_";
+
+  private static final AtomicInteger quotients = new AtomicInteger();
+
+  private final BooleanFormulaManager bmgr;
+  private final IntegerFormulaManager imgr;
+  private final FormulaManager fmgr;
+  private final ProverEnvironment delegate;
+
+  /** The approximated applications of each level of the stack, the innermost level first. */
+  private final Deque<Map<IntegerFormula, Application>> levels = new ArrayDeque<>();
+
+  private int maxRefinements = 1000;
+
+  private int refinements = 0;
+  private int lemmas = 0;
+
+  NonLinearRefinementProver(SolverContext pContext, ProverOptions... pOptions) {
+    this(pContext.getFormulaManager(), newDelegate(pContext, pOptions));
+    levels.push(new LinkedHashMap<>());
+  }
+
+  private NonLinearRefinementProver(FormulaManager pFmgr, ProverEnvironment pDelegate) {
+    fmgr = pFmgr;
+    bmgr = fmgr.getBooleanFormulaManager();
+    imgr = fmgr.getIntegerFormulaManager();
+    delegate = pDelegate;
+  }
+
+  private static ProverEnvironment newDelegate(SolverContext pContext, ProverOptions... pOptions) {
+    Set<ProverOptions> options = EnumSet.of(ProverOptions.GENERATE_MODELS);
+    options.addAll(Arrays.asList(pOptions));
+    return pContext.newProverEnvironment(options.toArray(new ProverOptions[0]));
+  }
+
+  /** The operations that are approximated. */
+  private enum Operation {
+    MULTIPLY,
+    DIVIDE,
+    MODULO
+  }
+
+  /** An application of an approximated operation. */
+  private static final class Application {
+    private final Operation operation;
+    private final IntegerFormula result;
+    private final IntegerFormula left;
+    private final IntegerFormula right;
+
+    private Application(
+        Operation pOperation, IntegerFormula pResult, IntegerFormula pLeft, IntegerFormula pRight) {
+      operation = pOperation;
+      result = pResult;
+      left = pLeft;
+      right = pRight;
+    }
+  }
+
+  /** The values of an application in a model. */
+  private static final class Point {
+    private final Application application;
+    private final BigInteger result;
+    private final BigInteger left;
+    private final BigInteger right;
+
+    private Point(
+        Application pApplication, BigInteger pResult, BigInteger pLeft, BigInteger pRight) {
+      application = pApplication;
+      result = pResult;
+      left = pLeft;
+      right = pRight;
+    }
+  }
+
+  /**
+   * Limit the number of refinements per satisfiability check. If the limit is reached without a
+   * genuine model, the check fails with a {@link SolverException}. The default is 1000.
+   */
+  public void setMaxRefinements(int pMaxRefinements) {
+    checkArgument(pMaxRefinements >= 0, "negative number of refinements");
+    maxRefinements = pMaxRefinements;
+  }
+
+  /** Number of refinements in all checks. */
+  public int getRefinements() {
+    return refinements;
+  }
+
+  /** Number of lemmas that were added in all checks. */
+  public int getLemmas() {
+    return lemmas;
+  }
+
+  @Override
+  public void push() {
+    delegate.push();
+    levels.push(new LinkedHashMap<>());
+  }
+
+  @Override
+  public void pop() {
+    checkState(levels.size() > 1, "cannot pop from empty stack");
+    levels.pop();
+    delegate.pop();
+  }
+
+  @Override
+  @Nullable
+  public Void addConstraint(BooleanFormula constraint) throws InterruptedException {
+    Void result = delegate.addConstraint(constraint);
+    collectApplications(constraint, levels.peek());
+    return result;
+  }
+
+  @Override
+  public AssertionHandle addRetractable(BooleanFormula constraint) throws InterruptedException {
+    AssertionHandle handle = delegate.addRetractable(constraint);
+    // the applications stay tracked after retraction, their lemmas are valid anyway
+    collectApplications(constraint, levels.peek());
+    return handle;
+  }
+
+  @Override
+  public void retract(AssertionHandle handle) throws InterruptedException {
+    delegate.retract(handle);
+  }
+
+  @Override
+  public ProverEnvironment fork() throws InterruptedException {
+    NonLinearRefinementProver fork = new NonLinearRefinementProver(fmgr, delegate.fork());
+    fork.maxRefinements = maxRefinements;
+    Iterator<Map<IntegerFormula, Application>> outermostFirst = levels.descendingIterator();
+    while (outermostFirst.hasNext()) {
+      fork.levels.push(new LinkedHashMap<>(outermostFirst.next()));
+    }
+    return fork;
+  }
+
+  private void collectApplications(BooleanFormula formula, Map<IntegerFormula, Application> out) {
+    fmgr.visitRecursively(
+        formula,
+        new DefaultFormulaVisitor<TraversalProcess>() {
+
+          @Override
+          protected TraversalProcess visitDefault(Formula pF) {
+            return TraversalProcess.CONTINUE;
+          }
+
+          @Override
+          public TraversalProcess visitFunction(
+              Formula pF, List<Formula> pArgs, FunctionDeclaration<?> pFunctionDeclaration) {
+            if (pFunctionDeclaration.getKind() == FunctionDeclarationKind.UF
+                && pArgs.size() == 2) {
+              Operation operation = getOperation(pFunctionDeclaration.getName());
+              if (operation != null) {
+                out.putIfAbsent(
+                    (IntegerFormula) pF,
+                    new Application(
+                        operation,
+                        (IntegerFormula) pF,
+                        (IntegerFormula) pArgs.get(0),
+                        (IntegerFormula) pArgs.get(1)));
+              }
+            }
+            return TraversalProcess.CONTINUE;
+          }
+        });
+  }
+
+  private static @Nullable Operation getOperation(String pName) {
+    String name = pName.startsWith("|") ? pName.substring(1, pName.length() - 1) : pName;
+    switch (name) {
+      case MULTIPLY:
+        return Operation.MULTIPLY;
+      case DIVIDE:
+        return Operation.DIVIDE;
+      case MODULO:
+        return Operation.MODULO;
+      default:
+        return null;
+    }
+  }
+
+  @Override
+  public boolean isUnsat() throws SolverException, InterruptedException {
+    return isUnsatWithAssumptions(ImmutableList.of());
+  }
+
+  @Override
+  public boolean isUnsatWithAssumptions(Collection<BooleanFormula> assumptions)
+      throws SolverException, InterruptedException {
+    Map<IntegerFormula, Application> applications = new LinkedHashMap<>();
+    for (Map<IntegerFormula, Application> level : levels) {
+      applications.putAll(level);
+    }
+    for (BooleanFormula assumption : assumptions) {
+      collectApplications(assumption, applications);
+    }
+
+    for (int i = 0; ; i++) {
+      boolean unsat =
+          assumptions.isEmpty() ? delegate.isUnsat() : delegate.isUnsatWithAssumptions(assumptions);
+      if (unsat || applications.isEmpty()) {
+        return unsat;
+      }
+
+      List<BooleanFormula> newLemmas;
+      try (Model model = delegate.getModel()) {
+        newLemmas = computeLemmas(applications.values(), model);
+      }
+      if (newLemmas.isEmpty()) {
+        return false; // genuine model
+      }
+      if (i >= maxRefinements) {
+        throw new SolverException(
+            "Refinement of non-linear arithmetic did not converge after "
+                + maxRefinements
+                + " iterations");
+      }
+      refinements++;
+      lemmas += newLemmas.size();
+      for (BooleanFormula lemma : newLemmas) {
+        delegate.addConstraint(lemma);
+      }
+    }
+  }
+
+  private List<BooleanFormula> computeLemmas(Collection<Application> applications, Model model) {
+    List<Point> violated = new ArrayList<>();
+    for (Application app : applications) {
+      BigInteger result = model.evaluate(app.result);
+      BigInteger left = model.evaluate(app.left);
+      BigInteger right = model.evaluate(app.right);
+      if (result == null || left == null || right == null) {
+        continue; // not part of the model, thus every value is consistent
+      }
+      Point point = new Point(app, result, left, right);
+      if (!isGenuine(point)) {
+        violated.add(point);
+      }
+    }
+
+    List<BooleanFormula> result = new ArrayList<>();
+    List<Point> products = new ArrayList<>();
+    for (Point point : violated) {
+      switch (point.application.operation) {
+        case MULTIPLY:
+          addProductLemmas(point, result);
+          products.add(point);
+          break;
+        case DIVIDE:
+        case MODULO:
+          result.add(divisionLemma(point));
+          break;
+        default:
+          throw new AssertionError(point.application.operation);
+      }
+    }
+    for (Point first : products) {
+      for (Point second : products) {
+        if (first != second) {
+          addMonotonicityLemma(first, second, result);
+        }
+      }
+    }
+    return result;
+  }
+
+  private static boolean isGenuine(Point point) {
+    switch (point.application.operation) {
+      case MULTIPLY:
+        return point.result.equals(point.left.multiply(point.right));
+      case DIVIDE:
+        if (point.right.signum() == 0) {
+          return true; // division by zero is uninterpreted
+        }
+        BigInteger remainder = point.left.subtract(point.right.multiply(point.result));
+        return remainder.signum() >= 0 && remainder.compareTo(point.right.abs()) < 0;
+      case MODULO:
+        if (point.right.signum() == 0) {
+          return true; // modulo by zero is uninterpreted
+        }
+        return point.result.equals(point.left.mod(point.right.abs()));
+      default:
+        throw new AssertionError(point.application.operation);
+    }
+  }
+
+  /** Add the tangent planes at the point and the sign rules if they are violated. */
+  private void addProductLemmas(Point point, List<BooleanFormula> out) {
+    IntegerFormula x = point.application.left;
+    IntegerFormula y = point.application.right;
+    IntegerFormula z = point.application.result;
+    IntegerFormula a = imgr.makeNumber(point.left);
+    IntegerFormula b = imgr.makeNumber(point.right);
+
+    // z - (b*x + a*y - a*b) = (x - a) * (y - b)
+    IntegerFormula plane =
+        imgr.subtract(
+            imgr.add(imgr.multiply(b, x), imgr.multiply(a, y)),
+            imgr.makeNumber(point.left.multiply(point.right)));
+    out.add(bmgr.implication(bmgr.or(imgr.equal(x, a), imgr.equal(y, b)), imgr.equal(z, plane)));
+    out.add(
+        bmgr.implication(
+            bmgr.or(
+                bmgr.and(imgr.greaterThan(x, a), imgr.greaterThan(y, b)),
+                bmgr.and(imgr.lessThan(x, a), imgr.lessThan(y, b))),
+            imgr.greaterThan(z, plane)));
+    out.add(
+        bmgr.implication(
+            bmgr.or(
+                bmgr.and(imgr.greaterThan(x, a), imgr.lessThan(y, b)),
+                bmgr.and(imgr.lessThan(x, a), imgr.greaterThan(y, b))),
+            imgr.lessThan(z, plane)));
+
+    if (point.result.signum() != point.left.signum() * point.right.signum()) {
+      IntegerFormula zero = imgr.makeNumber(0);
+      BooleanFormula xPos = imgr.greaterThan(x, zero);
+      BooleanFormula xNeg = imgr.lessThan(x, zero);
+      BooleanFormula yPos = imgr.greaterThan(y, zero);
+      BooleanFormula yNeg = imgr.lessThan(y, zero);
+      out.add(
+          bmgr.implication(
+              bmgr.or(imgr.equal(x, zero), imgr.equal(y, zero)), imgr.equal(z, zero)));
+      out.add(
+          bmgr.implication(
+              bmgr.or(bmgr.and(xPos, yPos), bmgr.and(xNeg, yNeg)), imgr.greaterThan(z, zero)));
+      out.add(
+          bmgr.implication(
+              bmgr.or(bmgr.and(xPos, yNeg), bmgr.and(xNeg, yPos)), imgr.lessThan(z, zero)));
+    }
+  }
+
+  /** Add {@code |x1| <= |x2| & |y1| <= |y2| => |z1| <= |z2|} if it is violated. */
+  private void addMonotonicityLemma(Point first, Point second, List<BooleanFormula> out) {
+    if (first.left.abs().compareTo(second.left.abs()) <= 0
+        && first.right.abs().compareTo(second.right.abs()) <= 0
+        && first.result.abs().compareTo(second.result.abs()) > 0) {
+      out.add(
+          bmgr.implication(
+              bmgr.and(
+                  imgr.lessOrEquals(abs(first.application.left), abs(second.application.left)),
+                  imgr.lessOrEquals(abs(first.application.right), abs(second.application.right))),
+              imgr.lessOrEquals(abs(first.application.result), abs(second.application.result))));
+    }
+  }
+
+  private IntegerFormula abs(IntegerFormula f) {
+    return bmgr.ifThenElse(imgr.greaterOrEquals(f, imgr.makeNumber(0)), f, imgr.negate(f));
+  }
+
+  /**
+   * Define division and modulo for the divisor {@code b} of the model: if {@code y = b}, then
+   * {@code x = b * q + r} and {@code 0 <= r < |b|}. For division, {@code q} is the application and
+   * {@code r} is implicit, for modulo, {@code r} is the application and {@code q} is a fresh
+   * variable.
+   */
+  private BooleanFormula divisionLemma(Point point) {
+    IntegerFormula x = point.application.left;
+    IntegerFormula y = point.application.right;
+    IntegerFormula b = imgr.makeNumber(point.right);
+    IntegerFormula quotient;
+    IntegerFormula remainder;
+    if (point.application.operation == Operation.DIVIDE) {
+      quotient = point.application.result;
+      remainder = imgr.subtract(x, imgr.multiply(b, quotient));
+    } else {
+      quotient = imgr.makeVariable(QUOTIENT_PREFIX + quotients.incrementAndGet());
+      remainder = point.application.result;
+    }
+    return bmgr.implication(
+        imgr.equal(y, b),
+        bmgr.and(
+            imgr.equal(x, imgr.add(imgr.multiply(b, quotient), remainder)),
+            imgr.greaterOrEquals(remainder, imgr.makeNumber(0)),
+            imgr.lessThan(remainder, imgr.makeNumber(point.right.abs()))));
+  }
+
+  @Override
+  public Model getModel() throws SolverException {
+    return delegate.getModel();
+  }
+
+  @Override
+  public ImmutableList<ValueAssignment> getModelAssignments() throws SolverException {
+    return delegate.getModelAssignments();
+  }
+
+  @Override
+  public List<BooleanFormula> getUnsatCore() {
+    return delegate.getUnsatCore();
+  }
+
+  @Override
+  public Optional<List<BooleanFormula>> unsatCoreOverAssumptions(
+      Collection<BooleanFormula> assumptions) throws SolverException, InterruptedException {
+    if (!isUnsatWithAssumptions(assumptions)) {
+      return Optional.empty();
+    }
+    // the lemmas are asserted now, thus the core of the abstraction is genuine
+    return delegate.unsatCoreOverAssumptions(assumptions);
+  }
+
+  @Override
+  public <R> R allSat(AllSatCallback<R> callback, List<BooleanFormula> important)
+      throws InterruptedException, SolverException {
+    return delegate.allSat(callback, important);
+  }
+
+  @Override
+  public void close() {
+    delegate.close();
+  }
+
+  @Override
+  public String toString() {
+    return delegate.toString();
+  }
+}
@@ -0,0 +1,263 @@
+/*
+ *  JavaSMT is an API wrapper for a collection of SMT solvers.
+ *  This file is part of JavaSMT.
+ *
+ *  Copyright (C) 2007-2016  Dirk Beyer
+ *  All rights reserved.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.sosy_lab.java_smt.utils;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.math.IntMath;
+import java.math.RoundingMode;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import javax.annotation.Nullable;
+import org.sosy_lab.java_smt.api.BasicProverEnvironment.AllSatCallback;
+import org.sosy_lab.java_smt.api.BooleanFormula;
+import org.sosy_lab.java_smt.api.BooleanFormulaManager;
+import org.sosy_lab.java_smt.api.FormulaManager;
+import org.sosy_lab.java_smt.api.ProverEnvironment;
+import org.sosy_lab.java_smt.api.SolverContext;
+import org.sosy_lab.java_smt.api.SolverException;
+
+/**
+ * Enumerates all satisfying assignments of a formula, projected to a list of important
+ * predicates, with several solver contexts in parallel.
+ *
+ * <p>The space of assignments is split into cubes over the first important predicates. The query
+ * is translated into each worker context, and each worker enumerates the models of the cubes
+ * assigned to it with the {@link org.sosy_lab.java_smt.api.BasicProverEnvironment#allSat} of its
+ * solver. A worker that runs out of cubes steals cubes from the other workers, such that uneven
+ * cubes are balanced. There are several cubes per worker for this.
+ *
+ * <p>The worker contexts are provided by the caller, who is responsible for closing them. They
+ * must not be used by other threads during the enumeration. The context of the query is only used
+ * by the calling thread, which also calls the {@link AllSatCallback} for all models after the
+ * enumeration, in a deterministic order.
+ */
+public class ParallelAllSat {
+
+  /** Number of cubes that are created per worker, for balancing the work. */
+  private static final int CUBES_PER_WORKER = 4;
+
+  private final FormulaManager fmgr;
+  private final ImmutableList<SolverContext> workers;
+
+  ParallelAllSat(FormulaManager pFmgr, List<? extends SolverContext> pWorkers) {
+    fmgr = checkNotNull(pFmgr);
+    workers = ImmutableList.copyOf(pWorkers);
+    checkArgument(!workers.isEmpty(), "at least one worker context is required");
+  }
+
+  /**
+   * Enumerate all models of the query, projected to the important predicates, and pass them to the
+   * callback. A model contains the important predicates that are true and the negations of those
+   * that are false, just as for {@link org.sosy_lab.java_smt.api.BasicProverEnvironment#allSat}.
+   *
+   * @param pQuery formula of the context of this instance
+   * @param pImportant predicates of the context of this instance
+   * @param pCallback receives all models in the calling thread
+   */
+  public <R> R allSat(
+      BooleanFormula pQuery, List<BooleanFormula> pImportant, AllSatCallback<R> pCallback)
+      throws SolverException, InterruptedException {
+    BooleanFormulaManager bmgr = fmgr.getBooleanFormulaManager();
+    ImmutableList<BooleanFormula> important = ImmutableList.copyOf(pImportant);
+    int splitDepth =
+        Math.min(
+            important.size(),
+            IntMath.log2(workers.size() * CUBES_PER_WORKER, RoundingMode.CEILING));
+    int numCubes = 1 << splitDepth;
+
+    // Prepare everything in the calling thread, because formula managers are not thread-safe.
+    List<Worker> workerTasks = new ArrayList<>(workers.size());
+    List<Deque<Integer>> queues = new ArrayList<>(workers.size());
+    for (int i = 0; i < workers.size(); i++) {
+      queues.add(new ConcurrentLinkedDeque<>());
+    }
+    for (int cube = 0; cube < numCubes; cube++) {
+      queues.get(cube % workers.size()).add(cube);
+    }
+    for (int i = 0; i < workers.size(); i++) {
+      SolverContext worker = workers.get(i);
+      FormulaManager workerFmgr = worker.getFormulaManager();
+      BooleanFormulaManager workerBmgr = workerFmgr.getBooleanFormulaManager();
+      List<BooleanFormula> workerImportant = new ArrayList<>(important.size());
+      Map<BooleanFormula, BooleanFormula> literals = new HashMap<>();
+      for (BooleanFormula predicate : important) {
+        BooleanFormula translated = workerFmgr.translateFrom(predicate, fmgr);
+        workerImportant.add(translated);
+        literals.put(translated, predicate);
+        literals.put(workerBmgr.not(translated), bmgr.not(predicate));
+      }
+      workerTasks.add(
+          new Worker(
+              i,
+              worker,
+              workerFmgr.translateFrom(pQuery, fmgr),
+              workerImportant,
+              splitDepth,
+              literals,
+              queues));
+    }
+
+    // Enumerate the cubes in parallel.
+    List<List<List<BooleanFormula>>> modelsPerCube = new ArrayList<>(numCubes);
+    for (int cube = 0; cube < numCubes; cube++) {
+      modelsPerCube.add(null);
+    }
+    ExecutorService executor = Executors.newFixedThreadPool(workers.size());
+    try {
+      List<Future<Map<Integer, List<List<BooleanFormula>>>>> futures =
+          executor.invokeAll(workerTasks);
+      for (Future<Map<Integer, List<List<BooleanFormula>>>> future : futures) {
+        for (Map.Entry<Integer, List<List<BooleanFormula>>> entry : getResult(future).entrySet()) {
+          modelsPerCube.set(entry.getKey(), entry.getValue());
+        }
+      }
+    } finally {
+      executor.shutdownNow();
+    }
+
+    // Merge the results.
+    for (List<List<BooleanFormula>> models : modelsPerCube) {
+      for (List<BooleanFormula> model : checkNotNull(models)) {
+        pCallback.apply(model);
+      }
+    }
+    return pCallback.getResult();
+  }
+
+  private static <T> T getResult(Future<T> future)
+      throws SolverException, InterruptedException {
+    try {
+      return future.get();
+    } catch (ExecutionException e) {
+      Throwable cause = e.getCause();
+      if (cause instanceof SolverException) {
+        throw (SolverException) cause;
+      } else if (cause instanceof InterruptedException) {
+        throw (InterruptedException) cause;
+      } else if (cause instanceof RuntimeException) {
+        throw (RuntimeException) cause;
+      } else if (cause instanceof Error) {
+        throw (Error) cause;
+      }
+      throw new AssertionError(cause);
+    }
+  }
+
+  /** Enumerates cubes in one worker context, first its own, then stolen ones. */
+  private static final class Worker implements Callable<Map<Integer, List<List<BooleanFormula>>>> {
+
+    private final int index;
+    private final SolverContext context;
+    private final BooleanFormula query;
+    private final List<BooleanFormula> important;
+    private final int splitDepth;
+
+    /** Mapping from literals of this worker to literals of the calling context. */
+    private final Map<BooleanFormula, BooleanFormula> literals;
+
+    private final List<Deque<Integer>> queues;
+
+    private Worker(
+        int pIndex,
+        SolverContext pContext,
+        BooleanFormula pQuery,
+        List<BooleanFormula> pImportant,
+        int pSplitDepth,
+        Map<BooleanFormula, BooleanFormula> pLiterals,
+        List<Deque<Integer>> pQueues) {
+      index = pIndex;
+      context = pContext;
+      query = pQuery;
+      important = pImportant;
+      splitDepth = pSplitDepth;
+      literals = pLiterals;
+      queues = pQueues;
+    }
+
+    @Override
+    public Map<Integer, List<List<BooleanFormula>>> call()
+        throws SolverException, InterruptedException {
+      BooleanFormulaManager bmgr = context.getFormulaManager().getBooleanFormulaManager();
+      Map<Integer, List<List<BooleanFormula>>> result = new HashMap<>();
+      try (ProverEnvironment prover = context.newProverEnvironment()) {
+        prover.push(query);
+        Integer cube;
+        while ((cube = nextCube()) != null) {
+          if (Thread.interrupted()) {
+            throw new InterruptedException();
+          }
+          List<BooleanFormula> cubeLiterals = new ArrayList<>(splitDepth);
+          for (int i = 0; i < splitDepth; i++) {
+            BooleanFormula predicate = important.get(i);
+            cubeLiterals.add((cube & (1 << i)) != 0 ? predicate : bmgr.not(predicate));
+          }
+          prover.push(bmgr.and(cubeLiterals));
+          result.put(cube, prover.allSat(new CollectingCallback(), important));
+          prover.pop();
+        }
+      }
+      return result;
+    }
+
+    /** Take a cube from the own queue, or steal one from the end of another queue. */
+    private @Nullable Integer nextCube() {
+      Integer cube = queues.get(index).pollFirst();
+      for (int i = 1; cube == null && i < queues.size(); i++) {
+        cube = queues.get((index + i) % queues.size()).pollLast();
+      }
+      return cube;
+    }
+
+    private final class CollectingCallback implements AllSatCallback<List<List<BooleanFormula>>> {
+
+      private final List<List<BooleanFormula>> models = new ArrayList<>();
+
+      @Override
+      public void apply(List<BooleanFormula> pModel) {
+        List<BooleanFormula> model = new ArrayList<>(pModel.size());
+        for (BooleanFormula literal : pModel) {
+          BooleanFormula translated = literals.get(literal);
+          if (translated == null) {
+            throw new IllegalStateException("unexpected literal in model: " + literal);
+          }
+          model.add(translated);
+        }
+        models.add(model);
+      }
+
+      @Override
+      public List<List<BooleanFormula>> getResult() {
+        return models;
+      }
+    }
+  }
+}
@@ -0,0 +1,336 @@
+/*
+ *  JavaSMT is an API wrapper for a collection of SMT solvers.
+ *  This file is part of JavaSMT.
+ *
+ *  Copyright (C) 2007-2016  Dirk Beyer
+ *  All rights reserved.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.sosy_lab.java_smt.utils;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+import static com.google.common.base.Preconditions.checkState;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Deque;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import javax.annotation.Nullable;
+import org.sosy_lab.java_smt.api.BooleanFormula;
+import org.sosy_lab.java_smt.api.FormulaManager;
+import org.sosy_lab.java_smt.api.Model;
+import org.sosy_lab.java_smt.api.Model.ValueAssignment;
+import org.sosy_lab.java_smt.api.ProverEnvironment;
+import org.sosy_lab.java_smt.api.SolverContext;
+import org.sosy_lab.java_smt.api.SolverContext.ProverOptions;
+import org.sosy_lab.java_smt.api.SolverException;
+
+/**
+ * Prover environment that checks the independent parts of its assertions separately, see {@link
+ * ConeOfInfluenceSlicer}. Each part that is not in the cache of the slicer is checked on a fresh
+ * prover environment, possibly in parallel.
+ *
+ * <p>All assertions are also asserted on a delegate prover environment, which computes models,
+ * unsat cores, and AllSAT results. If the options request models or unsat cores, the delegate is
+ * checked after each satisfiable or unsatisfiable check, respectively.
+ *
+ * <p>Retractable constraints and forking are forwarded to the delegate, and the assertions for
+ * slicing are updated accordingly.
+ */
+final class SlicingProverEnvironment implements ProverEnvironment {
+
+  private final ConeOfInfluenceSlicer slicer;
+  private final SolverContext context;
+  private final ProverEnvironment delegate;
+  private final List<ProverOptions> options;
+  private final boolean generateModels;
+  private final boolean generateCores;
+
+  /** The assertions on each level of the stack, the innermost level first. */
+  private final Deque<List<BooleanFormula>> levels = new ArrayDeque<>();
+
+  /** The level of each retractable constraint, until it is retracted. */
+  private final Map<AssertionHandle, List<BooleanFormula>> retractableLevels =
+      new IdentityHashMap<>();
+
+  /** The formula of each retractable constraint, until it is retracted. */
+  private final Map<AssertionHandle, BooleanFormula> retractableFormulas =
+      new IdentityHashMap<>();
+
+  SlicingProverEnvironment(
+      ConeOfInfluenceSlicer pSlicer, SolverContext pContext, ProverOptions... pOptions) {
+    this(pSlicer, pContext, Arrays.asList(pOptions), pContext.newProverEnvironment(pOptions));
+    levels.push(new ArrayList<>());
+  }
+
+  private SlicingProverEnvironment(
+      ConeOfInfluenceSlicer pSlicer,
+      SolverContext pContext,
+      List<ProverOptions> pOptions,
+      ProverEnvironment pDelegate) {
+    slicer = checkNotNull(pSlicer);
+    context = checkNotNull(pContext);
+    options = pOptions;
+    generateModels = options.contains(ProverOptions.GENERATE_MODELS);
+    generateCores =
+        options.contains(ProverOptions.GENERATE_UNSAT_CORE)
+            || options.contains(ProverOptions.GENERATE_UNSAT_CORE_OVER_ASSUMPTIONS);
+    delegate = checkNotNull(pDelegate);
+  }
+
+  @Override
+  public void push() {
+    delegate.push();
+    levels.push(new ArrayList<>());
+  }
+
+  @Override
+  public void pop() {
+    checkState(levels.size() > 1, "cannot pop from empty stack");
+    levels.pop();
+    delegate.pop();
+  }
+
+  @Override
+  @Nullable
+  public Void addConstraint(BooleanFormula constraint) throws InterruptedException {
+    Void result = delegate.addConstraint(constraint);
+    levels.peek().add(constraint);
+    return result;
+  }
+
+  @Override
+  public AssertionHandle addRetractable(BooleanFormula constraint) throws InterruptedException {
+    AssertionHandle handle = delegate.addRetractable(constraint);
+    levels.peek().add(constraint);
+    retractableLevels.put(handle, levels.peek());
+    retractableFormulas.put(handle, constraint);
+    return handle;
+  }
+
+  @Override
+  public void retract(AssertionHandle handle) throws InterruptedException {
+    delegate.retract(handle);
+    List<BooleanFormula> level = retractableLevels.remove(handle);
+    BooleanFormula constraint = retractableFormulas.remove(handle);
+    if (level != null) {
+      // If the level was already popped, this has no effect.
+      for (int i = 0; i < level.size(); i++) {
+        if (level.get(i) == constraint) {
+          level.remove(i);
+          break;
+        }
+      }
+    }
+  }
+
+  @Override
+  public ProverEnvironment fork() throws InterruptedException {
+    SlicingProverEnvironment fork =
+        new SlicingProverEnvironment(slicer, context, options, delegate.fork());
+    Map<List<BooleanFormula>, List<BooleanFormula>> copies = new IdentityHashMap<>();
+    Iterator<List<BooleanFormula>> outermostFirst = levels.descendingIterator();
+    while (outermostFirst.hasNext()) {
+      List<BooleanFormula> level = outermostFirst.next();
+      List<BooleanFormula> copy = new ArrayList<>(level);
+      copies.put(level, copy);
+      fork.levels.push(copy);
+    }
+    for (Map.Entry<AssertionHandle, List<BooleanFormula>> entry : retractableLevels.entrySet()) {
+      List<BooleanFormula> copy = copies.get(entry.getValue());
+      if (copy != null) { // otherwise the level was already popped
+        fork.retractableLevels.put(entry.getKey(), copy);
+        fork.retractableFormulas.put(entry.getKey(), retractableFormulas.get(entry.getKey()));
+      }
+    }
+    return fork;
+  }
+
+  @Override
+  public boolean isUnsat() throws SolverException, InterruptedException {
+    return isUnsatWithAssumptions(ImmutableList.of());
+  }
+
+  @Override
+  public boolean isUnsatWithAssumptions(Collection<BooleanFormula> assumptions)
+      throws SolverException, InterruptedException {
+    List<BooleanFormula> constraints = new ArrayList<>(assumptions);
+    for (List<BooleanFormula> level : levels) {
+      constraints.addAll(level);
+    }
+
+    // Assumptions are handled like assertions, thus only the parts that contain assumptions
+    // are new, the others are taken from the cache.
+    List<ImmutableSet<BooleanFormula>> pending = new ArrayList<>();
+    boolean unsat = false;
+    for (ImmutableList<BooleanFormula> part : slicer.partition(constraints)) {
+      ImmutableSet<BooleanFormula> key = ImmutableSet.copyOf(part);
+      Boolean cached = slicer.getCachedResult(key);
+      if (cached == null) {
+        pending.add(key);
+      } else if (cached) {
+        unsat = true;
+        break;
+      }
+    }
+    if (!unsat) {
+      unsat = checkParts(pending);
+    }
+
+    if (unsat ? generateCores : generateModels) {
+      boolean delegateUnsat =
+          assumptions.isEmpty() ? delegate.isUnsat() : delegate.isUnsatWithAssumptions(assumptions);
+      checkState(delegateUnsat == unsat, "slicing changed the satisfiability of the assertions");
+    }
+    return unsat;
+  }
+
+  /** Check the given parts until one of them is unsatisfiable. */
+  private boolean checkParts(List<ImmutableSet<BooleanFormula>> parts)
+      throws SolverException, InterruptedException {
+    List<SolverContext> workers = slicer.getWorkers();
+    if (workers.isEmpty() || parts.size() < 2) {
+      for (ImmutableSet<BooleanFormula> part : parts) {
+        boolean unsat = check(context, part);
+        slicer.putResult(part, unsat);
+        if (unsat) {
+          return true;
+        }
+      }
+      return false;
+    }
+
+    // Distribute the parts round-robin, each worker checks its parts in sequence.
+    FormulaManager fmgr = slicer.getFormulaManager();
+    int numWorkers = Math.min(workers.size(), parts.size());
+    List<Callable<List<Boolean>>> tasks = new ArrayList<>(numWorkers);
+    for (int w = 0; w < numWorkers; w++) {
+      SolverContext worker = workers.get(w);
+      List<List<BooleanFormula>> translated = new ArrayList<>();
+      for (int i = w; i < parts.size(); i += numWorkers) {
+        List<BooleanFormula> part = new ArrayList<>();
+        for (BooleanFormula f : parts.get(i)) {
+          part.add(worker.getFormulaManager().translateFrom(f, fmgr));
+        }
+        translated.add(part);
+      }
+      tasks.add(
+          () -> {
+            List<Boolean> results = new ArrayList<>();
+            for (List<BooleanFormula> part : translated) {
+              boolean unsat = check(worker, part);
+              results.add(unsat);
+              if (unsat) {
+                break;
+              }
+            }
+            return results;
+          });
+    }
+
+    ExecutorService executor = Executors.newFixedThreadPool(numWorkers);
+    boolean unsat = false;
+    try {
+      List<Future<List<Boolean>>> futures = executor.invokeAll(tasks);
+      for (int w = 0; w < numWorkers; w++) {
+        List<Boolean> results = getResult(futures.get(w));
+        for (int j = 0; j < results.size(); j++) {
+          slicer.putResult(parts.get(w + j * numWorkers), results.get(j));
+          unsat |= results.get(j);
+        }
+      }
+    } finally {
+      executor.shutdownNow();
+    }
+    return unsat;
+  }
+
+  private static boolean check(SolverContext pContext, Collection<BooleanFormula> part)
+      throws SolverException, InterruptedException {
+    try (ProverEnvironment prover = pContext.newProverEnvironment()) {
+      for (BooleanFormula f : part) {
+        prover.addConstraint(f);
+      }
+      return prover.isUnsat();
+    }
+  }
+
+  private static <T> T getResult(Future<T> future) throws SolverException, InterruptedException {
+    try {
+      return future.get();
+    } catch (ExecutionException e) {
+      Throwable cause = e.getCause();
+      if (cause instanceof SolverException) {
+        throw (SolverException) cause;
+      } else if (cause instanceof InterruptedException) {
+        throw (InterruptedException) cause;
+      } else if (cause instanceof RuntimeException) {
+        throw (RuntimeException) cause;
+      } else if (cause instanceof Error) {
+        throw (Error) cause;
+      }
+      throw new AssertionError(cause);
+    }
+  }
+
+  @Override
+  public Model getModel() throws SolverException {
+    return delegate.getModel();
+  }
+
+  @Override
+  public ImmutableList<ValueAssignment> getModelAssignments() throws SolverException {
+    return delegate.getModelAssignments();
+  }
+
+  @Override
+  public List<BooleanFormula> getUnsatCore() {
+    return delegate.getUnsatCore();
+  }
+
+  @Override
+  public Optional<List<BooleanFormula>> unsatCoreOverAssumptions(
+      Collection<BooleanFormula> assumptions) throws SolverException, InterruptedException {
+    return delegate.unsatCoreOverAssumptions(assumptions);
+  }
+
+  @Override
+  public <R> R allSat(AllSatCallback<R> callback, List<BooleanFormula> important)
+      throws InterruptedException, SolverException {
+    return delegate.allSat(callback, important);
+  }
+
+  @Override
+  public void close() {
+    delegate.close();
+  }
+
+  @Override
+  public String toString() {
+    return delegate.toString();
+  }
+}
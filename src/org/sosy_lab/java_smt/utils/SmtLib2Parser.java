@@ -0,0 +1,1037 @@
+/*
+ *  JavaSMT is an API wrapper for a collection of SMT solvers.
+ *  This file is part of JavaSMT.
+ *
+ *  Copyright (C) 2007-2016  Dirk Beyer
+ *  All rights reserved.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.sosy_lab.java_smt.utils;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import com.google.common.collect.ImmutableList;
+import java.io.IOException;
+import java.io.Reader;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.BinaryOperator;
+import javax.annotation.Nullable;
+import org.sosy_lab.java_smt.api.ArrayFormula;
+import org.sosy_lab.java_smt.api.BitvectorFormula;
+import org.sosy_lab.java_smt.api.BitvectorFormulaManager;
+import org.sosy_lab.java_smt.api.BooleanFormula;
+import org.sosy_lab.java_smt.api.BooleanFormulaManager;
+import org.sosy_lab.java_smt.api.Formula;
+import org.sosy_lab.java_smt.api.FormulaManager;
+import org.sosy_lab.java_smt.api.FormulaType;
+import org.sosy_lab.java_smt.api.FunctionDeclaration;
+import org.sosy_lab.java_smt.api.NumeralFormula;
+import org.sosy_lab.java_smt.api.NumeralFormulaManager;
+
+/**
+ * Incremental SMT-LIB2 parser that builds formulas directly with a given {@link FormulaManager}.
+ *
+ * <p>In contrast to {@link FormulaManager#parse(String)}, the input does not need to be available
+ * as a single {@link String}. Files are read through a memory-mapped buffer, and each term is
+ * constructed as soon as its s-expression is complete, such that the peak memory usage is bounded
+ * by the largest single assertion instead of the size of the whole input.
+ *
+ * <p>The supported subset of SMT-LIB2 covers the commands {@code declare-fun}, {@code
+ * declare-const}, {@code define-fun} (without parameters) and {@code assert} over the theories of
+ * Booleans, integer and real arithmetic, bitvectors, arrays and uninterpreted functions, including
+ * {@code let} bindings and {@code :named} annotations. Other commands like {@code set-info} or
+ * {@code check-sat} are ignored. The result is the conjunction of all asserted formulas.
+ */
+public class SmtLib2Parser {
+
+  /** Maximal size of a file region that is mapped into memory at once. */
+  private static final int MAPPED_CHUNK_SIZE = 1 << 28;
+
+  private final FormulaManager fmgr;
+  private final BooleanFormulaManager bmgr;
+
+  SmtLib2Parser(FormulaManager pFmgr) {
+    fmgr = checkNotNull(pFmgr);
+    bmgr = pFmgr.getBooleanFormulaManager();
+  }
+
+  /**
+   * Parse an SMT-LIB2 script from the given reader.
+   *
+   * @throws IllegalArgumentException if the input is not a valid (or supported) SMT-LIB2 script.
+   */
+  public BooleanFormula parse(Reader pReader) throws IOException {
+    return new Parse(new Tokenizer(new ReaderInput(pReader))).run();
+  }
+
+  /**
+   * Parse an SMT-LIB2 script from the given file, which is mapped into memory.
+   *
+   * @throws IllegalArgumentException if the input is not a valid (or supported) SMT-LIB2 script.
+   */
+  public BooleanFormula parse(Path pFile) throws IOException {
+    try (FileChannel channel = FileChannel.open(pFile, StandardOpenOption.READ)) {
+      return new Parse(new Tokenizer(new MappedFileInput(channel))).run();
+    }
+  }
+
+  /** State of a single parse run: symbol tables and the token stream. */
+  private class Parse {
+
+    private final Tokenizer tokens;
+    private final Map<String, Formula> constants = new HashMap<>();
+    private final Map<String, FunctionDeclaration<?>> functions = new HashMap<>();
+    private final Map<String, Deque<Formula>> letBindings = new HashMap<>();
+    private final List<BooleanFormula> assertions = new ArrayList<>();
+
+    private Parse(Tokenizer pTokens) {
+      tokens = pTokens;
+    }
+
+    private BooleanFormula run() throws IOException {
+      while (tokens.next() != Token.EOF) {
+        tokens.expectCurrent(Token.LPAREN);
+        String command = tokens.expectSymbol();
+        switch (command) {
+          case "declare-fun":
+            declareFun();
+            break;
+          case "declare-const":
+            declareConst();
+            break;
+          case "define-fun":
+            defineFun();
+            break;
+          case "assert":
+            assertions.add(toBoolean(parseTerm()));
+            tokens.expect(Token.RPAREN);
+            break;
+          case "push":
+          case "pop":
+          case "reset":
+          case "reset-assertions":
+          case "declare-sort":
+          case "define-sort":
+          case "define-fun-rec":
+          case "define-funs-rec":
+          case "declare-datatypes":
+            throw new IllegalArgumentException("unsupported SMT-LIB command " + command);
+          default:
+            // commands without influence on the asserted formula, e.g. set-info or check-sat
+            tokens.skipUntilClosingParenthesis();
+        }
+      }
+      return bmgr.and(assertions);
+    }
+
+    private void declareFun() throws IOException {
+      String name = tokens.expectSymbol();
+      tokens.expect(Token.LPAREN);
+      List<FormulaType<?>> argTypes = new ArrayList<>();
+      while (tokens.next() != Token.RPAREN) {
+        argTypes.add(parseSort());
+      }
+      tokens.next();
+      FormulaType<?> returnType = parseSort();
+      tokens.expect(Token.RPAREN);
+      if (argTypes.isEmpty()) {
+        constants.put(name, fmgr.makeVariable(returnType, name));
+      } else {
+        functions.put(name, fmgr.getUFManager().declareUF(name, returnType, argTypes));
+      }
+    }
+
+    private void declareConst() throws IOException {
+      String name = tokens.expectSymbol();
+      tokens.next();
+      FormulaType<?> type = parseSort();
+      tokens.expect(Token.RPAREN);
+      constants.put(name, fmgr.makeVariable(type, name));
+    }
+
+    private void defineFun() throws IOException {
+      String name = tokens.expectSymbol();
+      tokens.expect(Token.LPAREN);
+      if (tokens.next() != Token.RPAREN) {
+        throw new IllegalArgumentException("define-fun with parameters is not supported: " + name);
+      }
+      tokens.next();
+      parseSort();
+      Formula body = parseTerm();
+      tokens.expect(Token.RPAREN);
+      constants.put(name, body);
+    }
+
+    /** Parse a sort starting at the current token. */
+    private FormulaType<?> parseSort() throws IOException {
+      if (tokens.current() == Token.SYMBOL) {
+        switch (tokens.text()) {
+          case "Bool":
+            return FormulaType.BooleanType;
+          case "Int":
+            return FormulaType.IntegerType;
+          case "Real":
+            return FormulaType.RationalType;
+          case "RoundingMode":
+            return FormulaType.FloatingPointRoundingModeType;
+          case "Float32":
+            return FormulaType.getSinglePrecisionFloatingPointType();
+          case "Float64":
+            return FormulaType.getDoublePrecisionFloatingPointType();
+          default:
+            throw new IllegalArgumentException("unknown sort " + tokens.text());
+        }
+      }
+      tokens.expectCurrent(Token.LPAREN);
+      String head = tokens.expectSymbol();
+      if ("Array".equals(head)) {
+        tokens.next();
+        FormulaType<?> indexType = parseSort();
+        tokens.next();
+        FormulaType<?> elementType = parseSort();
+        tokens.expect(Token.RPAREN);
+        return FormulaType.getArrayType(indexType, elementType);
+      } else if ("_".equals(head)) {
+        String name = tokens.expectSymbol();
+        if ("BitVec".equals(name)) {
+          int size = tokens.expectNumeral();
+          tokens.expect(Token.RPAREN);
+          return FormulaType.getBitvectorTypeWithSize(size);
+        } else if ("FloatingPoint".equals(name)) {
+          int exponent = tokens.expectNumeral();
+          int significand = tokens.expectNumeral();
+          tokens.expect(Token.RPAREN);
+          return FormulaType.getFloatingPointType(exponent, significand - 1);
+        }
+        throw new IllegalArgumentException("unknown sort " + name);
+      }
+      throw new IllegalArgumentException("unknown sort " + head);
+    }
+
+    /**
+     * Parse the next term. Nested terms are handled with an explicit stack, such that deeply
+     * nested input (e.g., long chains of let-bindings) does not overflow the Java stack.
+     */
+    private Formula parseTerm() throws IOException {
+      Deque<Frame> stack = new ArrayDeque<>();
+      while (true) {
+        Frame top = stack.peek();
+        Token token = tokens.next();
+
+        if (top instanceof AnnotationFrame
+            && ((AnnotationFrame) top).term != null
+            && token != Token.RPAREN) {
+          parseAttribute((AnnotationFrame) top);
+          continue;
+        }
+        if (top instanceof LetFrame
+            && !((LetFrame) top).inBody
+            && ((LetFrame) top).currentVar == null) {
+          // inside the list of bindings, but not within the term of a binding
+          LetFrame let = (LetFrame) top;
+          if (token == Token.LPAREN) {
+            let.currentVar = tokens.expectSymbol();
+          } else if (token == Token.RPAREN) {
+            for (int i = 0; i < let.vars.size(); i++) {
+              letBindings
+                  .computeIfAbsent(let.vars.get(i), k -> new ArrayDeque<>())
+                  .push(let.values.get(i));
+            }
+            let.inBody = true;
+          } else {
+            throw new IllegalArgumentException("invalid let binding at " + tokens.text());
+          }
+          continue;
+        }
+
+        final @Nullable Formula value;
+        switch (token) {
+          case LPAREN:
+            value = openParenthesis(stack);
+            break;
+          case RPAREN:
+            if (!(top instanceof ApplicationFrame || top instanceof AnnotationFrame)) {
+              throw new IllegalArgumentException("unexpected ')'");
+            }
+            stack.pop();
+            value = top instanceof ApplicationFrame
+                ? apply((ApplicationFrame) top)
+                : ((AnnotationFrame) top).term;
+            if (value == null) {
+              throw new IllegalArgumentException("missing term in annotation");
+            }
+            break;
+          case EOF:
+            throw new IllegalArgumentException("unexpected end of input");
+          default:
+            value = parseAtom(token);
+        }
+
+        if (value != null) {
+          Formula result = deliver(stack, value);
+          if (result != null) {
+            return result;
+          }
+        }
+      }
+    }
+
+    /**
+     * Handle an opening parenthesis within a term. Returns the value of the term if it is already
+     * complete (indexed constants), otherwise pushes a new frame and returns null.
+     */
+    private @Nullable Formula openParenthesis(Deque<Frame> stack) throws IOException {
+      Token token = tokens.next();
+      if (token == Token.LPAREN) {
+        // indexed function symbol like ((_ extract 7 0) x)
+        if (!"_".equals(tokens.expectSymbol())) {
+          throw new IllegalArgumentException("unsupported function head");
+        }
+        String name = tokens.expectSymbol();
+        List<Integer> indices = new ArrayList<>();
+        while (tokens.next() != Token.RPAREN) {
+          indices.add(tokens.currentNumeral());
+        }
+        stack.push(new ApplicationFrame(name, indices));
+        return null;
+      }
+      tokens.expectCurrent(Token.SYMBOL);
+      String head = tokens.text();
+      switch (head) {
+        case "let":
+          tokens.expect(Token.LPAREN);
+          stack.push(new LetFrame());
+          return null;
+        case "!":
+          stack.push(new AnnotationFrame());
+          return null;
+        case "_":
+          String name = tokens.expectSymbol();
+          int width = tokens.expectNumeral();
+          tokens.expect(Token.RPAREN);
+          if (name.startsWith("bv")) {
+            return fmgr.getBitvectorFormulaManager()
+                .makeBitvector(width, new BigInteger(name.substring(2)));
+          }
+          throw new IllegalArgumentException("unsupported indexed constant " + name);
+        case "forall":
+        case "exists":
+        case "as":
+        case "match":
+          throw new IllegalArgumentException("unsupported term " + head);
+        default:
+          stack.push(new ApplicationFrame(head, ImmutableList.of()));
+          return null;
+      }
+    }
+
+    /**
+     * Pass a completed term to the enclosing frame. Returns the term if there is no enclosing
+     * frame, i.e., the whole term is complete, otherwise null.
+     */
+    private @Nullable Formula deliver(Deque<Frame> stack, Formula pValue) throws IOException {
+      Formula value = pValue;
+      while (true) {
+        Frame top = stack.peek();
+        if (top == null) {
+          return value;
+        } else if (top instanceof ApplicationFrame) {
+          ((ApplicationFrame) top).args.add(value);
+          return null;
+        } else if (top instanceof AnnotationFrame) {
+          ((AnnotationFrame) top).term = value;
+          return null;
+        } else {
+          LetFrame let = (LetFrame) top;
+          tokens.expect(Token.RPAREN);
+          if (!let.inBody) {
+            let.vars.add(let.currentVar);
+            let.values.add(value);
+            let.currentVar = null;
+            return null;
+          }
+          for (String var : let.vars) {
+            Deque<Formula> bindings = letBindings.get(var);
+            bindings.pop();
+            if (bindings.isEmpty()) {
+              letBindings.remove(var);
+            }
+          }
+          stack.pop();
+        }
+      }
+    }
+
+    private void parseAttribute(AnnotationFrame annotation) throws IOException {
+      tokens.expectCurrent(Token.KEYWORD);
+      String keyword = tokens.text();
+      Token token = tokens.next();
+      if (token == Token.LPAREN) {
+        tokens.skipUntilClosingParenthesis();
+      } else if (token == Token.RPAREN || token == Token.KEYWORD) {
+        tokens.pushBack();
+      } else if (":named".equals(keyword)) {
+        constants.put(tokens.text(), checkNotNull(annotation.term));
+      }
+    }
+
+    private Formula parseAtom(Token token) {
+      String text = tokens.text();
+      switch (token) {
+        case NUMERAL:
+          return fmgr.getIntegerFormulaManager().makeNumber(new BigInteger(text));
+        case DECIMAL:
+          return fmgr.getRationalFormulaManager().makeNumber(new BigDecimal(text));
+        case BINARY:
+          return fmgr.getBitvectorFormulaManager()
+              .makeBitvector(text.length(), new BigInteger(text, 2));
+        case HEXADECIMAL:
+          return fmgr.getBitvectorFormulaManager()
+              .makeBitvector(4 * text.length(), new BigInteger(text, 16));
+        case SYMBOL:
+          Deque<Formula> bound = letBindings.get(text);
+          if (bound != null) {
+            return bound.peek();
+          }
+          Formula constant = constants.get(text);
+          if (constant != null) {
+            return constant;
+          } else if ("true".equals(text)) {
+            return bmgr.makeTrue();
+          } else if ("false".equals(text)) {
+            return bmgr.makeFalse();
+          }
+          throw new IllegalArgumentException("unknown symbol " + text);
+        default:
+          throw new IllegalArgumentException("unexpected token " + text);
+      }
+    }
+
+    private Formula apply(ApplicationFrame app) {
+      List<Formula> args = app.args;
+      if (args.isEmpty()) {
+        throw new IllegalArgumentException("function application without arguments: " + app.name);
+      }
+      FunctionDeclaration<?> uf = functions.get(app.name);
+      if (uf != null) {
+        return fmgr.getUFManager().callUF(uf, args);
+      }
+      if (!app.indices.isEmpty()) {
+        return applyIndexed(app.name, app.indices, toBitvector(args.get(0)));
+      }
+
+      switch (app.name) {
+        case "not":
+          return bmgr.not(toBoolean(args.get(0)));
+        case "and":
+          return bmgr.and(toBooleans(args));
+        case "or":
+          return bmgr.or(toBooleans(args));
+        case "xor":
+          return foldBoolean(args, bmgr::xor);
+        case "=>":
+          {
+            BooleanFormula result = toBoolean(args.get(args.size() - 1));
+            for (int i = args.size() - 2; i >= 0; i--) {
+              result = bmgr.implication(toBoolean(args.get(i)), result);
+            }
+            return result;
+          }
+        case "ite":
+          return bmgr.ifThenElse(toBoolean(args.get(0)), args.get(1), args.get(2));
+        case "=":
+          {
+            List<BooleanFormula> equalities = new ArrayList<>(args.size() - 1);
+            for (int i = 1; i < args.size(); i++) {
+              equalities.add(equal(args.get(i - 1), args.get(i)));
+            }
+            return bmgr.and(equalities);
+          }
+        case "distinct":
+          {
+            List<BooleanFormula> inequalities = new ArrayList<>();
+            for (int i = 0; i < args.size(); i++) {
+              for (int j = i + 1; j < args.size(); j++) {
+                inequalities.add(bmgr.not(equal(args.get(i), args.get(j))));
+              }
+            }
+            return bmgr.and(inequalities);
+          }
+
+        case "+":
+          return numeralManager(args).sum(toNumerals(args));
+        case "-":
+          {
+            NumeralFormulaManager<NumeralFormula, ? extends NumeralFormula> nmgr =
+                numeralManager(args);
+            if (args.size() == 1) {
+              return nmgr.negate(toNumeral(args.get(0)));
+            }
+            NumeralFormula result = toNumeral(args.get(0));
+            for (int i = 1; i < args.size(); i++) {
+              result = nmgr.subtract(result, toNumeral(args.get(i)));
+            }
+            return result;
+          }
+        case "*":
+        case "div":
+        case "/":
+        case "mod":
+          {
+            NumeralFormulaManager<NumeralFormula, ? extends NumeralFormula> nmgr =
+                "/".equals(app.name) ? rationalManager() : numeralManager(args);
+            NumeralFormula result = toNumeral(args.get(0));
+            for (int i = 1; i < args.size(); i++) {
+              NumeralFormula arg = toNumeral(args.get(i));
+              if ("*".equals(app.name)) {
+                result = nmgr.multiply(result, arg);
+              } else if ("mod".equals(app.name)) {
+                result = nmgr.modulo(result, arg);
+              } else {
+                result = nmgr.divide(result, arg);
+              }
+            }
+            return result;
+          }
+        case "<":
+        case "<=":
+        case ">":
+        case ">=":
+          {
+            NumeralFormulaManager<NumeralFormula, ? extends NumeralFormula> nmgr =
+                numeralManager(args);
+            List<BooleanFormula> relations = new ArrayList<>(args.size() - 1);
+            for (int i = 1; i < args.size(); i++) {
+              NumeralFormula a = toNumeral(args.get(i - 1));
+              NumeralFormula b = toNumeral(args.get(i));
+              switch (app.name) {
+                case "<":
+                  relations.add(nmgr.lessThan(a, b));
+                  break;
+                case "<=":
+                  relations.add(nmgr.lessOrEquals(a, b));
+                  break;
+                case ">":
+                  relations.add(nmgr.greaterThan(a, b));
+                  break;
+                default:
+                  relations.add(nmgr.greaterOrEquals(a, b));
+              }
+            }
+            return bmgr.and(relations);
+          }
+
+        case "select":
+          return fmgr.getArrayFormulaManager().select(toArray(args.get(0)), args.get(1));
+        case "store":
+          return fmgr.getArrayFormulaManager()
+              .store(toArray(args.get(0)), args.get(1), args.get(2));
+
+        default:
+          return applyBitvector(app.name, args);
+      }
+    }
+
+    private Formula applyBitvector(String name, List<Formula> args) {
+      final BitvectorFormulaManager bvmgr = fmgr.getBitvectorFormulaManager();
+      switch (name) {
+        case "bvnot":
+          return bvmgr.not(toBitvector(args.get(0)));
+        case "bvneg":
+          return bvmgr.negate(toBitvector(args.get(0)));
+        case "bvadd":
+          return foldBitvector(args, bvmgr::add);
+        case "bvsub":
+          return foldBitvector(args, bvmgr::subtract);
+        case "bvmul":
+          return foldBitvector(args, bvmgr::multiply);
+        case "bvand":
+          return foldBitvector(args, bvmgr::and);
+        case "bvor":
+          return foldBitvector(args, bvmgr::or);
+        case "bvxor":
+          return foldBitvector(args, bvmgr::xor);
+        case "concat":
+          return foldBitvector(args, bvmgr::concat);
+        case "bvudiv":
+          return foldBitvector(args, (a, b) -> bvmgr.divide(a, b, false));
+        case "bvsdiv":
+          return foldBitvector(args, (a, b) -> bvmgr.divide(a, b, true));
+        case "bvurem":
+          return foldBitvector(args, (a, b) -> bvmgr.modulo(a, b, false));
+        case "bvsrem":
+          return foldBitvector(args, (a, b) -> bvmgr.modulo(a, b, true));
+        case "bvshl":
+          return foldBitvector(args, bvmgr::shiftLeft);
+        case "bvlshr":
+          return foldBitvector(args, (a, b) -> bvmgr.shiftRight(a, b, false));
+        case "bvashr":
+          return foldBitvector(args, (a, b) -> bvmgr.shiftRight(a, b, true));
+        case "bvult":
+        case "bvslt":
+        case "bvule":
+        case "bvsle":
+        case "bvugt":
+        case "bvsgt":
+        case "bvuge":
+        case "bvsge":
+          return bitvectorRelation(
+              bvmgr, name, toBitvector(args.get(0)), toBitvector(args.get(1)));
+
+        default:
+          throw new IllegalArgumentException("unknown function " + name);
+      }
+    }
+
+    private BitvectorFormula applyIndexed(
+        String name, List<Integer> indices, BitvectorFormula arg) {
+      BitvectorFormulaManager bvmgr = fmgr.getBitvectorFormulaManager();
+      switch (name) {
+        case "extract":
+          return bvmgr.extract(arg, indices.get(0), indices.get(1), false);
+        case "zero_extend":
+          return bvmgr.extend(arg, indices.get(0), false);
+        case "sign_extend":
+          return bvmgr.extend(arg, indices.get(0), true);
+        default:
+          throw new IllegalArgumentException("unknown indexed function " + name);
+      }
+    }
+
+    private BooleanFormula bitvectorRelation(
+        BitvectorFormulaManager bvmgr, String name, BitvectorFormula a, BitvectorFormula b) {
+      boolean signed = name.charAt(2) == 's';
+      switch (name.substring(3)) {
+        case "lt":
+          return bvmgr.lessThan(a, b, signed);
+        case "le":
+          return bvmgr.lessOrEquals(a, b, signed);
+        case "gt":
+          return bvmgr.greaterThan(a, b, signed);
+        default:
+          return bvmgr.greaterOrEquals(a, b, signed);
+      }
+    }
+
+    private BooleanFormula equal(Formula a, Formula b) {
+      FormulaType<?> type = fmgr.getFormulaType(a);
+      if (type.isBooleanType()) {
+        return bmgr.equivalence(toBoolean(a), toBoolean(b));
+      } else if (type.isBitvectorType()) {
+        return fmgr.getBitvectorFormulaManager().equal(toBitvector(a), toBitvector(b));
+      } else if (type.isArrayType()) {
+        return fmgr.getArrayFormulaManager().equivalence(toArray(a), toArray(b));
+      } else if (type.isNumeralType()) {
+        List<Formula> args = ImmutableList.of(a, b);
+        return numeralManager(args).equal(toNumeral(a), toNumeral(b));
+      }
+      throw new IllegalArgumentException("unsupported equality over sort " + type);
+    }
+
+    /** Use the manager for reals if any of the arguments is real, otherwise integers. */
+    @SuppressWarnings("unchecked")
+    private NumeralFormulaManager<NumeralFormula, ? extends NumeralFormula> numeralManager(
+        List<Formula> args) {
+      for (Formula arg : args) {
+        if (fmgr.getFormulaType(arg).isRationalType()) {
+          return rationalManager();
+        }
+      }
+      return (NumeralFormulaManager<NumeralFormula, ? extends NumeralFormula>)
+          (NumeralFormulaManager<?, ?>) fmgr.getIntegerFormulaManager();
+    }
+
+    private NumeralFormulaManager<NumeralFormula, ? extends NumeralFormula> rationalManager() {
+      return fmgr.getRationalFormulaManager();
+    }
+
+    private BooleanFormula foldBoolean(
+        List<Formula> args, BinaryOperator<BooleanFormula> op) {
+      BooleanFormula result = toBoolean(args.get(0));
+      for (int i = 1; i < args.size(); i++) {
+        result = op.apply(result, toBoolean(args.get(i)));
+      }
+      return result;
+    }
+
+    private BitvectorFormula foldBitvector(
+        List<Formula> args, BinaryOperator<BitvectorFormula> op) {
+      BitvectorFormula result = toBitvector(args.get(0));
+      for (int i = 1; i < args.size(); i++) {
+        result = op.apply(result, toBitvector(args.get(i)));
+      }
+      return result;
+    }
+
+    private List<BooleanFormula> toBooleans(List<Formula> args) {
+      List<BooleanFormula> result = new ArrayList<>(args.size());
+      for (Formula arg : args) {
+        result.add(toBoolean(arg));
+      }
+      return result;
+    }
+
+    private List<NumeralFormula> toNumerals(List<Formula> args) {
+      List<NumeralFormula> result = new ArrayList<>(args.size());
+      for (Formula arg : args) {
+        result.add(toNumeral(arg));
+      }
+      return result;
+    }
+  }
+
+  private static BooleanFormula toBoolean(Formula f) {
+    if (!(f instanceof BooleanFormula)) {
+      throw new IllegalArgumentException("expected Boolean term, but got " + f);
+    }
+    return (BooleanFormula) f;
+  }
+
+  private static NumeralFormula toNumeral(Formula f) {
+    if (!(f instanceof NumeralFormula)) {
+      throw new IllegalArgumentException("expected arithmetic term, but got " + f);
+    }
+    return (NumeralFormula) f;
+  }
+
+  private static BitvectorFormula toBitvector(Formula f) {
+    if (!(f instanceof BitvectorFormula)) {
+      throw new IllegalArgumentException("expected bitvector term, but got " + f);
+    }
+    return (BitvectorFormula) f;
+  }
+
+  @SuppressWarnings("unchecked")
+  private static ArrayFormula<Formula, Formula> toArray(Formula f) {
+    if (!(f instanceof ArrayFormula)) {
+      throw new IllegalArgumentException("expected array term, but got " + f);
+    }
+    return (ArrayFormula<Formula, Formula>) f;
+  }
+
+  /** Partially parsed term. */
+  private abstract static class Frame {}
+
+  private static final class ApplicationFrame extends Frame {
+    private final String name;
+    private final List<Integer> indices;
+    private final List<Formula> args = new ArrayList<>();
+
+    private ApplicationFrame(String pName, List<Integer> pIndices) {
+      name = pName;
+      indices = pIndices;
+    }
+  }
+
+  private static final class LetFrame extends Frame {
+    private final List<String> vars = new ArrayList<>();
+    private final List<Formula> values = new ArrayList<>();
+    private @Nullable String currentVar = null;
+    private boolean inBody = false;
+  }
+
+  private static final class AnnotationFrame extends Frame {
+    private @Nullable Formula term = null;
+  }
+
+  private enum Token {
+    LPAREN,
+    RPAREN,
+    SYMBOL,
+    KEYWORD,
+    NUMERAL,
+    DECIMAL,
+    BINARY,
+    HEXADECIMAL,
+    STRING,
+    EOF
+  }
+
+  /** Splits the input into SMT-LIB2 tokens, one token of lookahead at a time. */
+  private static final class Tokenizer {
+
+    private final Input input;
+    private final StringBuilder buffer = new StringBuilder();
+    private Token current = Token.EOF;
+    private String text = "";
+    private boolean pushedBack = false;
+
+    private Tokenizer(Input pInput) {
+      input = pInput;
+    }
+
+    private Token current() {
+      return current;
+    }
+
+    private String text() {
+      return text;
+    }
+
+    /** Let the next call to {@link #next()} return the current token again. */
+    private void pushBack() {
+      pushedBack = true;
+    }
+
+    private Token next() throws IOException {
+      if (pushedBack) {
+        pushedBack = false;
+        return current;
+      }
+      current = readToken();
+      return current;
+    }
+
+    private void expect(Token expected) throws IOException {
+      next();
+      expectCurrent(expected);
+    }
+
+    private void expectCurrent(Token expected) {
+      if (current != expected) {
+        throw new IllegalArgumentException(
+            "expected " + expected + ", but got " + current + " '" + text + "'");
+      }
+    }
+
+    private String expectSymbol() throws IOException {
+      expect(Token.SYMBOL);
+      return text;
+    }
+
+    private int expectNumeral() throws IOException {
+      next();
+      return currentNumeral();
+    }
+
+    private int currentNumeral() {
+      expectCurrent(Token.NUMERAL);
+      return Integer.parseInt(text);
+    }
+
+    /** Skip all tokens until the parenthesis matching an already consumed one is closed. */
+    private void skipUntilClosingParenthesis() throws IOException {
+      int depth = 1;
+      while (depth > 0) {
+        switch (next()) {
+          case LPAREN:
+            depth++;
+            break;
+          case RPAREN:
+            depth--;
+            break;
+          case EOF:
+            throw new IllegalArgumentException("unexpected end of input");
+          default:
+            // skip
+        }
+      }
+    }
+
+    private Token readToken() throws IOException {
+      int c = input.peek();
+      while (c >= 0 && (Character.isWhitespace(c) || c == ';')) {
+        if (c == ';') {
+          while (c >= 0 && c != '\n' && c != '\r') {
+            input.advance();
+            c = input.peek();
+          }
+        } else {
+          input.advance();
+          c = input.peek();
+        }
+      }
+
+      buffer.setLength(0);
+      if (c < 0) {
+        text = "";
+        return Token.EOF;
+      }
+      input.advance();
+      switch (c) {
+        case '(':
+          text = "(";
+          return Token.LPAREN;
+        case ')':
+          text = ")";
+          return Token.RPAREN;
+        case '|':
+          readUntil('|');
+          text = input.decode(buffer);
+          return Token.SYMBOL;
+        case '"':
+          while (true) {
+            readUntil('"');
+            if (input.peek() != '"') {
+              break;
+            }
+            // escaped quote
+            buffer.append('"');
+            input.advance();
+          }
+          text = input.decode(buffer);
+          return Token.STRING;
+        case '#':
+          int base = input.peek();
+          input.advance();
+          readSymbolChars();
+          text = buffer.toString();
+          if (base == 'b') {
+            return Token.BINARY;
+          } else if (base == 'x') {
+            return Token.HEXADECIMAL;
+          }
+          throw new IllegalArgumentException("invalid literal #" + (char) base + text);
+        case ':':
+          buffer.append(':');
+          readSymbolChars();
+          text = buffer.toString();
+          return Token.KEYWORD;
+        default:
+          buffer.append((char) c);
+          readSymbolChars();
+          text = buffer.toString();
+          if (Character.isDigit(c)) {
+            return text.indexOf('.') >= 0 ? Token.DECIMAL : Token.NUMERAL;
+          }
+          return Token.SYMBOL;
+      }
+    }
+
+    private void readUntil(char end) throws IOException {
+      int c = input.peek();
+      while (c != end) {
+        if (c < 0) {
+          throw new IllegalArgumentException("unexpected end of input, missing " + end);
+        }
+        buffer.append((char) c);
+        input.advance();
+        c = input.peek();
+      }
+      input.advance();
+    }
+
+    private void readSymbolChars() throws IOException {
+      int c = input.peek();
+      while (c >= 0
+          && !Character.isWhitespace(c)
+          && c != '('
+          && c != ')'
+          && c != '|'
+          && c != '"'
+          && c != ';') {
+        buffer.append((char) c);
+        input.advance();
+        c = input.peek();
+      }
+    }
+  }
+
+  /** Source of characters with one character lookahead. */
+  private abstract static class Input {
+
+    /** Returns the next character without consuming it, or -1 at the end of the input. */
+    abstract int peek() throws IOException;
+
+    abstract void advance();
+
+    /** Convert the collected characters of a quoted symbol or string literal. */
+    String decode(StringBuilder chars) {
+      return chars.toString();
+    }
+  }
+
+  private static final class ReaderInput extends Input {
+    private final Reader reader;
+    private final char[] buffer = new char[1 << 16];
+    private int position = 0;
+    private int limit = 0;
+
+    private ReaderInput(Reader pReader) {
+      reader = checkNotNull(pReader);
+    }
+
+    @Override
+    int peek() throws IOException {
+      if (position == limit) {
+        limit = reader.read(buffer);
+        position = 0;
+        if (limit <= 0) {
+          limit = 0;
+          return -1;
+        }
+      }
+      return buffer[position];
+    }
+
+    @Override
+    void advance() {
+      position++;
+    }
+  }
+
+  /**
+   * Reads a file through memory-mapped regions. The bytes are interpreted as ASCII, which is
+   * sufficient for everything except quoted symbols and string literals, which are decoded as
+   * UTF-8.
+   */
+  private static final class MappedFileInput extends Input {
+    private final FileChannel channel;
+    private final long size;
+    private long mappedUntil = 0;
+    private @Nullable MappedByteBuffer buffer = null;
+
+    private MappedFileInput(FileChannel pChannel) throws IOException {
+      channel = pChannel;
+      size = pChannel.size();
+    }
+
+    @Override
+    int peek() throws IOException {
+      if (buffer == null || !buffer.hasRemaining()) {
+        if (mappedUntil >= size) {
+          return -1;
+        }
+        long length = Math.min(MAPPED_CHUNK_SIZE, size - mappedUntil);
+        buffer = channel.map(MapMode.READ_ONLY, mappedUntil, length);
+        mappedUntil += length;
+      }
+      return buffer.get(buffer.position()) & 0xFF;
+    }
+
+    @Override
+    void advance() {
+      checkNotNull(buffer).position(buffer.position() + 1);
+    }
+
+    @Override
+    String decode(StringBuilder chars) {
+      return new String(
+          chars.toString().getBytes(StandardCharsets.ISO_8859_1), StandardCharsets.UTF_8);
+    }
+  }
+}
@@ -0,0 +1,707 @@
+/*
+ *  JavaSMT is an API wrapper for a collection of SMT solvers.
+ *  This file is part of JavaSMT.
+ *
+ *  Copyright (C) 2007-2016  Dirk Beyer
+ *  All rights reserved.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.sosy_lab.java_smt.utils;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import com.google.common.base.CharMatcher;
+import com.google.common.base.Strings;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
+import java.io.IOException;
+import java.io.Writer;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.channels.Channels;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import javax.annotation.Nullable;
+import org.sosy_lab.common.Appender;
+import org.sosy_lab.common.Appenders.AbstractAppender;
+import org.sosy_lab.common.rationals.Rational;
+import org.sosy_lab.java_smt.api.BooleanFormula;
+import org.sosy_lab.java_smt.api.FloatingPointRoundingMode;
+import org.sosy_lab.java_smt.api.Formula;
+import org.sosy_lab.java_smt.api.FormulaManager;
+import org.sosy_lab.java_smt.api.FormulaType;
+import org.sosy_lab.java_smt.api.FormulaType.ArrayFormulaType;
+import org.sosy_lab.java_smt.api.FormulaType.BitvectorType;
+import org.sosy_lab.java_smt.api.FormulaType.FloatingPointType;
+import org.sosy_lab.java_smt.api.FunctionDeclaration;
+import org.sosy_lab.java_smt.api.FunctionDeclarationKind;
+import org.sosy_lab.java_smt.api.QuantifiedFormulaManager.Quantifier;
+import org.sosy_lab.java_smt.api.visitors.FormulaVisitor;
+
+/**
+ * Solver-independent SMT-LIB2 printer that writes a formula directly into an {@link Appendable} or
+ * a {@link WritableByteChannel}.
+ *
+ * <p>In contrast to {@link FormulaManager#dumpFormula(BooleanFormula)}, which for most solvers
+ * builds the complete string in memory before returning it, this printer walks the term DAG and
+ * streams the output. Sub-terms that occur more than once are bound with {@code let}, such that
+ * the output size is linear in the number of distinct terms. The additional memory is
+ * proportional to the number of distinct terms, independent of the length of the output.
+ *
+ * <p>Quantified formulas, solver-specific operators (of kind {@link FunctionDeclarationKind#OTHER})
+ * and operators whose SMT-LIB representation requires indices that are not available through the
+ * visitor interface (e.g., {@code extract}) are not supported, and printing them throws an {@link
+ * UnsupportedOperationException}. Floating-point constants are printed as {@code (fp ...)} bit
+ * triples, constants that cannot be represented exactly in SMT-LIB are rejected with an {@link
+ * IllegalArgumentException}.
+ */
+public class SmtLib2Printer {
+
+  private static final String LET_PREFIX = ".def_";
+
+  private static final CharMatcher SIMPLE_SYMBOL_START =
+      CharMatcher.inRange('a', 'z')
+          .or(CharMatcher.inRange('A', 'Z'))
+          .or(CharMatcher.anyOf("~!@$%^&*_-+=<>.?/"))
+          .precomputed();
+
+  private static final CharMatcher SIMPLE_SYMBOL_CHAR =
+      SIMPLE_SYMBOL_START.or(CharMatcher.inRange('0', '9')).precomputed();
+
+  private static final ImmutableSet<String> RESERVED_WORDS =
+      ImmutableSet.of(
+          "!", "_", "as", "exists", "forall", "let", "match", "par", "BINARY", "DECIMAL",
+          "HEXADECIMAL", "NUMERAL", "STRING");
+
+  private final FormulaManager fmgr;
+
+  SmtLib2Printer(FormulaManager pFmgr) {
+    fmgr = checkNotNull(pFmgr);
+  }
+
+  /**
+   * Returns a lazy {@link Appender} for the given formula. The formula is traversed each time the
+   * appender is used.
+   */
+  public Appender asAppender(BooleanFormula pFormula) {
+    checkNotNull(pFormula);
+    return new AbstractAppender() {
+      @Override
+      public void appendTo(Appendable out) throws IOException {
+        print(pFormula, out);
+      }
+    };
+  }
+
+  /**
+   * Write the given formula as SMT-LIB2 script (declarations and a single assertion) into the
+   * given channel using UTF-8. The channel is flushed but not closed.
+   */
+  public void print(BooleanFormula pFormula, WritableByteChannel pChannel) throws IOException {
+    Writer writer = Channels.newWriter(pChannel, StandardCharsets.UTF_8.newEncoder(), 1 << 16);
+    print(pFormula, writer);
+    writer.flush();
+  }
+
+  /**
+   * Write the given formula as SMT-LIB2 script (declarations and a single assertion) into the
+   * given {@link Appendable}.
+   */
+  public void print(BooleanFormula pFormula, Appendable out) throws IOException {
+    List<Node> nodes = collectNodes(pFormula);
+
+    // declarations of symbols and uninterpreted functions
+    Set<String> declared = new HashSet<>();
+    for (Node node : nodes) {
+      if (node.kind == FunctionDeclarationKind.VAR || node.kind == FunctionDeclarationKind.UF) {
+        if (declared.add(node.name)) {
+          out.append("(declare-fun ").append(quote(node.name)).append(" (");
+          String sep = "";
+          for (FormulaType<?> argType : node.argTypes) {
+            out.append(sep);
+            appendSort(argType, out);
+            sep = " ";
+          }
+          out.append(") ");
+          appendSort(node.type, out);
+          out.append(")\n");
+        }
+      }
+    }
+
+    // assertion with one let-binding for each shared sub-term
+    out.append("(assert");
+    int openLets = 0;
+    for (Node node : nodes) {
+      if (node.isShared()) {
+        out.append("\n (let ((").append(LET_PREFIX).append(Integer.toString(node.id)).append(' ');
+        appendTerm(node, out);
+        out.append("))");
+        node.bound = true;
+        openLets++;
+      }
+    }
+    out.append("\n  ");
+    appendTerm(nodes.get(nodes.size() - 1), out);
+    for (int i = 0; i < openLets; i++) {
+      out.append(')');
+    }
+    out.append(")\n");
+  }
+
+  /**
+   * Collect all distinct sub-terms of the given formula in topological order (arguments before
+   * their applications) and count how often each of them is referenced.
+   */
+  private List<Node> collectNodes(BooleanFormula pFormula) {
+    Map<Formula, Node> cache = new HashMap<>();
+    List<Node> nodes = new ArrayList<>();
+    NodeBuilder builder = new NodeBuilder();
+    Deque<Formula> waitlist = new ArrayDeque<>();
+    waitlist.push(pFormula);
+
+    while (!waitlist.isEmpty()) {
+      Formula f = waitlist.peek();
+      Node node = cache.get(f);
+      if (node == null) {
+        node = fmgr.visit(f, builder);
+        cache.put(f, node);
+      }
+      if (node.id >= 0) {
+        waitlist.pop();
+        continue;
+      }
+
+      boolean argsDone = true;
+      for (Formula arg : node.args) {
+        Node argNode = cache.get(arg);
+        if (argNode == null || argNode.id < 0) {
+          argsDone = false;
+          waitlist.push(arg);
+        }
+      }
+
+      if (argsDone) {
+        waitlist.pop();
+        node.id = nodes.size();
+        nodes.add(node);
+        for (Formula arg : node.args) {
+          Node argNode = cache.get(arg);
+          node.argNodes.add(argNode);
+          argNode.references++;
+        }
+      }
+    }
+    return nodes;
+  }
+
+  /** Write a term without using recursion, such that deep terms do not overflow the stack. */
+  private void appendTerm(Node pRoot, Appendable out) throws IOException {
+    Deque<Object> stack = new ArrayDeque<>();
+    expand(pRoot, stack, out);
+    while (!stack.isEmpty()) {
+      Object next = stack.pop();
+      if (next instanceof String) {
+        out.append((String) next);
+      } else {
+        Node node = (Node) next;
+        if (node.bound) {
+          out.append(LET_PREFIX).append(Integer.toString(node.id));
+        } else {
+          expand(node, stack, out);
+        }
+      }
+    }
+  }
+
+  /** Write the head of the term and schedule its arguments and closing parenthesis. */
+  private void expand(Node node, Deque<Object> stack, Appendable out) throws IOException {
+    if (node.constant != null) {
+      out.append(node.constant);
+      return;
+    }
+    if (node.argNodes.isEmpty()) {
+      out.append(getOperator(node));
+      return;
+    }
+
+    out.append('(').append(getOperator(node));
+    stack.push(")");
+    if (node.kind == FunctionDeclarationKind.EQ_ZERO
+        || node.kind == FunctionDeclarationKind.GTE_ZERO) {
+      stack.push(" " + getZero(node.argNodes.get(0).type));
+    }
+    for (int i = node.argNodes.size() - 1; i >= 0; i--) {
+      stack.push(node.argNodes.get(i));
+      stack.push(" ");
+    }
+  }
+
+  private static String getOperator(Node node) {
+    switch (node.kind) {
+      case AND:
+        return "and";
+      case NOT:
+        return "not";
+      case OR:
+        return "or";
+      case IFF:
+      case EQ:
+      case EQ_ZERO:
+      case BV_EQ:
+        return "=";
+      case ITE:
+        return "ite";
+      case XOR:
+        return "xor";
+      case IMPLIES:
+        return "=>";
+      case DISTINCT:
+        return "distinct";
+      case STORE:
+        return "store";
+      case SELECT:
+        return "select";
+      case UMINUS:
+      case SUB:
+        return "-";
+      case ADD:
+        return "+";
+      case DIV:
+        return node.type.isIntegerType() ? "div" : "/";
+      case MUL:
+        return "*";
+      case MODULO:
+        return "mod";
+      case UF:
+      case VAR:
+        return quote(node.name);
+      case LT:
+        return "<";
+      case LTE:
+        return "<=";
+      case GT:
+        return ">";
+      case GTE:
+      case GTE_ZERO:
+        return ">=";
+      case BV_CONCAT:
+        return "concat";
+      case BV_NOT:
+        return "bvnot";
+      case BV_NEG:
+        return "bvneg";
+      case BV_OR:
+        return "bvor";
+      case BV_AND:
+        return "bvand";
+      case BV_XOR:
+        return "bvxor";
+      case BV_SUB:
+        return "bvsub";
+      case BV_ADD:
+        return "bvadd";
+      case BV_SDIV:
+        return "bvsdiv";
+      case BV_UDIV:
+        return "bvudiv";
+      case BV_SREM:
+        return "bvsrem";
+      case BV_UREM:
+        return "bvurem";
+      case BV_MUL:
+        return "bvmul";
+      case BV_ULT:
+        return "bvult";
+      case BV_SLT:
+        return "bvslt";
+      case BV_ULE:
+        return "bvule";
+      case BV_SLE:
+        return "bvsle";
+      case BV_UGT:
+        return "bvugt";
+      case BV_SGT:
+        return "bvsgt";
+      case BV_UGE:
+        return "bvuge";
+      case BV_SGE:
+        return "bvsge";
+      case BV_SHL:
+        return "bvshl";
+      case BV_LSHR:
+        return "bvlshr";
+      case BV_ASHR:
+        return "bvashr";
+      case FP_NEG:
+        return "fp.neg";
+      case FP_SUB:
+        return "fp.sub";
+      case FP_ADD:
+        return "fp.add";
+      case FP_DIV:
+        return "fp.div";
+      case FP_MUL:
+        return "fp.mul";
+      case FP_LT:
+        return "fp.lt";
+      case FP_LE:
+        return "fp.leq";
+      case FP_GE:
+        return "fp.geq";
+      case FP_GT:
+        return "fp.gt";
+      case FP_EQ:
+        return "fp.eq";
+      case FP_ROUND_EVEN:
+        return "RNE";
+      case FP_ROUND_AWAY:
+        return "RNA";
+      case FP_ROUND_POSITIVE:
+        return "RTP";
+      case FP_ROUND_NEGATIVE:
+        return "RTN";
+      case FP_ROUND_ZERO:
+        return "RTZ";
+      case FP_ROUND_TO_INTEGRAL:
+        return "fp.roundToIntegral";
+      case BV_EXTRACT:
+        throw new UnsupportedOperationException(
+            "cannot print bitvector extraction without indices: " + node.formula);
+      default:
+        throw new UnsupportedOperationException(
+            "cannot print operator " + node.name + " of kind " + node.kind + ": " + node.formula);
+    }
+  }
+
+  private static String getZero(FormulaType<?> type) {
+    if (type.isBitvectorType()) {
+      return "(_ bv0 " + ((BitvectorType) type).getSize() + ")";
+    } else if (type.isRationalType()) {
+      return "0.0";
+    } else {
+      return "0";
+    }
+  }
+
+  private static String getConstant(Formula f, FormulaType<?> type, Object value) {
+    if (type.isFloatingPointType()) {
+      return getFloatingPointConstant(f, (FloatingPointType) type, value);
+    } else if (value instanceof FloatingPointRoundingMode) {
+      return getRoundingMode((FloatingPointRoundingMode) value);
+    } else if (value instanceof Boolean) {
+      return value.toString();
+    } else if (value instanceof BigInteger && type.isBitvectorType()) {
+      int size = ((BitvectorType) type).getSize();
+      BigInteger v = (BigInteger) value;
+      if (v.signum() < 0) {
+        v = v.add(BigInteger.ONE.shiftLeft(size));
+      }
+      return "(_ bv" + v + " " + size + ")";
+    } else if (value instanceof BigInteger) {
+      return numeral((BigInteger) value, type.isRationalType());
+    } else if (value instanceof Rational) {
+      Rational r = (Rational) value;
+      if (r.isIntegral()) {
+        return numeral(r.getNum(), type.isRationalType());
+      }
+      String fraction = "(/ " + r.getNum().abs() + " " + r.getDen() + ")";
+      return r.signum() < 0 ? "(- " + fraction + ")" : fraction;
+    } else if (value instanceof BigDecimal) {
+      BigDecimal d = (BigDecimal) value;
+      String plain = d.abs().toPlainString();
+      if (plain.indexOf('.') < 0) {
+        plain += ".0";
+      }
+      return d.signum() < 0 ? "(- " + plain + ")" : plain;
+    } else {
+      throw new IllegalArgumentException("cannot print constant " + f + " with value " + value);
+    }
+  }
+
+  private static String getRoundingMode(FloatingPointRoundingMode mode) {
+    switch (mode) {
+      case NEAREST_TIES_TO_EVEN:
+        return "RNE";
+      case NEAREST_TIES_AWAY:
+        return "RNA";
+      case TOWARD_POSITIVE:
+        return "RTP";
+      case TOWARD_NEGATIVE:
+        return "RTN";
+      case TOWARD_ZERO:
+        return "RTZ";
+      default:
+        throw new AssertionError("unexpected rounding mode " + mode);
+    }
+  }
+
+  /**
+   * Print a floating-point constant as {@code (fp sign exponent significand)} with bit-vector
+   * literals, or as special value. The solvers return the value either as {@link Double} or {@link
+   * Float}, as exact {@link Rational}, or as {@link BigInteger} with the IEEE bit pattern.
+   */
+  private static String getFloatingPointConstant(
+      Formula f, FloatingPointType type, Object value) {
+    int exponentSize = type.getExponentSize();
+    int mantissaSize = type.getMantissaSize();
+    String sizes = " " + exponentSize + " " + (mantissaSize + 1) + ")";
+    if (value instanceof BigInteger) {
+      return fpLiteral((BigInteger) value, exponentSize, mantissaSize);
+    } else if (value instanceof Double || value instanceof Float) {
+      double d = ((Number) value).doubleValue();
+      if (Double.isNaN(d)) {
+        return "(_ NaN" + sizes;
+      } else if (Double.isInfinite(d)) {
+        return (d > 0 ? "(_ +oo" : "(_ -oo") + sizes;
+      } else if (d == 0) {
+        return (1 / d > 0 ? "(_ +zero" : "(_ -zero") + sizes;
+      }
+      return fpLiteral(f, new BigDecimal(d), exponentSize, mantissaSize);
+    } else if (value instanceof BigDecimal) {
+      BigDecimal d = (BigDecimal) value;
+      if (d.signum() == 0) {
+        return "(_ +zero" + sizes;
+      }
+      return fpLiteral(f, d, exponentSize, mantissaSize);
+    } else if (value instanceof Rational) {
+      Rational r = (Rational) value;
+      if (r.signum() == 0) {
+        return "(_ +zero" + sizes;
+      }
+      return fpLiteral(f, r.getNum(), r.getDen(), exponentSize, mantissaSize);
+    } else {
+      throw new IllegalArgumentException("cannot print constant " + f + " with value " + value);
+    }
+  }
+
+  /** Print the IEEE bit pattern of a floating-point value. */
+  private static String fpLiteral(BigInteger bits, int exponentSize, int mantissaSize) {
+    BigInteger sign = bits.shiftRight(exponentSize + mantissaSize);
+    BigInteger exponent = bits.shiftRight(mantissaSize).and(mask(exponentSize));
+    BigInteger mantissa = bits.and(mask(mantissaSize));
+    return "(fp #b"
+        + sign
+        + " #b"
+        + Strings.padStart(exponent.toString(2), exponentSize, '0')
+        + " #b"
+        + Strings.padStart(mantissa.toString(2), mantissaSize, '0')
+        + ")";
+  }
+
+  private static String fpLiteral(
+      Formula f, BigDecimal value, int exponentSize, int mantissaSize) {
+    BigInteger num = value.unscaledValue();
+    BigInteger den = BigInteger.ONE;
+    if (value.scale() > 0) {
+      den = BigInteger.TEN.pow(value.scale());
+    } else {
+      num = num.multiply(BigInteger.TEN.pow(-value.scale()));
+    }
+    return fpLiteral(f, num, den, exponentSize, mantissaSize);
+  }
+
+  /**
+   * Print the non-zero value {@code pNum / pDen} in the given format.
+   *
+   * @throws IllegalArgumentException if the value is not representable exactly.
+   */
+  private static String fpLiteral(
+      Formula f, BigInteger pNum, BigInteger pDen, int exponentSize, int mantissaSize) {
+    boolean negative = (pNum.signum() < 0) != (pDen.signum() < 0);
+    BigInteger num = pNum.abs();
+    BigInteger den = pDen.abs();
+
+    // the unbiased exponent e with 2^e <= num/den < 2^(e+1)
+    int exponent = num.bitLength() - den.bitLength();
+    if (shift(num, -exponent).compareTo(shift(den, exponent)) < 0) {
+      exponent--;
+    }
+    int bias = (1 << (exponentSize - 1)) - 1;
+    int biasedExponent = Math.max(exponent + bias, 0);
+    if (biasedExponent >= (1 << exponentSize) - 1) {
+      throw new IllegalArgumentException("cannot print constant " + f + ", exponent too large");
+    }
+
+    // the significand is num/den * 2^(mantissaSize - e), for subnormals with e = 1 - bias
+    int scale = mantissaSize - (biasedExponent == 0 ? 1 - bias : exponent);
+    BigInteger[] significand = shift(num, scale).divideAndRemainder(shift(den, -scale));
+    if (significand[1].signum() != 0) {
+      throw new IllegalArgumentException("cannot print constant " + f + ", value is not exact");
+    }
+    BigInteger bits =
+        BigInteger.valueOf(biasedExponent)
+            .shiftLeft(mantissaSize)
+            .or(significand[0].and(mask(mantissaSize)));
+    if (negative) {
+      bits = bits.setBit(exponentSize + mantissaSize);
+    }
+    return fpLiteral(bits, exponentSize, mantissaSize);
+  }
+
+  /** Multiply by 2^n for positive n, and return the value itself otherwise. */
+  private static BigInteger shift(BigInteger value, int n) {
+    return n > 0 ? value.shiftLeft(n) : value;
+  }
+
+  private static BigInteger mask(int width) {
+    return BigInteger.ONE.shiftLeft(width).subtract(BigInteger.ONE);
+  }
+
+  private static String numeral(BigInteger value, boolean isReal) {
+    String abs = value.abs().toString() + (isReal ? ".0" : "");
+    return value.signum() < 0 ? "(- " + abs + ")" : abs;
+  }
+
+  private static void appendSort(FormulaType<?> type, Appendable out) throws IOException {
+    if (type.isBooleanType()) {
+      out.append("Bool");
+    } else if (type.isIntegerType()) {
+      out.append("Int");
+    } else if (type.isRationalType()) {
+      out.append("Real");
+    } else if (type.isBitvectorType()) {
+      out.append("(_ BitVec ").append(Integer.toString(((BitvectorType) type).getSize()));
+      out.append(')');
+    } else if (type.isFloatingPointType()) {
+      FloatingPointType fpType = (FloatingPointType) type;
+      out.append("(_ FloatingPoint ").append(Integer.toString(fpType.getExponentSize()));
+      out.append(' ').append(Integer.toString(fpType.getMantissaSize() + 1)).append(')');
+    } else if (type.isFloatingPointRoundingModeType()) {
+      out.append("RoundingMode");
+    } else if (type.isArrayType()) {
+      ArrayFormulaType<?, ?> arrayType = (ArrayFormulaType<?, ?>) type;
+      out.append("(Array ");
+      appendSort(arrayType.getIndexType(), out);
+      out.append(' ');
+      appendSort(arrayType.getElementType(), out);
+      out.append(')');
+    } else {
+      throw new UnsupportedOperationException("unknown sort " + type);
+    }
+  }
+
+  /** Quote a symbol with '|' if it is not a simple SMT-LIB symbol. */
+  private static String quote(String name) {
+    if (!name.isEmpty()
+        && SIMPLE_SYMBOL_START.matches(name.charAt(0))
+        && SIMPLE_SYMBOL_CHAR.matchesAllOf(name)
+        && !RESERVED_WORDS.contains(name)) {
+      return name;
+    }
+    return "|" + name + "|";
+  }
+
+  /** One distinct sub-term of the printed formula. */
+  private static final class Node {
+    private final Formula formula;
+    private final FormulaType<?> type;
+    private final FunctionDeclarationKind kind;
+    private final String name;
+    private final List<FormulaType<?>> argTypes;
+    private final List<Formula> args;
+    private final List<Node> argNodes;
+    private final @Nullable String constant;
+
+    private int id = -1;
+    private int references = 0;
+    private boolean bound = false;
+
+    private Node(
+        Formula pFormula,
+        FormulaType<?> pType,
+        FunctionDeclarationKind pKind,
+        String pName,
+        List<FormulaType<?>> pArgTypes,
+        List<Formula> pArgs,
+        @Nullable String pConstant) {
+      formula = pFormula;
+      type = pType;
+      kind = pKind;
+      name = pName;
+      argTypes = pArgTypes;
+      args = pArgs;
+      argNodes = new ArrayList<>(pArgs.size());
+      constant = pConstant;
+    }
+
+    /** Shared applications are bound by a let, leafs are always printed directly. */
+    private boolean isShared() {
+      return references > 1 && !argNodes.isEmpty();
+    }
+  }
+
+  private class NodeBuilder implements FormulaVisitor<Node> {
+
+    @Override
+    public Node visitFreeVariable(Formula f, String name) {
+      return new Node(
+          f,
+          fmgr.getFormulaType(f),
+          FunctionDeclarationKind.VAR,
+          name,
+          ImmutableList.of(),
+          ImmutableList.of(),
+          null);
+    }
+
+    @Override
+    public Node visitBoundVariable(Formula f, int deBruijnIdx) {
+      throw new UnsupportedOperationException("cannot print quantified formula: " + f);
+    }
+
+    @Override
+    public Node visitConstant(Formula f, Object value) {
+      FormulaType<?> type = fmgr.getFormulaType(f);
+      return new Node(
+          f,
+          type,
+          FunctionDeclarationKind.OTHER,
+          "",
+          ImmutableList.of(),
+          ImmutableList.of(),
+          getConstant(f, type, value));
+    }
+
+    @Override
+    public Node visitFunction(
+        Formula f, List<Formula> args, FunctionDeclaration<?> functionDeclaration) {
+      return new Node(
+          f,
+          fmgr.getFormulaType(f),
+          functionDeclaration.getKind(),
+          functionDeclaration.getName(),
+          functionDeclaration.getArgumentTypes(),
+          args,
+          null);
+    }
+
+    @Override
+    public Node visitQuantifier(
+        BooleanFormula f,
+        Quantifier quantifier,
+        List<Formula> boundVariables,
+        BooleanFormula body) {
+      throw new UnsupportedOperationException("cannot print quantified formula: " + f);
+    }
+  }
+}
@@ -19,7 +19,12 @@
  */
 package org.sosy_lab.java_smt.utils;
 
+import java.util.List;
+import org.sosy_lab.java_smt.api.BasicProverEnvironment;
+import org.sosy_lab.java_smt.api.BooleanFormula;
 import org.sosy_lab.java_smt.api.FormulaManager;
+import org.sosy_lab.java_smt.api.SolverContext;
+import org.sosy_lab.java_smt.api.SolverContext.ProverOptions;
 
 /** Central entry point for all utility classes. */
 public class SolverUtils {
@@ -35,4 +40,98 @@ public class SolverUtils {
   public static UfElimination ufElimination(FormulaManager pFormulaManager) {
     return new UfElimination(pFormulaManager);
   }
+
+  /**
+   * Creates a new {@link SmtLib2Printer} instance.
+   *
+   * @param pFormulaManager the {@link FormulaManager} to be used
+   * @return a new {@link SmtLib2Printer} instance
+   */
+  public static SmtLib2Printer smtLib2Printer(FormulaManager pFormulaManager) {
+    return new SmtLib2Printer(pFormulaManager);
+  }
+
+  /**
+   * Creates a new {@link SmtLib2Parser} instance.
+   *
+   * @param pFormulaManager the {@link FormulaManager} to be used
+   * @return a new {@link SmtLib2Parser} instance
+   */
+  public static SmtLib2Parser smtLib2Parser(FormulaManager pFormulaManager) {
+    return new SmtLib2Parser(pFormulaManager);
+  }
+
+  /**
+   * Creates a new {@link FormulaSerializer} instance.
+   *
+   * @param pFormulaManager the {@link FormulaManager} to be used
+   * @return a new {@link FormulaSerializer} instance
+   */
+  public static FormulaSerializer formulaSerializer(FormulaManager pFormulaManager) {
+    return new FormulaSerializer(pFormulaManager);
+  }
+
+  /**
+   * Creates a new {@link AllSatIterator} instance that enumerates the models of the formulas on
+   * the given prover stack, projected to the important predicates.
+   *
+   * @param pFormulaManager the {@link FormulaManager} to be used
+   * @param pProver the prover environment, created with model generation
+   * @param pImportant the predicates that the models are projected to
+   * @return a new {@link AllSatIterator} instance
+   */
+  public static AllSatIterator allSatIterator(
+      FormulaManager pFormulaManager,
+      BasicProverEnvironment<?> pProver,
+      List<BooleanFormula> pImportant) {
+    return new AllSatIterator(pFormulaManager, pProver, pImportant);
+  }
+
+  /**
+   * Creates a new {@link ParallelAllSat} instance that distributes the model enumeration over the
+   * given worker contexts.
+   *
+   * @param pFormulaManager the {@link FormulaManager} of the queries
+   * @param pWorkers the contexts used for solving, one per thread
+   * @return a new {@link ParallelAllSat} instance
+   */
+  public static ParallelAllSat parallelAllSat(
+      FormulaManager pFormulaManager, List<? extends SolverContext> pWorkers) {
+    return new ParallelAllSat(pFormulaManager, pWorkers);
+  }
+
+  /**
+   * Creates a new {@link UnsatCoreMinimizer} instance.
+   *
+   * @param pFormulaManager the {@link FormulaManager} of the constraints
+   * @param pStrategy the minimization algorithm
+   * @return a new {@link UnsatCoreMinimizer} instance
+   */
+  public static UnsatCoreMinimizer unsatCoreMinimizer(
+      FormulaManager pFormulaManager, UnsatCoreMinimizer.Strategy pStrategy) {
+    return new UnsatCoreMinimizer(pFormulaManager, pStrategy);
+  }
+
+  /**
+   * Creates a new {@link ConeOfInfluenceSlicer} instance.
+   *
+   * @param pFormulaManager the {@link FormulaManager} of the constraints
+   * @return a new {@link ConeOfInfluenceSlicer} instance
+   */
+  public static ConeOfInfluenceSlicer coneOfInfluenceSlicer(FormulaManager pFormulaManager) {
+    return new ConeOfInfluenceSlicer(pFormulaManager);
+  }
+
+  /**
+   * Creates a new {@link NonLinearRefinementProver} instance that refines the approximation of
+   * non-linear integer arithmetic.
+   *
+   * @param pContext the context whose formula manager approximates non-linear arithmetic
+   * @param pOptions the options of the prover environment, models are always generated
+   * @return a new {@link NonLinearRefinementProver} instance
+   */
+  public static NonLinearRefinementProver nonLinearRefinementProver(
+      SolverContext pContext, ProverOptions... pOptions) {
+    return new NonLinearRefinementProver(pContext, pOptions);
+  }
 }
@@ -0,0 +1,475 @@
+/*
+ *  JavaSMT is an API wrapper for a collection of SMT solvers.
+ *  This file is part of JavaSMT.
+ *
+ *  Copyright (C) 2007-2016  Dirk Beyer
+ *  All rights reserved.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.sosy_lab.java_smt.utils;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import com.google.common.collect.ImmutableList;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.sosy_lab.common.time.TimeSpan;
+import org.sosy_lab.java_smt.api.BasicProverEnvironment;
+import org.sosy_lab.java_smt.api.BooleanFormula;
+import org.sosy_lab.java_smt.api.BooleanFormulaManager;
+import org.sosy_lab.java_smt.api.FormulaManager;
+import org.sosy_lab.java_smt.api.ProverEnvironment;
+import org.sosy_lab.java_smt.api.SolverContext;
+import org.sosy_lab.java_smt.api.SolverContext.ProverOptions;
+import org.sosy_lab.java_smt.api.SolverException;
+
+/**
+ * Reduces an unsatisfiable set of constraints to a minimal unsatisfiable subset (MUS), i.e., a
+ * subset that is unsatisfiable, but becomes satisfiable if any of its elements is removed.
+ *
+ * <p>All checks are incremental: each constraint is guarded by a fresh selector variable once, and
+ * subsets are checked by solving under assumptions over the selectors. The prover should be
+ * created with {@link ProverOptions#GENERATE_UNSAT_CORE_OVER_ASSUMPTIONS}, such that the cores of
+ * the solver can be used. Solvers without such cores need to support {@link
+ * BasicProverEnvironment#isUnsatWithAssumptions}.
+ *
+ * <p>If a time budget is set and exceeded, the minimization stops early. The returned subset is
+ * still unsatisfiable, but might not be minimal, see {@link #wasLastResultMinimal()}.
+ *
+ * <p>The deletion-based strategies can probe several candidates in parallel on additional solver
+ * contexts, see {@link #setParallelWorkers}, if the background formulas are given explicitly. All
+ * formulas are translated to the workers in the calling thread.
+ */
+public class UnsatCoreMinimizer {
+
+  /** The algorithm used for minimization. */
+  public enum Strategy {
+    /** Remove one constraint after another and keep it only if the rest becomes satisfiable. */
+    DELETION,
+
+    /**
+     * Like {@link #DELETION}, but after each unsatisfiable check, the current set is reduced to the
+     * core returned by the solver.
+     */
+    CLAUSE_SET_REFINEMENT,
+
+    /**
+     * Divide-and-conquer algorithm by Junker, which needs fewer checks than deletion if the minimal
+     * subset is small compared to the input. Does not use parallel workers.
+     */
+    QUICK_XPLAIN,
+  }
+
+  private static final String SELECTOR_PREFIX = "__MUS_SELECTOR_";
+
+  private static final AtomicInteger runs = new AtomicInteger();
+
+  private final FormulaManager fmgr;
+  private final Strategy strategy;
+
+  private TimeSpan timeBudget = TimeSpan.empty();
+  private ImmutableList<SolverContext> workers = ImmutableList.of();
+
+  private final AtomicInteger solverCalls = new AtomicInteger();
+  private boolean lastResultMinimal = false;
+
+  /** Time budget of the current run in nanoseconds, zero if unlimited. */
+  private long budget = 0;
+
+  /** Deadline of the current run, in terms of {@link System#nanoTime()}, if there is a budget. */
+  private long deadline = 0;
+
+  UnsatCoreMinimizer(FormulaManager pFmgr, Strategy pStrategy) {
+    fmgr = checkNotNull(pFmgr);
+    strategy = checkNotNull(pStrategy);
+  }
+
+  /**
+   * Limit the time of each minimization. An empty time span means no limit, which is the default.
+   */
+  public void setTimeBudget(TimeSpan pTimeBudget) {
+    checkArgument(pTimeBudget.asNanos() >= 0, "negative time budget");
+    timeBudget = pTimeBudget;
+  }
+
+  /**
+   * Use the given solver contexts to probe several candidates at once. The contexts need to be
+   * distinct from the context of the formula manager, and each of them is used by one thread only.
+   * An empty list, which is the default, disables parallel probing.
+   */
+  public void setParallelWorkers(List<? extends SolverContext> pWorkers) {
+    workers = ImmutableList.copyOf(pWorkers);
+  }
+
+  /**
+   * Compute a minimal unsatisfiable subset of the given constraints. Formulas asserted on the
+   * prover before the call count as background. They are not known to parallel workers, thus no
+   * workers are used, see {@link #minimize(BasicProverEnvironment, List, List)} instead.
+   */
+  public ImmutableList<BooleanFormula> minimize(
+      BasicProverEnvironment<?> pProver, List<BooleanFormula> pConstraints)
+      throws SolverException, InterruptedException {
+    return minimize0(pProver, ImmutableList.of(), pConstraints, ImmutableList.of());
+  }
+
+  /**
+   * Compute a minimal subset of the constraints that is unsatisfiable together with the background
+   * formulas. The prover is used in an additional level of its stack, which is removed afterwards.
+   *
+   * @param pProver the prover to use, ideally created with {@link
+   *     ProverOptions#GENERATE_UNSAT_CORE_OVER_ASSUMPTIONS}
+   * @param pBackground formulas that are always assumed, but not part of the result
+   * @param pConstraints the constraints to minimize, unsatisfiable together with the background
+   * @return a minimal subset of the constraints, in their original order
+   * @throws IllegalArgumentException if the constraints and the background are satisfiable
+   */
+  public ImmutableList<BooleanFormula> minimize(
+      BasicProverEnvironment<?> pProver,
+      List<BooleanFormula> pBackground,
+      List<BooleanFormula> pConstraints)
+      throws SolverException, InterruptedException {
+    return minimize0(pProver, pBackground, pConstraints, workers);
+  }
+
+  private ImmutableList<BooleanFormula> minimize0(
+      BasicProverEnvironment<?> pProver,
+      List<BooleanFormula> pBackground,
+      List<BooleanFormula> pConstraints,
+      List<SolverContext> pWorkers)
+      throws SolverException, InterruptedException {
+    ImmutableList<BooleanFormula> constraints = ImmutableList.copyOf(pConstraints);
+    budget = timeBudget.asNanos();
+    deadline = System.nanoTime() + budget;
+    lastResultMinimal = false;
+    String prefix = SELECTOR_PREFIX + runs.incrementAndGet() + "_";
+
+    List<Integer> all = new ArrayList<>(constraints.size());
+    for (int i = 0; i < constraints.size(); i++) {
+      all.add(i);
+    }
+
+    List<Integer> core;
+    try (Oracle main = new Oracle(pProver, fmgr, pBackground, constraints, prefix, false)) {
+      Optional<List<Integer>> initial = check(main, all);
+      checkArgument(initial.isPresent(), "constraints are satisfiable");
+
+      switch (strategy) {
+        case DELETION:
+          core = deletion(main, pWorkers, all, false);
+          break;
+        case CLAUSE_SET_REFINEMENT:
+          core = deletion(main, pWorkers, initial.get(), true);
+          break;
+        case QUICK_XPLAIN:
+          core = new ArrayList<>(quickXplain(main, ImmutableList.of(), false, all));
+          lastResultMinimal = !isTimeout();
+          break;
+        default:
+          throw new AssertionError("unexpected strategy " + strategy);
+      }
+    }
+
+    Collections.sort(core);
+    ImmutableList.Builder<BooleanFormula> result = ImmutableList.builder();
+    for (int i : core) {
+      result.add(constraints.get(i));
+    }
+    return result.build();
+  }
+
+  /**
+   * Deletion-based minimization, optionally with refinement by the cores of the solver. Uses the
+   * parallel workers, if there are any.
+   */
+  private List<Integer> deletion(
+      Oracle main, List<SolverContext> pWorkers, List<Integer> initial, boolean refine)
+      throws SolverException, InterruptedException {
+    List<Integer> core = new ArrayList<>(initial);
+    // Constraints without which the current set is satisfiable. They are needed for all subsets of
+    // the current set, too.
+    Set<Integer> necessary = new HashSet<>();
+
+    List<Oracle> workerOracles = new ArrayList<>(pWorkers.size());
+    ExecutorService executor = null;
+    try {
+      String prefix = SELECTOR_PREFIX + runs.incrementAndGet() + "_";
+      for (SolverContext worker : pWorkers) {
+        workerOracles.add(createWorkerOracle(worker, main, prefix));
+      }
+      if (!workerOracles.isEmpty()) {
+        executor = Executors.newFixedThreadPool(workerOracles.size());
+      }
+
+      while (!isTimeout()) {
+        List<Integer> candidates = new ArrayList<>();
+        for (int c : core) {
+          if (!necessary.contains(c)) {
+            candidates.add(c);
+          }
+        }
+        if (candidates.isEmpty()) {
+          lastResultMinimal = true;
+          break;
+        }
+
+        List<Optional<List<Integer>>> results = new ArrayList<>();
+        List<List<Integer>> probes = new ArrayList<>();
+        if (executor == null) {
+          List<Integer> probe = without(core, candidates.get(0));
+          probes.add(probe);
+          results.add(check(main, probe));
+        } else {
+          List<Callable<Optional<List<Integer>>>> tasks = new ArrayList<>();
+          for (int i = 0; i < Math.min(candidates.size(), workerOracles.size()); i++) {
+            Oracle oracle = workerOracles.get(i);
+            List<Integer> probe = without(core, candidates.get(i));
+            probes.add(probe);
+            tasks.add(() -> check(oracle, probe));
+          }
+          for (Future<Optional<List<Integer>>> future : executor.invokeAll(tasks)) {
+            results.add(getResult(future));
+          }
+        }
+
+        // Keep the smallest unsatisfiable probe, and all constraints without which a probe was
+        // satisfiable. Both are valid at the same time, because necessity is inherited by subsets.
+        List<Integer> best = null;
+        for (int i = 0; i < probes.size(); i++) {
+          Optional<List<Integer>> result = results.get(i);
+          if (result.isPresent()) {
+            List<Integer> reduced = refine ? result.get() : probes.get(i);
+            if (best == null || reduced.size() < best.size()) {
+              best = reduced;
+            }
+          } else {
+            necessary.add(candidates.get(i));
+          }
+        }
+        if (best != null) {
+          core = new ArrayList<>(best);
+        }
+      }
+    } finally {
+      if (executor != null) {
+        executor.shutdownNow();
+      }
+      for (Oracle oracle : workerOracles) {
+        oracle.close();
+      }
+    }
+    return core;
+  }
+
+  /**
+   * QuickXplain: returns a minimal subset of the constraints that is unsatisfiable together with
+   * the background. If the time budget is exceeded, all constraints are returned, which keeps the
+   * result unsatisfiable.
+   */
+  private Set<Integer> quickXplain(
+      Oracle oracle, List<Integer> background, boolean backgroundChanged, List<Integer> constraints)
+      throws SolverException, InterruptedException {
+    if (isTimeout()) {
+      return new HashSet<>(constraints);
+    }
+    if (backgroundChanged && check(oracle, background).isPresent()) {
+      return new HashSet<>();
+    }
+    if (constraints.size() == 1) {
+      return new HashSet<>(constraints);
+    }
+    int split = constraints.size() / 2;
+    List<Integer> first = constraints.subList(0, split);
+    List<Integer> second = constraints.subList(split, constraints.size());
+
+    Set<Integer> fromSecond =
+        quickXplain(oracle, concat(background, first), !first.isEmpty(), second);
+    Set<Integer> fromFirst =
+        quickXplain(
+            oracle, concat(background, fromSecond), !fromSecond.isEmpty(), new ArrayList<>(first));
+    fromFirst.addAll(fromSecond);
+    return fromFirst;
+  }
+
+  private Optional<List<Integer>> check(Oracle oracle, List<Integer> subset)
+      throws SolverException, InterruptedException {
+    solverCalls.incrementAndGet();
+    return oracle.check(subset);
+  }
+
+  private boolean isTimeout() {
+    return budget != 0 && System.nanoTime() - deadline > 0;
+  }
+
+  private Oracle createWorkerOracle(SolverContext pWorker, Oracle pMain, String pPrefix)
+      throws InterruptedException {
+    FormulaManager workerFmgr = pWorker.getFormulaManager();
+    List<BooleanFormula> background = new ArrayList<>(pMain.background.size());
+    for (BooleanFormula f : pMain.background) {
+      background.add(workerFmgr.translateFrom(f, fmgr));
+    }
+    List<BooleanFormula> constraints = new ArrayList<>(pMain.constraints.size());
+    for (BooleanFormula f : pMain.constraints) {
+      constraints.add(workerFmgr.translateFrom(f, fmgr));
+    }
+    return new Oracle(newWorkerProver(pWorker), workerFmgr, background, constraints, pPrefix, true);
+  }
+
+  private static ProverEnvironment newWorkerProver(SolverContext pWorker) {
+    try {
+      return pWorker.newProverEnvironment(ProverOptions.GENERATE_UNSAT_CORE_OVER_ASSUMPTIONS);
+    } catch (UnsupportedOperationException e) {
+      // the worker falls back to checks without cores
+      return pWorker.newProverEnvironment();
+    }
+  }
+
+  private static List<Integer> without(List<Integer> list, int element) {
+    List<Integer> result = new ArrayList<>(list);
+    result.remove(Integer.valueOf(element));
+    return result;
+  }
+
+  private static List<Integer> concat(List<Integer> first, Iterable<Integer> second) {
+    List<Integer> result = new ArrayList<>(first);
+    for (int i : second) {
+      result.add(i);
+    }
+    return result;
+  }
+
+  private static <T> T getResult(Future<T> future) throws SolverException, InterruptedException {
+    try {
+      return future.get();
+    } catch (ExecutionException e) {
+      Throwable cause = e.getCause();
+      if (cause instanceof SolverException) {
+        throw (SolverException) cause;
+      } else if (cause instanceof InterruptedException) {
+        throw (InterruptedException) cause;
+      } else if (cause instanceof RuntimeException) {
+        throw (RuntimeException) cause;
+      } else if (cause instanceof Error) {
+        throw (Error) cause;
+      }
+      throw new AssertionError(cause);
+    }
+  }
+
+  /** Number of satisfiability checks in all minimizations. */
+  public int getSolverCalls() {
+    return solverCalls.get();
+  }
+
+  /**
+   * Whether the last result is guaranteed to be minimal, i.e., the minimization was not stopped by
+   * the time budget.
+   */
+  public boolean wasLastResultMinimal() {
+    return lastResultMinimal;
+  }
+
+  /**
+   * Checks subsets of the constraints on one prover. The constraints are asserted once, guarded by
+   * selector variables, in a new level of the prover stack.
+   */
+  private static class Oracle implements AutoCloseable {
+
+    private final BasicProverEnvironment<?> prover;
+    private final List<BooleanFormula> background;
+    private final List<BooleanFormula> constraints;
+    private final List<BooleanFormula> selectors;
+    private final Map<BooleanFormula, Integer> indices = new HashMap<>();
+    private final boolean ownsProver;
+
+    /** Whether the solver computes unsat cores over assumptions, until it refuses to do so. */
+    private boolean useCores = true;
+
+    Oracle(
+        BasicProverEnvironment<?> pProver,
+        FormulaManager pFmgr,
+        List<BooleanFormula> pBackground,
+        List<BooleanFormula> pConstraints,
+        String pPrefix,
+        boolean pOwnsProver)
+        throws InterruptedException {
+      prover = pProver;
+      ownsProver = pOwnsProver;
+      background = pBackground;
+      constraints = pConstraints;
+      BooleanFormulaManager bmgr = pFmgr.getBooleanFormulaManager();
+      selectors = new ArrayList<>(constraints.size());
+
+      prover.push();
+      for (BooleanFormula f : background) {
+        prover.addConstraint(f);
+      }
+      for (int i = 0; i < constraints.size(); i++) {
+        BooleanFormula selector = bmgr.makeVariable(pPrefix + i);
+        prover.addConstraint(bmgr.implication(selector, constraints.get(i)));
+        selectors.add(selector);
+        indices.put(selector, i);
+      }
+    }
+
+    /** Returns an unsatisfiable subset of the given indices, or nothing if they are satisfiable. */
+    Optional<List<Integer>> check(List<Integer> subset)
+        throws SolverException, InterruptedException {
+      List<BooleanFormula> assumptions = new ArrayList<>(subset.size());
+      for (int i : subset) {
+        assumptions.add(selectors.get(i));
+      }
+      if (useCores) {
+        try {
+          Optional<List<BooleanFormula>> core = prover.unsatCoreOverAssumptions(assumptions);
+          if (!core.isPresent()) {
+            return Optional.empty();
+          }
+          List<Integer> result = new ArrayList<>(core.get().size());
+          for (BooleanFormula selector : core.get()) {
+            result.add(checkNotNull(indices.get(selector)));
+          }
+          return Optional.of(result);
+        } catch (UnsupportedOperationException e) {
+          useCores = false;
+        }
+      }
+      // without cores, the whole subset is the only known core
+      return prover.isUnsatWithAssumptions(assumptions)
+          ? Optional.of(subset)
+          : Optional.empty();
+    }
+
+    @Override
+    public void close() {
+      if (ownsProver) {
+        prover.close();
+      } else {
+        prover.pop();
+      }
+    }
+  }
+}